@@ -0,0 +1,51 @@
+"""Add execution checkpoints
+
+Revision ID: 004_execution_checkpoints
+Revises: 003_auterity_expansion_core
+Create Date: 2026-10-17
+"""
+
+import sqlalchemy as sa
+from alembic import op
+from sqlalchemy.dialects import postgresql
+
+# revision identifiers, used by Alembic.
+revision = "004_execution_checkpoints"
+down_revision = "003_auterity_expansion_core"
+branch_labels = None
+depends_on = None
+
+
+def upgrade():
+    op.create_table(
+        "execution_checkpoints",
+        sa.Column("id", postgresql.UUID(as_uuid=True), primary_key=True),
+        sa.Column(
+            "execution_id",
+            postgresql.UUID(as_uuid=True),
+            sa.ForeignKey("workflow_executions.id", ondelete="CASCADE"),
+            nullable=False,
+        ),
+        sa.Column("node_id", sa.String(length=255), nullable=False),
+        sa.Column("definition_hash", sa.String(length=64), nullable=False),
+        sa.Column("output_data", sa.JSON),
+        sa.Column(
+            "created_at",
+            sa.DateTime(timezone=True),
+            server_default=sa.func.now(),
+            nullable=False,
+        ),
+        sa.UniqueConstraint("execution_id", "node_id", name="uq_checkpoint_node"),
+    )
+    op.create_index(
+        "ix_execution_checkpoints_execution_id",
+        "execution_checkpoints",
+        ["execution_id"],
+    )
+
+
+def downgrade():
+    op.drop_index(
+        "ix_execution_checkpoints_execution_id", table_name="execution_checkpoints"
+    )
+    op.drop_table("execution_checkpoints")
@@ -0,0 +1,26 @@
+"""Add execution attempt counter
+
+Revision ID: 005_execution_attempt
+Revises: 004_execution_checkpoints
+Create Date: 2026-10-17
+"""
+
+import sqlalchemy as sa
+from alembic import op
+
+# revision identifiers, used by Alembic.
+revision = "005_execution_attempt"
+down_revision = "004_execution_checkpoints"
+branch_labels = None
+depends_on = None
+
+
+def upgrade():
+    op.add_column(
+        "workflow_executions",
+        sa.Column("attempt", sa.Integer(), server_default="0", nullable=False),
+    )
+
+
+def downgrade():
+    op.drop_column("workflow_executions", "attempt")
@@ -654,7 +654,7 @@ async def validate_compliance(
 
 
 @router.get("/status", response_model=AgentStatusResponse)
-@cached_response("agent_status", ttl=60, vary_by=["tenant_id"])
+@cached_response("agent_status", ttl=60, vary_by=["tenant_id"], stale_ttl=30)
 async def get_agent_status(
     user_info: Dict[str, Any] = Depends(verify_token),
     orchestrator: AgentOrchestrator = Depends(get_agent_orchestrator),
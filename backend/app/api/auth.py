@@ -19,6 +19,7 @@ from app.auth import (
 )
 from app.database import get_db
 from app.models.user import User, Role, Permission
+from app.services.tenant_cache import tenant_lookup_cache
 from app.schemas.auth import (
     CrossSystemTokenRequest,
     CrossSystemTokenResponse,
@@ -57,6 +58,7 @@ async def register_user(user_data: UserRegister, db: Session = Depends(get_db)):
     db.add(db_user)
     db.commit()
     db.refresh(db_user)
+    tenant_lookup_cache.invalidate_user(db_user.email)
 
     return db_user
 
@@ -5,7 +5,8 @@ from uuid import UUID
 
 from app.auth import get_current_active_user
 from app.config.workflow_config import create_workflow_engine
-from app.database import get_db
+from app.database import get_async_db
+from app.exceptions import WorkflowExecutionConflictError
 from app.models.execution import ExecutionLog, WorkflowExecution
 from app.models.user import User
 from app.models.workflow import Workflow
@@ -20,9 +21,10 @@ from app.schemas import (
     WorkflowUpdate,
 )
 from app.services.workflow_engine import WorkflowExecutionError
+from app.services.workflow_plan import workflow_plan_cache
 from fastapi import APIRouter, Depends, HTTPException, Query, status
-from sqlalchemy import and_
-from sqlalchemy.orm import Session
+from sqlalchemy import and_, func, select
+from sqlalchemy.ext.asyncio import AsyncSession
 
 router = APIRouter(prefix="/workflows", tags=["workflows"])
 
@@ -31,20 +33,18 @@ router = APIRouter(prefix="/workflows", tags=["workflows"])
 async def create_workflow(
     workflow_data: WorkflowCreate,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Create a new workflow for the authenticated user."""
     # Check if workflow name already exists for this user
-    existing_workflow = (
-        db.query(Workflow)
-        .filter(
+    existing_workflow = await db.scalar(
+        select(Workflow).where(
             and_(
                 Workflow.user_id == current_user.id,
                 Workflow.name == workflow_data.name,
-                Workflow.is_active is True,
+                Workflow.is_active,
             )
         )
-        .first()
     )
 
     if existing_workflow:
@@ -62,8 +62,8 @@ async def create_workflow(
     )
 
     db.add(db_workflow)
-    db.commit()
-    db.refresh(db_workflow)
+    await db.commit()
+    await db.refresh(db_workflow)
 
     return db_workflow
 
@@ -77,29 +77,30 @@ async def list_workflows(
     name_filter: Optional[str] = Query(None, description="Filter workflows by name"),
     is_active: Optional[bool] = Query(None, description="Filter by active status"),
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """List workflows for the authenticated user with pagination and filtering."""
     # Build query with user filter
-    query = db.query(Workflow).filter(Workflow.user_id == current_user.id)
+    query = select(Workflow).where(Workflow.user_id == current_user.id)
 
     # Apply filters
     if name_filter:
-        query = query.filter(Workflow.name.ilike(f"%{name_filter}%"))
+        query = query.where(Workflow.name.ilike(f"%{name_filter}%"))
 
     if is_active is not None:
-        query = query.filter(Workflow.is_active == is_active)
+        query = query.where(Workflow.is_active == is_active)
 
     # Get total count
-    total = query.count()
+    total = await db.scalar(select(func.count()).select_from(query.subquery()))
 
     # Apply pagination and ordering
     workflows = (
-        query.order_by(Workflow.created_at.desc())
-        .offset((page - 1) * page_size)
-        .limit(page_size)
-        .all()
-    )
+        await db.scalars(
+            query.order_by(Workflow.created_at.desc())
+            .offset((page - 1) * page_size)
+            .limit(page_size)
+        )
+    ).all()
 
     return WorkflowListResponse(
         workflows=workflows, total=total, page=page, page_size=page_size
@@ -110,13 +111,13 @@ async def list_workflows(
 async def get_workflow(
     workflow_id: UUID,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Get a specific workflow by ID."""
-    workflow = (
-        db.query(Workflow)
-        .filter(and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id))
-        .first()
+    workflow = await db.scalar(
+        select(Workflow).where(
+            and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id)
+        )
     )
 
     if not workflow:
@@ -132,14 +133,14 @@ async def update_workflow(
     workflow_id: UUID,
     workflow_data: WorkflowUpdate,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Update a specific workflow."""
     # Get existing workflow
-    workflow = (
-        db.query(Workflow)
-        .filter(and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id))
-        .first()
+    workflow = await db.scalar(
+        select(Workflow).where(
+            and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id)
+        )
     )
 
     if not workflow:
@@ -149,17 +150,15 @@ async def update_workflow(
 
     # Check if new name conflicts with existing workflows (if name is being updated)
     if workflow_data.name and workflow_data.name != workflow.name:
-        existing_workflow = (
-            db.query(Workflow)
-            .filter(
+        existing_workflow = await db.scalar(
+            select(Workflow).where(
                 and_(
                     Workflow.user_id == current_user.id,
                     Workflow.name == workflow_data.name,
-                    Workflow.is_active is True,
+                    Workflow.is_active,
                     Workflow.id != workflow_id,
                 )
             )
-            .first()
         )
 
         if existing_workflow:
@@ -173,8 +172,9 @@ async def update_workflow(
     for field, value in update_data.items():
         setattr(workflow, field, value)
 
-    db.commit()
-    db.refresh(workflow)
+    await db.commit()
+    await db.refresh(workflow)
+    workflow_plan_cache.invalidate(workflow_id)
 
     return workflow
 
@@ -183,13 +183,13 @@ async def update_workflow(
 async def delete_workflow(
     workflow_id: UUID,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Delete a specific workflow (soft delete by setting is_active to False)."""
-    workflow = (
-        db.query(Workflow)
-        .filter(and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id))
-        .first()
+    workflow = await db.scalar(
+        select(Workflow).where(
+            and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id)
+        )
     )
 
     if not workflow:
@@ -199,7 +199,8 @@ async def delete_workflow(
 
     # Soft delete by setting is_active to False
     workflow.is_active = False
-    db.commit()
+    await db.commit()
+    workflow_plan_cache.invalidate(workflow_id)
 
     return None
 
@@ -212,14 +213,14 @@ async def delete_workflow(
 async def duplicate_workflow(
     workflow_id: UUID,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Create a duplicate of an existing workflow."""
     # Get original workflow
-    original_workflow = (
-        db.query(Workflow)
-        .filter(and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id))
-        .first()
+    original_workflow = await db.scalar(
+        select(Workflow).where(
+            and_(Workflow.id == workflow_id, Workflow.user_id == current_user.id)
+        )
     )
 
     if not original_workflow:
@@ -232,16 +233,14 @@ async def duplicate_workflow(
     duplicate_name = base_name
     counter = 1
 
-    while (
-        db.query(Workflow)
-        .filter(
+    while await db.scalar(
+        select(Workflow).where(
             and_(
                 Workflow.user_id == current_user.id,
                 Workflow.name == duplicate_name,
-                Workflow.is_active is True,
+                Workflow.is_active,
             )
         )
-        .first()
     ):
         counter += 1
         duplicate_name = f"{base_name} {counter}"
@@ -255,8 +254,8 @@ async def duplicate_workflow(
     )
 
     db.add(duplicate_workflow)
-    db.commit()
-    db.refresh(duplicate_workflow)
+    await db.commit()
+    await db.refresh(duplicate_workflow)
 
     return duplicate_workflow
 
@@ -271,20 +270,18 @@ async def execute_workflow(
     workflow_id: UUID,
     execution_request: WorkflowExecuteRequest,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Execute a workflow with the provided input data."""
     # Verify workflow exists and belongs to user
-    workflow = (
-        db.query(Workflow)
-        .filter(
+    workflow = await db.scalar(
+        select(Workflow).where(
             and_(
                 Workflow.id == workflow_id,
                 Workflow.user_id == current_user.id,
-                Workflow.is_active is True,
+                Workflow.is_active,
             )
         )
-        .first()
     )
 
     if not workflow:
@@ -306,6 +303,8 @@ async def execute_workflow(
             error_message=result.error_message,
         )
 
+    except WorkflowExecutionConflictError as e:
+        raise HTTPException(status_code=status.HTTP_409_CONFLICT, detail=str(e))
     except WorkflowExecutionError as e:
         raise HTTPException(
             status_code=status.HTTP_400_BAD_REQUEST,
@@ -322,20 +321,19 @@ async def execute_workflow(
 async def get_execution_status(
     execution_id: UUID,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Get the status and details of a workflow execution."""
     # Get execution and verify it belongs to user's workflow
-    execution = (
-        db.query(WorkflowExecution)
+    execution = await db.scalar(
+        select(WorkflowExecution)
         .join(Workflow)
-        .filter(
+        .where(
             and_(
                 WorkflowExecution.id == execution_id,
                 Workflow.user_id == current_user.id,
             )
         )
-        .first()
     )
 
     if not execution:
@@ -367,20 +365,19 @@ async def get_execution_logs(
     step_name: Optional[str] = Query(None, description="Filter logs by step name"),
     has_error: Optional[bool] = Query(None, description="Filter logs by error status"),
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Get execution logs for a workflow execution with filtering capabilities."""
     # Verify execution belongs to user's workflow
-    execution = (
-        db.query(WorkflowExecution)
+    execution = await db.scalar(
+        select(WorkflowExecution)
         .join(Workflow)
-        .filter(
+        .where(
             and_(
                 WorkflowExecution.id == execution_id,
                 Workflow.user_id == current_user.id,
             )
         )
-        .first()
     )
 
     if not execution:
@@ -389,22 +386,24 @@ async def get_execution_logs(
         )
 
     # Build query with filters
-    query = db.query(ExecutionLog).filter(ExecutionLog.execution_id == execution_id)
+    query = select(ExecutionLog).where(ExecutionLog.execution_id == execution_id)
 
     if step_type:
-        query = query.filter(ExecutionLog.step_type == step_type)
+        query = query.where(ExecutionLog.step_type == step_type)
 
     if step_name:
-        query = query.filter(ExecutionLog.step_name.ilike(f"%{step_name}%"))
+        query = query.where(ExecutionLog.step_name.ilike(f"%{step_name}%"))
 
     if has_error is not None:
         if has_error:
-            query = query.filter(ExecutionLog.error_message.isnot(None))
+            query = query.where(ExecutionLog.error_message.isnot(None))
         else:
-            query = query.filter(ExecutionLog.error_message.is_(None))
+            query = query.where(ExecutionLog.error_message.is_(None))
 
     # Apply ordering and limit
-    logs = query.order_by(ExecutionLog.timestamp).limit(limit).all()
+    logs = (
+        await db.scalars(query.order_by(ExecutionLog.timestamp).limit(limit))
+    ).all()
 
     return [
         ExecutionLogResponse(
@@ -425,20 +424,19 @@ async def get_execution_logs(
 async def cancel_execution(
     execution_id: UUID,
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """Cancel a running workflow execution."""
     # Verify execution belongs to user's workflow
-    execution = (
-        db.query(WorkflowExecution)
+    execution = await db.scalar(
+        select(WorkflowExecution)
         .join(Workflow)
-        .filter(
+        .where(
             and_(
                 WorkflowExecution.id == execution_id,
                 Workflow.user_id == current_user.id,
             )
         )
-        .first()
     )
 
     if not execution:
@@ -466,6 +464,57 @@ async def cancel_execution(
         )
 
 
+@router.post(
+    "/executions/{execution_id}/resume", response_model=ExecutionResultResponse
+)
+async def resume_execution(
+    execution_id: UUID,
+    current_user: User = Depends(get_current_active_user),
+    db: AsyncSession = Depends(get_async_db),
+):
+    """Resume an interrupted or failed execution, skipping completed steps."""
+    # Verify execution belongs to user's workflow
+    execution = await db.scalar(
+        select(WorkflowExecution)
+        .join(Workflow)
+        .where(
+            and_(
+                WorkflowExecution.id == execution_id,
+                Workflow.user_id == current_user.id,
+            )
+        )
+    )
+
+    if not execution:
+        raise HTTPException(
+            status_code=status.HTTP_404_NOT_FOUND, detail="Execution not found"
+        )
+
+    try:
+        engine = create_workflow_engine()
+        result = await engine.resume_execution(execution_id)
+
+        return ExecutionResultResponse(
+            execution_id=result.execution_id,
+            status=result.status.value,
+            output_data=result.output_data,
+            error_message=result.error_message,
+        )
+
+    except WorkflowExecutionConflictError as e:
+        raise HTTPException(status_code=status.HTTP_409_CONFLICT, detail=str(e))
+    except WorkflowExecutionError as e:
+        raise HTTPException(
+            status_code=status.HTTP_400_BAD_REQUEST,
+            detail=f"Workflow execution failed: {str(e)}",
+        )
+    except Exception as e:
+        raise HTTPException(
+            status_code=status.HTTP_500_INTERNAL_SERVER_ERROR,
+            detail=f"Internal server error during workflow execution: {str(e)}",
+        )
+
+
 @router.get("/executions", response_model=List[ExecutionStatusResponse])
 async def list_executions(
     workflow_id: Optional[UUID] = Query(None, description="Filter by workflow ID"),
@@ -477,41 +526,39 @@ async def list_executions(
     ),
     offset: int = Query(0, ge=0, description="Number of executions to skip"),
     current_user: User = Depends(get_current_active_user),
-    db: Session = Depends(get_db),
+    db: AsyncSession = Depends(get_async_db),
 ):
     """List workflow executions for the authenticated user with filtering."""
     # Build query for user's executions
     query = (
-        db.query(WorkflowExecution)
+        select(WorkflowExecution)
         .join(Workflow)
-        .filter(Workflow.user_id == current_user.id)
+        .where(Workflow.user_id == current_user.id)
     )
 
     # Apply filters
     if workflow_id:
         # Verify workflow belongs to user
-        workflow = (
-            db.query(Workflow)
-            .filter(
+        workflow = await db.scalar(
+            select(Workflow).where(
                 and_(
                     Workflow.id == workflow_id,
                     Workflow.user_id == current_user.id,
                 )
             )
-            .first()
         )
         if not workflow:
             raise HTTPException(
                 status_code=status.HTTP_404_NOT_FOUND, detail="Workflow not found"
             )
-        query = query.filter(WorkflowExecution.workflow_id == workflow_id)
+        query = query.where(WorkflowExecution.workflow_id == workflow_id)
 
     if status_filter:
         try:
             from app.models.execution import ExecutionStatus
 
             status_enum = ExecutionStatus(status_filter.lower())
-            query = query.filter(WorkflowExecution.status == status_enum)
+            query = query.where(WorkflowExecution.status == status_enum)
         except ValueError:
             raise HTTPException(
                 status_code=status.HTTP_400_BAD_REQUEST,
@@ -520,11 +567,12 @@ async def list_executions(
 
     # Apply ordering, offset, and limit
     executions = (
-        query.order_by(WorkflowExecution.started_at.desc())
-        .offset(offset)
-        .limit(limit)
-        .all()
-    )
+        await db.scalars(
+            query.order_by(WorkflowExecution.started_at.desc())
+            .offset(offset)
+            .limit(limit)
+        )
+    ).all()
 
     return [
         ExecutionStatusResponse(
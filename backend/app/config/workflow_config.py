@@ -1,5 +1,8 @@
 """Workflow engine configuration and factory setup."""
 
+from typing import Optional
+
+from app.core.config import settings
 from app.executors.step_executors import (
     AIStepExecutor,
     DataValidationStepExecutor,
@@ -9,13 +12,21 @@ from app.executors.step_executors import (
     ProcessStepExecutor,
 )
 from app.interfaces.step_executor import StepExecutorFactory
-from app.monitoring.performance import PerformanceMonitor
+from app.services.distributed_workflow import DistributedStepDispatcher
+from app.services.step_result_cache import get_step_result_cache
 from app.services.workflow_engine import WorkflowEngine
-from app.types.workflow import RetryConfig
+from app.types.workflow import RetryConfig, SchedulerConfig
+
+
+def create_workflow_engine(distributed: Optional[bool] = None) -> WorkflowEngine:
+    """Create a configured workflow engine instance.
 
+    When ``distributed`` is true (default: WORKFLOW_DISTRIBUTED_EXECUTION),
+    steps are dispatched to queue workers instead of running in-process.
+    """
+    if distributed is None:
+        distributed = settings.WORKFLOW_DISTRIBUTED_EXECUTION
 
-def create_workflow_engine() -> WorkflowEngine:
-    """Create a configured workflow engine instance."""
     # Create step executor factory
     factory = StepExecutorFactory()
     factory.register_executor("input", InputStepExecutor())
@@ -33,11 +44,20 @@ def create_workflow_engine() -> WorkflowEngine:
         retryable_errors=["ConnectionError", "TimeoutError", "AIServiceError"],
     )
 
-    # Create performance monitor
-    performance_monitor = PerformanceMonitor()
+    # The process-wide step limit comes from settings, see global_step_limit
+    if distributed:
+        # Dispatched steps only wait on workers, so allow many more in flight
+        scheduler_config = SchedulerConfig(max_parallel_steps=32)
+        step_dispatcher = DistributedStepDispatcher()
+    else:
+        # Bound concurrent steps per execution
+        scheduler_config = SchedulerConfig(max_parallel_steps=4)
+        step_dispatcher = None
 
     return WorkflowEngine(
         step_factory=factory,
         retry_config=retry_config,
-        performance_monitor=performance_monitor,
+        scheduler_config=scheduler_config,
+        step_dispatcher=step_dispatcher,
+        step_cache=get_step_result_cache(),
     )
@@ -7,9 +7,12 @@ import asyncio
 import hashlib
 import json
 import logging
+import math
+import random
 import time
+import uuid
 from functools import wraps
-from typing import Any, Dict, Optional, Union
+from typing import Any, Awaitable, Callable, Dict, Optional, Union
 
 from fastapi import Request, Response
 from fastapi.responses import JSONResponse
@@ -37,6 +40,14 @@ class CacheConfig:
     REDIS_URL = "redis://localhost:6379"
     REDIS_DB = 0
     REDIS_PREFIX = "agents_cache:"
+    SCAN_BATCH_SIZE = 500  # Keys examined per SCAN and removed per UNLINK
+
+    # Stampede protection for cached_response
+    EARLY_EXPIRY_BETA = 1.0  # Probabilistic early refresh; 0 disables it
+    LOCK_PREFIX = "agents_cache_lock:"
+    LOCK_LEASE_SECONDS = 30  # Cross-worker recompute lease
+    LOCK_WAIT_SECONDS = 5.0  # How long other workers wait for the lease holder
+    LOCK_POLL_INTERVAL = 0.05
 
     # Cache TTL for different operations
     CACHE_TTLS = {
@@ -48,6 +59,39 @@ class CacheConfig:
     }
 
 
+# Deletes the lease only if this worker still holds it
+RELEASE_LEASE_SCRIPT = """
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+  return redis.call('DEL', KEYS[1])
+end
+return 0
+"""
+
+
+async def unlink_matching(
+    client, pattern: str, batch_size: int = CacheConfig.SCAN_BATCH_SIZE
+) -> int:
+    """Delete keys matching a pattern using cursor SCAN and batched UNLINK.
+
+    Unlike KEYS this never blocks Redis for the whole keyspace, so other
+    services sharing the instance keep being served. Keys written while the
+    scan runs may be missed.
+    """
+    removed = 0
+    batch = []
+
+    async for key in client.scan_iter(match=pattern, count=batch_size):
+        batch.append(key)
+        if len(batch) >= batch_size:
+            removed += await client.unlink(*batch)
+            batch = []
+
+    if batch:
+        removed += await client.unlink(*batch)
+
+    return removed
+
+
 class AgentCacheManager:
     """Advanced caching manager with fallback strategies"""
 
@@ -73,6 +117,9 @@ class AgentCacheManager:
 
         self.stats = {"hits": 0, "misses": 0, "sets": 0, "errors": 0}
 
+        # Recomputations in progress in this process, shared by all callers
+        self._in_flight: Dict[str, asyncio.Task] = {}
+
     def _generate_cache_key(self, prefix: str, *args, **kwargs) -> str:
         """Generate a cache key from arguments"""
         key_data = {"args": args, "kwargs": sorted(kwargs.items()) if kwargs else {}}
@@ -162,10 +209,9 @@ class AgentCacheManager:
             # Clear from Redis
             if self.redis_client:
                 try:
-                    keys = await self.redis_client.keys(f"{pattern}*")
-                    if keys:
-                        await self.redis_client.delete(*keys)
-                        cleared += len(keys)
+                    cleared += await unlink_matching(
+                        self.redis_client, f"{pattern}*"
+                    )
                 except Exception as e:
                     logger.warning(f"Redis pattern clear error: {e}")
 
@@ -183,6 +229,149 @@ class AgentCacheManager:
             logger.error(f"Cache pattern clear error: {e}")
             return 0
 
+    async def get_or_compute(
+        self,
+        key: str,
+        compute: Callable[[], Awaitable[Any]],
+        ttl: int,
+        stale_ttl: int = 0,
+        beta: float = CacheConfig.EARLY_EXPIRY_BETA,
+    ) -> Any:
+        """Return the cached value for key, recomputing it at most once at a time.
+
+        Concurrent misses share one computation per process, and a Redis lease
+        makes other workers wait for it instead of recomputing too. Entries
+        may be refreshed shortly before they expire, with a probability that
+        grows as expiry approaches and with how long the value took to compute.
+        With stale_ttl, an expired value keeps being served for that many
+        seconds while a single background task refreshes it.
+        """
+        entry = await self.get(key)
+        now = time.time()
+
+        if self._is_entry(entry):
+            expires_at = entry["expires_at"]
+            if now < expires_at:
+                if not self._should_refresh_early(entry, now, beta):
+                    return entry["value"]
+                if stale_ttl:
+                    self._start_flight(key, compute, ttl, stale_ttl)
+                    return entry["value"]
+            elif stale_ttl and now < expires_at + stale_ttl:
+                self._start_flight(key, compute, ttl, stale_ttl)
+                return entry["value"]
+
+        # Shielded so a cancelled caller does not cancel the shared computation
+        return await asyncio.shield(self._start_flight(key, compute, ttl, stale_ttl))
+
+    def _start_flight(
+        self,
+        key: str,
+        compute: Callable[[], Awaitable[Any]],
+        ttl: int,
+        stale_ttl: int,
+    ) -> asyncio.Task:
+        """Join the computation in progress for key, or start one"""
+        task = self._in_flight.get(key)
+        if task is not None:
+            return task
+
+        task = asyncio.ensure_future(
+            self._compute_with_lease(key, compute, ttl, stale_ttl)
+        )
+        self._in_flight[key] = task
+
+        def finished(done: asyncio.Task) -> None:
+            if self._in_flight.get(key) is done:
+                del self._in_flight[key]
+            # Background refreshes have nobody awaiting them; log failures here
+            if not done.cancelled() and done.exception() is not None:
+                logger.warning(f"Cache recompute failed for {key}: {done.exception()}")
+
+        task.add_done_callback(finished)
+        return task
+
+    async def _compute_with_lease(
+        self,
+        key: str,
+        compute: Callable[[], Awaitable[Any]],
+        ttl: int,
+        stale_ttl: int,
+    ) -> Any:
+        token = await self._acquire_lease(key)
+        if token is None:
+            # Another worker is recomputing; use its result when it lands
+            entry = await self._wait_for_refresh(key)
+            if entry is not None:
+                return entry["value"]
+            # The holder is slow or gone; recompute rather than fail
+
+        try:
+            started = time.monotonic()
+            value = await compute()
+            await self.set(
+                key,
+                {
+                    "value": value,
+                    "expires_at": time.time() + ttl,
+                    "delta": time.monotonic() - started,
+                },
+                ttl + stale_ttl,
+            )
+            return value
+        finally:
+            if token:
+                await self._release_lease(key, token)
+
+    async def _acquire_lease(self, key: str) -> Optional[str]:
+        """Return a lease token, "" when no lease is needed, or None if taken"""
+        if not self.redis_client:
+            return ""
+
+        token = uuid.uuid4().hex
+        try:
+            acquired = await self.redis_client.set(
+                f"{CacheConfig.LOCK_PREFIX}{key}",
+                token,
+                nx=True,
+                ex=CacheConfig.LOCK_LEASE_SECONDS,
+            )
+            return token if acquired else None
+        except Exception as e:
+            logger.warning(f"Redis lease error: {e}")
+            return ""
+
+    async def _release_lease(self, key: str, token: str) -> None:
+        try:
+            await self.redis_client.eval(
+                RELEASE_LEASE_SCRIPT, 1, f"{CacheConfig.LOCK_PREFIX}{key}", token
+            )
+        except Exception as e:
+            logger.warning(f"Redis lease release error: {e}")
+
+    async def _wait_for_refresh(self, key: str) -> Optional[Dict[str, Any]]:
+        """Poll until the lease holder stores a fresh entry or the wait ends"""
+        deadline = time.monotonic() + CacheConfig.LOCK_WAIT_SECONDS
+        while time.monotonic() < deadline:
+            await asyncio.sleep(CacheConfig.LOCK_POLL_INTERVAL)
+            entry = await self.get(key)
+            if self._is_entry(entry) and entry["expires_at"] > time.time():
+                return entry
+        return None
+
+    @staticmethod
+    def _is_entry(entry: Any) -> bool:
+        return isinstance(entry, dict) and "expires_at" in entry and "value" in entry
+
+    @staticmethod
+    def _should_refresh_early(entry: Dict[str, Any], now: float, beta: float) -> bool:
+        """Probabilistic early expiry: slow-to-compute entries refresh sooner"""
+        if beta <= 0:
+            return False
+        # 1 - random() lies in (0, 1], so the log is always defined
+        gap = -entry.get("delta", 0) * beta * math.log(1 - random.random())
+        return now + gap >= entry["expires_at"]
+
     def get_stats(self) -> Dict[str, Any]:
         """Get cache statistics"""
         hit_rate = (
@@ -203,14 +392,27 @@ class AgentCacheManager:
 cache_manager = AgentCacheManager()
 
 
-def cached_response(cache_key_prefix: str, ttl: int = None, vary_by: list = None):
+def cached_response(
+    cache_key_prefix: str,
+    ttl: int = None,
+    vary_by: list = None,
+    stale_ttl: int = 0,
+    early_expiry_beta: float = CacheConfig.EARLY_EXPIRY_BETA,
+):
     """
     Decorator for caching API responses
 
+    Concurrent misses for the same key run the handler once (per key, across
+    workers), so a popular key expiring does not stampede the database.
+
     Args:
         cache_key_prefix: Prefix for cache key
         ttl: Time to live in seconds
         vary_by: List of request attributes to vary cache by (e.g., ['user_id', 'tenant_id'])
+        stale_ttl: Seconds to keep serving an expired response while one
+            background task refreshes it; only for handlers whose dependencies
+            outlive the request
+        early_expiry_beta: Eagerness of probabilistic early refresh; 0 disables
     """
 
     def decorator(func):
@@ -249,23 +451,22 @@ def cached_response(cache_key_prefix: str, ttl: int = None, vary_by: list = None
                 },
             )
 
-            # Try to get from cache
-            cached_result = await cache_manager.get(cache_key)
-            if cached_result is not None:
-                logger.debug(f"Cache hit for {cache_key_prefix}")
-                return cached_result
-
-            # Execute function
-            result = await func(*args, **kwargs)
-
-            # Cache the result
             cache_ttl = ttl or CacheConfig.CACHE_TTLS.get(
                 cache_key_prefix, CacheConfig.DEFAULT_TTL
             )
-            await cache_manager.set(cache_key, result, cache_ttl)
 
-            logger.debug(f"Cache miss and set for {cache_key_prefix}")
-            return result
+            async def compute():
+                logger.debug(f"Cache miss for {cache_key_prefix}, recomputing")
+                return await func(*args, **kwargs)
+
+            # Serve from cache, or compute once however many callers are waiting
+            return await cache_manager.get_or_compute(
+                cache_key,
+                compute,
+                cache_ttl,
+                stale_ttl=stale_ttl,
+                beta=early_expiry_beta,
+            )
 
         return wrapper
 
@@ -305,6 +506,10 @@ class CacheMiddleware:
             "/api/agents/status": 60,
             "/api/agents/health": 30,
         }
+        # Clients and proxies may serve a stale copy this long while refetching
+        self.stale_while_revalidate = {
+            "/api/agents/status": 30,
+        }
 
     async def __call__(self, request: Request, call_next):
         response = await call_next(request)
@@ -312,7 +517,11 @@ class CacheMiddleware:
         # Add cache headers for cacheable endpoints
         if request.url.path in self.cacheable_paths:
             max_age = self.cacheable_paths[request.url.path]
-            response.headers["Cache-Control"] = f"public, max-age={max_age}"
+            cache_control = f"public, max-age={max_age}"
+            stale = self.stale_while_revalidate.get(request.url.path)
+            if stale:
+                cache_control += f", stale-while-revalidate={stale}"
+            response.headers["Cache-Control"] = cache_control
             response.headers["ETag"] = hashlib.md5(
                 f"{request.url.path}:{int(time.time() // max_age)}".encode()
             ).hexdigest()[:16]
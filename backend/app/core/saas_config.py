@@ -231,6 +231,15 @@ class SaaSConfig(BaseSettings):
         False, env="QUICKBOOKS_INTEGRATION_ENABLED"
     )
 
+    # Cache Configuration (empty codec/compression picks the best installed)
+    CACHE_CODEC: str = Field("", env="CACHE_CODEC")  # json or msgpack
+    CACHE_COMPRESSION: str = Field(
+        "", env="CACHE_COMPRESSION"
+    )  # none, zlib, zstd or lz4
+    CACHE_COMPRESSION_THRESHOLD: int = Field(
+        1024, env="CACHE_COMPRESSION_THRESHOLD"
+    )  # bytes
+
     # Development/Testing Configuration
     TEST_MODE: bool = Field(False, env="TEST_MODE")
     MOCK_BILLING_ENABLED: bool = Field(False, env="MOCK_BILLING_ENABLED")
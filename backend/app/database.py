@@ -1,11 +1,17 @@
 """Database connection and session management utilities."""
 
 import logging
-from contextlib import contextmanager
-from typing import Generator
+from contextlib import asynccontextmanager, contextmanager
+from typing import AsyncGenerator, Generator, Optional
 
 from app.core.config import settings
 from sqlalchemy import create_engine
+from sqlalchemy.ext.asyncio import (
+    AsyncEngine,
+    AsyncSession,
+    async_sessionmaker,
+    create_async_engine,
+)
 from sqlalchemy.ext.declarative import declarative_base
 from sqlalchemy.orm import Session, sessionmaker
 
@@ -22,10 +28,48 @@ engine = create_engine(
 # Session configuration
 SessionLocal = sessionmaker(autocommit=False, autoflush=False, bind=engine)
 
+# Async session configuration; bound lazily by get_async_engine()
+AsyncSessionLocal = async_sessionmaker(
+    class_=AsyncSession, autoflush=False, expire_on_commit=False
+)
+_async_engine: Optional[AsyncEngine] = None
+
+# Sync driver -> async driver used when no explicit async URL is configured
+ASYNC_DRIVERS = {
+    "postgresql": "postgresql+asyncpg",
+    "postgresql+psycopg2": "postgresql+asyncpg",
+    "postgres": "postgresql+asyncpg",
+    "sqlite": "sqlite+aiosqlite",
+}
+
 # Base class for all database models
 Base = declarative_base()
 
 
+def get_async_database_url() -> str:
+    """Derive the async driver URL from the configured database URL."""
+    if getattr(settings, "SQLALCHEMY_ASYNC_DATABASE_URL", ""):
+        return settings.SQLALCHEMY_ASYNC_DATABASE_URL
+
+    url = settings.SQLALCHEMY_DATABASE_URL
+    scheme, separator, rest = url.partition("://")
+    return f"{ASYNC_DRIVERS.get(scheme, scheme)}{separator}{rest}"
+
+
+def get_async_engine() -> AsyncEngine:
+    """Create the async engine on first use and bind AsyncSessionLocal to it."""
+    global _async_engine
+    if _async_engine is None:
+        _async_engine = create_async_engine(
+            get_async_database_url(),
+            pool_pre_ping=True,
+            pool_recycle=300,
+            echo=settings.DEBUG if hasattr(settings, "DEBUG") else False,
+        )
+        AsyncSessionLocal.configure(bind=_async_engine)
+    return _async_engine
+
+
 def get_db() -> Generator[Session, None, None]:
     """
     Dependency function to get database session.
@@ -56,6 +100,42 @@ def get_db_session() -> Generator[Session, None, None]:
         db.close()
 
 
+async def get_async_db() -> AsyncGenerator[AsyncSession, None]:
+    """
+    Dependency function to get an async database session.
+    Used with FastAPI's Depends() in async routes so queries do not block
+    the event loop.
+    """
+    get_async_engine()
+    async with AsyncSessionLocal() as db:
+        yield db
+
+
+@asynccontextmanager
+async def get_async_db_session() -> AsyncGenerator[AsyncSession, None]:
+    """
+    Async context manager for database sessions.
+    Use this for manual session management in coroutines outside of endpoints.
+    """
+    get_async_engine()
+    async with AsyncSessionLocal() as db:
+        try:
+            yield db
+            await db.commit()
+        except Exception as e:
+            await db.rollback()
+            logger.error(f"Database session error: {e}")
+            raise
+
+
+async def dispose_async_engine():
+    """Close pooled async connections, if the async engine was created."""
+    global _async_engine
+    if _async_engine is not None:
+        await _async_engine.dispose()
+        _async_engine = None
+
+
 def create_tables():
     """Create all database tables."""
     try:
@@ -147,13 +147,15 @@ class WorkflowError(BaseAppException):
         if step_name:
             details["step_name"] = step_name
 
+        # Subclasses pass their own code, severity and retryability
+        kwargs["details"] = details
+        kwargs.setdefault("code", "WORKFLOW_ERROR")
+        kwargs.setdefault("severity", ErrorSeverity.HIGH)
+        kwargs.setdefault("retryable", True)
+
         super().__init__(
             message=message,
-            code="WORKFLOW_ERROR",
             category=ErrorCategory.WORKFLOW,
-            severity=ErrorSeverity.HIGH,
-            details=details,
-            retryable=True,
             **kwargs,
         )
 
@@ -277,6 +279,20 @@ class WorkflowExecutionError(WorkflowError):
         )
 
 
+class WorkflowExecutionConflictError(WorkflowError):
+    """Execution is finished, cancelled or owned by another run."""
+
+    def __init__(self, execution_id: str, reason: str, **kwargs):
+        super().__init__(
+            message=f"Workflow execution {execution_id} {reason}",
+            code="WORKFLOW_EXECUTION_CONFLICT",
+            execution_id=str(execution_id),
+            severity=ErrorSeverity.MEDIUM,
+            retryable=False,
+            **kwargs,
+        )
+
+
 class WorkflowValidationError(WorkflowError):
     """Workflow definition validation error."""
 
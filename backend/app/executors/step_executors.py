@@ -1,8 +1,13 @@
 """Concrete step executor implementations."""
 
-from typing import Any, Dict
-
-from app.interfaces.step_executor import StepExecutor
+from typing import Any, AsyncIterator, Dict, Union
+
+from app.interfaces.step_executor import (
+    ChunkSink,
+    StepExecutor,
+    StreamingStepExecutor,
+)
+from app.services.step_executors.base_executor import StepStream, StreamChunk
 from app.types.workflow import StepExecutionResult, WorkflowNode
 from jsonschema import Draft7Validator
 
@@ -45,6 +50,8 @@ class ProcessStepExecutor(StepExecutor):
 class OutputStepExecutor(StepExecutor):
     """Executor for output steps."""
 
+    accepts_stream = True
+
     async def execute_step(
         self, node: WorkflowNode, input_data: Dict[str, Any]
     ) -> StepExecutionResult:
@@ -57,8 +64,33 @@ class OutputStepExecutor(StepExecutor):
 
         return StepExecutionResult(success=True, output_data=output_data)
 
+    async def execute_step_with_streams(
+        self,
+        node: WorkflowNode,
+        input_data: Dict[str, Any],
+        streams: Dict[str, StepStream],
+        deliver: ChunkSink,
+    ) -> StepExecutionResult:
+        """Deliver upstream chunks as they arrive, then format the full output."""
+        merged_input = dict(input_data)
+
+        for step_id, stream in streams.items():
+            async for chunk in stream:
+                await deliver(
+                    {
+                        "type": "output_chunk",
+                        "source_step_id": step_id,
+                        "destination": node.data.get("destination", "default"),
+                        "sequence": chunk.sequence,
+                        "data": chunk.data,
+                    }
+                )
+            merged_input.update(stream.result or {})
 
-class AIStepExecutor(StepExecutor):
+        return await self.execute_step(node, merged_input)
+
+
+class AIStepExecutor(StreamingStepExecutor):
     """Executor for AI steps."""
 
     async def execute_step(
@@ -67,28 +99,14 @@ class AIStepExecutor(StepExecutor):
         try:
             from app.services.ai_service import get_ai_service
 
-            prompt = node.data.get("prompt", "Process this data")
-            template_name = node.data.get("template")
             model = node.data.get("model")
 
             ai_service = get_ai_service()
-
-            if template_name:
-                template_vars = node.data.get("template_variables", {})
-                all_vars = {**input_data, **template_vars}
-                response = await ai_service.process_with_template(
-                    template_name=template_name,
-                    variables=all_vars,
-                    context=input_data,
-                    model=model,
-                )
-            else:
-                formatted_prompt = (
-                    prompt.format(**input_data) if "{" in prompt else prompt
-                )
-                response = await ai_service.process_text(
-                    prompt=formatted_prompt, context=input_data, model=model
-                )
+            response = await ai_service.process_text(
+                prompt=self._build_prompt(ai_service, node, input_data),
+                context=input_data,
+                model=model,
+            )
 
             if not response.is_success:
                 return StepExecutionResult(
@@ -114,6 +132,60 @@ class AIStepExecutor(StepExecutor):
                 error_message=f"AI step execution failed: {str(e)}",
             )
 
+    async def stream_step(
+        self, node: WorkflowNode, input_data: Dict[str, Any]
+    ) -> AsyncIterator[Union[StreamChunk, StepExecutionResult]]:
+        """Stream the response as the provider generates it."""
+        try:
+            from app.services.ai_service import get_ai_service
+
+            model = node.data.get("model")
+
+            ai_service = get_ai_service()
+            ai_model = (model or ai_service.model).value
+            parts = []
+            async for content in ai_service.stream_text(
+                prompt=self._build_prompt(ai_service, node, input_data),
+                context=input_data,
+                model=model,
+            ):
+                parts.append(content)
+                yield StreamChunk(
+                    data={"ai_response_delta": content}, sequence=len(parts) - 1
+                )
+
+        except Exception as e:
+            yield StepExecutionResult(
+                success=False,
+                output_data={},
+                error_message=f"AI step execution failed: {str(e)}",
+            )
+            return
+
+        yield StepExecutionResult(
+            success=True,
+            output_data={
+                "ai_response": "".join(parts),
+                "ai_model": ai_model,
+                "ai_usage": None,
+                "processed_data": input_data,
+            },
+        )
+
+    def _build_prompt(
+        self, ai_service: Any, node: WorkflowNode, input_data: Dict[str, Any]
+    ) -> str:
+        """Render the node's template or prompt against its input."""
+        template_name = node.data.get("template")
+        if template_name:
+            template_vars = node.data.get("template_variables", {})
+            return ai_service.format_template(
+                template_name, {**input_data, **template_vars}
+            )
+
+        prompt = node.data.get("prompt", "Process this data")
+        return prompt.format(**input_data) if "{" in prompt else prompt
+
 
 class DataValidationStepExecutor(StepExecutor):
     """Executor for data validation steps."""
@@ -1,20 +1,64 @@
 """Step executor interface and implementations."""
 
 from abc import ABC, abstractmethod
-from typing import Any, Dict
+from typing import Any, AsyncIterator, Awaitable, Callable, Dict, Union
 
+from app.services.step_executors.base_executor import StepStream, StreamChunk
 from app.types.workflow import StepExecutionResult, WorkflowNode
 
+# Delivers one message about a step to clients watching its execution
+ChunkSink = Callable[[Dict[str, Any]], Awaitable[None]]
+
 
 class StepExecutor(ABC):
     """Abstract base class for step executors."""
 
+    # Executors that can start while their upstream steps are still streaming
+    accepts_stream = False
+
     @abstractmethod
     async def execute_step(
         self, node: WorkflowNode, input_data: Dict[str, Any]
     ) -> StepExecutionResult:
         """Execute a workflow step."""
 
+    async def execute_step_with_streams(
+        self,
+        node: WorkflowNode,
+        input_data: Dict[str, Any],
+        streams: Dict[str, StepStream],
+        deliver: ChunkSink,
+    ) -> StepExecutionResult:
+        """Execute while consuming upstream streams; used when accepts_stream."""
+        raise NotImplementedError(
+            f"{type(self).__name__} does not accept streamed input"
+        )
+
+
+class StreamingStepExecutor(StepExecutor):
+    """Step executor that emits partial output before its final result."""
+
+    @abstractmethod
+    def stream_step(
+        self, node: WorkflowNode, input_data: Dict[str, Any]
+    ) -> AsyncIterator[Union[StreamChunk, StepExecutionResult]]:
+        """Yield chunks as they are produced, then the StepExecutionResult last."""
+
+    async def execute_step(
+        self, node: WorkflowNode, input_data: Dict[str, Any]
+    ) -> StepExecutionResult:
+        """Execute by draining the stream and returning its final result."""
+        result = None
+        async for item in self.stream_step(node, input_data):
+            if isinstance(item, StepExecutionResult):
+                result = item
+
+        return result or StepExecutionResult(
+            success=False,
+            output_data={},
+            error_message="Stream ended without a result",
+        )
+
 
 class StepExecutorFactory:
     """Factory for creating step executors."""
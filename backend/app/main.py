@@ -19,6 +19,7 @@ from app.api import (
     workflows,
 )
 from app.api.enterprise import router as enterprise_router
+from app.database import dispose_async_engine
 from app.middleware.enhanced_error_middleware import (
     EnhancedErrorHandlingMiddleware,
     ErrorMetricsMiddleware,
@@ -36,6 +37,7 @@ from app.middleware.tenant_middleware import (
     TenantIsolationMiddleware,
 )
 from app.middleware.tracing import setup_tracing
+from app.services.execution_log_writer import execution_log_writer
 from app.startup.ai_ecosystem_startup import (
     ecosystem_manager,
     shutdown_event,
@@ -56,6 +58,8 @@ async def lifespan(app: FastAPI):
     await startup_event()
     yield
     # Shutdown
+    await execution_log_writer.close()
+    await dispose_async_engine()
     await shutdown_event()
 
 
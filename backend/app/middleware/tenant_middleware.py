@@ -3,10 +3,12 @@
 import uuid
 from typing import Optional
 
-from app.database import SessionLocal
+from app.database import SessionLocal, get_async_db_session
 from app.models.tenant import Tenant
 from app.models.user import User
+from app.services.tenant_cache import TenantLookupCache, tenant_lookup_cache
 from fastapi import HTTPException, Request, Response, status
+from sqlalchemy import select
 from starlette.middleware.base import BaseHTTPMiddleware
 
 
@@ -54,9 +56,9 @@ class TenantIsolationMiddleware(BaseHTTPMiddleware):
         host = request.headers.get("host", "")
         if "." in host:
             subdomain = host.split(".")[0]
-            tenant = await self._get_tenant_by_slug(subdomain)
-            if tenant:
-                return tenant.id
+            tenant_id = await self._get_tenant_id_by_slug(subdomain)
+            if tenant_id:
+                return tenant_id
 
         # Try to get tenant from custom header
         tenant_header = request.headers.get("x-tenant-id")
@@ -65,39 +67,45 @@ class TenantIsolationMiddleware(BaseHTTPMiddleware):
                 return uuid.UUID(tenant_header)
             except ValueError:
                 # Try to get by slug
-                tenant = await self._get_tenant_by_slug(tenant_header)
-                if tenant:
-                    return tenant.id
+                tenant_id = await self._get_tenant_id_by_slug(tenant_header)
+                if tenant_id:
+                    return tenant_id
 
         # Try to get tenant from user context (if authenticated)
         auth_header = request.headers.get("authorization")
         if auth_header and auth_header.startswith("Bearer "):
             token = auth_header.split(" ")[1]
-            user = await self._get_user_from_token(token)
-            if user:
-                return user.tenant_id
+            return await self._get_user_tenant_id_from_token(token)
 
         return None
 
-    async def _get_tenant_by_slug(self, slug: str) -> Optional[Tenant]:
-        """Get tenant by slug."""
-        db = SessionLocal()
-        try:
-            return db.query(Tenant).filter(Tenant.slug == slug).first()
-        finally:
-            db.close()
+    async def _get_tenant_id_by_slug(self, slug: str) -> Optional[uuid.UUID]:
+        """Get tenant ID by slug."""
+
+        async def load() -> Optional[uuid.UUID]:
+            async with get_async_db_session() as db:
+                return await db.scalar(select(Tenant.id).where(Tenant.slug == slug))
+
+        return await tenant_lookup_cache.get_or_load(
+            TenantLookupCache.TENANT_BY_SLUG, slug, load
+        )
 
     async def _validate_tenant(self, tenant_id: uuid.UUID) -> bool:
         """Validate tenant is active."""
-        db = SessionLocal()
-        try:
-            tenant = db.query(Tenant).filter(Tenant.id == tenant_id).first()
-            return tenant and tenant.status == "active"
-        finally:
-            db.close()
 
-    async def _get_user_from_token(self, token: str) -> Optional[User]:
-        """Get user from JWT token."""
+        async def load() -> bool:
+            async with get_async_db_session() as db:
+                tenant_status = await db.scalar(
+                    select(Tenant.status).where(Tenant.id == tenant_id)
+                )
+                return tenant_status == "active"
+
+        return await tenant_lookup_cache.get_or_load(
+            TenantLookupCache.TENANT_ACTIVE, tenant_id, load
+        )
+
+    async def _get_user_tenant_id_from_token(self, token: str) -> Optional[uuid.UUID]:
+        """Get the tenant ID of the user identified by a JWT token."""
         try:
             from app.auth import verify_token
 
@@ -109,11 +117,15 @@ class TenantIsolationMiddleware(BaseHTTPMiddleware):
             if not email:
                 return None
 
-            db = SessionLocal()
-            try:
-                return db.query(User).filter(User.email == email).first()
-            finally:
-                db.close()
+            async def load() -> Optional[uuid.UUID]:
+                async with get_async_db_session() as db:
+                    return await db.scalar(
+                        select(User.tenant_id).where(User.email == email)
+                    )
+
+            return await tenant_lookup_cache.get_or_load(
+                TenantLookupCache.USER_BY_EMAIL, email, load
+            )
         except Exception:
             return None
 
@@ -19,7 +19,12 @@ from .auterity_expansion import (
     VectorEmbedding,
 )
 from .base import Base, SessionLocal, engine
-from .execution import ExecutionLog, ExecutionStatus, WorkflowExecution
+from .execution import (
+    ExecutionCheckpoint,
+    ExecutionLog,
+    ExecutionStatus,
+    WorkflowExecution,
+)
 from .template import Template, TemplateParameter
 from .tenant import AuditLog, SSOConfiguration, SSOProvider, Tenant, TenantStatus
 from .user import Permission, Role, SystemPermission, User, UserRole
@@ -42,6 +47,7 @@ __all__ = [
     "Workflow",
     "WorkflowExecution",
     "ExecutionLog",
+    "ExecutionCheckpoint",
     "ExecutionStatus",
     "Template",
     "TemplateParameter",
@@ -13,6 +13,7 @@ from sqlalchemy import (
     Integer,
     String,
     Text,
+    UniqueConstraint,
 )
 from sqlalchemy.orm import relationship
 from sqlalchemy.sql import func
@@ -47,6 +48,8 @@ class WorkflowExecution(Base):
         DateTime(timezone=True), server_default=func.now(), nullable=False
     )
     completed_at = Column(DateTime(timezone=True))
+    # Bumped by every resume, so concurrent resumes cannot both claim a run
+    attempt = Column(Integer, default=0, server_default="0", nullable=False)
 
     # Relationships
     workflow = relationship("Workflow", back_populates="executions")
@@ -56,6 +59,11 @@ class WorkflowExecution(Base):
     metrics = relationship(
         "ExecutionMetric", back_populates="execution", cascade="all, delete-orphan"
     )
+    checkpoints = relationship(
+        "ExecutionCheckpoint",
+        back_populates="execution",
+        cascade="all, delete-orphan",
+    )
 
     def __repr__(self):
         return f"<WorkflowExecution(id={self.id}, workflow_id={self.workflow_id}, status={self.status})>"
@@ -85,3 +93,32 @@ class ExecutionLog(Base):
 
     def __repr__(self):
         return f"<ExecutionLog(id={self.id}, execution_id={self.execution_id}, step_name='{self.step_name}')>"
+
+
+class ExecutionCheckpoint(Base):
+    """Model for storing completed step outputs so executions can resume."""
+
+    __tablename__ = "execution_checkpoints"
+    __table_args__ = (
+        UniqueConstraint("execution_id", "node_id", name="uq_checkpoint_node"),
+    )
+
+    id = Column(UUID(as_uuid=True), primary_key=True, default=uuid.uuid4)
+    execution_id = Column(
+        UUID(as_uuid=True),
+        ForeignKey("workflow_executions.id", ondelete="CASCADE"),
+        nullable=False,
+        index=True,
+    )
+    node_id = Column(String(255), nullable=False)
+    definition_hash = Column(String(64), nullable=False)
+    output_data = Column(JSON)
+    created_at = Column(
+        DateTime(timezone=True), server_default=func.now(), nullable=False
+    )
+
+    # Relationships
+    execution = relationship("WorkflowExecution", back_populates="checkpoints")
+
+    def __repr__(self):
+        return f"<ExecutionCheckpoint(execution_id={self.execution_id}, node_id='{self.node_id}')>"
@@ -3,6 +3,24 @@
 import asyncio
 import logging
 from contextlib import asynccontextmanager
+from dataclasses import dataclass
+from typing import Any, Dict, Optional
+
+from prometheus_client import Counter
+
+workflow_step_cache_requests_total = Counter(
+    "workflow_step_cache_requests_total",
+    "Workflow step result cache lookups",
+    ["step_type", "result"],
+)
+
+
+@dataclass
+class StepMeasurement:
+    """Details of a measured step that are only known inside the block."""
+
+    # None when the step is not cached, otherwise whether the cache served it
+    cache_hit: Optional[bool] = None
 
 
 class PerformanceMonitor:
@@ -10,16 +28,24 @@ class PerformanceMonitor:
 
     def __init__(self):
         self.logger = logging.getLogger(__name__)
+        self.cache_stats: Dict[str, Dict[str, int]] = {}
 
     @asynccontextmanager
     async def measure_step_execution(self, step_type: str, step_name: str):
-        """Context manager to measure step execution time."""
+        """Context manager to measure step execution time.
+
+        Yields a StepMeasurement; callers serving cache-enabled steps set its
+        ``cache_hit`` so the step cache hit rate is tracked per step type.
+        """
+        measurement = StepMeasurement()
         start_time = asyncio.get_event_loop().time()
         try:
-            yield
+            yield measurement
             duration = asyncio.get_event_loop().time() - start_time
+            cached = " from cache" if measurement.cache_hit else ""
             self.logger.info(
-                f"Step '{step_name}' ({step_type}) completed in {duration:.3f}s"
+                f"Step '{step_name}' ({step_type}) completed{cached} in "
+                f"{duration:.3f}s"
             )
         except Exception as e:
             duration = asyncio.get_event_loop().time() - start_time
@@ -27,3 +53,28 @@ class PerformanceMonitor:
                 f"Step '{step_name}' ({step_type}) failed after {duration:.3f}s: {e}"
             )
             raise
+        finally:
+            if measurement.cache_hit is not None:
+                self._record_cache_lookup(step_type, measurement.cache_hit)
+
+    def get_cache_stats(self) -> Dict[str, Dict[str, Any]]:
+        """Return step cache hit/miss counts and hit rate per step type."""
+        stats = {}
+        for step_type, counts in self.cache_stats.items():
+            total = counts["hits"] + counts["misses"]
+            stats[step_type] = {
+                **counts,
+                "hit_rate": counts["hits"] / total if total else 0.0,
+            }
+        return stats
+
+    def _record_cache_lookup(self, step_type: str, hit: bool) -> None:
+        counts = self.cache_stats.setdefault(step_type, {"hits": 0, "misses": 0})
+        counts["hits" if hit else "misses"] += 1
+        workflow_step_cache_requests_total.labels(
+            step_type=step_type, result="hit" if hit else "miss"
+        ).inc()
+
+
+# Shared by every engine so cache stats cover the process, not one execution
+step_performance_monitor = PerformanceMonitor()
@@ -5,7 +5,7 @@ import logging
 import os
 from dataclasses import dataclass
 from enum import Enum
-from typing import Any, Dict, List, Optional
+from typing import Any, AsyncIterator, Dict, List, Optional
 
 from app.exceptions import AIServiceError
 from app.services.litellm_service import LiteLLMService, get_litellm_service
@@ -160,11 +160,57 @@ class AIService:
             AIResponse containing the processed result
         """
         model_name = (model or self.model).value
-        context = context or {}
 
         self.logger.info(f"Processing text with model {model_name}")
 
-        # Prepare messages
+        # Use LiteLLM service for API call
+        return await self.litellm_service.make_completion(
+            messages=self._build_messages(prompt, context),
+            model=model_name,
+            temperature=temperature,
+            max_tokens=max_tokens,
+        )
+
+    async def stream_text(
+        self,
+        prompt: str,
+        context: Optional[Dict[str, Any]] = None,
+        model: Optional[AIModelType] = None,
+        temperature: float = 0.7,
+        max_tokens: Optional[int] = None,
+    ) -> AsyncIterator[str]:
+        """
+        Stream the model's response to a prompt as it is generated.
+
+        Args:
+            prompt: Text prompt to process
+            context: Optional context data
+            model: AI model to use (defaults to instance model)
+            temperature: Sampling temperature (0.0 to 2.0)
+            max_tokens: Maximum tokens in response
+
+        Yields:
+            Pieces of the response text in order
+
+        Raises:
+            AIServiceError: If no model could start a stream
+        """
+        model_name = (model or self.model).value
+
+        self.logger.info(f"Streaming text with model {model_name}")
+
+        async for content in self.litellm_service.stream_completion(
+            messages=self._build_messages(prompt, context),
+            model=model_name,
+            temperature=temperature,
+            max_tokens=max_tokens,
+        ):
+            yield content
+
+    def _build_messages(
+        self, prompt: str, context: Optional[Dict[str, Any]]
+    ) -> List[Dict[str, str]]:
+        """Build the chat messages for a prompt and its optional context."""
         messages = [
             {
                 "role": "system",
@@ -178,13 +224,7 @@ class AIService:
             context_str = f"Additional context: {json.dumps(context, indent=2)}"
             messages.append({"role": "system", "content": context_str})
 
-        # Use LiteLLM service for API call
-        return await self.litellm_service.make_completion(
-            messages=messages,
-            model=model_name,
-            temperature=temperature,
-            max_tokens=max_tokens,
-        )
+        return messages
 
     async def process_with_template(
         self,
@@ -205,16 +245,24 @@ class AIService:
         Returns:
             AIResponse containing the processed result
 
+        Raises:
+            AIServiceError: If template not found or variables missing
+        """
+        prompt = self.format_template(template_name, variables)
+
+        return await self.process_text(prompt=prompt, context=context, model=model)
+
+    def format_template(self, template_name: str, variables: Dict[str, Any]) -> str:
+        """
+        Render a predefined template into a prompt.
+
         Raises:
             AIServiceError: If template not found or variables missing
         """
         if template_name not in self.DEFAULT_TEMPLATES:
             raise AIServiceError(f"Template '{template_name}' not found")
 
-        template = self.DEFAULT_TEMPLATES[template_name]
-        prompt = template.format(**variables)
-
-        return await self.process_text(prompt=prompt, context=context, model=model)
+        return self.DEFAULT_TEMPLATES[template_name].format(**variables)
 
     async def validate_response(
         self,
@@ -0,0 +1,198 @@
+"""Serialization codecs and compression for cached values.
+
+Encoded values start with a zero byte, then a codec id and a compression id.
+JSON text never starts with a zero byte, so entries written as plain JSON
+before codecs existed still decode.
+"""
+
+import json
+import zlib
+from enum import IntEnum
+from typing import Any, Optional, Union
+
+try:
+    import orjson
+except ImportError:
+    orjson = None
+
+try:
+    import msgpack
+except ImportError:
+    msgpack = None
+
+try:
+    import zstandard
+except ImportError:
+    zstandard = None
+
+try:
+    import lz4.frame as lz4_frame
+except ImportError:
+    lz4_frame = None
+
+MARKER = 0
+HEADER_SIZE = 3
+
+
+class Codec(IntEnum):
+    """Serialization formats, stored as the second header byte."""
+
+    JSON = 1
+    MSGPACK = 2
+
+
+class Compression(IntEnum):
+    """Compression algorithms, stored as the third header byte."""
+
+    NONE = 0
+    ZLIB = 1
+    ZSTD = 2
+    LZ4 = 3
+
+
+def _names(options) -> str:
+    """Lowercase member names, as accepted in configuration."""
+    return ", ".join(option.name.lower() for option in options)
+
+
+def available_codecs() -> list:
+    """Codecs whose libraries are importable."""
+    codecs = [Codec.JSON]
+    if msgpack is not None:
+        codecs.append(Codec.MSGPACK)
+    return codecs
+
+
+def available_compressions() -> list:
+    """Compression algorithms whose libraries are importable."""
+    compressions = [Compression.NONE, Compression.ZLIB]
+    if zstandard is not None:
+        compressions.append(Compression.ZSTD)
+    if lz4_frame is not None:
+        compressions.append(Compression.LZ4)
+    return compressions
+
+
+class CacheCodec:
+    """Encode values to tagged bytes, compressing payloads above a threshold."""
+
+    def __init__(
+        self,
+        codec: Optional[str] = None,
+        compression: Optional[str] = None,
+        compression_threshold: int = 1024,
+        compression_level: int = 3,
+    ):
+        self.codec = self._resolve_codec(codec)
+        self.compression = self._resolve_compression(compression)
+        self.compression_threshold = compression_threshold
+        self.compression_level = compression_level
+
+        if zstandard is not None:
+            self._zstd_compressor = zstandard.ZstdCompressor(level=compression_level)
+            self._zstd_decompressor = zstandard.ZstdDecompressor()
+
+    def encode(self, value: Any) -> bytes:
+        """Serialize a value and prepend the codec header."""
+        payload = self._serialize(self.codec, value)
+        compression = Compression.NONE
+
+        if (
+            self.compression != Compression.NONE
+            and len(payload) >= self.compression_threshold
+        ):
+            compressed = self._compress(self.compression, payload)
+            if len(compressed) < len(payload):
+                payload = compressed
+                compression = self.compression
+
+        return bytes((MARKER, self.codec, compression)) + payload
+
+    def decode(self, data: Union[bytes, str]) -> Any:
+        """Decode a value written by `encode` or a legacy plain JSON entry."""
+        if isinstance(data, str):
+            return json.loads(data)
+        if not data or data[0] != MARKER:
+            return self._deserialize(Codec.JSON, data)
+
+        if len(data) < HEADER_SIZE:
+            raise ValueError("Truncated cache entry header")
+
+        codec = Codec(data[1])
+        compression = Compression(data[2])
+        payload = memoryview(data)[HEADER_SIZE:]
+
+        if compression != Compression.NONE:
+            payload = self._decompress(compression, payload)
+
+        return self._deserialize(codec, payload)
+
+    def _serialize(self, codec: Codec, value: Any) -> bytes:
+        if codec == Codec.MSGPACK:
+            return msgpack.packb(value, default=str, use_bin_type=True)
+        if orjson is not None:
+            return orjson.dumps(value, default=str, option=orjson.OPT_NON_STR_KEYS)
+        return json.dumps(value, default=str, separators=(",", ":")).encode()
+
+    def _deserialize(self, codec: Codec, payload) -> Any:
+        if codec == Codec.MSGPACK:
+            if msgpack is None:
+                raise ValueError("msgpack entry found but msgpack is not installed")
+            return msgpack.unpackb(payload, raw=False, strict_map_key=False)
+        if orjson is not None:
+            return orjson.loads(payload)
+        return json.loads(bytes(payload))
+
+    def _compress(self, compression: Compression, payload: bytes) -> bytes:
+        if compression == Compression.ZSTD:
+            return self._zstd_compressor.compress(payload)
+        if compression == Compression.LZ4:
+            return lz4_frame.compress(payload)
+        return zlib.compress(payload, self.compression_level)
+
+    def _decompress(self, compression: Compression, payload) -> bytes:
+        if compression == Compression.ZSTD:
+            if zstandard is None:
+                raise ValueError("zstd entry found but zstandard is not installed")
+            return self._zstd_decompressor.decompress(payload)
+        if compression == Compression.LZ4:
+            if lz4_frame is None:
+                raise ValueError("lz4 entry found but lz4 is not installed")
+            return lz4_frame.decompress(payload)
+        return zlib.decompress(payload)
+
+    @staticmethod
+    def _resolve_codec(name: Optional[str]) -> Codec:
+        available = available_codecs()
+        if not name:
+            return available[-1]
+
+        try:
+            codec = Codec[name.upper()]
+        except KeyError:
+            raise ValueError(
+                f"Unknown cache codec {name}, expected one of {_names(Codec)}"
+            ) from None
+        if codec not in available:
+            raise ValueError(f"Cache codec {name} is not installed")
+        return codec
+
+    @staticmethod
+    def _resolve_compression(name: Optional[str]) -> Compression:
+        available = available_compressions()
+        if not name:
+            # zstd compresses better than lz4 at similar speed for JSON-like data
+            if Compression.ZSTD in available:
+                return Compression.ZSTD
+            return Compression.ZLIB
+
+        try:
+            compression = Compression[name.upper()]
+        except KeyError:
+            raise ValueError(
+                f"Unknown cache compression {name}, "
+                f"expected one of {_names(Compression)}"
+            ) from None
+        if compression not in available:
+            raise ValueError(f"Cache compression {name} is not installed")
+        return compression
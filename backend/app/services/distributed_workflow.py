@@ -0,0 +1,334 @@
+"""Distributed workflow step execution over the Redis message queue."""
+
+import asyncio
+import logging
+import signal
+from typing import TYPE_CHECKING, Any, Dict, List, Optional
+from uuid import UUID
+
+from app.exceptions import WorkflowExecutionError
+from app.services.message_queue import (
+    AsyncMessageQueue,
+    QueueMessage,
+    get_async_message_queue,
+)
+from app.services.workflow_plan import CompiledWorkflowPlan
+from app.services.workflow_scheduler import DAGScheduler
+from app.types.workflow import WorkflowNode
+
+if TYPE_CHECKING:
+    from app.services.workflow_engine import WorkflowEngine
+
+logger = logging.getLogger(__name__)
+
+STEP_QUEUE = "workflow_steps"
+DEFAULT_VISIBILITY_TIMEOUT = 3600
+DEFAULT_MAINTENANCE_INTERVAL = 5.0
+# A dead worker's step is requeued only after its claim lapses and the next
+# maintenance sweep runs. The dispatcher waits that long plus one more claim,
+# so the redelivered step can still report back before it gives up.
+DEFAULT_STEP_TIMEOUT = 2 * DEFAULT_VISIBILITY_TIMEOUT + DEFAULT_MAINTENANCE_INTERVAL
+
+
+def execution_channel(execution_id: UUID) -> str:
+    """Event channel on which workers report the steps of one execution."""
+    return f"workflow_execution:{execution_id}"
+
+
+class DistributedStepDispatcher:
+    """Runs workflow steps on queue workers while this process drives the DAG.
+
+    Each ready step is enqueued with its merged input. Workers execute it and
+    publish a completion event on the execution's channel, which releases the
+    step's dependents in the DAGScheduler. The dispatching process only waits
+    on events, so step throughput grows with the number of workers.
+    """
+
+    def __init__(
+        self,
+        queue: Optional[AsyncMessageQueue] = None,
+        queue_name: str = STEP_QUEUE,
+        step_timeout: float = DEFAULT_STEP_TIMEOUT,
+        max_redeliveries: int = 2,
+        poll_timeout: int = 1,
+    ):
+        self._queue = queue
+        self.queue_name = queue_name
+        self.step_timeout = step_timeout
+        self.max_redeliveries = max_redeliveries
+        self.poll_timeout = poll_timeout
+
+    @property
+    def queue(self) -> AsyncMessageQueue:
+        if self._queue is None:
+            self._queue = get_async_message_queue()
+        return self._queue
+
+    async def run(
+        self,
+        execution_id: UUID,
+        plan: CompiledWorkflowPlan,
+        input_data: Dict[str, Any],
+        scheduler: DAGScheduler,
+        completed: Optional[Dict[str, Dict[str, Any]]] = None,
+        cache_namespace: Optional[str] = None,
+        attempt: Optional[int] = None,
+    ) -> Dict[str, Any]:
+        """
+        Execute the plan's steps on workers.
+
+        Args:
+            execution_id: UUID of the execution
+            plan: Compiled workflow plan
+            input_data: Input data for the workflow
+            scheduler: Scheduler releasing steps as their dependencies complete
+            completed: Checkpointed outputs of steps that must not run again
+            cache_namespace: Step cache namespace of the workflow's tenant
+            attempt: Attempt of the execution that workers fence checkpoints on
+
+        Returns:
+            Workflow input merged with every step output in topological order
+
+        Raises:
+            WorkflowExecutionError: If a step fails or no worker reports back
+        """
+        channel = execution_channel(execution_id)
+        waiters: Dict[str, asyncio.Future] = {}
+        listener = asyncio.create_task(self._listen(channel, waiters))
+
+        async def run_step(node_id: str, step_input: Dict[str, Any]) -> Dict[str, Any]:
+            node = plan.nodes[node_id]
+            waiter = asyncio.get_running_loop().create_future()
+            waiters[node_id] = waiter
+
+            try:
+                await self.queue.enqueue(
+                    self.queue_name,
+                    {
+                        "execution_id": str(execution_id),
+                        "channel": channel,
+                        "definition_hash": plan.definition_hash,
+                        "node": {"id": node.id, "type": node.type, "data": node.data},
+                        "input_data": step_input,
+                        "cache_namespace": cache_namespace,
+                        "attempt": attempt,
+                    },
+                    max_retries=self.max_redeliveries,
+                )
+                event = await asyncio.wait_for(waiter, self.step_timeout)
+            except asyncio.TimeoutError:
+                raise WorkflowExecutionError(
+                    f"Step {node_id} was not completed by a worker within "
+                    f"{self.step_timeout}s"
+                )
+            finally:
+                waiters.pop(node_id, None)
+
+            if event.get("status") != "completed":
+                raise WorkflowExecutionError(
+                    f"Step {node_id} failed: {event.get('error', 'unknown error')}"
+                )
+            return event.get("output") or {}
+
+        try:
+            return await scheduler.run(plan, input_data, run_step, completed)
+        finally:
+            listener.cancel()
+            await asyncio.gather(listener, return_exceptions=True)
+            try:
+                await self.queue.delete_events(channel)
+            except Exception as e:
+                logger.warning(f"Failed to clear events of {channel}: {e}")
+
+    async def _listen(self, channel: str, waiters: Dict[str, asyncio.Future]) -> None:
+        """Resolve waiting steps as their completion events arrive."""
+        try:
+            while True:
+                event = await self.queue.wait_for_event(channel, self.poll_timeout)
+                if event is None:
+                    continue
+
+                # Redelivered steps may report twice; the first event wins
+                waiter = waiters.get(event.get("node_id"))
+                if waiter is not None and not waiter.done():
+                    waiter.set_result(event)
+        except asyncio.CancelledError:
+            raise
+        except Exception as e:
+            logger.error(f"Lost completion events of {channel}: {e}")
+            for waiter in waiters.values():
+                if not waiter.done():
+                    waiter.set_exception(
+                        WorkflowExecutionError(f"Lost step completion events: {e}")
+                    )
+
+
+class WorkflowStepWorker:
+    """Executes queued workflow steps and reports their outcomes.
+
+    Run one worker process per node, each consuming ``concurrency`` steps at
+    a time. Claims last ``visibility_timeout`` seconds and a heartbeat
+    extends them while a step runs. Only a step whose worker died and stopped
+    heartbeating is recovered and handed to another worker. The dispatcher's
+    step timeout must exceed the visibility timeout plus one maintenance
+    interval, or it gives up on steps that are about to be redelivered.
+    """
+
+    def __init__(
+        self,
+        engine: Optional["WorkflowEngine"] = None,
+        queue: Optional[AsyncMessageQueue] = None,
+        queue_name: str = STEP_QUEUE,
+        concurrency: int = 4,
+        dequeue_timeout: int = 1,
+        maintenance_interval: float = DEFAULT_MAINTENANCE_INTERVAL,
+        visibility_timeout: int = DEFAULT_VISIBILITY_TIMEOUT,
+        heartbeat_interval: float = 60.0,
+    ):
+        if heartbeat_interval >= visibility_timeout:
+            raise ValueError("heartbeat_interval must be below visibility_timeout")
+
+        self._engine = engine
+        self._queue = queue
+        self.queue_name = queue_name
+        self.concurrency = concurrency
+        self.dequeue_timeout = dequeue_timeout
+        self.maintenance_interval = maintenance_interval
+        self.visibility_timeout = visibility_timeout
+        self.heartbeat_interval = heartbeat_interval
+        self._stopping: Optional[asyncio.Event] = None
+
+    @property
+    def engine(self) -> "WorkflowEngine":
+        if self._engine is None:
+            from app.config.workflow_config import create_workflow_engine
+
+            # Workers always execute steps themselves
+            self._engine = create_workflow_engine(distributed=False)
+        return self._engine
+
+    @property
+    def queue(self) -> AsyncMessageQueue:
+        if self._queue is None:
+            self._queue = get_async_message_queue()
+        return self._queue
+
+    async def run(self) -> None:
+        """Consume steps until stop() is called."""
+        self._stopping = asyncio.Event()
+        tasks: List[asyncio.Task] = [
+            asyncio.create_task(self._consume()) for _ in range(self.concurrency)
+        ]
+        tasks.append(asyncio.create_task(self._maintain()))
+
+        logger.info(
+            f"Workflow step worker started on '{self.queue_name}' "
+            f"with concurrency {self.concurrency}"
+        )
+
+        try:
+            await self._stopping.wait()
+        finally:
+            for task in tasks:
+                task.cancel()
+            await asyncio.gather(*tasks, return_exceptions=True)
+            await self.engine.log_writer.close()
+            logger.info("Workflow step worker stopped")
+
+    def stop(self) -> None:
+        """Ask the worker to stop after its in-flight steps are cancelled."""
+        if self._stopping is not None:
+            self._stopping.set()
+
+    async def process_next(self) -> bool:
+        """Execute the next queued step, returning False if none was ready."""
+        message = await self.queue.dequeue(
+            self.queue_name, self.dequeue_timeout, self.visibility_timeout
+        )
+        if message is None:
+            return False
+
+        await self.handle_message(message)
+        return True
+
+    async def handle_message(self, message: QueueMessage) -> None:
+        """Execute one step message and publish its completion event."""
+        payload = message.payload
+        node = WorkflowNode(**payload["node"])
+        heartbeat = asyncio.create_task(self._heartbeat(message))
+
+        try:
+            output = await self.engine.run_node(
+                UUID(payload["execution_id"]),
+                node,
+                payload.get("input_data", {}),
+                payload["definition_hash"],
+                payload.get("cache_namespace"),
+                payload.get("attempt"),
+            )
+            event = {"node_id": node.id, "status": "completed", "output": output}
+        except Exception as e:
+            event = {"node_id": node.id, "status": "failed", "error": str(e)}
+        finally:
+            heartbeat.cancel()
+            await asyncio.gather(heartbeat, return_exceptions=True)
+
+        # Publish before ack: a crash in between re-runs the step rather than
+        # losing its outcome, and the dispatcher ignores the duplicate event.
+        await self.queue.publish_event(payload["channel"], event)
+        await self.queue.ack(message)
+
+    async def _heartbeat(self, message: QueueMessage) -> None:
+        """Extend the claim on a step message for as long as the step runs."""
+        while True:
+            await asyncio.sleep(self.heartbeat_interval)
+            try:
+                if not await self.queue.extend_visibility(
+                    message, self.visibility_timeout
+                ):
+                    logger.warning(f"Lost the claim on step message {message.id}")
+                    return
+            except Exception as e:
+                logger.warning(f"Heartbeat for step message {message.id} failed: {e}")
+
+    async def _consume(self) -> None:
+        while True:
+            try:
+                await self.process_next()
+            except asyncio.CancelledError:
+                raise
+            except Exception as e:
+                logger.error(f"Workflow step worker error: {e}")
+                await asyncio.sleep(self.dequeue_timeout)
+
+    async def _maintain(self) -> None:
+        """Requeue scheduled retries and steps abandoned by dead workers."""
+        while True:
+            try:
+                await self.queue.process_scheduled_messages()
+                await self.queue.recover_stale_messages()
+            except Exception as e:
+                logger.error(f"Workflow queue maintenance failed: {e}")
+            await asyncio.sleep(self.maintenance_interval)
+
+
+async def run_worker(concurrency: Optional[int] = None) -> None:
+    """Run a step worker until SIGINT or SIGTERM."""
+    from app.core.config import settings
+
+    worker = WorkflowStepWorker(
+        concurrency=concurrency or settings.WORKFLOW_WORKER_CONCURRENCY
+    )
+    loop = asyncio.get_running_loop()
+    for sig in (signal.SIGINT, signal.SIGTERM):
+        loop.add_signal_handler(sig, worker.stop)
+
+    try:
+        await worker.run()
+    finally:
+        await worker.queue.close()
+
+
+if __name__ == "__main__":
+    logging.basicConfig(level=logging.INFO)
+    asyncio.run(run_worker())
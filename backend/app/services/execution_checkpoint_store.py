@@ -0,0 +1,122 @@
+"""Durable checkpoints of completed workflow step outputs."""
+
+import logging
+from typing import Any, AsyncContextManager, Callable, Dict, Optional
+from uuid import UUID
+
+from app.database import get_async_db_session
+from app.exceptions import WorkflowExecutionConflictError
+from app.models.execution import ExecutionCheckpoint, ExecutionStatus, WorkflowExecution
+from sqlalchemy import delete, select, update
+from sqlalchemy.ext.asyncio import AsyncSession
+
+logger = logging.getLogger(__name__)
+
+AsyncSessionFactory = Callable[[], AsyncContextManager[AsyncSession]]
+
+
+class ExecutionCheckpointStore:
+    """Persists each completed step's output so an execution can resume.
+
+    A checkpoint is committed as soon as its step succeeds, before any
+    downstream step consumes it. Checkpoints are tagged with the hash of the
+    workflow definition they were produced by, so a resumed execution never
+    reuses outputs from a different version of the workflow. Writes are
+    fenced on the execution's attempt, so a run that was resumed elsewhere
+    or cancelled cannot add checkpoints behind the run that replaced it.
+    """
+
+    def __init__(self, session_factory: AsyncSessionFactory = get_async_db_session):
+        self.session_factory = session_factory
+
+    async def save(
+        self,
+        execution_id: UUID,
+        node_id: str,
+        definition_hash: str,
+        output_data: Dict[str, Any],
+        attempt: Optional[int] = None,
+    ) -> None:
+        """Record the output of a completed step.
+
+        Raises:
+            WorkflowExecutionConflictError: If attempt is given and no longer
+                owns the running execution
+        """
+        async with self.session_factory() as db:
+            if attempt is not None:
+                await self._fence(db, execution_id, attempt)
+
+            # A resumed run may re-execute a node whose checkpoint was stale
+            await db.execute(
+                delete(ExecutionCheckpoint).where(
+                    ExecutionCheckpoint.execution_id == execution_id,
+                    ExecutionCheckpoint.node_id == node_id,
+                )
+            )
+            db.add(
+                ExecutionCheckpoint(
+                    execution_id=execution_id,
+                    node_id=node_id,
+                    definition_hash=definition_hash,
+                    output_data=output_data,
+                )
+            )
+
+    async def load(
+        self, execution_id: UUID, definition_hash: str
+    ) -> Dict[str, Dict[str, Any]]:
+        """Return completed step outputs for an execution keyed by node id.
+
+        Checkpoints written under another definition version are ignored.
+        """
+        async with self.session_factory() as db:
+            checkpoints = (
+                await db.scalars(
+                    select(ExecutionCheckpoint).where(
+                        ExecutionCheckpoint.execution_id == execution_id
+                    )
+                )
+            ).all()
+
+        completed = {}
+        for checkpoint in checkpoints:
+            if checkpoint.definition_hash != definition_hash:
+                logger.info(
+                    f"Ignoring checkpoint of node {checkpoint.node_id} for "
+                    f"execution {execution_id}: workflow definition changed"
+                )
+                continue
+            completed[checkpoint.node_id] = checkpoint.output_data or {}
+        return completed
+
+    async def delete(self, execution_id: UUID) -> None:
+        """Drop all checkpoints of an execution."""
+        async with self.session_factory() as db:
+            await db.execute(
+                delete(ExecutionCheckpoint).where(
+                    ExecutionCheckpoint.execution_id == execution_id
+                )
+            )
+
+    async def _fence(self, db: AsyncSession, execution_id: UUID, attempt: int) -> None:
+        """Hold the execution row for this transaction if the attempt owns it."""
+        # A no-op UPDATE takes the row lock, so a resume claiming the execution
+        # waits for this commit instead of slipping in between check and write
+        owned = await db.execute(
+            update(WorkflowExecution)
+            .where(
+                WorkflowExecution.id == execution_id,
+                WorkflowExecution.attempt == attempt,
+                WorkflowExecution.status == ExecutionStatus.RUNNING,
+            )
+            .values(attempt=WorkflowExecution.attempt)
+            .execution_options(synchronize_session=False)
+        )
+        if owned.rowcount != 1:
+            raise WorkflowExecutionConflictError(
+                execution_id, f"is no longer owned by attempt {attempt}"
+            )
+
+
+execution_checkpoint_store = ExecutionCheckpointStore()
@@ -0,0 +1,177 @@
+"""Buffered writer for workflow step execution logs."""
+
+import asyncio
+import logging
+from datetime import datetime, timezone
+from enum import Enum
+from typing import Any, Callable, Dict, List, Optional
+from uuid import UUID, uuid4
+
+from app.database import SessionLocal
+from app.models.execution import ExecutionLog
+from sqlalchemy import insert
+from sqlalchemy.orm import Session
+
+logger = logging.getLogger(__name__)
+
+
+class LogDurability(Enum):
+    """When buffered step logs must reach the database."""
+
+    # Written by the background task only; a crash may lose the tail
+    BACKGROUND = "background"
+    # Flushed before the execution is reported as finished
+    EXECUTION = "execution"
+    # Flushed after every step, matching per-step commits
+    IMMEDIATE = "immediate"
+
+
+class ExecutionLogWriter:
+    """Collects step logs and writes them to execution_logs in batches.
+
+    Rows are written with multi-row inserts from a worker thread so the
+    synchronous session never blocks the event loop. A flush is triggered
+    when ``batch_size`` rows are pending or ``flush_interval`` seconds pass.
+    """
+
+    def __init__(
+        self,
+        batch_size: int = 100,
+        flush_interval: float = 1.0,
+        max_buffer_size: int = 10000,
+        durability: LogDurability = LogDurability.EXECUTION,
+        session_factory: Callable[[], Session] = SessionLocal,
+    ):
+        self.batch_size = batch_size
+        self.flush_interval = flush_interval
+        self.max_buffer_size = max_buffer_size
+        self.durability = durability
+        self.session_factory = session_factory
+
+        self._buffer: List[Dict[str, Any]] = []
+        self._flush_lock: Optional[asyncio.Lock] = None
+        self._wakeup: Optional[asyncio.Event] = None
+        self._task: Optional[asyncio.Task] = None
+        self._loop: Optional[asyncio.AbstractEventLoop] = None
+
+    async def write(
+        self,
+        execution_id: UUID,
+        step_name: str,
+        step_type: str,
+        input_data: Optional[Dict[str, Any]],
+        output_data: Optional[Dict[str, Any]],
+        duration_ms: int,
+        error_message: Optional[str] = None,
+    ) -> None:
+        """Queue a step log for the next batch."""
+        self._ensure_started()
+
+        if len(self._buffer) >= self.max_buffer_size:
+            logger.warning(
+                f"Execution log buffer full ({self.max_buffer_size}), flushing inline"
+            )
+            await self.flush()
+
+        self._buffer.append(
+            {
+                "id": uuid4(),
+                "execution_id": execution_id,
+                "step_name": step_name,
+                "step_type": step_type,
+                "input_data": input_data,
+                "output_data": output_data,
+                "duration_ms": duration_ms,
+                "error_message": error_message,
+                # Stamp now so batching does not reorder log timestamps
+                "timestamp": datetime.now(timezone.utc),
+            }
+        )
+
+        if self.durability == LogDurability.IMMEDIATE:
+            await self.flush()
+        elif len(self._buffer) >= self.batch_size:
+            self._wakeup.set()
+
+    async def flush_execution(self, execution_id: UUID) -> None:
+        """Honour the durability mode at the end of an execution."""
+        if self.durability == LogDurability.BACKGROUND:
+            return
+        self._ensure_started()
+
+        # Rows an in-flight flush took from the buffer are only written once
+        # it releases the lock, so always wait for it before checking
+        async with self._flush_lock:
+            if any(row["execution_id"] == execution_id for row in self._buffer):
+                await self._flush_buffer()
+
+    async def flush(self) -> None:
+        """Write all pending rows now."""
+        self._ensure_started()
+
+        async with self._flush_lock:
+            await self._flush_buffer()
+
+    async def _flush_buffer(self) -> None:
+        """Write all pending rows; the caller holds the flush lock."""
+        if not self._buffer:
+            return
+
+        rows, self._buffer = self._buffer, []
+        try:
+            await asyncio.to_thread(self._insert_rows, rows)
+        except Exception as e:
+            logger.error(f"Failed to write {len(rows)} execution logs: {e}")
+            # Keep rows for the next attempt unless the buffer is saturated
+            if len(self._buffer) + len(rows) <= self.max_buffer_size:
+                self._buffer = rows + self._buffer
+            raise
+
+    async def close(self) -> None:
+        """Stop the background task and write any remaining rows."""
+        if self._task and self._loop is asyncio.get_running_loop():
+            self._task.cancel()
+            await asyncio.gather(self._task, return_exceptions=True)
+        self._task = None
+
+        if self._buffer:
+            await self.flush()
+
+    def _ensure_started(self) -> None:
+        loop = asyncio.get_running_loop()
+        if self._loop is not loop:
+            self._loop = loop
+            self._flush_lock = asyncio.Lock()
+            self._wakeup = asyncio.Event()
+            self._task = None
+
+        if self._task is None or self._task.done():
+            self._task = loop.create_task(self._run())
+
+    async def _run(self) -> None:
+        while True:
+            try:
+                await asyncio.wait_for(self._wakeup.wait(), self.flush_interval)
+            except asyncio.TimeoutError:
+                pass
+            self._wakeup.clear()
+
+            try:
+                await self.flush()
+            except Exception:
+                # Already logged; retried on the next interval
+                pass
+
+    def _insert_rows(self, rows: List[Dict[str, Any]]) -> None:
+        db = self.session_factory()
+        try:
+            db.execute(insert(ExecutionLog), rows)
+            db.commit()
+        except Exception:
+            db.rollback()
+            raise
+        finally:
+            db.close()
+
+
+execution_log_writer = ExecutionLogWriter()
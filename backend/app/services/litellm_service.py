@@ -8,10 +8,11 @@ import os
 from dataclasses import dataclass, field
 from enum import Enum
 from pathlib import Path
-from typing import Any, Dict, List, Optional
+from typing import Any, AsyncIterator, Dict, List, Optional
 
 import litellm
 import yaml
+from app.exceptions import AIServiceError
 from litellm import ModelResponse, acompletion
 from litellm.exceptions import APIError, RateLimitError, ServiceUnavailableError
 
@@ -282,6 +283,104 @@ class LiteLLMService:
 
         return AIResponse(content="", model=model, error=error_msg)
 
+    async def stream_completion(
+        self,
+        messages: List[Dict[str, str]],
+        model: str,
+        temperature: float = 0.7,
+        max_tokens: Optional[int] = None,
+        use_fallbacks: bool = True,
+        **kwargs,
+    ) -> AsyncIterator[str]:
+        """
+        Stream a completion through LiteLLM, yielding content as it arrives.
+
+        Retries and fallbacks apply until the first piece of content has been
+        yielded. After that the caller holds partial output, so a failure is
+        raised instead of silently restarting the answer on another model.
+
+        Args:
+            messages: List of message dictionaries
+            model: Model name to use
+            temperature: Sampling temperature
+            max_tokens: Maximum tokens in response
+            use_fallbacks: Whether to try fallback models on failure
+            **kwargs: Additional parameters to pass to LiteLLM
+
+        Yields:
+            Content deltas in the order the provider sends them
+
+        Raises:
+            AIServiceError: If no model could start a stream
+        """
+        last_error = None
+        tried_models = []
+
+        models_to_try = [model]
+        if use_fallbacks and model in self.fallback_models:
+            models_to_try.extend(self.fallback_models[model])
+
+        for current_model in models_to_try:
+            tried_models.append(current_model)
+
+            model_config = self.models.get(current_model)
+            if model_config and not model_config.is_available:
+                self.logger.warning(
+                    f"Model {current_model} is marked as unavailable, skipping"
+                )
+                continue
+
+            if model_config:
+                if not max_tokens and model_config.max_tokens:
+                    max_tokens = model_config.max_tokens
+
+            for attempt in range(self.max_retries + 1):
+                started = False
+                try:
+                    response = await acompletion(
+                        model=current_model,
+                        messages=messages,
+                        temperature=temperature,
+                        max_tokens=max_tokens,
+                        stream=True,
+                        **kwargs,
+                    )
+                    async for chunk in response:
+                        if not chunk.choices:
+                            continue
+                        content = chunk.choices[0].delta.content
+                        if content:
+                            started = True
+                            yield content
+
+                    self.logger.info(f"LiteLLM stream from {current_model} completed")
+                    return
+
+                except Exception as e:
+                    if started:
+                        raise
+                    last_error = e
+                    self.logger.error(
+                        f"Stream error on attempt {attempt + 1} for "
+                        f"{current_model}: {e}"
+                    )
+                    if attempt < self.max_retries:
+                        if isinstance(e, RateLimitError):
+                            await asyncio.sleep(self.retry_delay * (2**attempt))
+                        else:
+                            await asyncio.sleep(self.retry_delay)
+
+            self.logger.warning(
+                f"All attempts failed for model {current_model}, trying next fallback"
+            )
+
+        error_msg = (
+            f"LiteLLM stream failed for all models {tried_models} after "
+            f"{self.max_retries + 1} attempts each: {last_error}"
+        )
+        self.logger.error(error_msg)
+        raise AIServiceError(error_msg)
+
     def get_available_models(self) -> List[ModelConfig]:
         """Get list of available models with their configurations."""
         return [model for model in self.models.values() if model.is_available]
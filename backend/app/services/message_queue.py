@@ -1,12 +1,15 @@
 """Redis-based message queue service with persistence and delivery guarantees."""
 
+import json
+import os
 import time
 import uuid
 from datetime import datetime, timedelta
 from enum import Enum
-from typing import Any, Dict, Optional
+from typing import Any, Dict, List, Optional, Tuple
 
 import redis
+import redis.asyncio as aioredis
 from app.config.settings import get_settings
 from pydantic import BaseModel, Field
 
@@ -37,59 +40,166 @@ class QueueMessage(BaseModel):
     error_message: Optional[str] = None
 
 
-class MessageQueue:
-    """Redis-based message queue with persistence and delivery guarantees."""
+# Every key a script touches is passed in KEYS, and all keys of one queue
+# share its hash tag, so the scripts also run on Redis Cluster.
+
+# Pops up to ARGV[1] ids from the queue (KEYS[1]) into the processing list
+# (KEYS[2]) and records their claim deadline ARGV[3] in KEYS[3]. ARGV[2] is an
+# id already moved there by BRPOPLPUSH. Returns the claimed ids.
+_CLAIM_SCRIPT = """
+local claimed = {}
+if ARGV[2] ~= '' then
+    redis.call('ZADD', KEYS[3], ARGV[3], ARGV[2])
+    table.insert(claimed, ARGV[2])
+end
+local limit = tonumber(ARGV[1])
+while #claimed < limit do
+    local id = redis.call('RPOPLPUSH', KEYS[1], KEYS[2])
+    if not id then
+        break
+    end
+    redis.call('ZADD', KEYS[3], ARGV[3], id)
+    table.insert(claimed, id)
+end
+return claimed
+"""
+
+# Gives each id in a processing list (KEYS[1]) that has no claim deadline in
+# KEYS[2] the deadline ARGV[1], and returns how many it adopted. BRPOPLPUSH
+# cannot run inside the claim script, so a consumer that dies between the two
+# leaves its first id claimed without a deadline; once adopted, the id is
+# recovered like any other stale claim. A live consumer's claim script still
+# overwrites the deadline with its own.
+_ADOPT_SCRIPT = """
+local adopted = 0
+for _, id in ipairs(redis.call('LRANGE', KEYS[1], 0, -1)) do
+    if not redis.call('ZSCORE', KEYS[2], id) then
+        redis.call('ZADD', KEYS[2], ARGV[1], id)
+        adopted = adopted + 1
+    end
+end
+return adopted
+"""
+
+# Moves a message out of processing into the scheduled set (retry) or the
+# dead letter list, only if it was still being processed. With ARGV[6] set,
+# only if its claim deadline has not been extended past ARGV[6] either.
+_NACK_SCRIPT = """
+if ARGV[6] ~= '' then
+    local deadline = redis.call('ZSCORE', KEYS[4], ARGV[1])
+    if deadline and tonumber(deadline) > tonumber(ARGV[6]) then
+        return 0
+    end
+end
+if redis.call('LREM', KEYS[1], 1, ARGV[1]) == 0 then
+    return 0
+end
+redis.call('ZREM', KEYS[4], ARGV[1])
+redis.call('SETEX', KEYS[2], ARGV[3], ARGV[2])
+if ARGV[4] == 'retry' then
+    redis.call('ZADD', KEYS[3], ARGV[5], ARGV[1])
+else
+    redis.call('LPUSH', KEYS[3], ARGV[1])
+end
+return 1
+"""
+
+# Promotes due ids from a queue's scheduled set (KEYS[1]) to the queue
+# (KEYS[2]); the ZREM claims each one so concurrent callers never enqueue it
+# twice.
+_PROMOTE_SCRIPT = """
+local moved = 0
+for i = 1, #ARGV do
+    if redis.call('ZREM', KEYS[1], ARGV[i]) == 1 then
+        redis.call('LPUSH', KEYS[2], ARGV[i])
+        moved = moved + 1
+    end
+end
+return moved
+"""
+
+
+class MessageQueueBase:
+    """Key layout and message state transitions shared by both clients.
+
+    The ``_stage_*`` helpers only buffer commands, so they work on sync and
+    asyncio pipelines alike; the clients own all network round trips.
+
+    Every key of a queue, including its message data, carries the queue name
+    as a ``{hash tag}``. A queue therefore lives in one Redis Cluster slot,
+    and its multi-key transactions and scripts stay valid there.
+    """
 
     def __init__(self, redis_url: Optional[str] = None):
-        """Initialize message queue with Redis connection."""
         settings = get_settings()
-        self.redis_url = redis_url or getattr(
-            settings, "REDIS_URL", "redis://localhost:6379"
+        self.redis_url = (
+            redis_url
+            or getattr(settings, "REDIS_URL", None)
+            or os.getenv("REDIS_URL", "redis://localhost:6379")
         )
-        self.redis_client = redis.from_url(self.redis_url, decode_responses=True)
 
         # Queue configuration
         self.default_ttl = 86400  # 24 hours
-        self.processing_timeout = 300  # 5 minutes
+        self.processing_timeout = 300  # Claim lifetime without a heartbeat
         self.dead_letter_ttl = 604800  # 7 days
+        self.completed_ttl = 3600  # Keep completed messages for 1 hour
 
         # Key prefixes
         self.queue_prefix = "queue:"
         self.processing_prefix = "processing:"
+        self.deadline_prefix = "processing_deadlines:"
         self.dead_letter_prefix = "dead_letter:"
         self.message_prefix = "message:"
         self.scheduled_prefix = "scheduled:"
+        self.event_prefix = "events:"
+
+    @staticmethod
+    def _hash_tag(queue_name: str) -> str:
+        """Hash tag placing all keys of a queue in the same cluster slot."""
+        return f"{{{queue_name}}}"
+
+    def _queue_name_from_key(self, key: str, prefix: str) -> str:
+        """Recover the queue name from a hash-tagged key."""
+        return key[len(prefix) + 1 : -1]
 
     def _get_queue_key(self, queue_name: str) -> str:
         """Get Redis key for queue."""
-        return f"{self.queue_prefix}{queue_name}"
+        return f"{self.queue_prefix}{self._hash_tag(queue_name)}"
 
     def _get_processing_key(self, queue_name: str) -> str:
         """Get Redis key for processing queue."""
-        return f"{self.processing_prefix}{queue_name}"
+        return f"{self.processing_prefix}{self._hash_tag(queue_name)}"
+
+    def _get_deadline_key(self, queue_name: str) -> str:
+        """Get Redis key for the claim deadlines of a processing queue."""
+        return f"{self.deadline_prefix}{self._hash_tag(queue_name)}"
 
     def _get_dead_letter_key(self, queue_name: str) -> str:
         """Get Redis key for dead letter queue."""
-        return f"{self.dead_letter_prefix}{queue_name}"
+        return f"{self.dead_letter_prefix}{self._hash_tag(queue_name)}"
 
-    def _get_message_key(self, message_id: str) -> str:
+    def _get_message_key(self, queue_name: str, message_id: str) -> str:
         """Get Redis key for message data."""
-        return f"{self.message_prefix}{message_id}"
+        return f"{self.message_prefix}{self._hash_tag(queue_name)}:{message_id}"
 
-    def _get_scheduled_key(self) -> str:
-        """Get Redis key for scheduled messages."""
-        return f"{self.scheduled_prefix}messages"
+    def _get_scheduled_key(self, queue_name: str) -> str:
+        """Get Redis key for the scheduled messages of a queue."""
+        return f"{self.scheduled_prefix}{self._hash_tag(queue_name)}"
 
-    def enqueue(
+    def _get_event_key(self, channel: str) -> str:
+        """Get Redis key for an event channel."""
+        return f"{self.event_prefix}{channel}"
+
+    def _new_message(
         self,
         queue_name: str,
         payload: Dict[str, Any],
-        priority: int = 0,
-        delay_seconds: int = 0,
-        ttl_seconds: Optional[int] = None,
-        max_retries: int = 3,
-    ) -> str:
-        """Enqueue a message with optional delay and TTL."""
+        priority: int,
+        delay_seconds: int,
+        ttl_seconds: Optional[int],
+        max_retries: int,
+    ) -> QueueMessage:
+        """Build a message with optional delay and TTL."""
         message = QueueMessage(
             queue_name=queue_name,
             payload=payload,
@@ -105,203 +215,469 @@ class MessageQueue:
         if delay_seconds > 0:
             message.scheduled_at = datetime.utcnow() + timedelta(seconds=delay_seconds)
 
-        # Store message data
-        message_key = self._get_message_key(message.id)
-        self.redis_client.setex(
-            message_key, ttl_seconds or self.default_ttl, message.model_dump_json()
+        return message
+
+    def _stage_enqueue(
+        self, pipe: Any, message: QueueMessage, ttl_seconds: Optional[int]
+    ) -> None:
+        """Buffer storing a message and adding it to its queue."""
+        pipe.setex(
+            self._get_message_key(message.queue_name, message.id),
+            ttl_seconds or self.default_ttl,
+            message.model_dump_json(),
         )
 
-        # Add to appropriate queue
         if message.scheduled_at:
             # Add to scheduled messages sorted set
-            scheduled_key = self._get_scheduled_key()
-            self.redis_client.zadd(
-                scheduled_key, {message.id: message.scheduled_at.timestamp()}
+            pipe.zadd(
+                self._get_scheduled_key(message.queue_name),
+                {message.id: message.scheduled_at.timestamp()},
             )
         else:
             # Add to immediate processing queue
-            queue_key = self._get_queue_key(queue_name)
-            self.redis_client.lpush(queue_key, message.id)
+            pipe.lpush(self._get_queue_key(message.queue_name), message.id)
 
-        return message.id
+    def _stage_processing(
+        self,
+        pipe: Any,
+        queue_name: str,
+        claimed: List[str],
+        message_data: List[Optional[str]],
+    ) -> List[QueueMessage]:
+        """Parse claimed message data and buffer their processing status.
+
+        Claimed ids whose data has expired are dropped from processing.
+        """
+        messages = []
+        vanished = []
+        for message_id, data in zip(claimed, message_data):
+            if not data:
+                vanished.append(message_id)
+                pipe.lrem(self._get_processing_key(queue_name), 1, message_id)
+                continue
 
-    def dequeue(self, queue_name: str, timeout: int = 0) -> Optional[QueueMessage]:
-        """Dequeue a message with blocking support."""
-        queue_key = self._get_queue_key(queue_name)
-        processing_key = self._get_processing_key(queue_name)
+            message = QueueMessage.model_validate_json(data)
+            message.status = MessageStatus.PROCESSING
+            # The claim deadline decides recovery; the data outlives long steps
+            pipe.setex(
+                self._get_message_key(queue_name, message.id),
+                self.default_ttl,
+                message.model_dump_json(),
+            )
+            messages.append(message)
 
-        # Move message from queue to processing with atomic operation
-        if timeout > 0:
-            result = self.redis_client.brpoplpush(queue_key, processing_key, timeout)
-        else:
-            result = self.redis_client.rpoplpush(queue_key, processing_key)
+        if vanished:
+            pipe.zrem(self._get_deadline_key(queue_name), *vanished)
+        return messages
 
-        if not result:
-            return None
+    def _stage_ack(self, pipe: Any, message: QueueMessage) -> None:
+        """Buffer removing a message from processing and marking it completed."""
+        message.status = MessageStatus.COMPLETED
+        pipe.lrem(self._get_processing_key(message.queue_name), 1, message.id)
+        pipe.zrem(self._get_deadline_key(message.queue_name), message.id)
+        pipe.setex(
+            self._get_message_key(message.queue_name, message.id),
+            self.completed_ttl,
+            message.model_dump_json(),
+        )
 
-        message_id = result
-        message_key = self._get_message_key(message_id)
-        message_data = self.redis_client.get(message_key)
+    def _stage_extend(
+        self, pipe: Any, message: QueueMessage, visibility_timeout: Optional[int]
+    ) -> None:
+        """Buffer moving a claimed message's deadline forward."""
+        deadline = time.time() + (visibility_timeout or self.processing_timeout)
+        pipe.zadd(
+            self._get_deadline_key(message.queue_name),
+            {message.id: deadline},
+            xx=True,
+            ch=True,
+        )
+        pipe.expire(
+            self._get_message_key(message.queue_name, message.id), self.default_ttl
+        )
 
-        if not message_data:
-            # Message expired, remove from processing
-            self.redis_client.lrem(processing_key, 1, message_id)
-            return None
+    def _claim_deadline(self, visibility_timeout: Optional[int]) -> float:
+        """Timestamp after which a claim made now may be recovered."""
+        return time.time() + (visibility_timeout or self.processing_timeout)
 
-        message = QueueMessage.model_validate_json(message_data)
-        message.status = MessageStatus.PROCESSING
+    def _nack_arguments(
+        self,
+        message: QueueMessage,
+        error_message: Optional[str],
+        expired_before: Optional[float] = None,
+    ) -> Tuple[QueueMessage, List[str], List[Any]]:
+        """Compute the retried or dead-lettered state of a failed message."""
+        updated = message.model_copy()
+        updated.retry_count += 1
+        updated.error_message = error_message
+
+        if updated.retry_count <= updated.max_retries:
+            # Retry with exponential backoff
+            delay = min(300, 2**updated.retry_count)  # Max 5 minutes
+            updated.scheduled_at = datetime.utcnow() + timedelta(seconds=delay)
+            updated.status = MessageStatus.PENDING
+            target_key = self._get_scheduled_key(updated.queue_name)
+            mode, ttl = "retry", self.default_ttl
+            score = updated.scheduled_at.timestamp()
+        else:
+            # Move to dead letter queue
+            updated.status = MessageStatus.DEAD_LETTER
+            target_key = self._get_dead_letter_key(updated.queue_name)
+            mode, ttl, score = "dead_letter", self.dead_letter_ttl, 0
+
+        keys = [
+            self._get_processing_key(updated.queue_name),
+            self._get_message_key(updated.queue_name, updated.id),
+            target_key,
+            self._get_deadline_key(updated.queue_name),
+        ]
+        args = [
+            updated.id,
+            updated.model_dump_json(),
+            ttl,
+            mode,
+            score,
+            "" if expired_before is None else expired_before,
+        ]
+        return updated, keys, args
+
+    @staticmethod
+    def _apply_nack(message: QueueMessage, updated: QueueMessage) -> None:
+        for field_name in (
+            "retry_count",
+            "error_message",
+            "scheduled_at",
+            "status",
+        ):
+            setattr(message, field_name, getattr(updated, field_name))
+
+    def _split_scheduled(
+        self, message_ids: List[str], message_data: List[Optional[str]]
+    ) -> Tuple[List[str], List[str], List[str]]:
+        """Sort due scheduled ids into vanished, expired and promotable ones.
+
+        Returns ids to drop from the schedule, ids whose data must also be
+        deleted, and ids to promote.
+        """
+        vanished, expired, promote = [], [], []
+        now = datetime.utcnow()
+
+        for message_id, data in zip(message_ids, message_data):
+            if not data:
+                # Message expired, remove from scheduled
+                vanished.append(message_id)
+                continue
 
-        # Update message status and add processing timeout
-        self.redis_client.setex(
-            message_key, self.processing_timeout, message.model_dump_json()
-        )
+            message = QueueMessage.model_validate_json(data)
 
-        return message
+            # Check if message has expired
+            if message.expires_at and message.expires_at < now:
+                expired.append(message_id)
+                continue
 
-    def ack(self, message: QueueMessage) -> bool:
-        """Acknowledge successful message processing."""
-        processing_key = self._get_processing_key(message.queue_name)
-        message_key = self._get_message_key(message.id)
+            promote.append(message_id)
 
-        # Remove from processing queue
-        removed = self.redis_client.lrem(processing_key, 1, message.id)
+        return vanished, expired, promote
 
-        # Update message status
-        message.status = MessageStatus.COMPLETED
-        self.redis_client.setex(
-            message_key,
-            3600,  # Keep completed messages for 1 hour
-            message.model_dump_json(),
-        )
+    @staticmethod
+    def _split_processing(
+        message_ids: List[str], message_data: List[Optional[str]]
+    ) -> Tuple[List[str], List[QueueMessage]]:
+        """Split messages whose claim expired into vanished and stale ones."""
+        vanished, stale = [], []
 
-        return removed > 0
+        for message_id, data in zip(message_ids, message_data):
+            if not data:
+                vanished.append(message_id)
+            else:
+                stale.append(QueueMessage.model_validate_json(data))
 
-    def nack(self, message: QueueMessage, error_message: str = None) -> bool:
-        """Negative acknowledge - retry or move to dead letter queue."""
-        processing_key = self._get_processing_key(message.queue_name)
-        message_key = self._get_message_key(message.id)
+        return vanished, stale
 
-        # Remove from processing queue
-        removed = self.redis_client.lrem(processing_key, 1, message.id)
-        if removed == 0:
-            return False
 
-        message.retry_count += 1
-        message.error_message = error_message
+class MessageQueue(MessageQueueBase):
+    """Redis-based message queue with persistence and delivery guarantees.
 
-        if message.retry_count <= message.max_retries:
-            # Retry with exponential backoff
-            delay = min(300, 2**message.retry_count)  # Max 5 minutes
-            message.scheduled_at = datetime.utcnow() + timedelta(seconds=delay)
-            message.status = MessageStatus.PENDING
-
-            # Add to scheduled messages
-            scheduled_key = self._get_scheduled_key()
-            self.redis_client.zadd(
-                scheduled_key, {message.id: message.scheduled_at.timestamp()}
-            )
+    Each operation costs a fixed number of round trips regardless of batch
+    size: state transitions that touch several keys run in MULTI/EXEC
+    pipelines or Lua scripts, so they are applied atomically.
+    """
 
-            # Update message data
-            self.redis_client.setex(
-                message_key, self.default_ttl, message.model_dump_json()
-            )
-        else:
-            # Move to dead letter queue
-            message.status = MessageStatus.DEAD_LETTER
-            dead_letter_key = self._get_dead_letter_key(message.queue_name)
+    def __init__(self, redis_url: Optional[str] = None):
+        """Initialize message queue with Redis connection."""
+        super().__init__(redis_url)
+        self.redis_client = redis.from_url(self.redis_url, decode_responses=True)
+        self._claim_script = self.redis_client.register_script(_CLAIM_SCRIPT)
+        self._nack_script = self.redis_client.register_script(_NACK_SCRIPT)
+        self._promote_script = self.redis_client.register_script(_PROMOTE_SCRIPT)
+        self._adopt_script = self.redis_client.register_script(_ADOPT_SCRIPT)
+
+    def enqueue(
+        self,
+        queue_name: str,
+        payload: Dict[str, Any],
+        priority: int = 0,
+        delay_seconds: int = 0,
+        ttl_seconds: Optional[int] = None,
+        max_retries: int = 3,
+    ) -> str:
+        """Enqueue a message with optional delay and TTL."""
+        return self.enqueue_many(
+            queue_name, [payload], priority, delay_seconds, ttl_seconds, max_retries
+        )[0]
 
-            self.redis_client.lpush(dead_letter_key, message.id)
-            self.redis_client.setex(
-                message_key, self.dead_letter_ttl, message.model_dump_json()
+    def enqueue_many(
+        self,
+        queue_name: str,
+        payloads: List[Dict[str, Any]],
+        priority: int = 0,
+        delay_seconds: int = 0,
+        ttl_seconds: Optional[int] = None,
+        max_retries: int = 3,
+    ) -> List[str]:
+        """Enqueue several messages in one atomic round trip."""
+        messages = [
+            self._new_message(
+                queue_name, payload, priority, delay_seconds, ttl_seconds, max_retries
             )
+            for payload in payloads
+        ]
+        if not messages:
+            return []
 
-        return True
+        pipe = self.redis_client.pipeline(transaction=True)
+        for message in messages:
+            self._stage_enqueue(pipe, message, ttl_seconds)
+        pipe.execute()
 
-    def process_scheduled_messages(self) -> int:
-        """Process scheduled messages that are ready."""
-        scheduled_key = self._get_scheduled_key()
-        current_time = time.time()
+        return [message.id for message in messages]
 
-        # Get messages ready for processing
-        ready_messages = self.redis_client.zrangebyscore(
-            scheduled_key, 0, current_time, withscores=True
+    def dequeue(
+        self,
+        queue_name: str,
+        timeout: int = 0,
+        visibility_timeout: Optional[int] = None,
+    ) -> Optional[QueueMessage]:
+        """Dequeue a message with blocking support."""
+        messages = self.dequeue_batch(queue_name, 1, timeout, visibility_timeout)
+        return messages[0] if messages else None
+
+    def dequeue_batch(
+        self,
+        queue_name: str,
+        max_messages: int = 10,
+        timeout: int = 0,
+        visibility_timeout: Optional[int] = None,
+    ) -> List[QueueMessage]:
+        """Dequeue up to max_messages, blocking up to timeout for the first.
+
+        Claimed messages are recovered for redelivery once visibility_timeout
+        (default processing_timeout) passes without an ack, nack or
+        extend_visibility call.
+        """
+        queue_key = self._get_queue_key(queue_name)
+        processing_key = self._get_processing_key(queue_name)
+        deadline_key = self._get_deadline_key(queue_name)
+
+        first_id = ""
+        if timeout > 0:
+            first_id = self.redis_client.brpoplpush(queue_key, processing_key, timeout)
+            if not first_id:
+                return []
+
+        # Move messages from queue to processing with one atomic script
+        claimed = self._claim_script(
+            keys=[queue_key, processing_key, deadline_key],
+            args=[max_messages, first_id, self._claim_deadline(visibility_timeout)],
         )
+        if not claimed:
+            return []
 
-        processed_count = 0
-        for message_id, _ in ready_messages:
-            message_key = self._get_message_key(message_id)
-            message_data = self.redis_client.get(message_key)
+        # Update message status; all claimed keys share the queue's slot
+        message_data = self.redis_client.mget(
+            [self._get_message_key(queue_name, message_id) for message_id in claimed]
+        )
+        pipe = self.redis_client.pipeline(transaction=True)
+        messages = self._stage_processing(pipe, queue_name, claimed, message_data)
+        pipe.execute()
 
-            if not message_data:
-                # Message expired, remove from scheduled
-                self.redis_client.zrem(scheduled_key, message_id)
-                continue
+        return messages
 
-            message = QueueMessage.model_validate_json(message_data)
+    def ack(self, message: QueueMessage) -> bool:
+        """Acknowledge successful message processing."""
+        return self.ack_many([message]) > 0
+
+    def ack_many(self, messages: List[QueueMessage]) -> int:
+        """Acknowledge several messages atomically, returning how many were acked."""
+        if not messages:
+            return 0
+
+        pipe = self.redis_client.pipeline(transaction=True)
+        for message in messages:
+            self._stage_ack(pipe, message)
+        results = pipe.execute()
+
+        # Each ack stages LREM, ZREM and SETEX; count the LREMs that removed an id
+        return sum(1 for removed in results[0::3] if removed > 0)
+
+    def extend_visibility(
+        self, message: QueueMessage, visibility_timeout: Optional[int] = None
+    ) -> bool:
+        """Push back a claimed message's deadline; False if the claim was lost."""
+        pipe = self.redis_client.pipeline(transaction=True)
+        self._stage_extend(pipe, message, visibility_timeout)
+        changed, _ = pipe.execute()
+        return changed > 0
+
+    def nack(
+        self,
+        message: QueueMessage,
+        error_message: str = None,
+        expired_before: Optional[float] = None,
+    ) -> bool:
+        """Negative acknowledge - retry or move to dead letter queue.
+
+        With expired_before, only if the claim deadline is not later than it.
+        """
+        updated, keys, args = self._nack_arguments(
+            message, error_message, expired_before
+        )
+        if not self._nack_script(keys=keys, args=args):
+            return False
 
-            # Check if message has expired
-            if message.expires_at and message.expires_at < datetime.utcnow():
-                self.redis_client.zrem(scheduled_key, message_id)
-                self.redis_client.delete(message_key)
-                continue
+        self._apply_nack(message, updated)
+        return True
 
-            # Move to processing queue
-            queue_key = self._get_queue_key(message.queue_name)
-            self.redis_client.lpush(queue_key, message_id)
-            self.redis_client.zrem(scheduled_key, message_id)
+    def process_scheduled_messages(self, limit: Optional[int] = None) -> int:
+        """Process scheduled messages that are ready, up to limit per queue."""
+        scheduled_pattern = f"{self.scheduled_prefix}*"
+        promoted_count = 0
 
-            processed_count += 1
+        for scheduled_key in self.redis_client.scan_iter(match=scheduled_pattern):
+            queue_name = self._queue_name_from_key(
+                scheduled_key, self.scheduled_prefix
+            )
+            promoted_count += self._promote_scheduled(queue_name, limit)
 
-        return processed_count
+        return promoted_count
 
-    def recover_stale_messages(self) -> int:
-        """Recover messages stuck in processing state."""
-        processing_pattern = f"{self.processing_prefix}*"
-        recovered_count = 0
+    def _promote_scheduled(self, queue_name: str, limit: Optional[int]) -> int:
+        """Move a queue's due scheduled messages onto the queue."""
+        scheduled_key = self._get_scheduled_key(queue_name)
 
-        for key in self.redis_client.scan_iter(match=processing_pattern):
-            queue_name = key.replace(self.processing_prefix, "")
-            processing_key = self._get_processing_key(queue_name)
+        # Get messages ready for processing
+        if limit:
+            ready_ids = self.redis_client.zrangebyscore(
+                scheduled_key, 0, time.time(), start=0, num=limit
+            )
+        else:
+            ready_ids = self.redis_client.zrangebyscore(scheduled_key, 0, time.time())
+        if not ready_ids:
+            return 0
 
-            # Get all messages in processing
-            message_ids = self.redis_client.lrange(processing_key, 0, -1)
+        message_data = self.redis_client.mget(
+            [self._get_message_key(queue_name, message_id) for message_id in ready_ids]
+        )
+        vanished, expired, promote = self._split_scheduled(ready_ids, message_data)
+
+        if vanished or expired:
+            pipe = self.redis_client.pipeline(transaction=True)
+            pipe.zrem(scheduled_key, *(vanished + expired))
+            if expired:
+                pipe.delete(*[self._get_message_key(queue_name, m) for m in expired])
+            pipe.execute()
+
+        if not promote:
+            return 0
+        return self._promote_script(
+            keys=[scheduled_key, self._get_queue_key(queue_name)], args=promote
+        )
 
-            for message_id in message_ids:
-                message_key = self._get_message_key(message_id)
-                message_data = self.redis_client.get(message_key)
+    def recover_stale_messages(self) -> int:
+        """Recover claimed messages whose deadline passed without a heartbeat."""
+        processing_pattern = f"{self.processing_prefix}*"
+        for processing_key in self.redis_client.scan_iter(match=processing_pattern):
+            self._adopt_orphaned_claims(processing_key)
 
-                if not message_data:
-                    # Message expired, remove from processing
-                    self.redis_client.lrem(processing_key, 1, message_id)
-                    recovered_count += 1
-                    continue
+        deadline_pattern = f"{self.deadline_prefix}*"
+        recovered_count = 0
+        now = time.time()
 
-                message = QueueMessage.model_validate_json(message_data)
+        for deadline_key in self.redis_client.scan_iter(match=deadline_pattern):
+            message_ids = self.redis_client.zrangebyscore(deadline_key, 0, now)
+            if not message_ids:
+                continue
 
-                # Check if processing timeout exceeded
-                processing_time = datetime.utcnow() - message.created_at
-                if processing_time.total_seconds() > self.processing_timeout:
-                    # Treat as failed and retry
-                    self.nack(message, "Processing timeout exceeded")
+            queue_name = self._queue_name_from_key(deadline_key, self.deadline_prefix)
+            message_data = self.redis_client.mget(
+                [self._get_message_key(queue_name, m) for m in message_ids]
+            )
+            vanished, stale = self._split_processing(message_ids, message_data)
+
+            if vanished:
+                # Message expired, remove from processing
+                pipe = self.redis_client.pipeline(transaction=True)
+                for message_id in vanished:
+                    pipe.lrem(self._get_processing_key(queue_name), 1, message_id)
+                pipe.zrem(deadline_key, *vanished)
+                pipe.execute()
+                recovered_count += len(vanished)
+
+            for message in stale:
+                # Treat as failed and retry, unless a heartbeat just extended it
+                if self.nack(message, "Processing timeout exceeded", now):
                     recovered_count += 1
 
         return recovered_count
 
+    def _adopt_orphaned_claims(self, processing_key: str) -> None:
+        """Give claimed ids that never got a deadline the default one."""
+        queue_name = self._queue_name_from_key(processing_key, self.processing_prefix)
+        self._adopt_script(
+            keys=[processing_key, self._get_deadline_key(queue_name)],
+            args=[self._claim_deadline(None)],
+        )
+
+    def publish_event(
+        self, channel: str, payload: Dict[str, Any], ttl_seconds: int = 3600
+    ) -> None:
+        """Append an event to a channel read by a single consumer."""
+        event_key = self._get_event_key(channel)
+        pipe = self.redis_client.pipeline()
+        pipe.rpush(event_key, json.dumps(payload, default=str))
+        pipe.expire(event_key, ttl_seconds)
+        pipe.execute()
+
+    def wait_for_event(
+        self, channel: str, timeout: int = 1
+    ) -> Optional[Dict[str, Any]]:
+        """Pop the next event from a channel, blocking up to timeout seconds."""
+        result = self.redis_client.blpop(self._get_event_key(channel), timeout)
+        if not result:
+            return None
+        return json.loads(result[1])
+
+    def delete_events(self, channel: str) -> None:
+        """Drop any unread events of a channel."""
+        self.redis_client.delete(self._get_event_key(channel))
+
     def get_queue_stats(self, queue_name: str) -> Dict[str, int]:
         """Get queue statistics."""
-        queue_key = self._get_queue_key(queue_name)
-        processing_key = self._get_processing_key(queue_name)
-        dead_letter_key = self._get_dead_letter_key(queue_name)
+        pipe = self.redis_client.pipeline(transaction=False)
+        pipe.llen(self._get_queue_key(queue_name))
+        pipe.llen(self._get_processing_key(queue_name))
+        pipe.llen(self._get_dead_letter_key(queue_name))
+        pending, processing, dead_letter = pipe.execute()
 
         return {
-            "pending": self.redis_client.llen(queue_key),
-            "processing": self.redis_client.llen(processing_key),
-            "dead_letter": self.redis_client.llen(dead_letter_key),
+            "pending": pending,
+            "processing": processing,
+            "dead_letter": dead_letter,
         }
 
-    def get_message(self, message_id: str) -> Optional[QueueMessage]:
+    def get_message(self, queue_name: str, message_id: str) -> Optional[QueueMessage]:
         """Get message by ID."""
-        message_key = self._get_message_key(message_id)
+        message_key = self._get_message_key(queue_name, message_id)
         message_data = self.redis_client.get(message_key)
 
         if not message_data:
@@ -315,23 +691,31 @@ class MessageQueue:
         processing_key = self._get_processing_key(queue_name)
         dead_letter_key = self._get_dead_letter_key(queue_name)
 
+        scheduled_key = self._get_scheduled_key(queue_name)
+
         # Get all message IDs
         pending_ids = self.redis_client.lrange(queue_key, 0, -1)
         processing_ids = self.redis_client.lrange(processing_key, 0, -1)
         dead_letter_ids = self.redis_client.lrange(dead_letter_key, 0, -1)
+        scheduled_ids = self.redis_client.zrange(scheduled_key, 0, -1)
 
-        all_ids = pending_ids + processing_ids + dead_letter_ids
+        all_ids = pending_ids + processing_ids + dead_letter_ids + scheduled_ids
 
         # Delete message data
         if all_ids:
-            message_keys = [self._get_message_key(msg_id) for msg_id in all_ids]
+            message_keys = [
+                self._get_message_key(queue_name, msg_id) for msg_id in all_ids
+            ]
             self.redis_client.delete(*message_keys)
 
         # Clear queues
-        deleted_count = 0
-        deleted_count += self.redis_client.delete(queue_key)
-        deleted_count += self.redis_client.delete(processing_key)
-        deleted_count += self.redis_client.delete(dead_letter_key)
+        self.redis_client.delete(
+            queue_key,
+            processing_key,
+            self._get_deadline_key(queue_name),
+            dead_letter_key,
+            scheduled_key,
+        )
 
         return len(all_ids)
 
@@ -355,6 +739,310 @@ class MessageQueue:
             return {"status": "unhealthy", "error": str(e)}
 
 
+class AsyncMessageQueue(MessageQueueBase):
+    """asyncio client for the Redis message queue.
+
+    Uses the same keys, scripts and message format as MessageQueue, so
+    producers and consumers can mix both clients.
+    """
+
+    def __init__(self, redis_url: Optional[str] = None):
+        """Initialize message queue with an asyncio Redis connection pool."""
+        super().__init__(redis_url)
+        self.redis_client = aioredis.from_url(self.redis_url, decode_responses=True)
+        self._claim_script = self.redis_client.register_script(_CLAIM_SCRIPT)
+        self._nack_script = self.redis_client.register_script(_NACK_SCRIPT)
+        self._promote_script = self.redis_client.register_script(_PROMOTE_SCRIPT)
+        self._adopt_script = self.redis_client.register_script(_ADOPT_SCRIPT)
+
+    async def enqueue(
+        self,
+        queue_name: str,
+        payload: Dict[str, Any],
+        priority: int = 0,
+        delay_seconds: int = 0,
+        ttl_seconds: Optional[int] = None,
+        max_retries: int = 3,
+    ) -> str:
+        """Enqueue a message with optional delay and TTL."""
+        message_ids = await self.enqueue_many(
+            queue_name, [payload], priority, delay_seconds, ttl_seconds, max_retries
+        )
+        return message_ids[0]
+
+    async def enqueue_many(
+        self,
+        queue_name: str,
+        payloads: List[Dict[str, Any]],
+        priority: int = 0,
+        delay_seconds: int = 0,
+        ttl_seconds: Optional[int] = None,
+        max_retries: int = 3,
+    ) -> List[str]:
+        """Enqueue several messages in one atomic round trip."""
+        messages = [
+            self._new_message(
+                queue_name, payload, priority, delay_seconds, ttl_seconds, max_retries
+            )
+            for payload in payloads
+        ]
+        if not messages:
+            return []
+
+        async with self.redis_client.pipeline(transaction=True) as pipe:
+            for message in messages:
+                self._stage_enqueue(pipe, message, ttl_seconds)
+            await pipe.execute()
+
+        return [message.id for message in messages]
+
+    async def dequeue(
+        self,
+        queue_name: str,
+        timeout: int = 0,
+        visibility_timeout: Optional[int] = None,
+    ) -> Optional[QueueMessage]:
+        """Dequeue a message with blocking support."""
+        messages = await self.dequeue_batch(
+            queue_name, 1, timeout, visibility_timeout
+        )
+        return messages[0] if messages else None
+
+    async def dequeue_batch(
+        self,
+        queue_name: str,
+        max_messages: int = 10,
+        timeout: int = 0,
+        visibility_timeout: Optional[int] = None,
+    ) -> List[QueueMessage]:
+        """Dequeue up to max_messages, blocking up to timeout for the first.
+
+        Claimed messages are recovered for redelivery once visibility_timeout
+        (default processing_timeout) passes without an ack, nack or
+        extend_visibility call.
+        """
+        queue_key = self._get_queue_key(queue_name)
+        processing_key = self._get_processing_key(queue_name)
+        deadline_key = self._get_deadline_key(queue_name)
+
+        first_id = ""
+        if timeout > 0:
+            first_id = await self.redis_client.brpoplpush(
+                queue_key, processing_key, timeout
+            )
+            if not first_id:
+                return []
+
+        claimed = await self._claim_script(
+            keys=[queue_key, processing_key, deadline_key],
+            args=[max_messages, first_id, self._claim_deadline(visibility_timeout)],
+        )
+        if not claimed:
+            return []
+
+        message_data = await self.redis_client.mget(
+            [self._get_message_key(queue_name, message_id) for message_id in claimed]
+        )
+        async with self.redis_client.pipeline(transaction=True) as pipe:
+            messages = self._stage_processing(pipe, queue_name, claimed, message_data)
+            await pipe.execute()
+
+        return messages
+
+    async def ack(self, message: QueueMessage) -> bool:
+        """Acknowledge successful message processing."""
+        return await self.ack_many([message]) > 0
+
+    async def ack_many(self, messages: List[QueueMessage]) -> int:
+        """Acknowledge several messages atomically, returning how many were acked."""
+        if not messages:
+            return 0
+
+        async with self.redis_client.pipeline(transaction=True) as pipe:
+            for message in messages:
+                self._stage_ack(pipe, message)
+            results = await pipe.execute()
+
+        return sum(1 for removed in results[0::3] if removed > 0)
+
+    async def extend_visibility(
+        self, message: QueueMessage, visibility_timeout: Optional[int] = None
+    ) -> bool:
+        """Push back a claimed message's deadline; False if the claim was lost."""
+        async with self.redis_client.pipeline(transaction=True) as pipe:
+            self._stage_extend(pipe, message, visibility_timeout)
+            changed, _ = await pipe.execute()
+        return changed > 0
+
+    async def nack(
+        self,
+        message: QueueMessage,
+        error_message: str = None,
+        expired_before: Optional[float] = None,
+    ) -> bool:
+        """Negative acknowledge - retry or move to dead letter queue.
+
+        With expired_before, only if the claim deadline is not later than it.
+        """
+        updated, keys, args = self._nack_arguments(
+            message, error_message, expired_before
+        )
+        if not await self._nack_script(keys=keys, args=args):
+            return False
+
+        self._apply_nack(message, updated)
+        return True
+
+    async def process_scheduled_messages(self, limit: Optional[int] = None) -> int:
+        """Process scheduled messages that are ready, up to limit per queue."""
+        scheduled_pattern = f"{self.scheduled_prefix}*"
+        promoted_count = 0
+
+        async for scheduled_key in self.redis_client.scan_iter(
+            match=scheduled_pattern
+        ):
+            queue_name = self._queue_name_from_key(
+                scheduled_key, self.scheduled_prefix
+            )
+            promoted_count += await self._promote_scheduled(queue_name, limit)
+
+        return promoted_count
+
+    async def _promote_scheduled(self, queue_name: str, limit: Optional[int]) -> int:
+        """Move a queue's due scheduled messages onto the queue."""
+        scheduled_key = self._get_scheduled_key(queue_name)
+
+        if limit:
+            ready_ids = await self.redis_client.zrangebyscore(
+                scheduled_key, 0, time.time(), start=0, num=limit
+            )
+        else:
+            ready_ids = await self.redis_client.zrangebyscore(
+                scheduled_key, 0, time.time()
+            )
+        if not ready_ids:
+            return 0
+
+        message_data = await self.redis_client.mget(
+            [self._get_message_key(queue_name, message_id) for message_id in ready_ids]
+        )
+        vanished, expired, promote = self._split_scheduled(ready_ids, message_data)
+
+        if vanished or expired:
+            async with self.redis_client.pipeline(transaction=True) as pipe:
+                pipe.zrem(scheduled_key, *(vanished + expired))
+                if expired:
+                    pipe.delete(
+                        *[self._get_message_key(queue_name, m) for m in expired]
+                    )
+                await pipe.execute()
+
+        if not promote:
+            return 0
+        return await self._promote_script(
+            keys=[scheduled_key, self._get_queue_key(queue_name)], args=promote
+        )
+
+    async def recover_stale_messages(self) -> int:
+        """Recover claimed messages whose deadline passed without a heartbeat."""
+        processing_pattern = f"{self.processing_prefix}*"
+        async for processing_key in self.redis_client.scan_iter(
+            match=processing_pattern
+        ):
+            await self._adopt_orphaned_claims(processing_key)
+
+        deadline_pattern = f"{self.deadline_prefix}*"
+        recovered_count = 0
+        now = time.time()
+
+        async for deadline_key in self.redis_client.scan_iter(match=deadline_pattern):
+            message_ids = await self.redis_client.zrangebyscore(deadline_key, 0, now)
+            if not message_ids:
+                continue
+
+            queue_name = self._queue_name_from_key(deadline_key, self.deadline_prefix)
+            message_data = await self.redis_client.mget(
+                [self._get_message_key(queue_name, m) for m in message_ids]
+            )
+            vanished, stale = self._split_processing(message_ids, message_data)
+
+            if vanished:
+                async with self.redis_client.pipeline(transaction=True) as pipe:
+                    for message_id in vanished:
+                        pipe.lrem(self._get_processing_key(queue_name), 1, message_id)
+                    pipe.zrem(deadline_key, *vanished)
+                    await pipe.execute()
+                recovered_count += len(vanished)
+
+            for message in stale:
+                if await self.nack(message, "Processing timeout exceeded", now):
+                    recovered_count += 1
+
+        return recovered_count
+
+    async def _adopt_orphaned_claims(self, processing_key: str) -> None:
+        """Give claimed ids that never got a deadline the default one."""
+        queue_name = self._queue_name_from_key(processing_key, self.processing_prefix)
+        await self._adopt_script(
+            keys=[processing_key, self._get_deadline_key(queue_name)],
+            args=[self._claim_deadline(None)],
+        )
+
+    async def publish_event(
+        self, channel: str, payload: Dict[str, Any], ttl_seconds: int = 3600
+    ) -> None:
+        """Append an event to a channel read by a single consumer."""
+        event_key = self._get_event_key(channel)
+        async with self.redis_client.pipeline() as pipe:
+            pipe.rpush(event_key, json.dumps(payload, default=str))
+            pipe.expire(event_key, ttl_seconds)
+            await pipe.execute()
+
+    async def wait_for_event(
+        self, channel: str, timeout: int = 1
+    ) -> Optional[Dict[str, Any]]:
+        """Pop the next event from a channel, blocking up to timeout seconds."""
+        result = await self.redis_client.blpop(self._get_event_key(channel), timeout)
+        if not result:
+            return None
+        return json.loads(result[1])
+
+    async def delete_events(self, channel: str) -> None:
+        """Drop any unread events of a channel."""
+        await self.redis_client.delete(self._get_event_key(channel))
+
+    async def get_queue_stats(self, queue_name: str) -> Dict[str, int]:
+        """Get queue statistics."""
+        async with self.redis_client.pipeline(transaction=False) as pipe:
+            pipe.llen(self._get_queue_key(queue_name))
+            pipe.llen(self._get_processing_key(queue_name))
+            pipe.llen(self._get_dead_letter_key(queue_name))
+            pending, processing, dead_letter = await pipe.execute()
+
+        return {
+            "pending": pending,
+            "processing": processing,
+            "dead_letter": dead_letter,
+        }
+
+    async def get_message(
+        self, queue_name: str, message_id: str
+    ) -> Optional[QueueMessage]:
+        """Get message by ID."""
+        message_data = await self.redis_client.get(
+            self._get_message_key(queue_name, message_id)
+        )
+
+        if not message_data:
+            return None
+
+        return QueueMessage.model_validate_json(message_data)
+
+    async def close(self) -> None:
+        """Close the connection pool."""
+        await self.redis_client.aclose()
+
+
 # Global message queue instance
 _message_queue: Optional[MessageQueue] = None
 
@@ -365,3 +1053,14 @@ def get_message_queue() -> MessageQueue:
     if _message_queue is None:
         _message_queue = MessageQueue()
     return _message_queue
+
+
+_async_message_queue: Optional[AsyncMessageQueue] = None
+
+
+def get_async_message_queue() -> AsyncMessageQueue:
+    """Get global asyncio message queue instance."""
+    global _async_message_queue
+    if _async_message_queue is None:
+        _async_message_queue = AsyncMessageQueue()
+    return _async_message_queue
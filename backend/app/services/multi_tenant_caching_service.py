@@ -1,19 +1,22 @@
 """Enhanced Multi-Tenant Caching & Performance Service - Redis cluster and CDN integration."""
 
 import asyncio
-import json
 import logging
+import math
+import time
 from contextlib import asynccontextmanager
 from dataclasses import dataclass, field
 from datetime import datetime, timedelta
 from enum import Enum
-from typing import Any, Dict, List, Optional
+from typing import Any, Dict, List, Optional, Tuple
 from uuid import UUID
 
 import redis.asyncio as redis
+from app.core.cache import unlink_matching
 from app.core.saas_config import SaaSConfig
 from app.models.tenant import Tenant
 from app.models.user import User
+from app.services.cache_codecs import CacheCodec
 
 logger = logging.getLogger(__name__)
 
@@ -43,6 +46,138 @@ class CachePriority(str, Enum):
     CRITICAL = "critical"
 
 
+# Eviction order: lower ranks go first, critical entries are never evicted
+PRIORITY_RANK = {
+    CachePriority.LOW: 0,
+    CachePriority.MEDIUM: 1,
+    CachePriority.HIGH: 2,
+    CachePriority.CRITICAL: 3,
+}
+
+# Redis eviction scores are rank * span + access score, so every entry of a
+# rank sorts before the next rank's
+PRIORITY_SCORE_SPAN = 1e12
+
+TOTAL_FIELD = "__total__"
+
+# Redis mode keeps byte accounting in Redis so every instance enforces the
+# same quotas. Per tenant, a hash maps keys to encoded sizes and two sorted
+# sets hold eviction scores and expiry times; one hash holds bytes per tenant
+# and in total. Scripts take KEYS = [value key, sizes, scores, expiry, bytes]
+# or the same without the value key.
+
+# Stores a value unless it would put the tenant over quota (ARGV[7], empty
+# for none) or the cache over its limit (ARGV[8]). Returns {stored, tenant
+# shortfall, global shortfall}.
+_SET_SCRIPT = """
+local size = tonumber(ARGV[3])
+local delta = size - tonumber(redis.call('HGET', KEYS[2], KEYS[1]) or '0')
+local tenant_bytes = tonumber(redis.call('HGET', KEYS[5], ARGV[6]) or '0')
+local total = tonumber(redis.call('HGET', KEYS[5], '__total__') or '0')
+local tenant_short = 0
+if ARGV[7] ~= '' then
+    tenant_short = tenant_bytes + delta - tonumber(ARGV[7])
+end
+local global_short = total + delta - tonumber(ARGV[8])
+if tenant_short > 0 or global_short > 0 then
+    return {0, math.max(tenant_short, 0), math.max(global_short, 0)}
+end
+redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])
+redis.call('HSET', KEYS[2], KEYS[1], size)
+if ARGV[4] ~= '' then
+    redis.call('ZADD', KEYS[3], ARGV[4], KEYS[1])
+else
+    redis.call('ZREM', KEYS[3], KEYS[1])
+end
+redis.call('ZADD', KEYS[4], ARGV[5], KEYS[1])
+redis.call('HINCRBY', KEYS[5], ARGV[6], delta)
+redis.call('HINCRBY', KEYS[5], '__total__', delta)
+return {1, 0, 0}
+"""
+
+# Returns a value and adds an access at ARGV[1] to its eviction score. A key
+# Redis already expired or evicted stops counting against its tenant.
+_GET_SCRIPT = """
+local value = redis.call('GET', KEYS[1])
+if not value then
+    local size = redis.call('HGET', KEYS[2], KEYS[1])
+    if size then
+        redis.call('HDEL', KEYS[2], KEYS[1])
+        redis.call('ZREM', KEYS[3], KEYS[1])
+        redis.call('ZREM', KEYS[4], KEYS[1])
+        redis.call('HINCRBY', KEYS[5], ARGV[4], -tonumber(size))
+        redis.call('HINCRBY', KEYS[5], '__total__', -tonumber(size))
+    end
+    return false
+end
+local score = redis.call('ZSCORE', KEYS[3], KEYS[1])
+if score then
+    local span = tonumber(ARGV[3])
+    local rank = math.floor(tonumber(score) / span)
+    local frequency = tonumber(score) - rank * span
+    local now = tonumber(ARGV[1])
+    local half_life = tonumber(ARGV[2])
+    local high = math.max(frequency, now)
+    local low = math.min(frequency, now)
+    frequency = high
+        + half_life * math.log(1 + 2 ^ ((low - high) / half_life)) / math.log(2)
+    redis.call('ZADD', KEYS[3], rank * span + frequency, KEYS[1])
+end
+return value
+"""
+
+# Deletes KEYS[5..] and releases their bytes. Returns {deleted, freed}.
+_REMOVE_SCRIPT = """
+local removed = 0
+local freed = 0
+for i = 5, #KEYS do
+    removed = removed + redis.call('UNLINK', KEYS[i])
+    local size = redis.call('HGET', KEYS[1], KEYS[i])
+    if size then
+        freed = freed + tonumber(size)
+        redis.call('HDEL', KEYS[1], KEYS[i])
+        redis.call('ZREM', KEYS[2], KEYS[i])
+        redis.call('ZREM', KEYS[3], KEYS[i])
+    end
+end
+if freed > 0 then
+    redis.call('HINCRBY', KEYS[4], ARGV[1], -freed)
+    redis.call('HINCRBY', KEYS[4], '__total__', -freed)
+end
+return {removed, freed}
+"""
+
+# Releases the bytes of keys that expired by ARGV[1]; Redis already dropped
+# the values. Returns {released, freed}.
+_RELEASE_EXPIRED_SCRIPT = """
+local expired = redis.call('ZRANGEBYSCORE', KEYS[3], '-inf', ARGV[1])
+local freed = 0
+for _, key in ipairs(expired) do
+    local size = redis.call('HGET', KEYS[1], key)
+    if size then
+        freed = freed + tonumber(size)
+        redis.call('HDEL', KEYS[1], key)
+    end
+    redis.call('ZREM', KEYS[2], key)
+end
+if #expired > 0 then
+    redis.call('ZREMRANGEBYSCORE', KEYS[3], '-inf', ARGV[1])
+    redis.call('HINCRBY', KEYS[4], ARGV[2], -freed)
+    redis.call('HINCRBY', KEYS[4], '__total__', -freed)
+end
+return {#expired, freed}
+"""
+
+# Drops a tenant's accounting after its keys were deleted. Returns its bytes.
+_CLEAR_TENANT_SCRIPT = """
+local bytes = tonumber(redis.call('HGET', KEYS[4], ARGV[1]) or '0')
+redis.call('HDEL', KEYS[4], ARGV[1])
+redis.call('HINCRBY', KEYS[4], '__total__', -bytes)
+redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])
+return bytes
+"""
+
+
 @dataclass
 class CacheEntry:
     """Cache entry with metadata."""
@@ -57,6 +192,8 @@ class CacheEntry:
     priority: CachePriority = CachePriority.MEDIUM
     tags: List[str] = field(default_factory=list)
     metadata: Dict[str, Any] = field(default_factory=dict)
+    size: int = 0  # Encoded bytes
+    score: float = 0.0  # Access frequency decayed over time, see _access_score
 
 
 @dataclass
@@ -119,10 +256,31 @@ class MultiTenantCachingService:
         self.cache_strategy = CacheStrategy.PER_TENANT
         self.default_ttl = 300  # 5 minutes
         self.max_memory_per_tenant = 100 * 1024 * 1024  # 100MB
+        self.max_memory_total = 1024 * 1024 * 1024  # 1GB across all tenants
+        self.eviction_headroom = 0.05  # Extra fraction of a limit freed per pass
+        self.frequency_half_life = 600  # Seconds until an access counts half
+        self.tenant_quotas: Dict[UUID, int] = {}
+
+        # Serialization: values are stored as codec-tagged, optionally compressed
+        # bytes; entries written as plain JSON still decode
+        self.codec = CacheCodec(
+            codec=getattr(self.config, "CACHE_CODEC", None),
+            compression=getattr(self.config, "CACHE_COMPRESSION", None),
+            compression_threshold=getattr(
+                self.config, "CACHE_COMPRESSION_THRESHOLD", 1024
+            ),
+        )
+
+        # Memory mode byte accounting and eviction by tenant; Redis mode keeps
+        # the same accounting in Redis, shared by all instances
+        self.tenant_entries: Dict[Optional[UUID], Dict[str, CacheEntry]] = {}
+        self.tenant_bytes: Dict[Optional[UUID], int] = {}
+        self.total_bytes = 0
 
         # Redis configuration
         self.redis_client: Optional[redis.Redis] = None
         self.redis_cluster: Optional[redis.RedisCluster] = None
+        self._scripts: Dict[str, Any] = {}
 
         # Memory cache fallback
         self.memory_cache: Dict[str, CacheEntry] = {}
@@ -152,7 +310,7 @@ class MultiTenantCachingService:
                 "host": "localhost",
                 "port": 6379,
                 "db": 0,
-                "decode_responses": True,
+                "decode_responses": False,
                 "socket_connect_timeout": 5,
                 "socket_timeout": 5,
                 "retry_on_timeout": True,
@@ -165,7 +323,7 @@ class MultiTenantCachingService:
                 startup_nodes = self.config.REDIS_CLUSTER_NODES
                 self.redis_cluster = redis.RedisCluster(
                     startup_nodes=startup_nodes,
-                    decode_responses=True,
+                    decode_responses=False,
                     socket_connect_timeout=5,
                     socket_timeout=5,
                 )
@@ -227,10 +385,18 @@ class MultiTenantCachingService:
 
         try:
             if self.cache_type == CacheType.REDIS and self.redis_client:
-                value = await self.redis_client.get(cache_key)
+                value = await self._script(_GET_SCRIPT)(
+                    keys=[cache_key, *self._meta_keys(tenant_id)],
+                    args=[
+                        time.time(),
+                        self.frequency_half_life,
+                        PRIORITY_SCORE_SPAN,
+                        self._tenant_field(tenant_id),
+                    ],
+                )
                 if value:
                     await self._record_cache_hit(tenant_id)
-                    return json.loads(value)
+                    return self.codec.decode(value)
                 else:
                     await self._record_cache_miss(tenant_id)
 
@@ -241,9 +407,13 @@ class MultiTenantCachingService:
                 ):
                     entry.access_count += 1
                     entry.last_accessed = datetime.utcnow()
+                    entry.score = self._access_score(entry.score, time.time())
                     await self._record_cache_hit(tenant_id)
                     return entry.value
                 else:
+                    if entry:
+                        del self.memory_cache[cache_key]
+                        self._untrack_entry(cache_key, tenant_id)
                     await self._record_cache_miss(tenant_id)
 
             return None
@@ -266,10 +436,8 @@ class MultiTenantCachingService:
         ttl = ttl or self.default_ttl
 
         try:
-            # Check tenant memory limits
-            if tenant_id and await self._check_tenant_memory_limit(tenant_id):
-                logger.warning(f"Tenant {tenant_id} exceeded memory limit")
-                return False
+            # Encode once: the size feeds tenant accounting, the bytes go to Redis
+            serialized_value = self.codec.encode(value)
 
             cache_entry = CacheEntry(
                 key=cache_key,
@@ -279,15 +447,20 @@ class MultiTenantCachingService:
                 expires_at=datetime.utcnow() + timedelta(seconds=ttl) if ttl else None,
                 priority=priority,
                 tags=tags or [],
+                size=len(serialized_value),
+                score=time.time(),
             )
 
             if self.cache_type == CacheType.REDIS and self.redis_client:
-                serialized_value = json.dumps(value)
-                await self.redis_client.setex(cache_key, ttl, serialized_value)
+                if not await self._redis_set(cache_entry, serialized_value, ttl):
+                    return False
                 await self._record_cache_set(tenant_id)
 
             elif self.cache_type == CacheType.MEMORY:
+                if not await self._make_room(tenant_id, cache_key, cache_entry.size):
+                    return False
                 self.memory_cache[cache_key] = cache_entry
+                self._track_entry(cache_entry)
                 await self._record_cache_set(tenant_id)
 
             return True
@@ -302,14 +475,18 @@ class MultiTenantCachingService:
 
         try:
             if self.cache_type == CacheType.REDIS and self.redis_client:
-                result = await self.redis_client.delete(cache_key)
-                if result > 0:
+                removed, _ = await self._script(_REMOVE_SCRIPT)(
+                    keys=[*self._meta_keys(tenant_id), cache_key],
+                    args=[self._tenant_field(tenant_id)],
+                )
+                if removed > 0:
                     await self._record_cache_delete(tenant_id)
                     return True
 
             elif self.cache_type == CacheType.MEMORY:
                 if cache_key in self.memory_cache:
                     del self.memory_cache[cache_key]
+                    self._untrack_entry(cache_key, tenant_id)
                     await self._record_cache_delete(tenant_id)
                     return True
 
@@ -325,11 +502,14 @@ class MultiTenantCachingService:
             cleared_count = 0
 
             if self.cache_type == CacheType.REDIS and self.redis_client:
-                # Find all keys for the tenant
-                tenant_pattern = f"tenant:{tenant_id}:*"
-                keys = await self.redis_client.keys(tenant_pattern)
-                if keys:
-                    cleared_count = await self.redis_client.delete(*keys)
+                # SCAN rather than KEYS so other tenants are not blocked
+                cleared_count = await unlink_matching(
+                    self.redis_client, f"tenant:{tenant_id}:*"
+                )
+                await self._script(_CLEAR_TENANT_SCRIPT)(
+                    keys=self._meta_keys(tenant_id),
+                    args=[self._tenant_field(tenant_id)],
+                )
 
             elif self.cache_type == CacheType.MEMORY:
                 # Remove tenant entries from memory cache
@@ -340,9 +520,11 @@ class MultiTenantCachingService:
                     del self.memory_cache[key]
                 cleared_count = len(tenant_keys)
 
-            # Reset tenant metrics
+            # Reset tenant metrics and byte accounting
             if tenant_id in self.tenant_metrics:
                 del self.tenant_metrics[tenant_id]
+            self.tenant_entries.pop(tenant_id, None)
+            self.total_bytes -= self.tenant_bytes.pop(tenant_id, 0)
 
             logger.info(f"Cleared {cleared_count} cache entries for tenant {tenant_id}")
             return cleared_count
@@ -353,7 +535,17 @@ class MultiTenantCachingService:
 
     async def get_tenant_cache_metrics(self, tenant_id: UUID) -> CacheMetrics:
         """Get cache metrics for a specific tenant."""
-        return self.tenant_metrics.get(tenant_id, CacheMetrics())
+        metrics = self.tenant_metrics.get(tenant_id, CacheMetrics())
+        usage, _, _ = await self._usage(tenant_id)
+        metrics.total_size = usage.get(tenant_id, 0)
+        return metrics
+
+    def set_tenant_quota(self, tenant_id: UUID, max_bytes: Optional[int]):
+        """Override the cache memory quota for a tenant, or reset it with None."""
+        if max_bytes is None:
+            self.tenant_quotas.pop(tenant_id, None)
+        else:
+            self.tenant_quotas[tenant_id] = max_bytes
 
     async def get_global_cache_metrics(self) -> Dict[str, Any]:
         """Get global cache metrics across all tenants."""
@@ -371,9 +563,7 @@ class MultiTenantCachingService:
 
             # Get memory usage
             if self.cache_type == CacheType.MEMORY:
-                total_metrics.total_size = sum(
-                    len(json.dumps(entry.value)) for entry in self.memory_cache.values()
-                )
+                total_metrics.total_size = self.total_bytes
             elif self.cache_type == CacheType.REDIS and self.redis_client:
                 info = await self.redis_client.info()
                 total_metrics.total_size = info.get("used_memory", 0)
@@ -402,51 +592,19 @@ class MultiTenantCachingService:
                 "memory_freed": 0,
             }
 
-            if self.cache_type == CacheType.MEMORY:
-                # Clean up expired entries
-                expired_keys = [
-                    k
-                    for k, v in self.memory_cache.items()
-                    if v.expires_at and v.expires_at < datetime.utcnow()
-                ]
-
-                for key in expired_keys:
-                    del self.memory_cache[key]
-                optimization_results["expired_removed"] = len(expired_keys)
-
-                # Remove low priority items if memory is tight
-                if tenant_id:
-                    tenant_entries = [
-                        (k, v)
-                        for k, v in self.memory_cache.items()
-                        if v.tenant_id == tenant_id
-                    ]
-
-                    # Sort by priority and last access time
-                    tenant_entries.sort(
-                        key=lambda x: (
-                            x[1].priority.value,
-                            x[1].last_accessed or datetime.min,
-                        )
-                    )
-
-                    # Remove lowest priority items if needed
-                    memory_used = sum(
-                        len(json.dumps(v.value)) for _, v in tenant_entries
-                    )
-                    if memory_used > self.max_memory_per_tenant:
-                        to_remove = tenant_entries[
-                            : len(tenant_entries) // 4
-                        ]  # Remove 25%
-                        for key, _ in to_remove:
-                            if key in self.memory_cache:
-                                del self.memory_cache[key]
-                        optimization_results["low_priority_removed"] = len(to_remove)
+            # Release expired entries; Redis has already dropped the keys themselves
+            removed, freed = await self._release_expired()
+            optimization_results["expired_removed"] = removed
+            optimization_results["memory_freed"] = freed
 
-            elif self.cache_type == CacheType.REDIS and self.redis_client:
-                # Redis automatically handles expiration
-                # We could implement manual optimization here
-                pass
+            # Bring the tenant back under its quota, coldest entries first
+            if tenant_id:
+                usage, _, _ = await self._usage(tenant_id)
+                overage = usage.get(tenant_id, 0) - self._tenant_quota(tenant_id)
+                if overage > 0:
+                    removed, freed = await self._evict_entries(tenant_id, overage)
+                    optimization_results["low_priority_removed"] = removed
+                    optimization_results["memory_freed"] += freed
 
             return optimization_results
 
@@ -645,17 +803,397 @@ class MultiTenantCachingService:
         else:
             return f"global:{key}"
 
-    async def _check_tenant_memory_limit(self, tenant_id: UUID) -> bool:
-        """Check if tenant has exceeded memory limit."""
-        if self.cache_type != CacheType.MEMORY:
+    async def _redis_set(
+        self, entry: CacheEntry, serialized_value: bytes, ttl: int
+    ) -> bool:
+        """Store an encoded entry in Redis, evicting what its limits require.
+
+        The script re-checks both limits, since other instances may have
+        filled the cache after the evictions were planned; one more planning
+        pass then picks up their writes.
+        """
+        rank = PRIORITY_RANK[entry.priority]
+        score = (
+            ""
+            if entry.priority == CachePriority.CRITICAL
+            else rank * PRIORITY_SCORE_SPAN + entry.score
+        )
+        quota = self._tenant_quota(entry.tenant_id) if entry.tenant_id else ""
+
+        for _ in range(2):
+            if not await self._make_room(entry.tenant_id, entry.key, entry.size):
+                return False
+
+            stored, _, _ = await self._script(_SET_SCRIPT)(
+                keys=[entry.key, *self._meta_keys(entry.tenant_id)],
+                args=[
+                    serialized_value,
+                    ttl,
+                    entry.size,
+                    score,
+                    time.time() + ttl,
+                    self._tenant_field(entry.tenant_id),
+                    quota,
+                    self.max_memory_total,
+                ],
+            )
+            if stored:
+                return True
+
+        logger.warning(f"Cache limits changed concurrently, {entry.key} not stored")
+        return False
+
+    async def _make_room(
+        self, tenant_id: Optional[UUID], cache_key: str, size: int
+    ) -> bool:
+        """Evict what storing `size` bytes under `cache_key` requires.
+
+        Returns False, without evicting anything, when the entry cannot fit.
+        """
+        plan = await self._plan_evictions(tenant_id, cache_key, size)
+        if plan is None:
             return False
 
-        tenant_entries = [
-            v for v in self.memory_cache.values() if v.tenant_id == tenant_id
+        for victim, keys in plan.items():
+            await self._evict_keys(victim, keys)
+        return True
+
+    async def _plan_evictions(
+        self, tenant_id: Optional[UUID], cache_key: str, size: int
+    ) -> Optional[Dict[Optional[UUID], List[str]]]:
+        """Choose the keys to evict, by tenant, so an entry fits both limits.
+
+        The tenant quota is met from the tenant's own coldest entries. The
+        global limit is met from whichever tenant is furthest above its fair
+        share, an equal split of the limit, so one noisy tenant pays for its
+        own growth instead of evicting everyone. Both limits are planned
+        before anything is evicted; None means the entry cannot fit.
+        """
+        quota = self._tenant_quota(tenant_id) if tenant_id else None
+        if (quota is not None and size > quota) or size > self.max_memory_total:
+            logger.warning(f"Cache entry {cache_key} is larger than its limits")
+            return None
+
+        usage, total, replaced = await self._usage(tenant_id, cache_key)
+        tenant_short, global_short = self._shortfalls(
+            usage, total, replaced, tenant_id, size
+        )
+        if tenant_short <= 0 and global_short <= 0:
+            return {}
+
+        # Expired entries are released first, they cost nothing to drop
+        await self._release_expired(None if global_short > 0 else [tenant_id])
+        usage, total, replaced = await self._usage(tenant_id, cache_key)
+        tenant_short, global_short = self._shortfalls(
+            usage, total, replaced, tenant_id, size
+        )
+
+        plan: Dict[Optional[UUID], List[str]] = {}
+        candidates: Dict[Optional[UUID], List[Tuple[str, int]]] = {}
+        freed: Dict[Optional[UUID], int] = {}
+
+        if tenant_short > 0:
+            taken = await self._take_victims(
+                tenant_id,
+                tenant_short + int(quota * self.eviction_headroom),
+                cache_key,
+                candidates,
+                plan,
+            )
+            if taken < tenant_short:
+                logger.warning(f"Tenant {tenant_id} exceeded memory limit")
+                return None
+            freed[tenant_id] = taken
+            global_short -= taken
+
+        if global_short > 0:
+            to_free = global_short + int(self.max_memory_total * self.eviction_headroom)
+            fair_share = self.max_memory_total // len(set(usage) | {tenant_id})
+            exhausted = set()
+
+            while global_short > 0:
+                remaining = {
+                    t: bytes_used - freed.get(t, 0)
+                    for t, bytes_used in usage.items()
+                    if t not in exhausted
+                }
+                if not remaining:
+                    break
+
+                victim = max(remaining, key=remaining.get)
+                over_share = remaining[victim] - fair_share
+                taken = await self._take_victims(
+                    victim,
+                    min(max(over_share, 1), to_free),
+                    cache_key,
+                    candidates,
+                    plan,
+                )
+                if not taken:
+                    exhausted.add(victim)
+
+                freed[victim] = freed.get(victim, 0) + taken
+                to_free -= taken
+                global_short -= taken
+
+            if global_short > 0:
+                logger.warning("Cache memory limit reached, entry not stored")
+                return None
+
+        return plan
+
+    def _shortfalls(
+        self,
+        usage: Dict[Optional[UUID], int],
+        total: int,
+        replaced: int,
+        tenant_id: Optional[UUID],
+        size: int,
+    ) -> Tuple[int, int]:
+        """Bytes over the tenant quota and the global limit after a write."""
+        tenant_short = 0
+        if tenant_id:
+            quota = self._tenant_quota(tenant_id)
+            tenant_short = usage.get(tenant_id, 0) - replaced + size - quota
+        global_short = total - replaced + size - self.max_memory_total
+        return tenant_short, global_short
+
+    async def _take_victims(
+        self,
+        tenant_id: Optional[UUID],
+        bytes_needed: int,
+        exclude_key: str,
+        candidates: Dict[Optional[UUID], List[Tuple[str, int]]],
+        plan: Dict[Optional[UUID], List[str]],
+    ) -> int:
+        """Add a tenant's coldest unplanned entries to the plan.
+
+        Returns the bytes they free, at least `bytes_needed` unless the
+        tenant runs out of evictable entries.
+        """
+        if tenant_id not in candidates:
+            coldest_first = await self._eviction_candidates(tenant_id, exclude_key)
+            candidates[tenant_id] = coldest_first[::-1]
+
+        pending = candidates[tenant_id]
+        freed = 0
+        while pending and freed < bytes_needed:
+            key, size = pending.pop()
+            plan.setdefault(tenant_id, []).append(key)
+            freed += size
+        return freed
+
+    async def _evict_entries(
+        self,
+        tenant_id: Optional[UUID],
+        bytes_needed: int,
+        exclude_key: Optional[str] = None,
+    ) -> Tuple[int, int]:
+        """Evict a tenant's least valuable entries until `bytes_needed` are freed.
+
+        Returns (entries, bytes) freed.
+        """
+        plan: Dict[Optional[UUID], List[str]] = {}
+        await self._take_victims(tenant_id, bytes_needed, exclude_key, {}, plan)
+        return await self._evict_keys(tenant_id, plan.get(tenant_id, []))
+
+    async def _eviction_candidates(
+        self, tenant_id: Optional[UUID], exclude_key: Optional[str]
+    ) -> List[Tuple[str, int]]:
+        """A tenant's evictable (key, size) pairs, least valuable first.
+
+        Entries go in order of priority, then decayed access frequency.
+        Critical entries are kept.
+        """
+        if self.cache_type == CacheType.REDIS and self.redis_client:
+            keys = await self.redis_client.zrange(self._scores_key(tenant_id), 0, -1)
+            if not keys:
+                return []
+            sizes = await self.redis_client.hmget(self._sizes_key(tenant_id), keys)
+            return [
+                (key.decode(), int(size))
+                for key, size in zip(keys, sizes)
+                if size is not None and key.decode() != exclude_key
+            ]
+
+        entries = [
+            entry
+            for key, entry in self.tenant_entries.get(tenant_id, {}).items()
+            if key != exclude_key and entry.priority != CachePriority.CRITICAL
         ]
-        total_size = sum(len(json.dumps(entry.value)) for entry in tenant_entries)
+        entries.sort(key=lambda entry: (PRIORITY_RANK[entry.priority], entry.score))
+        return [(entry.key, entry.size) for entry in entries]
+
+    async def _evict_keys(
+        self, tenant_id: Optional[UUID], keys: List[str]
+    ) -> Tuple[int, int]:
+        """Remove a tenant's entries and return (entries, bytes) freed."""
+        if not keys:
+            return 0, 0
+
+        if self.cache_type == CacheType.REDIS and self.redis_client:
+            _, freed = await self._script(_REMOVE_SCRIPT)(
+                keys=[*self._meta_keys(tenant_id), *keys],
+                args=[self._tenant_field(tenant_id)],
+            )
+        else:
+            freed = 0
+            for key in keys:
+                self.memory_cache.pop(key, None)
+                freed += self._untrack_entry(key, tenant_id)
+
+        await self._record_cache_evictions(tenant_id, len(keys))
+        return len(keys), freed
+
+    async def _usage(
+        self, tenant_id: Optional[UUID], cache_key: Optional[str] = None
+    ) -> Tuple[Dict[Optional[UUID], int], int, int]:
+        """Bytes by tenant, total bytes and the bytes stored under `cache_key`."""
+        if self.cache_type == CacheType.REDIS and self.redis_client:
+            pipe = self.redis_client.pipeline(transaction=False)
+            pipe.hgetall(self._bytes_key())
+            pipe.hget(self._sizes_key(tenant_id), cache_key or "")
+            stored_bytes, replaced = await pipe.execute()
+
+            usage = {
+                self._field_tenant(name.decode()): int(value)
+                for name, value in stored_bytes.items()
+                if name.decode() != TOTAL_FIELD
+            }
+            total = int(stored_bytes.get(TOTAL_FIELD.encode(), 0))
+            return usage, total, int(replaced or 0)
+
+        replaced = self._tracked_size(tenant_id, cache_key) if cache_key else 0
+        return dict(self.tenant_bytes), self.total_bytes, replaced
+
+    async def _release_expired(
+        self, tenant_ids: Optional[List[Optional[UUID]]] = None
+    ) -> Tuple[int, int]:
+        """Release expired entries of the given tenants, or of all tenants.
+
+        Returns (entries, bytes) released.
+        """
+        if self.cache_type == CacheType.REDIS and self.redis_client:
+            if tenant_ids is None:
+                usage, _, _ = await self._usage(None)
+                tenant_ids = list(usage)
+
+            released, freed = 0, 0
+            for entry_tenant in tenant_ids:
+                count, size = await self._script(_RELEASE_EXPIRED_SCRIPT)(
+                    keys=self._meta_keys(entry_tenant),
+                    args=[time.time(), self._tenant_field(entry_tenant)],
+                )
+                released += count
+                freed += size
+            return released, freed
+
+        released, freed = 0, 0
+        for entry_tenant in tenant_ids or list(self.tenant_entries):
+            count, size = self._release_expired_entries(entry_tenant)
+            released += count
+            freed += size
+        return released, freed
+
+    def _access_score(self, score: float, now: float) -> float:
+        """Add an access at `now` to an access frequency score.
+
+        A score is half_life * log2 of the sum of 2 ** (t / half_life) over
+        past access times t. Each access counts half as much every half life,
+        so entries that were popular long ago fall behind recently used ones,
+        and comparing two scores compares their decayed access counts.
+        """
+        half_life = self.frequency_half_life
+        high, low = max(score, now), min(score, now)
+        return high + half_life * math.log2(1 + 2 ** ((low - high) / half_life))
+
+    def _script(self, source: str) -> Any:
+        """Register a Lua script on the Redis client on first use."""
+        script = self._scripts.get(source)
+        if script is None:
+            script = self.redis_client.register_script(source)
+            self._scripts[source] = script
+        return script
+
+    @staticmethod
+    def _tenant_field(tenant_id: Optional[UUID]) -> str:
+        """Name of a tenant in Redis accounting keys."""
+        return str(tenant_id) if tenant_id else "global"
+
+    @staticmethod
+    def _field_tenant(name: str) -> Optional[UUID]:
+        """Tenant named by `_tenant_field`."""
+        return None if name == "global" else UUID(name)
+
+    def _bytes_key(self) -> str:
+        """Redis hash of bytes stored per tenant and in total."""
+        return "cache_meta:bytes"
+
+    def _sizes_key(self, tenant_id: Optional[UUID]) -> str:
+        """Redis hash of a tenant's keys and their encoded sizes."""
+        return f"cache_meta:sizes:{self._tenant_field(tenant_id)}"
+
+    def _scores_key(self, tenant_id: Optional[UUID]) -> str:
+        """Redis sorted set of a tenant's evictable keys by eviction score."""
+        return f"cache_meta:scores:{self._tenant_field(tenant_id)}"
+
+    def _expiry_key(self, tenant_id: Optional[UUID]) -> str:
+        """Redis sorted set of a tenant's keys by expiry time."""
+        return f"cache_meta:expiry:{self._tenant_field(tenant_id)}"
+
+    def _meta_keys(self, tenant_id: Optional[UUID]) -> List[str]:
+        """Accounting keys in the order the scripts expect them."""
+        return [
+            self._sizes_key(tenant_id),
+            self._scores_key(tenant_id),
+            self._expiry_key(tenant_id),
+            self._bytes_key(),
+        ]
+
+    def _tenant_quota(self, tenant_id: UUID) -> int:
+        """Cache memory quota for a tenant in bytes."""
+        return self.tenant_quotas.get(tenant_id, self.max_memory_per_tenant)
+
+    def _tracked_size(self, tenant_id: Optional[UUID], cache_key: str) -> int:
+        """Encoded size currently accounted for a cache key."""
+        entry = self.tenant_entries.get(tenant_id, {}).get(cache_key)
+        return entry.size if entry else 0
+
+    def _track_entry(self, entry: CacheEntry):
+        """Account an entry's encoded size against its tenant and the total."""
+        entries = self.tenant_entries.setdefault(entry.tenant_id, {})
+        previous = entries.get(entry.key)
+        delta = entry.size - (previous.size if previous else 0)
+        entries[entry.key] = entry
+        self.tenant_bytes[entry.tenant_id] = (
+            self.tenant_bytes.get(entry.tenant_id, 0) + delta
+        )
+        self.total_bytes += delta
 
-        return total_size >= self.max_memory_per_tenant
+    def _untrack_entry(self, cache_key: str, tenant_id: Optional[UUID]) -> int:
+        """Release the bytes accounted for a removed entry and return them."""
+        entry = self.tenant_entries.get(tenant_id, {}).pop(cache_key, None)
+        if not entry:
+            return 0
+
+        self.tenant_bytes[tenant_id] -= entry.size
+        self.total_bytes -= entry.size
+        return entry.size
+
+    def _release_expired_entries(self, tenant_id: Optional[UUID]) -> Tuple[int, int]:
+        """Drop expired tenant entries and return (entries, bytes) released."""
+        now = datetime.utcnow()
+        expired_keys = [
+            key
+            for key, entry in self.tenant_entries.get(tenant_id, {}).items()
+            if entry.expires_at and entry.expires_at <= now
+        ]
+
+        freed = 0
+        for key in expired_keys:
+            freed += self._untrack_entry(key, tenant_id)
+            self.memory_cache.pop(key, None)
+        return len(expired_keys), freed
 
     async def _record_cache_hit(self, tenant_id: Optional[UUID]):
         """Record cache hit."""
@@ -685,6 +1223,13 @@ class MultiTenantCachingService:
                 self.tenant_metrics[tenant_id] = CacheMetrics()
             self.tenant_metrics[tenant_id].deletes += 1
 
+    async def _record_cache_evictions(self, tenant_id: Optional[UUID], count: int):
+        """Record cache evictions."""
+        if tenant_id:
+            if tenant_id not in self.tenant_metrics:
+                self.tenant_metrics[tenant_id] = CacheMetrics()
+            self.tenant_metrics[tenant_id].evictions += count
+
     async def health_check(self) -> Dict[str, Any]:
         """Perform health check on caching service."""
         try:
@@ -10,6 +10,7 @@ import httpx
 from app.auth import create_access_token
 from app.models.tenant import SSOConfiguration, Tenant
 from app.models.user import Role, User
+from app.services.tenant_cache import tenant_lookup_cache
 from fastapi import HTTPException, status
 from jose import jwt
 from sqlalchemy.orm import Session
@@ -347,6 +348,7 @@ class SSOService:
         self.db.add(user)
         self.db.commit()
         self.db.refresh(user)
+        tenant_lookup_cache.invalidate_user(user.email)
 
         return user
 
@@ -455,5 +457,6 @@ class SSOService:
         self.db.add(user)
         self.db.commit()
         self.db.refresh(user)
+        tenant_lookup_cache.invalidate_user(user.email)
 
         return user
@@ -1,41 +1,53 @@
 """AI step executor implementation"""
 
-from typing import Any, Dict
+from typing import Any, AsyncIterator, Dict, Union
 
-from .base_executor import BaseStepExecutor, ExecutionResult, StepType
+from app.services.ai_service import get_ai_service
 
+from .base_executor import (
+    ExecutionResult,
+    StepType,
+    StreamChunk,
+    StreamingStepExecutor,
+)
 
-class AIStepExecutor(BaseStepExecutor):
+
+class AIStepExecutor(StreamingStepExecutor):
     """Executor for AI-powered processing steps"""
 
     def __init__(self):
         super().__init__()
         self.step_type = StepType.AI
 
-    async def execute(
+    async def execute_stream(
         self, input_data: Dict[str, Any], context: Dict[str, Any]
-    ) -> ExecutionResult:
-        """Execute AI processing"""
+    ) -> AsyncIterator[Union[StreamChunk, ExecutionResult]]:
+        """Execute AI processing, emitting response tokens as they arrive"""
         try:
             if not self.validate_input(input_data):
-                return ExecutionResult(
+                yield ExecutionResult(
                     success=False, data={}, error="Invalid AI input data"
                 )
+                return
 
             prompt = input_data.get("prompt", "")
             data_context = input_data.get("data", {})
 
-            # Simulate AI processing (replace with actual AI service call)
-            ai_result = await self._process_with_ai(prompt, data_context)
+            tokens = []
+            async for token in self._stream_with_ai(prompt, data_context):
+                tokens.append(token)
+                yield StreamChunk(
+                    data={"ai_response_delta": token}, sequence=len(tokens) - 1
+                )
 
-            return ExecutionResult(
+            yield ExecutionResult(
                 success=True,
-                data={"ai_response": ai_result},
-                metadata={"prompt_length": len(prompt)},
+                data={"ai_response": "".join(tokens)},
+                metadata={"prompt_length": len(prompt), "chunks": len(tokens)},
             )
 
         except Exception as e:
-            return ExecutionResult(
+            yield ExecutionResult(
                 success=False, data={}, error=f"AI execution failed: {str(e)}"
             )
 
@@ -43,7 +55,9 @@ class AIStepExecutor(BaseStepExecutor):
         """Validate AI input data"""
         return isinstance(input_data, dict) and "prompt" in input_data
 
-    async def _process_with_ai(self, prompt: str, context: Dict[str, Any]) -> str:
-        """Process data using AI service"""
-        # Placeholder for actual AI service integration
-        return f"AI processed: {prompt} with context keys: {list(context.keys())}"
+    async def _stream_with_ai(
+        self, prompt: str, context: Dict[str, Any]
+    ) -> AsyncIterator[str]:
+        """Stream response tokens from the AI service as the provider sends them"""
+        async for token in get_ai_service().stream_text(prompt=prompt, context=context):
+            yield token
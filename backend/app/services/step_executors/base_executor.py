@@ -1,9 +1,10 @@
 """Base executor interface for workflow steps"""
 
+import asyncio
 from abc import ABC, abstractmethod
 from dataclasses import dataclass
 from enum import Enum
-from typing import Any, Dict
+from typing import Any, AsyncIterator, Dict, Optional, Union
 
 
 class StepType(Enum):
@@ -22,9 +23,70 @@ class ExecutionResult:
     metadata: Dict[str, Any] = None
 
 
+@dataclass
+class StreamChunk:
+    """Partial output emitted by a streaming step before it completes"""
+
+    data: Dict[str, Any]
+    sequence: int = 0
+
+
+class StepStream:
+    """Bounded channel carrying one producer step's chunks to one consumer
+
+    A full buffer makes the producer wait, so a slow consumer throttles the
+    producer instead of letting chunks pile up in memory.
+    """
+
+    _END = object()
+
+    def __init__(self, source_step_id: str, maxsize: int = 64):
+        self.source_step_id = source_step_id
+        self.result: Optional[Dict[str, Any]] = None
+        self.error: Optional[str] = None
+        self._queue: asyncio.Queue = asyncio.Queue(maxsize=maxsize)
+        self._abandoned = False
+
+    async def send(self, chunk: StreamChunk) -> None:
+        """Forward a chunk, waiting while the buffer is full"""
+        if not self._abandoned:
+            await self._queue.put(chunk)
+
+    async def close(
+        self, result: Optional[Dict[str, Any]] = None, error: Optional[str] = None
+    ) -> None:
+        """Signal the end of the stream with the producer's final outcome"""
+        self.result = result
+        self.error = error
+        if not self._abandoned:
+            await self._queue.put(self._END)
+
+    def abandon(self) -> None:
+        """Stop accepting chunks and release a producer blocked on send"""
+        self._abandoned = True
+        while not self._queue.empty():
+            self._queue.get_nowait()
+
+    def __aiter__(self) -> "StepStream":
+        return self
+
+    async def __anext__(self) -> StreamChunk:
+        item = await self._queue.get()
+        if item is self._END:
+            if self.error:
+                raise ValueError(
+                    f"Upstream step {self.source_step_id} failed: {self.error}"
+                )
+            raise StopAsyncIteration
+        return item
+
+
 class BaseStepExecutor(ABC):
     """Abstract base class for all step executors"""
 
+    # Executors that can start while their upstream steps are still streaming
+    accepts_stream = False
+
     def __init__(self):
         self.step_type = None
 
@@ -41,3 +103,37 @@ class BaseStepExecutor(ABC):
     def get_step_type(self) -> StepType:
         """Return the step type this executor handles"""
         return self.step_type
+
+    async def execute_with_streams(
+        self,
+        input_data: Dict[str, Any],
+        context: Dict[str, Any],
+        streams: Dict[str, StepStream],
+    ) -> ExecutionResult:
+        """Execute while consuming upstream streams; used when accepts_stream"""
+        raise NotImplementedError(
+            f"{type(self).__name__} does not accept streamed input"
+        )
+
+
+class StreamingStepExecutor(BaseStepExecutor):
+    """Executor that emits partial output before its final result"""
+
+    @abstractmethod
+    def execute_stream(
+        self, input_data: Dict[str, Any], context: Dict[str, Any]
+    ) -> AsyncIterator[Union[StreamChunk, ExecutionResult]]:
+        """Yield chunks as they are produced, then the ExecutionResult last"""
+
+    async def execute(
+        self, input_data: Dict[str, Any], context: Dict[str, Any]
+    ) -> ExecutionResult:
+        """Execute by draining the stream and returning its final result"""
+        result = None
+        async for item in self.execute_stream(input_data, context):
+            if isinstance(item, ExecutionResult):
+                result = item
+
+        return result or ExecutionResult(
+            success=False, data={}, error="Stream ended without a result"
+        )
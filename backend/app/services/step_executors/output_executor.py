@@ -2,12 +2,20 @@
 
 from typing import Any, Dict
 
-from .base_executor import BaseStepExecutor, ExecutionResult, StepType
+from .base_executor import (
+    BaseStepExecutor,
+    ExecutionResult,
+    StepStream,
+    StepType,
+    StreamChunk,
+)
 
 
 class OutputStepExecutor(BaseStepExecutor):
     """Executor for output/result delivery steps"""
 
+    accepts_stream = True
+
     def __init__(self):
         super().__init__()
         self.step_type = StepType.OUTPUT
@@ -39,6 +47,41 @@ class OutputStepExecutor(BaseStepExecutor):
                 success=False, data={}, error=f"Output execution failed: {str(e)}"
             )
 
+    async def execute_with_streams(
+        self,
+        input_data: Dict[str, Any],
+        context: Dict[str, Any],
+        streams: Dict[str, StepStream],
+    ) -> ExecutionResult:
+        """Deliver upstream chunks as they arrive, then the assembled output"""
+        try:
+            destination = input_data.get("destination", "default")
+            output_data = dict(input_data.get("data", {}))
+            streamed_chunks = 0
+
+            for step_id, stream in streams.items():
+                async for chunk in stream:
+                    await self._deliver_chunk(chunk, step_id, destination, context)
+                    streamed_chunks += 1
+                output_data[step_id] = stream.result or {}
+
+            delivery_result = await self._deliver_output(output_data, destination)
+
+            return ExecutionResult(
+                success=True,
+                data={
+                    "delivery_status": delivery_result,
+                    "destination": destination,
+                    "streamed_chunks": streamed_chunks,
+                },
+                metadata={"output_size": len(str(output_data))},
+            )
+
+        except Exception as e:
+            return ExecutionResult(
+                success=False, data={}, error=f"Output execution failed: {str(e)}"
+            )
+
     def validate_input(self, input_data: Dict[str, Any]) -> bool:
         """Validate output data"""
         return isinstance(input_data, dict) and "data" in input_data
@@ -47,3 +90,24 @@ class OutputStepExecutor(BaseStepExecutor):
         """Deliver output to specified destination"""
         # Placeholder for actual output delivery logic
         return f"Delivered to {destination}"
+
+    async def _deliver_chunk(
+        self,
+        chunk: StreamChunk,
+        source_step_id: str,
+        destination: str,
+        context: Dict[str, Any],
+    ) -> None:
+        """Push a partial upstream result to clients watching the execution"""
+        send = context.get("stream_sink")
+        if send is None:
+            return
+        await send(
+            {
+                "type": "output_chunk",
+                "source_step_id": source_step_id,
+                "destination": destination,
+                "sequence": chunk.sequence,
+                "data": chunk.data,
+            }
+        )
@@ -0,0 +1,154 @@
+"""Opt-in memoisation of deterministic workflow step outputs."""
+
+import json
+import logging
+import os
+import time
+from typing import Any, Dict, Optional, Tuple
+
+import redis.asyncio as aioredis
+from app.services.workflow_plan import hash_definition
+from cachetools import LRUCache
+
+logger = logging.getLogger(__name__)
+
+DEFAULT_NAMESPACE = "global"
+
+
+class InMemoryStepCacheBackend:
+    """Process-local store with a TTL per entry, bounded by LRU eviction."""
+
+    def __init__(self, maxsize: int = 10000):
+        self._entries: LRUCache = LRUCache(maxsize=maxsize)
+
+    async def get(self, key: str) -> Optional[str]:
+        entry: Optional[Tuple[float, str]] = self._entries.get(key)
+        if entry is None:
+            return None
+
+        expires_at, value = entry
+        if expires_at <= time.monotonic():
+            self._entries.pop(key, None)
+            return None
+        return value
+
+    async def set(self, key: str, value: str, ttl: int) -> None:
+        self._entries[key] = (time.monotonic() + ttl, value)
+
+    async def clear(self) -> None:
+        self._entries.clear()
+
+
+class RedisStepCacheBackend:
+    """Redis store shared by every engine and worker process."""
+
+    def __init__(
+        self, redis_url: Optional[str] = None, prefix: str = "workflow_step_cache:"
+    ):
+        self.redis_url = redis_url or os.getenv("REDIS_URL", "redis://localhost:6379")
+        self.prefix = prefix
+        self._client: Optional[aioredis.Redis] = None
+
+    @property
+    def client(self) -> aioredis.Redis:
+        if self._client is None:
+            self._client = aioredis.from_url(self.redis_url, decode_responses=True)
+        return self._client
+
+    async def get(self, key: str) -> Optional[str]:
+        return await self.client.get(self.prefix + key)
+
+    async def set(self, key: str, value: str, ttl: int) -> None:
+        await self.client.set(self.prefix + key, value, ex=ttl)
+
+    async def close(self) -> None:
+        if self._client is not None:
+            await self._client.aclose()
+            self._client = None
+
+
+class StepResultCache:
+    """Memoises step outputs keyed by step type, step config and step input.
+
+    Caching is opt-in per step, since only deterministic steps may be served
+    from it: a step enables it with ``"cache": true`` (default TTL),
+    ``"cache": <seconds>`` or ``"cache": {"ttl": <seconds>}`` in its config.
+    Keys are namespaced per tenant so tenants never share outputs. Backend
+    failures are logged and treated as misses; the step then simply runs.
+    """
+
+    def __init__(self, backend: Any = None, default_ttl: int = 3600):
+        self.backend = backend or InMemoryStepCacheBackend()
+        self.default_ttl = default_ttl
+
+    def ttl_for(self, step_config: Dict[str, Any]) -> Optional[int]:
+        """Return the TTL a step opted into, or None if it is not cached."""
+        setting = step_config.get("cache")
+
+        if isinstance(setting, dict):
+            setting = setting.get("ttl", True) if setting else False
+        if setting is True:
+            return self.default_ttl
+        if isinstance(setting, (int, float)) and not isinstance(setting, bool):
+            return int(setting) if setting > 0 else None
+        return None
+
+    def key_for(
+        self,
+        step_type: str,
+        step_config: Dict[str, Any],
+        input_data: Dict[str, Any],
+        namespace: Optional[str] = None,
+    ) -> str:
+        """Build the cache key of one step invocation."""
+        return ":".join(
+            [
+                namespace or DEFAULT_NAMESPACE,
+                step_type,
+                hash_definition(step_config),
+                hash_definition(input_data),
+            ]
+        )
+
+    async def get(self, key: str) -> Optional[Dict[str, Any]]:
+        """Return the cached output for key, or None on a miss."""
+        try:
+            value = await self.backend.get(key)
+        except Exception as e:
+            logger.warning(f"Step cache lookup failed: {e}")
+            return None
+        return json.loads(value) if value is not None else None
+
+    async def set(self, key: str, output_data: Dict[str, Any], ttl: int) -> None:
+        """Store a step output; outputs that are not JSON are not cached."""
+        try:
+            value = json.dumps(output_data)
+        except (TypeError, ValueError) as e:
+            logger.debug(f"Step output is not cacheable: {e}")
+            return
+
+        try:
+            await self.backend.set(key, value, ttl)
+        except Exception as e:
+            logger.warning(f"Step cache store failed: {e}")
+
+
+step_result_cache = StepResultCache()
+_configured_step_result_cache: Optional[StepResultCache] = None
+
+
+def get_step_result_cache() -> StepResultCache:
+    """Return the shared step cache configured by WORKFLOW_STEP_CACHE_* settings."""
+    global _configured_step_result_cache
+
+    if _configured_step_result_cache is None:
+        from app.core.config import settings
+
+        if settings.WORKFLOW_STEP_CACHE_BACKEND == "redis":
+            backend = RedisStepCacheBackend(getattr(settings, "REDIS_URL", None))
+        else:
+            backend = InMemoryStepCacheBackend(settings.WORKFLOW_STEP_CACHE_MAXSIZE)
+        _configured_step_result_cache = StepResultCache(
+            backend, settings.WORKFLOW_STEP_CACHE_TTL
+        )
+    return _configured_step_result_cache
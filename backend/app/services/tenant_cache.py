@@ -0,0 +1,98 @@
+"""In-process cache for tenant and user lookups on the request path."""
+
+import logging
+from typing import Any, Awaitable, Callable, Dict, Optional
+from uuid import UUID
+
+from cachetools import TTLCache
+from prometheus_client import Counter
+
+logger = logging.getLogger(__name__)
+
+tenant_lookup_cache_requests_total = Counter(
+    "tenant_lookup_cache_requests_total",
+    "Tenant lookup cache requests",
+    ["lookup", "result"],
+)
+
+_MISSING = object()
+
+
+class TenantLookupCache:
+    """Bounded TTL cache for tenant-by-slug, tenant status and user lookups.
+
+    Only identifiers and flags are cached, never ORM instances, so entries
+    are safe to share across sessions. "Not found" results are cached too;
+    writers call the invalidation hooks so new tenants and users are seen
+    immediately on this worker, and the TTL bounds staleness on the others.
+    """
+
+    TENANT_BY_SLUG = "tenant_by_slug"
+    TENANT_ACTIVE = "tenant_active"
+    USER_BY_EMAIL = "user_by_email"
+
+    def __init__(self, maxsize: int = 10000, ttl: float = 60):
+        self._caches: Dict[str, TTLCache] = {
+            self.TENANT_BY_SLUG: TTLCache(maxsize=maxsize, ttl=ttl),
+            self.TENANT_ACTIVE: TTLCache(maxsize=maxsize, ttl=ttl),
+            self.USER_BY_EMAIL: TTLCache(maxsize=maxsize, ttl=ttl),
+        }
+        self.stats = {
+            lookup: {"hits": 0, "misses": 0} for lookup in self._caches.keys()
+        }
+
+    async def get_or_load(
+        self, lookup: str, key: Any, loader: Callable[[], Awaitable[Any]]
+    ) -> Any:
+        """Return the cached value for key, calling loader on a miss."""
+        cache = self._caches[lookup]
+        value = cache.get(key, _MISSING)
+
+        if value is not _MISSING:
+            self._record(lookup, hit=True)
+            return value
+
+        self._record(lookup, hit=False)
+        value = await loader()
+        cache[key] = value
+        return value
+
+    def invalidate_tenant(
+        self, tenant_id: Optional[UUID] = None, slug: Optional[str] = None
+    ) -> None:
+        """Drop cached entries for a tenant after it is created or changed."""
+        if tenant_id is not None:
+            self._caches[self.TENANT_ACTIVE].pop(tenant_id, None)
+        if slug is not None:
+            self._caches[self.TENANT_BY_SLUG].pop(slug, None)
+
+    def invalidate_user(self, email: Optional[str]) -> None:
+        """Drop the cached tenant mapping for a user after it is changed."""
+        if email is not None:
+            self._caches[self.USER_BY_EMAIL].pop(email, None)
+
+    def clear(self) -> None:
+        """Drop all cached lookups."""
+        for cache in self._caches.values():
+            cache.clear()
+
+    def get_stats(self) -> Dict[str, Dict[str, Any]]:
+        """Return hit/miss counts, hit rate and size per lookup."""
+        stats = {}
+        for lookup, counts in self.stats.items():
+            total = counts["hits"] + counts["misses"]
+            stats[lookup] = {
+                **counts,
+                "hit_rate": counts["hits"] / total if total else 0.0,
+                "size": len(self._caches[lookup]),
+            }
+        return stats
+
+    def _record(self, lookup: str, hit: bool) -> None:
+        self.stats[lookup]["hits" if hit else "misses"] += 1
+        tenant_lookup_cache_requests_total.labels(
+            lookup=lookup, result="hit" if hit else "miss"
+        ).inc()
+
+
+tenant_lookup_cache = TenantLookupCache()
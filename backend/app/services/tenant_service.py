@@ -6,6 +6,7 @@ from uuid import UUID
 from app.models.tenant import SSOConfiguration, Tenant, TenantStatus
 from app.models.user import User
 from app.services.audit_service import AuditService
+from app.services.tenant_cache import tenant_lookup_cache
 from fastapi import HTTPException, status
 from sqlalchemy.orm import Session
 
@@ -53,6 +54,7 @@ class TenantService:
         self.db.add(tenant)
         self.db.commit()
         self.db.refresh(tenant)
+        tenant_lookup_cache.invalidate_tenant(tenant.id, tenant.slug)
 
         # Log tenant creation
         if admin_user:
@@ -133,6 +135,7 @@ class TenantService:
 
         self.db.commit()
         self.db.refresh(tenant)
+        tenant_lookup_cache.invalidate_tenant(tenant.id, tenant.slug)
 
         # Log tenant update
         new_values = {
@@ -381,6 +384,7 @@ class TenantService:
         # Soft delete by setting status to inactive
         tenant.status = TenantStatus.INACTIVE
         self.db.commit()
+        tenant_lookup_cache.invalidate_tenant(tenant.id, tenant.slug)
 
         # Log tenant deletion
         self.audit_service.log_system_event(
@@ -3,13 +3,12 @@ workflows step by step."""
 
 import asyncio
 import logging
-from collections import defaultdict, deque
 from datetime import datetime
-from typing import Any, Dict, List, Optional
+from typing import Any, Awaitable, Callable, Dict, List, Optional
 from uuid import UUID
 
-from app.database import get_db_session
-from app.exceptions import WorkflowExecutionError
+from app.database import get_async_db_session
+from app.exceptions import WorkflowExecutionConflictError, WorkflowExecutionError
 from app.executors.step_executors import (
     AIStepExecutor,
     DataValidationStepExecutor,
@@ -19,15 +18,54 @@ from app.executors.step_executors import (
     ProcessStepExecutor,
 )
 from app.handlers.error_handler import ErrorHandler
-from app.interfaces.step_executor import StepExecutorFactory
+from app.interfaces.step_executor import (
+    ChunkSink,
+    StepExecutor,
+    StepExecutorFactory,
+    StreamingStepExecutor,
+)
 from app.models.execution import ExecutionLog, ExecutionStatus, WorkflowExecution
 from app.models.workflow import Workflow
-from app.monitoring.performance import PerformanceMonitor
-from app.types.workflow import RetryConfig, WorkflowEdge, WorkflowNode
-from sqlalchemy.orm import Session
+from app.monitoring.performance import PerformanceMonitor, step_performance_monitor
+from app.services.distributed_workflow import DistributedStepDispatcher
+from app.services.execution_checkpoint_store import (
+    ExecutionCheckpointStore,
+    execution_checkpoint_store,
+)
+from app.services.execution_log_writer import (
+    ExecutionLogWriter,
+    execution_log_writer,
+)
+from app.services.step_executors.base_executor import StreamChunk
+from app.services.step_result_cache import StepResultCache, step_result_cache
+from app.services.workflow_plan import (
+    CompiledWorkflowPlan,
+    WorkflowPlanCache,
+    compile_workflow_plan,
+    topological_order,
+    workflow_plan_cache,
+)
+from app.services.workflow_scheduler import DAGScheduler, StepStreams
+from app.types.workflow import (
+    RetryConfig,
+    SchedulerConfig,
+    StepExecutionResult,
+    WorkflowEdge,
+    WorkflowNode,
+)
+from sqlalchemy import select, update
+from sqlalchemy.ext.asyncio import AsyncSession
+from sqlalchemy.orm import selectinload
 
 logger = logging.getLogger(__name__)
 
+# Statuses a run may still move on; anything else was settled on purpose
+ACTIVE_STATUSES = [ExecutionStatus.PENDING, ExecutionStatus.RUNNING]
+RESUMABLE_STATUSES = [*ACTIVE_STATUSES, ExecutionStatus.FAILED]
+
+# Sends one message to the clients watching an execution
+StreamSink = Callable[[str, Dict[str, Any]], Awaitable[None]]
+
 
 class WorkflowStepError(Exception):
     """Custom exception for individual workflow step errors."""
@@ -57,11 +95,27 @@ class WorkflowEngine:
         step_factory: Optional[StepExecutorFactory] = None,
         retry_config: Optional[RetryConfig] = None,
         performance_monitor: Optional[PerformanceMonitor] = None,
+        scheduler_config: Optional[SchedulerConfig] = None,
+        log_writer: Optional[ExecutionLogWriter] = None,
+        plan_cache: Optional[WorkflowPlanCache] = None,
+        checkpoint_store: Optional[ExecutionCheckpointStore] = None,
+        step_dispatcher: Optional[DistributedStepDispatcher] = None,
+        step_cache: Optional[StepResultCache] = None,
+        stream_sink: Optional[StreamSink] = None,
+        stream_buffer_size: int = 64,
     ):
         self.logger = logging.getLogger(__name__)
         self.step_factory = step_factory or self._create_default_factory()
         self.error_handler = ErrorHandler(retry_config or RetryConfig())
-        self.performance_monitor = performance_monitor or PerformanceMonitor()
+        self.performance_monitor = performance_monitor or step_performance_monitor
+        self.scheduler = DAGScheduler(scheduler_config)
+        self.log_writer = log_writer or execution_log_writer
+        self.plan_cache = plan_cache or workflow_plan_cache
+        self.checkpoint_store = checkpoint_store or execution_checkpoint_store
+        self.step_dispatcher = step_dispatcher
+        self.step_cache = step_cache or step_result_cache
+        self.stream_sink = stream_sink
+        self.stream_buffer_size = stream_buffer_size
 
     def _create_default_factory(self) -> StepExecutorFactory:
         """Create default step executor factory."""
@@ -92,86 +146,264 @@ class WorkflowEngine:
         """
         input_data = input_data or {}
         execution_id = None
+        attempt = None
 
         try:
-            with get_db_session() as db:
+            async with get_async_db_session() as db:
                 # Get workflow definition
-                workflow = (
-                    db.query(Workflow)
-                    .filter(Workflow.id == workflow_id, Workflow.is_active)
-                    .first()
-                )
-
-                if not workflow:
-                    raise WorkflowExecutionError(
-                        f"Workflow {workflow_id} not found or inactive"
-                    )
+                workflow = await self._get_active_workflow(db, workflow_id)
 
                 # Create execution record
                 execution = WorkflowExecution(
                     workflow_id=workflow_id,
                     status=ExecutionStatus.PENDING,
                     input_data=input_data,
+                    attempt=0,
                 )
                 db.add(execution)
-                db.commit()
-                db.refresh(execution)
+                await db.commit()
                 execution_id = execution.id
+                attempt = execution.attempt
 
-                self.logger.info(
-                    f"Starting workflow execution {execution_id} for workflow "
-                    f"{workflow_id}"
-                )
+            self.logger.info(
+                f"Starting workflow execution {execution_id} for workflow "
+                f"{workflow_id}"
+            )
 
-                # Update status to running
-                execution.status = ExecutionStatus.RUNNING
-                db.commit()
+            # Steps run without holding a database connection
+            return await self._run_execution(
+                execution_id,
+                attempt,
+                workflow_id,
+                workflow.definition,
+                input_data,
+                cache_namespace=self._cache_namespace(workflow),
+            )
 
-                # Execute workflow steps
-                output_data = await self._execute_workflow_steps(
-                    db, execution, workflow.definition, input_data
-                )
+        except WorkflowExecutionConflictError:
+            raise
+        except Exception as e:
+            await self._handle_execution_failure(execution_id, attempt, e)
 
-                # Mark as completed
-                execution.status = ExecutionStatus.COMPLETED
-                execution.output_data = output_data
-                execution.completed_at = datetime.utcnow()
-                db.commit()
+    async def resume_execution(self, execution_id: UUID) -> ExecutionResult:
+        """
+        Resume an interrupted or failed execution from its checkpoints.
+
+        Steps whose outputs were checkpointed under the current workflow
+        definition are skipped; the remaining steps run with those outputs
+        as their upstream data.
+
+        Args:
+            execution_id: UUID of the execution to resume
 
-                self.logger.info(
-                    f"Workflow execution {execution_id} completed successfully"
+        Returns:
+            ExecutionResult containing execution details
+
+        Raises:
+            WorkflowExecutionConflictError: If the execution is not resumable
+                or another resume claimed it first
+            WorkflowExecutionError: If the resumed execution fails
+        """
+        claimed_attempt = None
+        try:
+            async with get_async_db_session() as db:
+                execution = await db.get(WorkflowExecution, execution_id)
+
+                if not execution:
+                    raise WorkflowExecutionError(f"Execution {execution_id} not found")
+
+                if execution.status not in RESUMABLE_STATUSES:
+                    raise WorkflowExecutionConflictError(
+                        execution_id,
+                        f"cannot be resumed from status {execution.status.value}",
+                    )
+
+                workflow = await self._get_active_workflow(db, execution.workflow_id)
+                input_data = execution.input_data or {}
+
+                # Claim the run only if nobody resumed it since it was read
+                claimed = await db.execute(
+                    update(WorkflowExecution)
+                    .where(
+                        WorkflowExecution.id == execution_id,
+                        WorkflowExecution.status == execution.status,
+                        WorkflowExecution.attempt == execution.attempt,
+                    )
+                    .values(
+                        status=ExecutionStatus.RUNNING,
+                        attempt=WorkflowExecution.attempt + 1,
+                        error_message=None,
+                        completed_at=None,
+                    )
+                    .execution_options(synchronize_session=False)
                 )
+                if claimed.rowcount != 1:
+                    raise WorkflowExecutionConflictError(
+                        execution_id, "is already being resumed"
+                    )
+                claimed_attempt = execution.attempt + 1
+
+            plan = self._get_plan(workflow.id, workflow.definition)
+            completed = await self.checkpoint_store.load(
+                execution_id, plan.definition_hash
+            )
+
+            self.logger.info(
+                f"Resuming workflow execution {execution_id} with "
+                f"{len(completed)}/{len(plan.nodes)} steps already completed"
+            )
 
-                return ExecutionResult(
-                    execution_id=execution_id,
-                    status=ExecutionStatus.COMPLETED,
-                    output_data=output_data,
+            return await self._run_execution(
+                execution_id,
+                claimed_attempt,
+                workflow.id,
+                workflow.definition,
+                input_data,
+                completed,
+                cache_namespace=self._cache_namespace(workflow),
+            )
+
+        except WorkflowExecutionConflictError:
+            # Marking it failed would clobber the owning run or a cancellation
+            raise
+        except Exception as e:
+            await self._handle_execution_failure(execution_id, claimed_attempt, e)
+
+    async def _get_active_workflow(
+        self, db: AsyncSession, workflow_id: UUID
+    ) -> Workflow:
+        """Load an active workflow with its owner, which sets the cache namespace."""
+        workflow = await db.scalar(
+            select(Workflow)
+            .options(selectinload(Workflow.user))
+            .where(Workflow.id == workflow_id, Workflow.is_active)
+        )
+
+        if not workflow:
+            raise WorkflowExecutionError(
+                f"Workflow {workflow_id} not found or inactive"
+            )
+        return workflow
+
+    async def _run_execution(
+        self,
+        execution_id: UUID,
+        attempt: int,
+        workflow_id: UUID,
+        workflow_definition: Dict[str, Any],
+        input_data: Dict[str, Any],
+        completed: Optional[Dict[str, Dict[str, Any]]] = None,
+        cache_namespace: Optional[str] = None,
+    ) -> ExecutionResult:
+        """Run the remaining steps of an execution and record its outcome.
+
+        Every status and checkpoint write is fenced on attempt, so a run that
+        was cancelled or resumed elsewhere stops instead of overwriting it.
+        """
+        await self._set_execution_state(
+            execution_id, attempt, status=ExecutionStatus.RUNNING
+        )
+
+        # Execute workflow steps
+        try:
+            output_data = await self._execute_workflow_steps(
+                execution_id,
+                attempt,
+                workflow_id,
+                workflow_definition,
+                input_data,
+                completed,
+                cache_namespace,
+            )
+        except Exception:
+            # A failed log flush must not replace the step failure
+            try:
+                await self.log_writer.flush_execution(execution_id)
+            except Exception as e:
+                self.logger.error(
+                    f"Failed to flush logs of failed execution {execution_id}: {e}"
                 )
+            raise
+
+        await self.log_writer.flush_execution(execution_id)
+
+        await self._set_execution_state(
+            execution_id,
+            attempt,
+            status=ExecutionStatus.COMPLETED,
+            output_data=output_data,
+            completed_at=datetime.utcnow(),
+        )
 
+        # The final output is on the execution; step outputs are in the logs
+        try:
+            await self.checkpoint_store.delete(execution_id)
         except Exception as e:
-            self.logger.error(f"Workflow execution {execution_id} failed: {str(e)}")
-
-            # Update execution status to failed
-            if execution_id:
-                try:
-                    with get_db_session() as db:
-                        execution = (
-                            db.query(WorkflowExecution)
-                            .filter(WorkflowExecution.id == execution_id)
-                            .first()
+            self.logger.warning(
+                f"Failed to clear checkpoints for execution {execution_id}: {e}"
+            )
+
+        self.logger.info(f"Workflow execution {execution_id} completed successfully")
+
+        return ExecutionResult(
+            execution_id=execution_id,
+            status=ExecutionStatus.COMPLETED,
+            output_data=output_data,
+        )
+
+    async def _set_execution_state(
+        self, execution_id: UUID, attempt: int, **values: Any
+    ) -> None:
+        """Update an execution while it is still active on this run's attempt."""
+        async with get_async_db_session() as db:
+            result = await db.execute(
+                update(WorkflowExecution)
+                .where(
+                    WorkflowExecution.id == execution_id,
+                    WorkflowExecution.attempt == attempt,
+                    WorkflowExecution.status.in_(ACTIVE_STATUSES),
+                )
+                .values(**values)
+            )
+
+        if result.rowcount != 1:
+            raise WorkflowExecutionConflictError(
+                execution_id, f"is no longer owned by attempt {attempt}"
+            )
+
+    async def _handle_execution_failure(
+        self, execution_id: Optional[UUID], attempt: Optional[int], error: Exception
+    ) -> None:
+        """Mark this run's execution failed and re-raise as WorkflowExecutionError.
+
+        Only a still active execution on the given attempt is updated, so a
+        failure never overwrites a cancellation or a run that took over.
+        """
+        self.logger.error(f"Workflow execution {execution_id} failed: {str(error)}")
+
+        # Update execution status to failed; checkpoints are kept for resume
+        if execution_id and attempt is not None:
+            try:
+                async with get_async_db_session() as db:
+                    await db.execute(
+                        update(WorkflowExecution)
+                        .where(
+                            WorkflowExecution.id == execution_id,
+                            WorkflowExecution.attempt == attempt,
+                            WorkflowExecution.status.in_(ACTIVE_STATUSES),
+                        )
+                        .values(
+                            status=ExecutionStatus.FAILED,
+                            error_message=str(error),
+                            completed_at=datetime.utcnow(),
                         )
-                        if execution:
-                            execution.status = ExecutionStatus.FAILED
-                            execution.error_message = str(e)
-                            execution.completed_at = datetime.utcnow()
-                            db.commit()
-                except Exception as db_error:
-                    self.logger.error(f"Failed to update execution status: {db_error}")
-
-            if isinstance(e, WorkflowExecutionError):
-                raise
-            else:
-                raise WorkflowExecutionError(f"Workflow execution failed: {str(e)}")
+                    )
+            except Exception as db_error:
+                self.logger.error(f"Failed to update execution status: {db_error}")
+
+        if isinstance(error, WorkflowExecutionError):
+            raise error
+        raise WorkflowExecutionError(f"Workflow execution failed: {str(error)}")
 
     async def get_execution_status(
         self, execution_id: UUID
@@ -186,12 +418,8 @@ class WorkflowEngine:
             Dictionary containing execution status information
         """
         try:
-            with get_db_session() as db:
-                execution = (
-                    db.query(WorkflowExecution)
-                    .filter(WorkflowExecution.id == execution_id)
-                    .first()
-                )
+            async with get_async_db_session() as db:
+                execution = await db.get(WorkflowExecution, execution_id)
 
                 if not execution:
                     return None
@@ -222,12 +450,8 @@ class WorkflowEngine:
             True if cancellation was successful, False otherwise
         """
         try:
-            with get_db_session() as db:
-                execution = (
-                    db.query(WorkflowExecution)
-                    .filter(WorkflowExecution.id == execution_id)
-                    .first()
-                )
+            async with get_async_db_session() as db:
+                execution = await db.get(WorkflowExecution, execution_id)
 
                 if not execution:
                     self.logger.warning(
@@ -235,10 +459,7 @@ class WorkflowEngine:
                     )
                     return False
 
-                if execution.status not in [
-                    ExecutionStatus.PENDING,
-                    ExecutionStatus.RUNNING,
-                ]:
+                if execution.status not in ACTIVE_STATUSES:
                     self.logger.warning(
                         f"Cannot cancel execution {execution_id} with status {execution.status}"
                     )
@@ -247,7 +468,7 @@ class WorkflowEngine:
                 execution.status = ExecutionStatus.CANCELLED
                 execution.completed_at = datetime.utcnow()
                 execution.error_message = "Execution cancelled by user"
-                db.commit()
+                await db.commit()
 
                 self.logger.info(f"Execution {execution_id} cancelled successfully")
                 return True
@@ -270,17 +491,17 @@ class WorkflowEngine:
             List of execution log dictionaries
         """
         try:
-            with get_db_session() as db:
+            async with get_async_db_session() as db:
                 query = (
-                    db.query(ExecutionLog)
-                    .filter(ExecutionLog.execution_id == execution_id)
+                    select(ExecutionLog)
+                    .where(ExecutionLog.execution_id == execution_id)
                     .order_by(ExecutionLog.timestamp)
                 )
 
                 if limit:
                     query = query.limit(limit)
 
-                logs = query.all()
+                logs = (await db.scalars(query)).all()
 
                 return [
                     {
@@ -302,119 +523,168 @@ class WorkflowEngine:
 
     async def _execute_workflow_steps(
         self,
-        db: Session,
-        execution: WorkflowExecution,
+        execution_id: UUID,
+        attempt: int,
+        workflow_id: UUID,
         workflow_definition: Dict[str, Any],
         input_data: Dict[str, Any],
+        completed: Optional[Dict[str, Dict[str, Any]]] = None,
+        cache_namespace: Optional[str] = None,
     ) -> Dict[str, Any]:
         """
-        Execute workflow steps sequentially based on the workflow definition.
+        Execute workflow steps concurrently as their dependencies complete.
 
         Args:
-            db: Database session
-            execution: WorkflowExecution instance
+            execution_id: UUID of the execution
+            attempt: Attempt of the execution this run owns
+            workflow_id: UUID of the workflow being executed
             workflow_definition: Workflow definition containing nodes and edges
             input_data: Input data for the workflow
+            completed: Checkpointed outputs of steps that must not run again
+            cache_namespace: Step cache namespace of the workflow's tenant
 
         Returns:
             Final output data from workflow execution
         """
-        raw_nodes = workflow_definition.get("nodes", [])
-        raw_edges = workflow_definition.get("edges", [])
-
-        if not raw_nodes:
-            raise WorkflowExecutionError("Workflow has no nodes to execute")
-
-        # Convert to typed objects
-        nodes = [
-            WorkflowNode(id=n["id"], type=n["type"], data=n.get("data", {}))
-            for n in raw_nodes
-        ]
-        edges = [
-            WorkflowEdge(id=e["id"], source=e["source"], target=e["target"])
-            for e in raw_edges
-        ]
-
-        # Build execution order based on edges
-        execution_order = self._build_execution_order(nodes, edges)
-
-        # Execute steps in order
-        current_data = input_data.copy()
-
-        for node_id in execution_order:
-            node = next((n for n in nodes if n.id == node_id), None)
-            if not node:
-                raise WorkflowExecutionError(
-                    f"Node {node_id} not found in workflow definition"
-                )
+        plan = self._get_plan(workflow_id, workflow_definition)
+
+        if self.step_dispatcher is not None:
+            # Steps run on queue workers; this process only advances the DAG
+            return await self.step_dispatcher.run(
+                execution_id,
+                plan,
+                input_data,
+                self.scheduler,
+                completed,
+                cache_namespace,
+                attempt,
+            )
 
-            # Execute the step with retry logic
-            step_output = await self._execute_step_with_retry(
-                db, execution, node, current_data
+        async def run_node(
+            node_id: str, step_input: Dict[str, Any], streams: StepStreams
+        ) -> Dict[str, Any]:
+            return await self.run_node(
+                execution_id,
+                plan.nodes[node_id],
+                step_input,
+                plan.definition_hash,
+                cache_namespace,
+                attempt,
+                streams,
             )
 
-            # Update current data with step output
-            current_data.update(step_output)
+        def can_stream(producer_id: str, consumer_id: str) -> bool:
+            producer = self.step_factory.get_executor(plan.nodes[producer_id].type)
+            consumer = self.step_factory.get_executor(plan.nodes[consumer_id].type)
+            is_streaming = isinstance(producer, StreamingStepExecutor)
+            return is_streaming and consumer.accepts_stream
+
+        return await self.scheduler.run(
+            plan, input_data, run_node, completed, can_stream=can_stream
+        )
+
+    async def run_node(
+        self,
+        execution_id: UUID,
+        node: WorkflowNode,
+        input_data: Dict[str, Any],
+        definition_hash: str,
+        cache_namespace: Optional[str] = None,
+        attempt: Optional[int] = None,
+        streams: Optional[StepStreams] = None,
+    ) -> Dict[str, Any]:
+        """
+        Execute one workflow node with retries and checkpoint its output.
+
+        Args:
+            execution_id: UUID of the execution the node belongs to
+            node: Node definition
+            input_data: Input data for the node
+            definition_hash: Hash of the workflow definition being executed
+            cache_namespace: Step cache namespace of the workflow's tenant
+            attempt: Attempt of the execution the checkpoint is fenced on
+            streams: Streams to and from steps running alongside this one
 
-        return current_data
+        Returns:
+            Output data from the node
+        """
+        streams = streams or StepStreams()
+
+        try:
+            output = await self._execute_step_with_retry(
+                execution_id, node, input_data, cache_namespace, streams
+            )
+            await self.checkpoint_store.save(
+                execution_id, node.id, definition_hash, output, attempt
+            )
+        except Exception as e:
+            for stream in streams.outbound:
+                await stream.close(error=str(e))
+            raise
+        except BaseException:
+            # Cancelled with the run; nobody is left to settle the consumers
+            for stream in streams.outbound:
+                stream.abandon()
+            raise
+        finally:
+            for stream in streams.inbound.values():
+                stream.abandon()
+
+        # Consumers finish only once the producer's output is checkpointed
+        for stream in streams.outbound:
+            await stream.close(result=output)
+        return output
+
+    def _get_plan(
+        self, workflow_id: UUID, workflow_definition: Dict[str, Any]
+    ) -> CompiledWorkflowPlan:
+        """Return the compiled plan for this version of a workflow."""
+        return self.plan_cache.get_or_compile(
+            workflow_id,
+            workflow_definition,
+            lambda definition_hash: compile_workflow_plan(
+                workflow_id, workflow_definition, definition_hash
+            ),
+        )
+
+    def _cache_namespace(self, workflow: Workflow) -> str:
+        """Return the step cache namespace of the tenant owning a workflow."""
+        owner = workflow.user
+        if owner is not None and owner.tenant_id is not None:
+            return f"tenant:{owner.tenant_id}"
+        return f"user:{workflow.user_id}"
 
     def _build_execution_order(
         self, nodes: List[WorkflowNode], edges: List[WorkflowEdge]
     ) -> List[str]:
         """Build execution order using topological sort."""
-        # Build adjacency list and in-degree count
-        graph = defaultdict(list)
-        in_degree = defaultdict(int)
-
-        # Initialize all nodes with 0 in-degree
-        for node in nodes:
-            in_degree[node.id] = 0
-
-        # Build graph and calculate in-degrees
-        for edge in edges:
-            source, target = edge.source, edge.target
-            graph[source].append(target)
-            in_degree[target] += 1
-
-        # Find nodes with no incoming edges (start nodes)
-        queue = deque([node_id for node_id, degree in in_degree.items() if degree == 0])
-        execution_order = []
-
-        while queue:
-            current = queue.popleft()
-            execution_order.append(current)
-
-            # Reduce in-degree for all neighbors
-            for neighbor in graph[current]:
-                in_degree[neighbor] -= 1
-                if in_degree[neighbor] == 0:
-                    queue.append(neighbor)
-
-        # Check for cycles
-        if len(execution_order) != len(nodes):
-            raise WorkflowExecutionError(
-                "Workflow contains cycles and cannot be executed"
-            )
-
-        return execution_order
+        return topological_order(nodes, edges)
 
     async def _execute_step_with_retry(
         self,
-        db: Session,
-        execution: WorkflowExecution,
+        execution_id: UUID,
         node: WorkflowNode,
         input_data: Dict[str, Any],
+        cache_namespace: Optional[str] = None,
+        streams: Optional[StepStreams] = None,
     ) -> Dict[str, Any]:
         """Execute step with retry logic."""
+        streams = streams or StepStreams()
         last_error = None
 
         for attempt in range(1, self.error_handler.retry_config.max_attempts + 1):
             try:
-                return await self._execute_step(db, execution, node, input_data)
+                return await self._execute_step(
+                    execution_id, node, input_data, cache_namespace, streams
+                )
             except Exception as e:
                 last_error = e
                 self.logger.warning(f"Step {node.id} failed on attempt {attempt}: {e}")
 
+                # Streams cannot be replayed once consumers have seen chunks
+                if streams.inbound or streams.chunks_sent:
+                    break
+
                 should_retry = await self.error_handler.handle_step_error(
                     e, node, attempt
                 )
@@ -427,25 +697,35 @@ class WorkflowEngine:
 
     async def _execute_step(
         self,
-        db: Session,
-        execution: WorkflowExecution,
+        execution_id: UUID,
         node: WorkflowNode,
         input_data: Dict[str, Any],
+        cache_namespace: Optional[str] = None,
+        streams: Optional[StepStreams] = None,
     ) -> Dict[str, Any]:
         """
-        Execute a single workflow step.
+        Execute a single workflow step, or serve it from the step cache.
 
         Args:
-            db: Database session
-            execution: WorkflowExecution instance
+            execution_id: UUID of the execution the step belongs to
             node: Node definition
             input_data: Input data for the step
+            cache_namespace: Step cache namespace of the workflow's tenant
+            streams: Streams to and from steps running alongside this one
 
         Returns:
             Output data from the step
         """
+        streams = streams or StepStreams()
         step_name = node.data.get("label", node.id)
         step_type = node.type
+        # Streamed input is not part of input_data, so it cannot be keyed
+        cache_ttl = None if streams.inbound else self.step_cache.ttl_for(node.data)
+        cache_key = (
+            self.step_cache.key_for(step_type, node.data, input_data, cache_namespace)
+            if cache_ttl
+            else None
+        )
 
         start_time = asyncio.get_event_loop().time()
 
@@ -455,27 +735,36 @@ class WorkflowEngine:
             # Execute step using factory pattern with performance monitoring
             async with self.performance_monitor.measure_step_execution(
                 step_type, step_name
-            ):
-                executor = self.step_factory.get_executor(step_type)
-                result = await executor.execute_step(node, input_data)
+            ) as measurement:
+                cached = await self.step_cache.get(cache_key) if cache_key else None
+                if cached is not None:
+                    measurement.cache_hit = True
+                    result = StepExecutionResult(success=True, output_data=cached)
+                else:
+                    measurement.cache_hit = False if cache_key else None
+                    executor = self.step_factory.get_executor(step_type)
+                    result = await self._run_executor(
+                        execution_id, node, executor, input_data, streams
+                    )
 
             if not result.success:
                 raise WorkflowStepError(result.error_message or "Step execution failed")
 
+            if cache_key and not measurement.cache_hit:
+                await self.step_cache.set(cache_key, result.output_data, cache_ttl)
+
             # Calculate duration
             duration_ms = int((asyncio.get_event_loop().time() - start_time) * 1000)
 
             # Log successful step execution
-            log_entry = ExecutionLog(
-                execution_id=execution.id,
+            await self.log_writer.write(
+                execution_id=execution_id,
                 step_name=step_name,
                 step_type=step_type,
                 input_data=input_data,
                 output_data=result.output_data,
                 duration_ms=duration_ms,
             )
-            db.add(log_entry)
-            db.commit()
 
             return result.output_data
 
@@ -489,8 +778,8 @@ class WorkflowEngine:
             )
 
             # Log failed step execution
-            log_entry = ExecutionLog(
-                execution_id=execution.id,
+            await self.log_writer.write(
+                execution_id=execution_id,
                 step_name=step_name,
                 step_type=step_type,
                 input_data=input_data,
@@ -498,7 +787,147 @@ class WorkflowEngine:
                 duration_ms=duration_ms,
                 error_message=error_message,
             )
-            db.add(log_entry)
-            db.commit()
 
             raise WorkflowStepError(f"Step '{step_name}' failed: {error_message}")
+
+    async def _run_executor(
+        self,
+        execution_id: UUID,
+        node: WorkflowNode,
+        executor: StepExecutor,
+        input_data: Dict[str, Any],
+        streams: StepStreams,
+    ) -> StepExecutionResult:
+        """Run a step, streaming its output when anyone consumes the chunks."""
+        if streams.inbound:
+            return await executor.execute_step_with_streams(
+                node,
+                input_data,
+                streams.inbound,
+                self._step_sink(execution_id, node),
+            )
+
+        if isinstance(executor, StreamingStepExecutor) and (
+            streams.outbound or self._resolve_stream_sink() is not None
+        ):
+            return await self._execute_streaming_step(
+                execution_id, node, executor, input_data, streams
+            )
+
+        return await executor.execute_step(node, input_data)
+
+    async def _execute_streaming_step(
+        self,
+        execution_id: UUID,
+        node: WorkflowNode,
+        executor: StreamingStepExecutor,
+        input_data: Dict[str, Any],
+        streams: StepStreams,
+    ) -> StepExecutionResult:
+        """Run a streaming step, forwarding chunks as the provider sends them.
+
+        Consumer steps receive every chunk, throttle the producer when they
+        fall behind and deliver what they consume themselves. Without
+        consumers, clients watching the execution get chunks through a bounded
+        buffer that drops chunks for them when full; the step result still
+        carries the complete output.
+        """
+        send = None if streams.outbound else self._step_sink(execution_id, node)
+        client_queue: asyncio.Queue = asyncio.Queue(maxsize=self.stream_buffer_size)
+        forwarder = (
+            asyncio.create_task(self._forward_chunks(send, client_queue))
+            if send is not None
+            else None
+        )
+        dropped = 0
+        result: Optional[StepExecutionResult] = None
+
+        try:
+            async for item in executor.stream_step(node, input_data):
+                if isinstance(item, StepExecutionResult):
+                    result = item
+                    break
+
+                for stream in streams.outbound:
+                    await stream.send(item)
+                streams.chunks_sent += 1
+
+                if forwarder is not None:
+                    try:
+                        client_queue.put_nowait(item)
+                    except asyncio.QueueFull:
+                        dropped += 1
+        finally:
+            if forwarder is not None:
+                if result is None:
+                    forwarder.cancel()
+                else:
+                    await client_queue.put(None)
+                await asyncio.gather(forwarder, return_exceptions=True)
+
+        if dropped:
+            self.logger.warning(
+                f"Dropped {dropped} stream chunks for slow clients of step {node.id}"
+            )
+
+        if result is None:
+            return StepExecutionResult(
+                success=False,
+                output_data={},
+                error_message="Stream ended without a result",
+            )
+        if send is not None:
+            await send(
+                {
+                    "type": "step_output_end",
+                    "success": result.success,
+                    "chunks": streams.chunks_sent,
+                    "dropped_chunks": dropped,
+                }
+            )
+        return result
+
+    async def _forward_chunks(self, send: ChunkSink, queue: asyncio.Queue) -> None:
+        """Push buffered chunks to clients until the end marker."""
+        while True:
+            chunk: Optional[StreamChunk] = await queue.get()
+            if chunk is None:
+                return
+            await send(
+                {
+                    "type": "step_output_chunk",
+                    "sequence": chunk.sequence,
+                    "data": chunk.data,
+                }
+            )
+
+    def _step_sink(self, execution_id: UUID, node: WorkflowNode) -> ChunkSink:
+        """Return a sender of stream messages about one step of an execution."""
+        sink = self._resolve_stream_sink()
+
+        async def send(message: Dict[str, Any]) -> None:
+            if sink is None:
+                return
+            message = {
+                **message,
+                "execution_id": str(execution_id),
+                "step_id": node.id,
+                "timestamp": datetime.now().isoformat(),
+            }
+            try:
+                await sink(str(execution_id), message)
+            except Exception as e:
+                # Delivery problems never fail the step
+                self.logger.warning(f"Failed to stream output of {node.id}: {e}")
+
+        return send
+
+    def _resolve_stream_sink(self) -> Optional[StreamSink]:
+        """Return the configured sink, defaulting to execution websockets."""
+        if self.stream_sink is None:
+            try:
+                from app.api.websockets import manager
+            except ImportError:
+                return None
+            self.stream_sink = manager.send_log_to_execution
+        return self.stream_sink
@@ -9,9 +9,22 @@ from collections import defaultdict, deque
 from dataclasses import dataclass, field
 from datetime import datetime
 from enum import Enum
-from typing import Any, Dict, List, Optional, Set, Tuple
-
+from functools import partial
+from typing import Any, Awaitable, Callable, Dict, List, Optional, Set, Tuple
+
+from app.monitoring.performance import PerformanceMonitor, step_performance_monitor
+from cachetools import TTLCache
+
+from .step_executors.base_executor import (
+    BaseStepExecutor,
+    ExecutionResult,
+    StepStream,
+    StreamChunk,
+    StreamingStepExecutor,
+)
 from .step_executors.factory import StepExecutorFactory
+from .step_result_cache import StepResultCache, step_result_cache
+from .workflow_plan import WorkflowPlanCache
 
 logger = logging.getLogger(__name__)
 
@@ -34,6 +47,8 @@ class ExecutionPlan:
     dependencies: Dict[str, List[str]]
     step_configs: Dict[str, Dict[str, Any]]
     created_at: datetime = field(default_factory=datetime.now)
+    # Executors resolved once per plan; missing types fail at execution time
+    executors: Dict[str, BaseStepExecutor] = field(default_factory=dict)
 
 
 @dataclass
@@ -49,6 +64,15 @@ class ExecutionContext:
     error: Optional[str] = None
     retry_count: int = 0
     max_retries: int = 3
+    executor: Optional[BaseStepExecutor] = None
+    execution_id: Optional[str] = None
+    # Streams to downstream consumers, and from upstream producers
+    outbound_streams: List[StepStream] = field(default_factory=list)
+    inbound_streams: Dict[str, StepStream] = field(default_factory=dict)
+    chunks_streamed: int = 0
+    # Set for steps that opted into the step result cache
+    cache_key: Optional[str] = None
+    cache_ttl: Optional[int] = None
 
 
 class RetryManager:
@@ -96,11 +120,22 @@ class RetryManager:
 class TopologicalExecutor:
     """Handles topological sorting and parallel execution of workflow steps"""
 
-    def __init__(self):
+    def __init__(self, plan_cache: Optional[WorkflowPlanCache] = None):
         self.factory = StepExecutorFactory()
+        self.plan_cache = plan_cache or WorkflowPlanCache()
 
     def create_execution_plan(
         self, workflow_definition: Dict[str, Any]
+    ) -> ExecutionPlan:
+        """Create execution plan, reusing the compiled plan for this version"""
+        return self.plan_cache.get_or_compile(
+            workflow_definition.get("id", ""),
+            workflow_definition,
+            lambda _: self._compile_execution_plan(workflow_definition),
+        )
+
+    def _compile_execution_plan(
+        self, workflow_definition: Dict[str, Any]
     ) -> ExecutionPlan:
         """Create execution plan with topological ordering"""
         steps = workflow_definition.get("steps", {})
@@ -114,8 +149,23 @@ class TopologicalExecutor:
             execution_order=execution_order,
             dependencies=dependencies,
             step_configs=steps,
+            executors=self._resolve_executors(steps),
         )
 
+    def _resolve_executors(
+        self, steps: Dict[str, Any]
+    ) -> Dict[str, BaseStepExecutor]:
+        """Resolve one executor per step, skipping unsupported types"""
+        executors = {}
+        for step_id, step_config in steps.items():
+            try:
+                executors[step_id] = self.factory.create_executor(
+                    step_config.get("type", "process")
+                )
+            except ValueError:
+                continue
+        return executors
+
     def _extract_dependencies(self, steps: Dict[str, Any]) -> Dict[str, List[str]]:
         """Extract dependencies from step definitions"""
         dependencies = {}
@@ -130,14 +180,16 @@ class TopologicalExecutor:
         self, steps: Set[str], dependencies: Dict[str, List[str]]
     ) -> List[List[str]]:
         """Perform topological sort to determine execution order"""
-        # Calculate in-degrees
+        # Calculate in-degrees and reverse edges
         in_degree = defaultdict(int)
+        dependents = defaultdict(list)
         for step in steps:
             in_degree[step] = 0
 
         for step, deps in dependencies.items():
             for dep in deps:
                 in_degree[step] += 1
+                dependents[dep].append(step)
 
         # Find steps with no dependencies
         queue = deque([step for step in steps if in_degree[step] == 0])
@@ -153,48 +205,80 @@ class TopologicalExecutor:
                 current_batch.append(step)
 
                 # Reduce in-degree for dependent steps
-                for dependent_step, deps in dependencies.items():
-                    if step in deps:
-                        in_degree[dependent_step] -= 1
-                        if in_degree[dependent_step] == 0:
-                            queue.append(dependent_step)
+                for dependent_step in dependents[step]:
+                    in_degree[dependent_step] -= 1
+                    if in_degree[dependent_step] == 0:
+                        queue.append(dependent_step)
 
             execution_order.append(current_batch)
 
         return execution_order
 
 
+StreamSink = Callable[[str, Dict[str, Any]], Awaitable[None]]
+
+
 class WorkflowExecutionEngine:
     """Main workflow execution engine"""
 
-    def __init__(self, max_parallel_steps: int = 10):
+    def __init__(
+        self,
+        max_parallel_steps: int = 10,
+        stream_sink: Optional[StreamSink] = None,
+        stream_buffer_size: int = 64,
+        finished_retention: int = 1000,
+        finished_ttl: float = 3600.0,
+        step_cache: Optional[StepResultCache] = None,
+        performance_monitor: Optional[PerformanceMonitor] = None,
+    ):
+        # Live state is keyed by execution id and evicted when a run finishes
         self.active_executions: Dict[str, ExecutionContext] = {}
         self.completed_steps: Dict[str, Set[str]] = defaultdict(set)
         self.step_results: Dict[str, Dict[str, Any]] = defaultdict(dict)
+        # Bounded status snapshots of finished runs for status lookups
+        self.finished_executions: TTLCache = TTLCache(
+            maxsize=finished_retention, ttl=finished_ttl
+        )
         self.retry_manager = RetryManager()
         self.topological_executor = TopologicalExecutor()
         self.max_parallel_steps = max_parallel_steps
         self._semaphore = asyncio.Semaphore(max_parallel_steps)
+        self.stream_sink = stream_sink
+        self.stream_buffer_size = stream_buffer_size
+        self.step_cache = step_cache or step_result_cache
+        self.performance_monitor = performance_monitor or step_performance_monitor
 
     async def execute_workflow(
-        self, workflow_definition: Dict[str, Any]
+        self,
+        workflow_definition: Dict[str, Any],
+        execution_id: Optional[str] = None,
+        cache_namespace: Optional[str] = None,
     ) -> Dict[str, Any]:
-        """Execute complete workflow with dependency resolution"""
+        """Execute complete workflow with dependency resolution
+
+        ``cache_namespace`` isolates cached step outputs, normally per tenant.
+        """
+        started_at = datetime.now()
+        outcome = "error"
         try:
             # Create execution plan
             plan = self.topological_executor.create_execution_plan(workflow_definition)
             workflow_id = plan.workflow_id
+            execution_id = execution_id or workflow_id
+            batches = self._schedule_stream_consumers(plan)
 
             logger.info(f"Starting workflow execution: {workflow_id}")
 
             # Execute batches in order
-            for batch_index, batch in enumerate(plan.execution_order):
+            for batch_index, batch in enumerate(batches):
                 logger.info(
-                    f"Executing batch {batch_index + 1}/{len(plan.execution_order)}: {batch}"
+                    f"Executing batch {batch_index + 1}/{len(batches)}: {batch}"
                 )
 
                 # Execute steps in current batch in parallel
-                batch_results = await self._execute_batch(workflow_id, batch, plan)
+                batch_results = await self._execute_batch(
+                    workflow_id, batch, plan, execution_id, cache_namespace
+                )
 
                 # Check for failures
                 failed_steps = [
@@ -207,41 +291,124 @@ class WorkflowExecutionEngine:
                     logger.error(
                         f"Batch {batch_index + 1} failed. Failed steps: {failed_steps}"
                     )
+                    outcome = "failed"
                     return {"status": "failed", "failed_steps": failed_steps}
 
             logger.info(f"Workflow {workflow_id} completed successfully")
+            outcome = "completed"
             return {
                 "status": "completed",
-                "results": self.step_results[workflow_id],
-                "execution_time": (datetime.now() - plan.created_at).total_seconds(),
+                "results": self.step_results[execution_id],
+                "execution_time": (datetime.now() - started_at).total_seconds(),
             }
 
         except Exception as e:
             logger.error(f"Workflow execution failed: {str(e)}")
             return {"status": "error", "error": str(e)}
 
+        finally:
+            if execution_id:
+                self._evict_execution(execution_id, outcome)
+
+    def _evict_execution(self, execution_id: str, outcome: str) -> None:
+        """Drop live state of a finished run, keeping a bounded status snapshot"""
+        self.finished_executions[execution_id] = {
+            "status": outcome,
+            "completed_steps": list(self.completed_steps.pop(execution_id, set())),
+            "step_results": self.step_results.pop(execution_id, {}),
+        }
+        for key in [
+            key
+            for key, ctx in self.active_executions.items()
+            if ctx.execution_id == execution_id
+        ]:
+            del self.active_executions[key]
+
+    def _schedule_stream_consumers(self, plan: ExecutionPlan) -> List[List[str]]:
+        """Pull stream consumers into the batch of their streaming producers
+
+        A step that accepts streams starts alongside its upstream steps when
+        all of them stream and run in the same batch, so it sees their output
+        as it is produced instead of after they finish.
+        """
+        batches = [list(batch) for batch in plan.execution_order]
+
+        for index in range(len(batches) - 1):
+            current = set(batches[index])
+            for step_id in list(batches[index + 1]):
+                executor = plan.executors.get(step_id)
+                dependencies = plan.dependencies.get(step_id, [])
+                if (
+                    executor is not None
+                    and executor.accepts_stream
+                    and dependencies
+                    and all(
+                        dep in current
+                        and isinstance(plan.executors.get(dep), StreamingStepExecutor)
+                        for dep in dependencies
+                    )
+                ):
+                    batches[index + 1].remove(step_id)
+                    batches[index].append(step_id)
+
+        return [batch for batch in batches if batch]
+
     async def _execute_batch(
-        self, workflow_id: str, batch: List[str], plan: ExecutionPlan
+        self,
+        workflow_id: str,
+        batch: List[str],
+        plan: ExecutionPlan,
+        execution_id: Optional[str] = None,
+        cache_namespace: Optional[str] = None,
     ) -> Dict[str, Tuple[ExecutionStatus, Dict[str, Any]]]:
         """Execute a batch of steps in parallel"""
         tasks = []
+        in_batch = set(batch)
+        execution_id = execution_id or workflow_id
 
+        # Wire a bounded stream for every producer -> consumer edge in the batch
+        inbound: Dict[str, Dict[str, StepStream]] = defaultdict(dict)
+        outbound: Dict[str, List[StepStream]] = defaultdict(list)
         for step_id in batch:
+            for dep in plan.dependencies.get(step_id, []):
+                if dep in in_batch:
+                    stream = StepStream(dep, maxsize=self.stream_buffer_size)
+                    inbound[step_id][dep] = stream
+                    outbound[dep].append(stream)
+
+        # Start producers before consumers
+        for step_id in sorted(batch, key=lambda step: step in inbound):
             step_config = plan.step_configs[step_id]
             context = ExecutionContext(
                 workflow_id=workflow_id,
                 step_id=step_id,
                 step_type=step_config.get("type", "process"),
                 input_data=self._prepare_step_input(
-                    workflow_id, step_id, step_config, plan.dependencies
+                    execution_id, step_id, step_config, plan.dependencies
                 ),
                 start_time=datetime.now(),
                 status=ExecutionStatus.PENDING,
                 dependencies=plan.dependencies.get(step_id, []),
                 max_retries=step_config.get("max_retries", 3),
+                executor=plan.executors.get(step_id),
+                execution_id=execution_id,
+                outbound_streams=outbound.get(step_id, []),
+                inbound_streams=inbound.get(step_id, {}),
             )
 
-            task = asyncio.create_task(self._execute_step_with_semaphore(context))
+            # Streamed steps are never cached: a hit could not feed consumers
+            context.cache_ttl = self.step_cache.ttl_for(step_config)
+            if context.cache_ttl and step_id not in inbound and step_id not in outbound:
+                context.cache_key = self.step_cache.key_for(
+                    context.step_type, step_config, context.input_data, cache_namespace
+                )
+
+            if context.inbound_streams:
+                # Consumers mostly wait on producers; holding a slot could
+                # starve the producers they are waiting for.
+                task = asyncio.create_task(self._execute_step(context))
+            else:
+                task = asyncio.create_task(self._execute_step_with_semaphore(context))
             tasks.append((step_id, task))
 
         # Wait for all tasks to complete
@@ -252,8 +419,8 @@ class WorkflowExecutionEngine:
                 results[step_id] = (status, result)
 
                 if status == ExecutionStatus.COMPLETED:
-                    self.completed_steps[workflow_id].add(step_id)
-                    self.step_results[workflow_id][step_id] = result
+                    self.completed_steps[execution_id].add(step_id)
+                    self.step_results[execution_id][step_id] = result
 
             except Exception as e:
                 logger.error(f"Task for step {step_id} failed: {str(e)}")
@@ -271,7 +438,55 @@ class WorkflowExecutionEngine:
     async def _execute_step(
         self, context: ExecutionContext
     ) -> Tuple[ExecutionStatus, Dict[str, Any]]:
-        """Execute a single workflow step"""
+        """Execute a single workflow step and settle its streams"""
+        key = f"{context.execution_id}:{context.step_id}"
+        self.active_executions[key] = context
+        try:
+            if context.cache_key:
+                status, result = await self._execute_cached_step(context)
+            else:
+                status, result = await self._execute_step_attempts(context)
+        except BaseException:
+            for stream in context.outbound_streams:
+                stream.abandon()
+            raise
+        finally:
+            self.active_executions.pop(key, None)
+            for stream in context.inbound_streams.values():
+                stream.abandon()
+
+        for stream in context.outbound_streams:
+            if status == ExecutionStatus.COMPLETED:
+                await stream.close(result=result)
+            else:
+                await stream.close(error=result.get("error", "Step failed"))
+
+        return status, result
+
+    async def _execute_cached_step(
+        self, context: ExecutionContext
+    ) -> Tuple[ExecutionStatus, Dict[str, Any]]:
+        """Serve a step from the step cache, running and storing it on a miss"""
+        async with self.performance_monitor.measure_step_execution(
+            context.step_type, context.step_id
+        ) as measurement:
+            cached = await self.step_cache.get(context.cache_key)
+            measurement.cache_hit = cached is not None
+            if cached is not None:
+                context.status = ExecutionStatus.COMPLETED
+                context.result = cached
+                return ExecutionStatus.COMPLETED, cached
+
+            status, result = await self._execute_step_attempts(context)
+
+        if status == ExecutionStatus.COMPLETED:
+            await self.step_cache.set(context.cache_key, result, context.cache_ttl)
+        return status, result
+
+    async def _execute_step_attempts(
+        self, context: ExecutionContext
+    ) -> Tuple[ExecutionStatus, Dict[str, Any]]:
+        """Execute a single workflow step with retries"""
         max_attempts = context.max_retries + 1
 
         for attempt in range(max_attempts):
@@ -280,19 +495,39 @@ class WorkflowExecutionEngine:
                 context.start_time = datetime.now()
 
                 # Get executor for step type
-                executor = self.topological_executor.factory.create_executor(
-                    context.step_type
+                executor = (
+                    context.executor
+                    or self.topological_executor.factory.create_executor(
+                        context.step_type
+                    )
                 )
 
                 # Execute step
                 execution_context = {
                     "workflow_id": context.workflow_id,
+                    "execution_id": context.execution_id,
                     "step_id": context.step_id,
                     "timestamp": context.start_time.isoformat(),
                     "attempt": attempt + 1,
                 }
+                sink = self._resolve_stream_sink()
+                if sink is not None:
+                    execution_context["stream_sink"] = partial(
+                        self._send_stream_message, sink, context
+                    )
 
-                result = await executor.execute(context.input_data, execution_context)
+                if context.inbound_streams:
+                    result = await executor.execute_with_streams(
+                        context.input_data, execution_context, context.inbound_streams
+                    )
+                elif isinstance(executor, StreamingStepExecutor):
+                    result = await self._execute_streaming_step(
+                        executor, context, execution_context
+                    )
+                else:
+                    result = await executor.execute(
+                        context.input_data, execution_context
+                    )
 
                 if result.success:
                     context.status = ExecutionStatus.COMPLETED
@@ -306,7 +541,12 @@ class WorkflowExecutionEngine:
                     f"Step {context.step_id} attempt {attempt + 1} failed: {str(e)}"
                 )
 
-                if attempt < max_attempts - 1:
+                # Streams cannot be replayed once consumers have seen chunks
+                replayable = not context.inbound_streams and not (
+                    context.outbound_streams and context.chunks_streamed
+                )
+
+                if attempt < max_attempts - 1 and replayable:
                     # Retry with exponential backoff
                     delay = await self.retry_manager.get_retry_delay(attempt)
                     await asyncio.sleep(delay)
@@ -323,9 +563,124 @@ class WorkflowExecutionEngine:
 
         return ExecutionStatus.FAILED, {"error": "Max retries exceeded"}
 
+    async def _execute_streaming_step(
+        self,
+        executor: StreamingStepExecutor,
+        context: ExecutionContext,
+        execution_context: Dict[str, Any],
+    ) -> ExecutionResult:
+        """Run a streaming step, forwarding chunks downstream as they arrive
+
+        Downstream steps receive every chunk and throttle the producer when
+        they fall behind, and deliver what they consume themselves. Without
+        consumers, clients watching the execution get chunks through a
+        bounded buffer; when it is full, chunks are dropped for the client
+        only, since the final step result still carries the complete output.
+        """
+        sink = None if context.outbound_streams else self._resolve_stream_sink()
+        client_queue: asyncio.Queue = asyncio.Queue(maxsize=self.stream_buffer_size)
+        forwarder = (
+            asyncio.create_task(self._forward_chunks(sink, context, client_queue))
+            if sink is not None
+            else None
+        )
+        dropped = 0
+        result: Optional[ExecutionResult] = None
+
+        try:
+            async for item in executor.execute_stream(
+                context.input_data, execution_context
+            ):
+                if isinstance(item, ExecutionResult):
+                    result = item
+                    break
+
+                for stream in context.outbound_streams:
+                    await stream.send(item)
+                context.chunks_streamed += 1
+
+                if forwarder is not None:
+                    try:
+                        client_queue.put_nowait(item)
+                    except asyncio.QueueFull:
+                        dropped += 1
+        finally:
+            if forwarder is not None:
+                if result is None:
+                    forwarder.cancel()
+                else:
+                    await client_queue.put(None)
+                await asyncio.gather(forwarder, return_exceptions=True)
+
+        if dropped:
+            logger.warning(
+                f"Dropped {dropped} stream chunks for slow clients of step "
+                f"{context.step_id}"
+            )
+
+        if result is None:
+            return ExecutionResult(
+                success=False, data={}, error="Stream ended without a result"
+            )
+        if sink is not None:
+            await self._send_stream_message(
+                sink,
+                context,
+                {
+                    "type": "step_output_end",
+                    "success": result.success,
+                    "chunks": context.chunks_streamed,
+                    "dropped_chunks": dropped,
+                },
+            )
+        return result
+
+    async def _forward_chunks(
+        self, sink: StreamSink, context: ExecutionContext, queue: asyncio.Queue
+    ) -> None:
+        """Push buffered chunks to the stream sink until the end marker"""
+        while True:
+            chunk = await queue.get()
+            if chunk is None:
+                return
+            await self._send_stream_message(
+                sink,
+                context,
+                {
+                    "type": "step_output_chunk",
+                    "sequence": chunk.sequence,
+                    "data": chunk.data,
+                },
+            )
+
+    async def _send_stream_message(
+        self, sink: StreamSink, context: ExecutionContext, message: Dict[str, Any]
+    ) -> None:
+        """Send one stream message, never failing the step on delivery errors"""
+        message = {
+            **message,
+            "execution_id": context.execution_id,
+            "step_id": context.step_id,
+            "timestamp": datetime.now().isoformat(),
+        }
+        try:
+            await sink(context.execution_id or context.workflow_id, message)
+        except Exception as e:
+            logger.warning(f"Failed to stream output of {context.step_id}: {str(e)}")
+
+    def _resolve_stream_sink(self) -> Optional[StreamSink]:
+        """Return the configured sink, defaulting to execution websockets"""
+        if self.stream_sink is None:
+            try:
+                from app.api.websockets import manager
+            except ImportError:
+                return None
+            self.stream_sink = manager.send_log_to_execution
+        return self.stream_sink
+
     def _prepare_step_input(
         self,
-        workflow_id: str,
+        execution_id: str,
         step_id: str,
         step_config: Dict[str, Any],
         dependencies: Dict[str, List[str]],
@@ -338,8 +693,8 @@ class WorkflowExecutionEngine:
         dependency_results = {}
 
         for dep_step in step_dependencies:
-            if dep_step in self.step_results[workflow_id]:
-                dependency_results[dep_step] = self.step_results[workflow_id][dep_step]
+            if dep_step in self.step_results[execution_id]:
+                dependency_results[dep_step] = self.step_results[execution_id][dep_step]
 
         # Merge dependency data into input data
         if dependency_results:
@@ -378,7 +733,15 @@ class WorkflowExecutionEngine:
         return input_data
 
     def get_execution_status(self, workflow_id: str) -> Dict[str, Any]:
-        """Get current execution status for a workflow"""
+        """Get current execution status for a workflow run
+
+        ``workflow_id`` is the execution id of the run, which defaults to the
+        workflow id when no execution id was given.
+        """
+        finished = self.finished_executions.get(workflow_id)
+        if finished is not None and workflow_id not in self.completed_steps:
+            return {"workflow_id": workflow_id, "active_executions": 0, **finished}
+
         return {
             "workflow_id": workflow_id,
             "completed_steps": list(self.completed_steps.get(workflow_id, set())),
@@ -386,7 +749,7 @@ class WorkflowExecutionEngine:
                 [
                     ctx
                     for ctx in self.active_executions.values()
-                    if ctx.workflow_id == workflow_id
+                    if (ctx.execution_id or ctx.workflow_id) == workflow_id
                 ]
             ),
             "step_results": self.step_results.get(workflow_id, {}),
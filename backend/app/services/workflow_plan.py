@@ -0,0 +1,180 @@
+"""Compiled workflow plans and a cache keyed by workflow definition version."""
+
+import hashlib
+import json
+import logging
+from collections import defaultdict, deque
+from dataclasses import dataclass
+from typing import Any, Callable, Dict, Hashable, List, Optional, Set, TypeVar
+
+from app.exceptions import WorkflowExecutionError
+from app.types.workflow import WorkflowEdge, WorkflowNode
+from cachetools import LRUCache
+
+logger = logging.getLogger(__name__)
+
+PlanT = TypeVar("PlanT")
+
+
+def hash_definition(definition: Dict[str, Any]) -> str:
+    """Return a stable hash of a workflow definition."""
+    encoded = json.dumps(definition, sort_keys=True, default=str).encode()
+    return hashlib.sha256(encoded).hexdigest()
+
+
+def topological_order(
+    nodes: List[WorkflowNode], edges: List[WorkflowEdge]
+) -> List[str]:
+    """Order node ids so every node follows all of its upstream nodes."""
+    graph = defaultdict(list)
+    in_degree = {node.id: 0 for node in nodes}
+
+    for edge in edges:
+        graph[edge.source].append(edge.target)
+        in_degree[edge.target] += 1
+
+    queue = deque([node_id for node_id, degree in in_degree.items() if degree == 0])
+    execution_order = []
+
+    while queue:
+        current = queue.popleft()
+        execution_order.append(current)
+
+        for neighbor in graph[current]:
+            in_degree[neighbor] -= 1
+            if in_degree[neighbor] == 0:
+                queue.append(neighbor)
+
+    if len(execution_order) != len(nodes):
+        raise WorkflowExecutionError("Workflow contains cycles and cannot be executed")
+
+    return execution_order
+
+
+@dataclass(frozen=True)
+class CompiledWorkflowPlan:
+    """Graph of a node/edge workflow definition, prepared once per version.
+
+    ``ancestors`` is the input mapping for each node: the upstream nodes whose
+    outputs are merged into its input, already in topological order.
+    """
+
+    workflow_id: Hashable
+    definition_hash: str
+    nodes: Dict[str, WorkflowNode]
+    edges: List[WorkflowEdge]
+    execution_order: List[str]
+    position: Dict[str, int]
+    levels: List[List[str]]
+    predecessors: Dict[str, List[str]]
+    successors: Dict[str, List[str]]
+    ancestors: Dict[str, List[str]]
+
+
+def compile_workflow_plan(
+    workflow_id: Hashable,
+    definition: Dict[str, Any],
+    definition_hash: Optional[str] = None,
+) -> CompiledWorkflowPlan:
+    """Parse a node/edge definition and precompute its execution graph."""
+    raw_nodes = definition.get("nodes", [])
+    raw_edges = definition.get("edges", [])
+
+    if not raw_nodes:
+        raise WorkflowExecutionError("Workflow has no nodes to execute")
+
+    nodes = {
+        n["id"]: WorkflowNode(id=n["id"], type=n["type"], data=n.get("data", {}))
+        for n in raw_nodes
+    }
+    edges = [
+        WorkflowEdge(id=e["id"], source=e["source"], target=e["target"])
+        for e in raw_edges
+    ]
+
+    for edge in edges:
+        if edge.source not in nodes or edge.target not in nodes:
+            raise WorkflowExecutionError(f"Edge {edge.id} references an unknown node")
+
+    execution_order = topological_order(list(nodes.values()), edges)
+    position = {node_id: index for index, node_id in enumerate(execution_order)}
+
+    predecessor_sets: Dict[str, Set[str]] = {node_id: set() for node_id in nodes}
+    successor_sets: Dict[str, Set[str]] = {node_id: set() for node_id in nodes}
+    for edge in edges:
+        predecessor_sets[edge.target].add(edge.source)
+        successor_sets[edge.source].add(edge.target)
+
+    def in_order(node_ids: Set[str]) -> List[str]:
+        return sorted(node_ids, key=position.__getitem__)
+
+    ancestors: Dict[str, List[str]] = {}
+    depth: Dict[str, int] = {}
+    for node_id in execution_order:
+        upstream: Set[str] = set()
+        for parent in predecessor_sets[node_id]:
+            upstream.add(parent)
+            upstream.update(ancestors[parent])
+        ancestors[node_id] = in_order(upstream)
+        depth[node_id] = max(
+            (depth[parent] + 1 for parent in predecessor_sets[node_id]), default=0
+        )
+
+    levels: List[List[str]] = [[] for _ in range(max(depth.values()) + 1)]
+    for node_id in execution_order:
+        levels[depth[node_id]].append(node_id)
+
+    return CompiledWorkflowPlan(
+        workflow_id=workflow_id,
+        definition_hash=definition_hash or hash_definition(definition),
+        nodes=nodes,
+        edges=edges,
+        execution_order=execution_order,
+        position=position,
+        levels=levels,
+        predecessors={k: in_order(v) for k, v in predecessor_sets.items()},
+        successors={k: in_order(v) for k, v in successor_sets.items()},
+        ancestors=ancestors,
+    )
+
+
+class WorkflowPlanCache:
+    """LRU cache holding the latest compiled plan per workflow.
+
+    Entries are keyed by workflow id and checked against the definition hash,
+    so an edited definition recompiles even without explicit invalidation.
+    """
+
+    def __init__(self, maxsize: int = 1000):
+        self._plans: LRUCache = LRUCache(maxsize=maxsize)
+        self.stats = {"hits": 0, "misses": 0}
+
+    def get_or_compile(
+        self,
+        workflow_id: Hashable,
+        definition: Dict[str, Any],
+        compile_plan: Callable[[str], PlanT],
+    ) -> PlanT:
+        """Return the cached plan for this definition version or compile it."""
+        definition_hash = hash_definition(definition)
+        cached = self._plans.get(workflow_id)
+
+        if cached is not None and cached[0] == definition_hash:
+            self.stats["hits"] += 1
+            return cached[1]
+
+        self.stats["misses"] += 1
+        plan = compile_plan(definition_hash)
+        self._plans[workflow_id] = (definition_hash, plan)
+        return plan
+
+    def invalidate(self, workflow_id: Hashable) -> None:
+        """Drop the compiled plan for a workflow."""
+        self._plans.pop(workflow_id, None)
+
+    def clear(self) -> None:
+        """Drop all compiled plans."""
+        self._plans.clear()
+
+
+workflow_plan_cache = WorkflowPlanCache()
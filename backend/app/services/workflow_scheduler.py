@@ -0,0 +1,220 @@
+"""Dependency-driven scheduler for running workflow DAG steps concurrently."""
+
+import asyncio
+import logging
+from dataclasses import dataclass, field
+from typing import Any, Awaitable, Callable, Dict, List, Optional, Set, Union
+from weakref import WeakKeyDictionary
+
+from app.core.config import settings
+from app.services.step_executors.base_executor import StepStream
+from app.services.workflow_plan import CompiledWorkflowPlan
+from app.types.workflow import SchedulerConfig
+
+logger = logging.getLogger(__name__)
+
+
+@dataclass
+class StepStreams:
+    """Streams wired to one step for a single run."""
+
+    # Upstream producers this step consumes while they are still running
+    inbound: Dict[str, StepStream] = field(default_factory=dict)
+    # Downstream consumers this step feeds chunk by chunk
+    outbound: List[StepStream] = field(default_factory=list)
+    # Chunks already sent downstream; once non-zero the step cannot be retried
+    chunks_sent: int = 0
+
+
+StepRunner = Callable[[str, Dict[str, Any]], Awaitable[Dict[str, Any]]]
+StreamingStepRunner = Callable[
+    [str, Dict[str, Any], StepStreams], Awaitable[Dict[str, Any]]
+]
+# Whether a producer step can stream its output to a consumer step
+StreamPolicy = Callable[[str, str], bool]
+
+# Cap on concurrently running steps shared by all executions on a loop. A
+# semaphore binds to the loop it is used on, so each running loop gets its
+# own, all sized from the same setting.
+_global_step_limiters: WeakKeyDictionary = WeakKeyDictionary()
+
+
+def global_step_limit() -> int:
+    """Return the configured limit on steps running at once in this process."""
+    if settings.WORKFLOW_DISTRIBUTED_EXECUTION:
+        return settings.WORKFLOW_DISTRIBUTED_GLOBAL_MAX_PARALLEL_STEPS
+    return settings.WORKFLOW_GLOBAL_MAX_PARALLEL_STEPS
+
+
+def get_global_step_limiter() -> asyncio.Semaphore:
+    """Return the step semaphore shared by all executions on the running loop."""
+    loop = asyncio.get_running_loop()
+    limiter = _global_step_limiters.get(loop)
+    if limiter is None:
+        limiter = asyncio.Semaphore(global_step_limit())
+        _global_step_limiters[loop] = limiter
+    return limiter
+
+
+class DAGScheduler:
+    """Runs each step as soon as all of its upstream steps have completed.
+
+    Every step receives the workflow input merged with the outputs of its
+    ancestors, applied in topological order, so the data a step sees does not
+    depend on which of its sibling branches happened to finish first.
+
+    With a stream policy, a step whose only unfinished upstream step can
+    stream to it starts together with that step and reads its chunks as they
+    are produced. Such consumers do not take a concurrency slot, since they
+    only wait on a producer that already holds one.
+    """
+
+    def __init__(self, config: Optional[SchedulerConfig] = None):
+        self.config = config or SchedulerConfig()
+        self.logger = logging.getLogger(__name__)
+
+    async def run(
+        self,
+        plan: CompiledWorkflowPlan,
+        input_data: Dict[str, Any],
+        run_step: Union[StepRunner, StreamingStepRunner],
+        completed: Optional[Dict[str, Dict[str, Any]]] = None,
+        can_stream: Optional[StreamPolicy] = None,
+    ) -> Dict[str, Any]:
+        """
+        Execute all steps of a compiled plan with bounded concurrency.
+
+        Args:
+            plan: Compiled workflow plan
+            input_data: Input data for the workflow
+            run_step: Coroutine executing one node with its merged input, and
+                with its StepStreams when can_stream is given
+            completed: Outputs of nodes finished by an earlier run; these
+                nodes are not executed again
+            can_stream: Decides which edges stream; None disables streaming
+
+        Returns:
+            Workflow input merged with every step output in topological order
+
+        Raises:
+            Exception: The first step failure; in-flight steps are cancelled
+        """
+        position = plan.position
+        outputs: Dict[str, Dict[str, Any]] = {
+            node_id: output
+            for node_id, output in (completed or {}).items()
+            if node_id in position
+        }
+        pending = {
+            node_id: sum(1 for p in plan.predecessors[node_id] if p not in outputs)
+            for node_id in position
+        }
+        ready = [
+            node_id
+            for node_id in plan.execution_order
+            if pending[node_id] == 0 and node_id not in outputs
+        ]
+        running: Dict[asyncio.Task, str] = {}
+        started: Set[str] = set()
+        streams: Dict[str, StepStreams] = {}
+
+        local_limiter = asyncio.Semaphore(self.config.max_parallel_steps)
+        global_limiter = get_global_step_limiter()
+
+        async def invoke(node_id: str) -> Dict[str, Any]:
+            step_input = input_data.copy()
+            for ancestor in plan.ancestors[node_id]:
+                # A producer still streaming to this step is not finished yet
+                if ancestor in outputs:
+                    step_input.update(outputs[ancestor])
+
+            if can_stream is None:
+                return await run_step(node_id, step_input)
+            return await run_step(
+                node_id, step_input, streams.pop(node_id, None) or StepStreams()
+            )
+
+        async def run_limited(node_id: str) -> Dict[str, Any]:
+            async with local_limiter:
+                async with global_limiter:
+                    return await invoke(node_id)
+
+        try:
+            while ready or running:
+                consumers = (
+                    self._wire_stream_consumers(
+                        plan, ready, outputs, started, can_stream, streams
+                    )
+                    if can_stream is not None
+                    else []
+                )
+                for node_id in ready:
+                    started.add(node_id)
+                    running[asyncio.create_task(run_limited(node_id))] = node_id
+                for node_id in consumers:
+                    started.add(node_id)
+                    running[asyncio.create_task(invoke(node_id))] = node_id
+                ready = []
+
+                done, _ = await asyncio.wait(
+                    running.keys(), return_when=asyncio.FIRST_COMPLETED
+                )
+
+                # Drain in topological order so newly ready steps are launched
+                # in a stable order regardless of completion timing.
+                for task in sorted(done, key=lambda t: position[running[t]]):
+                    node_id = running.pop(task)
+                    outputs[node_id] = task.result() or {}
+
+                    for child in plan.successors[node_id]:
+                        pending[child] -= 1
+                        if (
+                            pending[child] == 0
+                            and child not in outputs
+                            and child not in started
+                        ):
+                            ready.append(child)
+        finally:
+            if running:
+                for task in running:
+                    task.cancel()
+                await asyncio.gather(*running.keys(), return_exceptions=True)
+
+        result = input_data.copy()
+        for node_id in plan.execution_order:
+            result.update(outputs[node_id])
+        return result
+
+    def _wire_stream_consumers(
+        self,
+        plan: CompiledWorkflowPlan,
+        ready: List[str],
+        outputs: Dict[str, Dict[str, Any]],
+        started: Set[str],
+        can_stream: StreamPolicy,
+        streams: Dict[str, StepStreams],
+    ) -> List[str]:
+        """Pick steps that can start with the ready ones and wire their streams.
+
+        A consumer qualifies when its single unfinished upstream step is
+        starting now and can stream to it. Both ends are wired before either
+        runs, so the consumer sees every chunk. Consumers with several live
+        producers wait as usual: reading one producer while another is queued
+        for a slot held by the first could deadlock.
+        """
+        consumers = []
+        for producer in ready:
+            for child in plan.successors[producer]:
+                if child in outputs or child in started or child in consumers:
+                    continue
+                unfinished = [p for p in plan.predecessors[child] if p not in outputs]
+                if unfinished == [producer] and can_stream(producer, child):
+                    consumers.append(child)
+
+        for consumer in consumers:
+            producer = next(p for p in plan.predecessors[consumer] if p not in outputs)
+            stream = StepStream(producer, maxsize=self.config.stream_buffer_size)
+            streams.setdefault(consumer, StepStreams()).inbound[producer] = stream
+            streams.setdefault(producer, StepStreams()).outbound.append(stream)
+
+        return consumers
@@ -1,12 +1,54 @@
+import asyncio
+from typing import Any, Coroutine, Optional, TypeVar
+from uuid import UUID
+
 from app.celery_app import celery_app
+from app.config.workflow_config import create_workflow_engine
+from app.database import dispose_async_engine
 from app.services.ai_service import AIService
-from app.services.workflow_execution_engine import WorkflowExecutionEngine
+from celery.signals import worker_process_shutdown
+
+T = TypeVar("T")
+
+# The async engine's connection pool, the global step limiter and the queue
+# clients bind to the event loop they are first used on, so every task of a
+# worker process runs on this one loop instead of a fresh asyncio.run loop.
+_worker_loop: Optional[asyncio.AbstractEventLoop] = None
+
+
+def run_in_worker_loop(coroutine: Coroutine[Any, Any, T]) -> T:
+    """Run a coroutine to completion on the worker process's event loop."""
+    global _worker_loop
+    if _worker_loop is None or _worker_loop.is_closed():
+        _worker_loop = asyncio.new_event_loop()
+        asyncio.set_event_loop(_worker_loop)
+    return _worker_loop.run_until_complete(coroutine)
+
+
+@worker_process_shutdown.connect
+def close_worker_loop(**kwargs):
+    """Release pooled connections on the loop that opened them, then close it."""
+    global _worker_loop
+    if _worker_loop is None or _worker_loop.is_closed():
+        return
+    try:
+        _worker_loop.run_until_complete(dispose_async_engine())
+    finally:
+        _worker_loop.close()
+        _worker_loop = None
 
 
 @celery_app.task
 def execute_workflow_async(workflow_id: str, input_data: dict):
-    engine = WorkflowExecutionEngine()
-    return engine.execute_workflow(workflow_id, input_data)
+    # Steps run on queue workers when distributed execution is enabled
+    engine = create_workflow_engine()
+    result = run_in_worker_loop(engine.execute_workflow(UUID(workflow_id), input_data))
+    return {
+        "execution_id": str(result.execution_id),
+        "status": result.status.value,
+        "output_data": result.output_data,
+        "error_message": result.error_message,
+    }
 
 
 @celery_app.task
@@ -45,6 +45,15 @@ class RetryConfig:
     retryable_errors: Optional[List[str]] = None
 
 
+@dataclass
+class SchedulerConfig:
+    """Configuration for concurrent step scheduling."""
+
+    max_parallel_steps: int = 4
+    # Chunks buffered between a streaming step and a step consuming it
+    stream_buffer_size: int = 64
+
+
 class StepType(Enum):
     """Enumeration of supported step types."""
 
@@ -1,21 +1,30 @@
 """Test configuration and fixtures."""
 
 import os
+import tempfile
+from contextlib import asynccontextmanager
 
 import pytest
 from sqlalchemy import create_engine
+from sqlalchemy.ext.asyncio import async_sessionmaker, create_async_engine
 from sqlalchemy.orm import sessionmaker
-from sqlalchemy.pool import StaticPool
+from sqlalchemy.pool import NullPool, StaticPool
 
 # Set test environment before importing models
 os.environ["PYTEST_CURRENT_TEST"] = "true"
 
-from app.database import get_db
+from app.database import get_async_db, get_db
 from app.main import app
 from app.models.base import Base
+from app.services import ai_service as ai_service_module
+from app.services.ai_service import AIModelType
 
-# Create in-memory SQLite database for testing
-SQLALCHEMY_DATABASE_URL = "sqlite:///:memory:"
+# Create a file-backed SQLite database so sync and async sessions share data.
+# Each run gets its own file, removed when the session finishes.
+_fd, TEST_DATABASE_PATH = tempfile.mkstemp(prefix="auterity_test_", suffix=".db")
+os.close(_fd)
+SQLALCHEMY_DATABASE_URL = f"sqlite:///{TEST_DATABASE_PATH}"
+ASYNC_SQLALCHEMY_DATABASE_URL = f"sqlite+aiosqlite:///{TEST_DATABASE_PATH}"
 
 engine = create_engine(
     SQLALCHEMY_DATABASE_URL,
@@ -25,6 +34,22 @@ engine = create_engine(
 
 TestingSessionLocal = sessionmaker(autocommit=False, autoflush=False, bind=engine)
 
+# NullPool: each request may run on a different event loop under TestClient
+async_engine = create_async_engine(ASYNC_SQLALCHEMY_DATABASE_URL, poolclass=NullPool)
+
+TestingAsyncSessionLocal = async_sessionmaker(
+    async_engine, autoflush=False, expire_on_commit=False
+)
+
+
+def pytest_sessionfinish(session, exitstatus):
+    """Remove this run's test database file."""
+    engine.dispose()
+    try:
+        os.remove(TEST_DATABASE_PATH)
+    except OSError:
+        pass
+
 
 @pytest.fixture(scope="function")
 def db_session():
@@ -55,9 +80,63 @@ def override_get_db():
         db.close()
 
 
+async def override_get_async_db():
+    """Override async database dependency for testing."""
+    Base.metadata.create_all(bind=engine)
+
+    async with TestingAsyncSessionLocal() as db:
+        yield db
+
+
+@asynccontextmanager
+async def override_get_async_db_session():
+    """Override the async session context manager for testing."""
+    Base.metadata.create_all(bind=engine)
+
+    async with TestingAsyncSessionLocal() as db:
+        try:
+            yield db
+            await db.commit()
+        except Exception:
+            await db.rollback()
+            raise
+
+
+@pytest.fixture
+def db_session_factory():
+    """Sync session factory bound to the test database."""
+    return TestingSessionLocal
+
+
+@pytest.fixture
+def async_db_session():
+    """Async session context manager bound to the test database."""
+    return override_get_async_db_session
+
+
 @pytest.fixture(autouse=True)
 def override_db_dependency():
-    """Override the database dependency for all tests."""
+    """Override the database dependencies for all tests."""
     app.dependency_overrides[get_db] = override_get_db
+    app.dependency_overrides[get_async_db] = override_get_async_db
     yield
     app.dependency_overrides.clear()
+
+
+class StreamingAIService:
+    """AI service double that streams its answer word by word."""
+
+    model = AIModelType.GPT_3_5_TURBO
+
+    async def stream_text(self, prompt, context=None, model=None, **kwargs):
+        words = f"Answer to: {prompt}".split(" ")
+        for index, word in enumerate(words):
+            yield word if index == len(words) - 1 else f"{word} "
+
+
+@pytest.fixture
+def streaming_ai_service(monkeypatch):
+    """Route AI steps to a streaming service double."""
+    service = StreamingAIService()
+    monkeypatch.setattr(ai_service_module, "_ai_service_instance", service)
+    return service
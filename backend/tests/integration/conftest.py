@@ -1,6 +1,7 @@
 """Integration test configuration and fixtures."""
 
 import os
+import tempfile
 from typing import AsyncGenerator, Generator
 
 import pytest
@@ -8,22 +9,27 @@ import pytest_asyncio
 from fastapi.testclient import TestClient
 from httpx import AsyncClient
 from sqlalchemy import create_engine
+from sqlalchemy.ext.asyncio import async_sessionmaker, create_async_engine
 from sqlalchemy.orm import sessionmaker
-from sqlalchemy.pool import StaticPool
+from sqlalchemy.pool import NullPool, StaticPool
 
 # Set test environment before importing models
 os.environ["PYTEST_CURRENT_TEST"] = "true"
 
 from app.auth import create_access_token, get_password_hash
-from app.database import get_db
+from app.database import get_async_db, get_db
 from app.main import app
 from app.models.base import Base
 from app.models.template import Template
 from app.models.user import User
 from app.models.workflow import Workflow
 
-# Create in-memory SQLite database for integration testing
-SQLALCHEMY_DATABASE_URL = "sqlite:///:memory:"
+# Create a file-backed SQLite database so sync and async sessions share data.
+# Each run gets its own file, removed when the session finishes.
+_fd, TEST_DATABASE_PATH = tempfile.mkstemp(prefix="auterity_integration_", suffix=".db")
+os.close(_fd)
+SQLALCHEMY_DATABASE_URL = f"sqlite:///{TEST_DATABASE_PATH}"
+ASYNC_SQLALCHEMY_DATABASE_URL = f"sqlite+aiosqlite:///{TEST_DATABASE_PATH}"
 
 engine = create_engine(
     SQLALCHEMY_DATABASE_URL,
@@ -33,6 +39,22 @@ engine = create_engine(
 
 TestingSessionLocal = sessionmaker(autocommit=False, autoflush=False, bind=engine)
 
+# NullPool: each request may run on a different event loop under TestClient
+async_engine = create_async_engine(ASYNC_SQLALCHEMY_DATABASE_URL, poolclass=NullPool)
+
+TestingAsyncSessionLocal = async_sessionmaker(
+    async_engine, autoflush=False, expire_on_commit=False
+)
+
+
+def pytest_sessionfinish(session, exitstatus):
+    """Remove this run's test database file."""
+    engine.dispose()
+    try:
+        os.remove(TEST_DATABASE_PATH)
+    except OSError:
+        pass
+
 
 def override_get_db():
     """Override database dependency for integration testing."""
@@ -47,6 +69,14 @@ def override_get_db():
         db.close()
 
 
+async def override_get_async_db():
+    """Override async database dependency for integration testing."""
+    Base.metadata.create_all(bind=engine)
+
+    async with TestingAsyncSessionLocal() as db:
+        yield db
+
+
 @pytest.fixture(scope="function")
 def db_session():
     """Create a fresh database session for each test."""
@@ -65,8 +95,9 @@ def db_session():
 
 @pytest.fixture(autouse=True)
 def override_db_dependency():
-    """Override the database dependency for all integration tests."""
+    """Override the database dependencies for all integration tests."""
     app.dependency_overrides[get_db] = override_get_db
+    app.dependency_overrides[get_async_db] = override_get_async_db
     yield
     app.dependency_overrides.clear()
 
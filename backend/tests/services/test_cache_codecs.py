@@ -0,0 +1,62 @@
+"""Tests for cached value codecs and compression"""
+
+import json
+
+import pytest
+from app.services.cache_codecs import MARKER, CacheCodec, Codec, Compression
+
+
+class TestCacheCodec:
+    """Test encoding, compression and legacy entry handling"""
+
+    def test_round_trip_with_header(self):
+        """Encoded values carry the codec header and decode unchanged"""
+        codec = CacheCodec(codec="json", compression="none")
+        value = {"name": "tenant", "plan": "starter", "features": ["sso", "api"]}
+
+        encoded = codec.encode(value)
+
+        assert encoded[0] == MARKER
+        assert encoded[1] == Codec.JSON
+        assert encoded[2] == Compression.NONE
+        assert codec.decode(encoded) == value
+
+    def test_large_values_are_compressed(self):
+        """Payloads above the threshold are compressed, small ones are not"""
+        codec = CacheCodec(compression="zlib", compression_threshold=256)
+        report = {"rows": [{"metric": "requests", "value": i} for i in range(200)]}
+
+        small = codec.encode({"ok": True})
+        large = codec.encode(report)
+
+        assert small[2] == Compression.NONE
+        assert large[2] == Compression.ZLIB
+        assert len(large) < len(json.dumps(report))
+        assert codec.decode(large) == report
+
+    def test_legacy_json_entries_decode(self):
+        """Plain JSON written before codecs existed is still readable"""
+        codec = CacheCodec()
+        value = {"user_count": 12}
+
+        assert codec.decode(json.dumps(value).encode()) == value
+        assert codec.decode(json.dumps(value)) == value
+        assert codec.decode(b"42") == 42
+
+    def test_entries_decode_across_configurations(self):
+        """A reader decodes whatever codec and compression the writer used"""
+        writer = CacheCodec(codec="json", compression="zlib", compression_threshold=0)
+        reader = CacheCodec(compression="none")
+        value = {"items": list(range(100))}
+
+        assert reader.decode(writer.encode(value)) == value
+
+    def test_unknown_codec_is_rejected(self):
+        """Misconfigured codec names fail fast with the allowed values"""
+        with pytest.raises(ValueError, match="json, msgpack"):
+            CacheCodec(codec="pickle")
+
+    def test_unknown_compression_is_rejected(self):
+        """Misconfigured compression names fail fast with the allowed values"""
+        with pytest.raises(ValueError, match="none, zlib, zstd, lz4"):
+            CacheCodec(compression="brotli")
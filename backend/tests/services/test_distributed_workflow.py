@@ -0,0 +1,175 @@
+"""Tests for distributed workflow step execution"""
+
+import asyncio
+from types import SimpleNamespace
+from uuid import uuid4
+
+import pytest
+from app.exceptions import WorkflowExecutionError
+from app.services.distributed_workflow import (
+    DistributedStepDispatcher,
+    WorkflowStepWorker,
+)
+from app.services.workflow_plan import compile_workflow_plan
+from app.services.workflow_scheduler import DAGScheduler
+
+
+class InMemoryQueue:
+    """Message queue double with the parts of the Redis queue API used here"""
+
+    def __init__(self):
+        self.messages = []
+        self.events = {}
+        self.acked = []
+        self.extended = []
+
+    async def enqueue(self, queue_name, payload, max_retries=3):
+        self.messages.append(SimpleNamespace(queue_name=queue_name, payload=payload))
+
+    async def dequeue(self, queue_name, timeout=0, visibility_timeout=None):
+        await asyncio.sleep(0)
+        return self.messages.pop(0) if self.messages else None
+
+    async def extend_visibility(self, message, visibility_timeout=None):
+        self.extended.append((message, visibility_timeout))
+        return True
+
+    async def ack(self, message):
+        self.acked.append(message)
+        return True
+
+    async def publish_event(self, channel, payload, ttl_seconds=3600):
+        self.events.setdefault(channel, []).append(payload)
+
+    async def wait_for_event(self, channel, timeout=1):
+        await asyncio.sleep(0)
+        events = self.events.get(channel)
+        return events.pop(0) if events else None
+
+    async def delete_events(self, channel):
+        self.events.pop(channel, None)
+
+
+class RecordingEngine:
+    """Engine double that runs nodes by echoing their ids"""
+
+    def __init__(self, fail=(), delay=0):
+        self.fail = set(fail)
+        self.delay = delay
+        self.calls = []
+
+    async def run_node(
+        self,
+        execution_id,
+        node,
+        input_data,
+        definition_hash,
+        cache_namespace=None,
+        attempt=None,
+    ):
+        self.calls.append((node.id, dict(input_data)))
+        await asyncio.sleep(self.delay)
+        if node.id in self.fail:
+            raise RuntimeError(f"{node.id} exploded")
+        return {node.id: True}
+
+
+def _plan():
+    return compile_workflow_plan(
+        "distributed",
+        {
+            "nodes": [
+                {"id": node_id, "type": "process"} for node_id in ["A", "B", "C"]
+            ],
+            "edges": [
+                {"id": "A-B", "source": "A", "target": "B"},
+                {"id": "B-C", "source": "B", "target": "C"},
+            ],
+        },
+    )
+
+
+async def _drain(worker, stop):
+    while not stop.is_set():
+        if not await worker.process_next():
+            await asyncio.sleep(0)
+
+
+class TestDistributedExecution:
+    """Test dispatching steps to queue workers"""
+
+    @pytest.mark.asyncio
+    async def test_steps_run_on_workers_in_dependency_order(self):
+        """Completion events release dependents until the DAG is done"""
+        queue = InMemoryQueue()
+        engine = RecordingEngine()
+        worker = WorkflowStepWorker(engine=engine, queue=queue)
+        dispatcher = DistributedStepDispatcher(queue=queue, poll_timeout=0)
+        stop = asyncio.Event()
+        draining = asyncio.create_task(_drain(worker, stop))
+
+        result = await dispatcher.run(uuid4(), _plan(), {"input": 1}, DAGScheduler())
+        stop.set()
+        await draining
+
+        assert [node_id for node_id, _ in engine.calls] == ["A", "B", "C"]
+        assert engine.calls[2][1] == {"input": 1, "A": True, "B": True}
+        assert result == {"input": 1, "A": True, "B": True, "C": True}
+        assert len(queue.acked) == 3
+        assert queue.events == {}
+
+    @pytest.mark.asyncio
+    async def test_worker_failure_fails_the_execution(self):
+        """A step failing on a worker surfaces as a workflow error"""
+        queue = InMemoryQueue()
+        engine = RecordingEngine(fail={"B"})
+        worker = WorkflowStepWorker(engine=engine, queue=queue)
+        dispatcher = DistributedStepDispatcher(queue=queue, poll_timeout=0)
+        stop = asyncio.Event()
+        draining = asyncio.create_task(_drain(worker, stop))
+
+        with pytest.raises(WorkflowExecutionError, match="B exploded"):
+            await dispatcher.run(uuid4(), _plan(), {}, DAGScheduler())
+        stop.set()
+        await draining
+
+        assert [node_id for node_id, _ in engine.calls] == ["A", "B"]
+
+    @pytest.mark.asyncio
+    async def test_long_steps_keep_extending_their_claim(self):
+        """Workers heartbeat while a step runs so it is not recovered twice"""
+        queue = InMemoryQueue()
+        worker = WorkflowStepWorker(
+            engine=RecordingEngine(delay=0.05),
+            queue=queue,
+            visibility_timeout=1,
+            heartbeat_interval=0.01,
+        )
+        await queue.enqueue(
+            "workflow_steps",
+            {
+                "execution_id": str(uuid4()),
+                "channel": "events",
+                "definition_hash": "hash",
+                "node": {"id": "A", "type": "process", "data": {}},
+            },
+        )
+
+        assert await worker.process_next()
+
+        assert len(queue.extended) >= 2
+        assert all(timeout == 1 for _, timeout in queue.extended)
+        assert len(queue.acked) == 1
+
+        extended = len(queue.extended)
+        await asyncio.sleep(0.03)
+        assert len(queue.extended) == extended
+
+    def test_dispatcher_outwaits_the_recovery_of_a_dead_worker(self):
+        """A step lost with its worker is redelivered before the dispatcher quits"""
+        dispatcher = DistributedStepDispatcher(queue=InMemoryQueue())
+        worker = WorkflowStepWorker(engine=RecordingEngine(), queue=InMemoryQueue())
+
+        assert dispatcher.step_timeout > (
+            worker.visibility_timeout + worker.maintenance_interval
+        )
@@ -0,0 +1,114 @@
+"""Tests for the buffered execution log writer"""
+
+import asyncio
+import threading
+from unittest.mock import MagicMock
+from uuid import uuid4
+
+import pytest
+from app.services.execution_log_writer import ExecutionLogWriter, LogDurability
+
+
+def _writer(**kwargs):
+    session = MagicMock()
+    writer = ExecutionLogWriter(session_factory=lambda: session, **kwargs)
+    return writer, session
+
+
+async def _write(writer, execution_id, step_name="step"):
+    await writer.write(
+        execution_id=execution_id,
+        step_name=step_name,
+        step_type="process",
+        input_data={},
+        output_data={},
+        duration_ms=1,
+    )
+
+
+class TestExecutionLogWriter:
+    """Test batching and durability behaviour"""
+
+    @pytest.mark.asyncio
+    async def test_rows_are_batched_into_one_insert(self):
+        """Pending rows are written together in a single statement"""
+        writer, session = _writer(batch_size=10, flush_interval=60)
+        execution_id = uuid4()
+
+        for index in range(3):
+            await _write(writer, execution_id, f"step-{index}")
+        assert session.execute.call_count == 0
+
+        await writer.flush_execution(execution_id)
+
+        assert session.execute.call_count == 1
+        rows = session.execute.call_args[0][1]
+        assert [row["step_name"] for row in rows] == ["step-0", "step-1", "step-2"]
+        session.commit.assert_called_once()
+        await writer.close()
+
+    @pytest.mark.asyncio
+    async def test_flush_on_batch_size(self):
+        """Reaching batch_size wakes the background flusher"""
+        writer, session = _writer(batch_size=2, flush_interval=60)
+        execution_id = uuid4()
+
+        await _write(writer, execution_id)
+        await _write(writer, execution_id)
+        await asyncio.sleep(0.05)
+
+        assert session.execute.call_count == 1
+        await writer.close()
+
+    @pytest.mark.asyncio
+    async def test_background_mode_does_not_flush_at_execution_end(self):
+        """BACKGROUND durability leaves rows to the interval flush"""
+        writer, session = _writer(
+            batch_size=10, flush_interval=60, durability=LogDurability.BACKGROUND
+        )
+        execution_id = uuid4()
+
+        await _write(writer, execution_id)
+        await writer.flush_execution(execution_id)
+        assert session.execute.call_count == 0
+
+        await writer.close()
+        assert session.execute.call_count == 1
+
+    @pytest.mark.asyncio
+    async def test_failed_flush_keeps_rows(self):
+        """Rows survive a failed insert and are retried"""
+        writer, session = _writer(batch_size=10, flush_interval=60)
+        session.execute.side_effect = [RuntimeError("db down"), None]
+        execution_id = uuid4()
+
+        await _write(writer, execution_id)
+        with pytest.raises(RuntimeError):
+            await writer.flush()
+        session.rollback.assert_called_once()
+
+        await writer.flush()
+        assert len(session.execute.call_args[0][1]) == 1
+        await writer.close()
+
+    @pytest.mark.asyncio
+    async def test_flush_execution_waits_for_in_flight_flush(self):
+        """Rows already taken by a running flush are written before returning"""
+        writer, session = _writer(batch_size=10, flush_interval=60)
+        release = threading.Event()
+        session.execute.side_effect = lambda *args: release.wait(5)
+        execution_id = uuid4()
+
+        await _write(writer, execution_id)
+        background_flush = asyncio.create_task(writer.flush())
+        await asyncio.sleep(0.05)
+        assert writer._buffer == []
+
+        flush_execution = asyncio.create_task(writer.flush_execution(execution_id))
+        await asyncio.sleep(0.05)
+        assert not flush_execution.done()
+
+        release.set()
+        await asyncio.gather(background_flush, flush_execution)
+        session.commit.assert_called_once()
+        await writer.close()
@@ -0,0 +1,155 @@
+"""Tests for the Redis message queue state transitions"""
+
+import time
+
+import fakeredis
+import pytest
+from app.services import message_queue as message_queue_module
+from app.services.message_queue import MessageQueue, MessageStatus
+from redis.cluster import key_slot
+
+QUEUE = "workflow_steps"
+
+
+@pytest.fixture
+def queue(monkeypatch):
+    """MessageQueue backed by an in-process fake Redis with Lua support"""
+    server = fakeredis.FakeServer()
+    monkeypatch.setattr(
+        message_queue_module.redis,
+        "from_url",
+        lambda *args, **kwargs: fakeredis.FakeRedis(
+            server=server, decode_responses=True
+        ),
+    )
+    return MessageQueue(redis_url="redis://fake")
+
+
+class TestMessageQueue:
+    """Test claim, ack, nack, scheduling and recovery against fake Redis"""
+
+    def test_queue_keys_share_one_cluster_slot(self, queue):
+        """Every key a queue operation touches hashes to the same slot"""
+        keys = [
+            queue._get_queue_key(QUEUE),
+            queue._get_processing_key(QUEUE),
+            queue._get_deadline_key(QUEUE),
+            queue._get_dead_letter_key(QUEUE),
+            queue._get_scheduled_key(QUEUE),
+            queue._get_message_key(QUEUE, "message-id"),
+        ]
+
+        assert len({key_slot(key.encode()) for key in keys}) == 1
+
+    def test_claim_and_ack(self, queue):
+        """Claimed messages move to processing and leave it when acked"""
+        message_ids = queue.enqueue_many(QUEUE, [{"step": 1}, {"step": 2}])
+
+        messages = queue.dequeue_batch(QUEUE, max_messages=5)
+
+        assert [m.id for m in messages] == message_ids
+        assert all(m.status == MessageStatus.PROCESSING for m in messages)
+        assert queue.get_queue_stats(QUEUE)["processing"] == 2
+        assert queue.redis_client.zcard(queue._get_deadline_key(QUEUE)) == 2
+
+        assert queue.ack_many(messages) == 2
+        assert queue.ack(messages[0]) is False
+        assert queue.get_queue_stats(QUEUE) == {
+            "pending": 0,
+            "processing": 0,
+            "dead_letter": 0,
+        }
+        assert queue.redis_client.zcard(queue._get_deadline_key(QUEUE)) == 0
+        stored = queue.get_message(QUEUE, message_ids[0])
+        assert stored.status == MessageStatus.COMPLETED
+
+    def test_claim_drops_messages_whose_data_expired(self, queue):
+        """Ids without message data are removed instead of delivered"""
+        message_id = queue.enqueue(QUEUE, {"step": 1})
+        queue.redis_client.delete(queue._get_message_key(QUEUE, message_id))
+
+        assert queue.dequeue_batch(QUEUE) == []
+        assert queue.get_queue_stats(QUEUE)["processing"] == 0
+        assert queue.redis_client.zcard(queue._get_deadline_key(QUEUE)) == 0
+
+    def test_nack_retries_then_dead_letters(self, queue):
+        """Failed messages are rescheduled until retries run out"""
+        queue.enqueue(QUEUE, {"step": 1}, max_retries=1)
+        message = queue.dequeue(QUEUE)
+
+        assert queue.nack(message, "boom")
+        assert message.retry_count == 1
+        assert message.status == MessageStatus.PENDING
+        assert queue.redis_client.zcard(queue._get_scheduled_key(QUEUE)) == 1
+
+        queue.redis_client.zadd(queue._get_scheduled_key(QUEUE), {message.id: 0})
+        assert queue.process_scheduled_messages() == 1
+        message = queue.dequeue(QUEUE)
+
+        assert queue.nack(message, "boom again")
+        assert message.status == MessageStatus.DEAD_LETTER
+        assert queue.get_queue_stats(QUEUE)["dead_letter"] == 1
+        assert queue.nack(message, "late duplicate") is False
+
+    def test_scheduled_messages_are_promoted_when_due(self, queue):
+        """Delayed messages reach the queue only once their time has come"""
+        message_id = queue.enqueue(QUEUE, {"step": 1}, delay_seconds=60)
+
+        assert queue.process_scheduled_messages() == 0
+        assert queue.dequeue(QUEUE) is None
+
+        queue.redis_client.zadd(queue._get_scheduled_key(QUEUE), {message_id: 0})
+
+        assert queue.process_scheduled_messages() == 1
+        assert queue.process_scheduled_messages() == 0
+        assert queue.dequeue(QUEUE).id == message_id
+
+    def test_stale_claims_are_recovered(self, queue):
+        """Claims past their deadline are retried, extended ones are kept"""
+        queue.enqueue_many(QUEUE, [{"step": 1}, {"step": 2}])
+        stale, alive = queue.dequeue_batch(QUEUE)
+        deadline_key = queue._get_deadline_key(QUEUE)
+        queue.redis_client.zadd(deadline_key, {stale.id: 0, alive.id: 0})
+
+        assert queue.extend_visibility(alive, visibility_timeout=600)
+        assert queue.recover_stale_messages() == 1
+
+        assert queue.redis_client.zscore(deadline_key, alive.id) > time.time()
+        assert queue.get_queue_stats(QUEUE)["processing"] == 1
+        recovered = queue.get_message(QUEUE, stale.id)
+        assert recovered.status == MessageStatus.PENDING
+        assert recovered.error_message == "Processing timeout exceeded"
+
+    def test_claims_orphaned_before_their_deadline_are_recovered(self, queue):
+        """An id moved by BRPOPLPUSH whose consumer died still gets redelivered"""
+        message_id = queue.enqueue(QUEUE, {"step": 1})
+        deadline_key = queue._get_deadline_key(QUEUE)
+        queue.redis_client.brpoplpush(
+            queue._get_queue_key(QUEUE), queue._get_processing_key(QUEUE), 1
+        )
+
+        # The first sweep only adopts the claim, giving it the default deadline
+        assert queue.recover_stale_messages() == 0
+        assert queue.redis_client.zscore(deadline_key, message_id) > time.time()
+
+        queue.redis_client.zadd(deadline_key, {message_id: 0})
+        assert queue.recover_stale_messages() == 1
+        assert queue.get_queue_stats(QUEUE)["processing"] == 0
+
+    def test_extend_visibility_fails_after_ack(self, queue):
+        """Heartbeats report a lost claim once the message left processing"""
+        queue.enqueue(QUEUE, {"step": 1})
+        message = queue.dequeue(QUEUE)
+        queue.ack(message)
+
+        assert queue.extend_visibility(message) is False
+
+    def test_purge_clears_every_queue_key(self, queue):
+        """Purging removes pending, scheduled and claimed messages"""
+        queue.enqueue(QUEUE, {"step": 1})
+        queue.enqueue(QUEUE, {"step": 2}, delay_seconds=60)
+        queue.enqueue(QUEUE, {"step": 3})
+        queue.dequeue(QUEUE)
+
+        assert queue.purge_queue(QUEUE) == 3
+        assert queue.redis_client.keys("*") == []
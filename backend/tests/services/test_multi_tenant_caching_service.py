@@ -0,0 +1,200 @@
+"""Tests for multi-tenant cache quotas and eviction"""
+
+from uuid import uuid4
+
+import fakeredis
+import pytest
+from app.services.cache_codecs import CacheCodec, Compression
+from app.services.multi_tenant_caching_service import (
+    CachePriority,
+    CacheType,
+    MultiTenantCachingService,
+)
+
+VALUE = "x" * 1000
+
+
+def _service(**limits):
+    service = MultiTenantCachingService(db_session=None)
+    service.cache_type = CacheType.MEMORY
+    for name, value in limits.items():
+        setattr(service, name, value)
+    return service
+
+
+def _redis_service(server, **limits):
+    service = _service(**limits)
+    service.cache_type = CacheType.REDIS
+    service.redis_client = fakeredis.aioredis.FakeRedis(server=server)
+    return service
+
+
+class TestTenantQuotas:
+    """Test per-tenant accounting, quota eviction and fair sharing"""
+
+    @pytest.mark.asyncio
+    async def test_byte_accounting_matches_entries(self):
+        """Tenant and total bytes follow sets, overwrites and deletes"""
+        service = _service()
+        tenant_id = uuid4()
+
+        await service.set("a", VALUE, tenant_id=tenant_id)
+        await service.set("b", VALUE, tenant_id=tenant_id)
+        await service.set("a", "small", tenant_id=tenant_id)
+        await service.delete("b", tenant_id=tenant_id)
+
+        entries = service.memory_cache.values()
+        assert service.tenant_bytes[tenant_id] == sum(e.size for e in entries)
+        assert service.total_bytes == service.tenant_bytes[tenant_id]
+
+    @pytest.mark.asyncio
+    async def test_quota_evicts_coldest_tenant_entries(self):
+        """A tenant over quota loses its least used entries, not its hot ones"""
+        service = _service(max_memory_per_tenant=10_000)
+        tenant_id = uuid4()
+
+        await service.set("hot", VALUE, tenant_id=tenant_id)
+        await service.set(
+            "pinned", VALUE, tenant_id=tenant_id, priority=CachePriority.CRITICAL
+        )
+        for _ in range(3):
+            await service.get("hot", tenant_id=tenant_id)
+        for index in range(20):
+            assert await service.set(f"cold-{index}", VALUE, tenant_id=tenant_id)
+
+        assert service.tenant_bytes[tenant_id] <= 10_000
+        assert await service.get("hot", tenant_id=tenant_id) == VALUE
+        assert await service.get("pinned", tenant_id=tenant_id) == VALUE
+        assert service.tenant_metrics[tenant_id].evictions > 0
+
+    @pytest.mark.asyncio
+    async def test_global_limit_evicts_from_largest_tenant(self):
+        """A noisy tenant is evicted down to its fair share first"""
+        service = _service(max_memory_total=30_000)
+        quiet, noisy = uuid4(), uuid4()
+
+        for index in range(5):
+            await service.set(f"key-{index}", VALUE, tenant_id=quiet)
+        for index in range(50):
+            assert await service.set(f"key-{index}", VALUE, tenant_id=noisy)
+
+        assert service.total_bytes <= 30_000
+        assert len(service.tenant_entries[quiet]) == 5
+
+    @pytest.mark.asyncio
+    async def test_value_larger_than_quota_is_rejected(self):
+        """Entries that can never fit are refused without evicting anything"""
+        service = _service()
+        tenant_id = uuid4()
+        service.set_tenant_quota(tenant_id, 500)
+
+        await service.set("small", "ok", tenant_id=tenant_id)
+
+        assert not await service.set("large", VALUE, tenant_id=tenant_id)
+        assert await service.get("small", tenant_id=tenant_id) == "ok"
+
+    @pytest.mark.asyncio
+    async def test_global_limit_is_checked_before_tenant_eviction(self):
+        """A write the global limit rejects evicts nothing from its tenant"""
+        service = _service(max_memory_total=4100, codec=CacheCodec(compression="none"))
+        pinned, tenant_id = uuid4(), uuid4()
+        service.set_tenant_quota(tenant_id, 2000)
+
+        for index in range(3):
+            await service.set(
+                f"key-{index}", VALUE, tenant_id=pinned, priority=CachePriority.CRITICAL
+            )
+        await service.set("small", VALUE, tenant_id=tenant_id)
+
+        assert not await service.set("large", "z" * 1200, tenant_id=tenant_id)
+        assert await service.get("small", tenant_id=tenant_id) == VALUE
+
+    @pytest.mark.asyncio
+    async def test_old_popularity_decays(self):
+        """Entries read often long ago are evicted before recently used ones"""
+        service = _service(max_memory_per_tenant=2500)
+        tenant_id = uuid4()
+
+        await service.set("old", VALUE, tenant_id=tenant_id)
+        for _ in range(5):
+            await service.get("old", tenant_id=tenant_id)
+        # Shift all of its accesses an hour into the past
+        service.memory_cache[f"tenant:{tenant_id}:old"].score -= 3600
+        await service.set("recent", VALUE, tenant_id=tenant_id)
+
+        assert await service.set("new", VALUE, tenant_id=tenant_id)
+        assert await service.get("recent", tenant_id=tenant_id) == VALUE
+        assert await service.get("old", tenant_id=tenant_id) is None
+
+    @pytest.mark.asyncio
+    async def test_redis_accounting_is_shared_between_instances(self):
+        """Quotas hold across instances writing to the same Redis"""
+        server = fakeredis.FakeServer()
+        first = _redis_service(server, max_memory_per_tenant=5000)
+        second = _redis_service(server, max_memory_per_tenant=5000)
+        tenant_id = uuid4()
+
+        for index in range(4):
+            assert await first.set(f"first-{index}", VALUE, tenant_id=tenant_id)
+        for index in range(4):
+            assert await second.set(f"second-{index}", VALUE, tenant_id=tenant_id)
+
+        stored = (await second.get_tenant_cache_metrics(tenant_id)).total_size
+        assert 0 < stored <= 5000
+        assert await first.get("first-0", tenant_id=tenant_id) is None
+        assert await second.get("second-3", tenant_id=tenant_id) == VALUE
+
+        assert await first.delete("second-3", tenant_id=tenant_id)
+        metrics = await second.get_tenant_cache_metrics(tenant_id)
+        assert metrics.total_size == stored - len(first.codec.encode(VALUE))
+
+    @pytest.mark.asyncio
+    async def test_clearing_a_tenant_keeps_other_tenants(self):
+        """Clearing a tenant removes only its keys and its usage"""
+        service = _redis_service(fakeredis.FakeServer())
+        cleared, kept = uuid4(), uuid4()
+
+        for index in range(3):
+            await service.set(f"key-{index}", VALUE, tenant_id=cleared)
+        await service.set("key-0", VALUE, tenant_id=kept)
+
+        assert await service.clear_tenant_cache(cleared) == 3
+        assert await service.get("key-0", tenant_id=cleared) is None
+        assert await service.get("key-0", tenant_id=kept) == VALUE
+        metrics = await service.get_tenant_cache_metrics(cleared)
+        assert metrics.total_size == 0
+
+
+class TestCachedValueEncoding:
+    """Test values survive the codec and compression through the service"""
+
+    @pytest.mark.asyncio
+    async def test_compressed_values_round_trip_through_redis(self):
+        """Large values are stored compressed and read back unchanged"""
+        codec = CacheCodec(codec="json", compression="zlib", compression_threshold=256)
+        service = _redis_service(fakeredis.FakeServer(), codec=codec)
+        tenant_id = uuid4()
+        report = {"rows": [{"metric": "requests", "value": i} for i in range(200)]}
+
+        assert await service.set("report", report, tenant_id=tenant_id)
+        assert await service.set("flag", {"ok": True}, tenant_id=tenant_id)
+
+        stored = await service.redis_client.get(f"tenant:{tenant_id}:report")
+        assert stored[2] == Compression.ZLIB
+        assert await service.get("report", tenant_id=tenant_id) == report
+        assert await service.get("flag", tenant_id=tenant_id) == {"ok": True}
+
+    @pytest.mark.asyncio
+    async def test_values_decode_across_service_configurations(self):
+        """An instance reads entries another instance compressed differently"""
+        server = fakeredis.FakeServer()
+        writer = _redis_service(
+            server, codec=CacheCodec(compression="zlib", compression_threshold=0)
+        )
+        reader = _redis_service(server, codec=CacheCodec(compression="none"))
+        tenant_id = uuid4()
+        value = {"items": list(range(100))}
+
+        assert await writer.set("items", value, tenant_id=tenant_id)
+
+        assert await reader.get("items", tenant_id=tenant_id) == value
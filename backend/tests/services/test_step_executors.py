@@ -154,7 +154,7 @@ class TestAIStepExecutor:
     """Test AI step executor"""
 
     @pytest.mark.asyncio
-    async def test_ai_execution(self):
+    async def test_ai_execution(self, streaming_ai_service):
         """Test AI step execution"""
         executor = AIStepExecutor()
         input_data = {
@@ -170,6 +170,20 @@ class TestAIStepExecutor:
         assert "Analyze this data" in result.data["ai_response"]
         assert result.metadata["prompt_length"] == len(input_data["prompt"])
 
+    @pytest.mark.asyncio
+    async def test_ai_stream_yields_provider_chunks(self, streaming_ai_service):
+        """Test each provider chunk is emitted before the final result"""
+        executor = AIStepExecutor()
+        input_data = {"prompt": "Summarise", "data": {}}
+
+        items = [item async for item in executor.execute_stream(input_data, {})]
+
+        chunks, result = items[:-1], items[-1]
+        deltas = [chunk.data["ai_response_delta"] for chunk in chunks]
+        assert deltas == ["Answer ", "to: ", "Summarise"]
+        assert [chunk.sequence for chunk in chunks] == [0, 1, 2]
+        assert result.data["ai_response"] == "Answer to: Summarise"
+
     @pytest.mark.asyncio
     async def test_ai_execution_missing_prompt(self):
         """Test AI execution with missing prompt"""
@@ -0,0 +1,121 @@
+"""Tests for the in-process tenant and user lookup cache"""
+
+import asyncio
+from uuid import uuid4
+
+import pytest
+from app.services.tenant_cache import TenantLookupCache
+
+
+def _loader(value, calls):
+    async def load():
+        calls.append(value)
+        return value
+
+    return load
+
+
+class TestTenantLookupCache:
+    """Test key isolation, TTL expiry and invalidation"""
+
+    @pytest.mark.asyncio
+    async def test_lookups_are_cached_per_key(self):
+        """Each key loads once and never sees another key's value"""
+        cache = TenantLookupCache()
+        first, second = uuid4(), uuid4()
+        calls = []
+
+        for _ in range(2):
+            active = await cache.get_or_load(
+                cache.TENANT_ACTIVE, first, _loader(True, calls)
+            )
+            inactive = await cache.get_or_load(
+                cache.TENANT_ACTIVE, second, _loader(False, calls)
+            )
+            assert (active, inactive) == (True, False)
+
+        assert calls == [True, False]
+        stats = cache.get_stats()[cache.TENANT_ACTIVE]
+        assert stats["hits"] == 2
+        assert stats["misses"] == 2
+        assert stats["size"] == 2
+
+    @pytest.mark.asyncio
+    async def test_lookups_do_not_share_keys(self):
+        """The same key in different lookups resolves independently"""
+        cache = TenantLookupCache()
+        calls = []
+
+        await cache.get_or_load(cache.TENANT_BY_SLUG, "acme", _loader("tenant", calls))
+        user = await cache.get_or_load(
+            cache.USER_BY_EMAIL, "acme", _loader("user", calls)
+        )
+
+        assert user == "user"
+        assert calls == ["tenant", "user"]
+
+    @pytest.mark.asyncio
+    async def test_not_found_results_are_cached(self):
+        """A missing tenant is not looked up again until invalidated"""
+        cache = TenantLookupCache()
+        calls = []
+
+        for _ in range(3):
+            tenant = await cache.get_or_load(
+                cache.TENANT_BY_SLUG, "missing", _loader(None, calls)
+            )
+            assert tenant is None
+
+        assert calls == [None]
+
+    @pytest.mark.asyncio
+    async def test_entries_expire_after_ttl(self):
+        """Entries are reloaded once their TTL has passed"""
+        cache = TenantLookupCache(ttl=0.05)
+        calls = []
+
+        await cache.get_or_load(cache.TENANT_BY_SLUG, "acme", _loader("v1", calls))
+        await asyncio.sleep(0.1)
+        value = await cache.get_or_load(
+            cache.TENANT_BY_SLUG, "acme", _loader("v2", calls)
+        )
+
+        assert value == "v2"
+        assert calls == ["v1", "v2"]
+
+    @pytest.mark.asyncio
+    async def test_invalidate_tenant_drops_only_that_tenant(self):
+        """Invalidation reloads the changed tenant and keeps the others"""
+        cache = TenantLookupCache()
+        changed, other = uuid4(), uuid4()
+        calls = []
+
+        await cache.get_or_load(cache.TENANT_ACTIVE, changed, _loader(True, calls))
+        await cache.get_or_load(cache.TENANT_ACTIVE, other, _loader(True, calls))
+        await cache.get_or_load(cache.TENANT_BY_SLUG, "acme", _loader(None, calls))
+
+        cache.invalidate_tenant(tenant_id=changed, slug="acme")
+
+        await cache.get_or_load(cache.TENANT_ACTIVE, changed, _loader(False, calls))
+        await cache.get_or_load(cache.TENANT_ACTIVE, other, _loader(False, calls))
+        slug = await cache.get_or_load(
+            cache.TENANT_BY_SLUG, "acme", _loader("tenant", calls)
+        )
+
+        assert slug == "tenant"
+        assert calls == [True, True, None, False, "tenant"]
+
+    @pytest.mark.asyncio
+    async def test_invalidate_user_and_clear(self):
+        """User invalidation and clear force the next lookup to load"""
+        cache = TenantLookupCache()
+        calls = []
+
+        await cache.get_or_load(cache.USER_BY_EMAIL, "a@x.io", _loader("t1", calls))
+        cache.invalidate_user("a@x.io")
+        await cache.get_or_load(cache.USER_BY_EMAIL, "a@x.io", _loader("t2", calls))
+        cache.clear()
+        await cache.get_or_load(cache.USER_BY_EMAIL, "a@x.io", _loader("t3", calls))
+
+        assert calls == ["t1", "t2", "t3"]
+        assert cache.get_stats()[cache.USER_BY_EMAIL]["size"] == 1
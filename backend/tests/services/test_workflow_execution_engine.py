@@ -5,6 +5,8 @@ from datetime import datetime
 from unittest.mock import Mock, patch
 
 import pytest
+from app.monitoring.performance import PerformanceMonitor, step_performance_monitor
+from app.services.step_result_cache import StepResultCache
 from app.services.workflow_execution_engine import (
     ExecutionContext,
     ExecutionStatus,
@@ -80,6 +82,27 @@ class TestTopologicalExecutor:
         assert plan.execution_order[2] == ["E"]
         assert plan.execution_order[3] == ["F"]
 
+    def test_execution_plan_is_cached_per_version(self):
+        """Test plans are reused until the definition changes"""
+        executor = TopologicalExecutor()
+        workflow = {
+            "id": "cached_workflow",
+            "steps": {
+                "step1": {"type": "input", "depends_on": []},
+                "step2": {"type": "process", "depends_on": ["step1"]},
+            },
+        }
+
+        first = executor.create_execution_plan(workflow)
+        assert executor.create_execution_plan(workflow) is first
+        assert set(first.executors) == {"step1", "step2"}
+
+        workflow["steps"]["step3"] = {"type": "output", "depends_on": ["step2"]}
+        updated = executor.create_execution_plan(workflow)
+
+        assert updated is not first
+        assert updated.execution_order[2] == ["step3"]
+
 
 class TestRetryManager:
     """Test retry logic and exponential backoff"""
@@ -252,6 +275,160 @@ class TestWorkflowExecutionEngine:
         consumer_result = result["results"]["consumer"]
         assert "processed_data" in consumer_result
 
+    @pytest.mark.asyncio
+    async def test_streaming_step_output(self, streaming_ai_service):
+        """Test AI output streams through the output step to the client sink"""
+        messages = []
+
+        async def sink(execution_id, message):
+            messages.append((execution_id, message))
+
+        engine = WorkflowExecutionEngine(stream_sink=sink)
+
+        workflow = {
+            "id": "streaming_test",
+            "steps": {
+                "ai_step": {
+                    "type": "ai",
+                    "input": {"prompt": "summarise this"},
+                    "depends_on": [],
+                },
+                "output_step": {
+                    "type": "output",
+                    "input": {"destination": "console"},
+                    "depends_on": ["ai_step"],
+                },
+            },
+        }
+
+        result = await engine.execute_workflow(workflow, execution_id="exec-1")
+
+        assert result["status"] == "completed"
+        response = result["results"]["ai_step"]["ai_response"]
+        chunks = [m for _, m in messages if m["type"] == "output_chunk"]
+        streamed = "".join(c["data"]["ai_response_delta"] for c in chunks)
+
+        assert streamed == response == "Answer to: summarise this"
+        assert result["results"]["output_step"]["streamed_chunks"] == len(chunks)
+        assert {(c["step_id"], c["source_step_id"]) for c in chunks} == {
+            ("output_step", "ai_step")
+        }
+        assert {c["destination"] for c in chunks} == {"console"}
+        assert {execution_id for execution_id, _ in messages} == {"exec-1"}
+        # The consuming output step delivers the chunks; nothing is sent twice
+        assert not [m for _, m in messages if m["type"] == "step_output_chunk"]
+
+    @pytest.mark.asyncio
+    async def test_streaming_step_without_consumers(self, streaming_ai_service):
+        """Test a streaming step with no consumer streams to clients itself"""
+        messages = []
+
+        async def sink(execution_id, message):
+            messages.append(message)
+
+        engine = WorkflowExecutionEngine(stream_sink=sink)
+
+        workflow = {
+            "id": "client_stream_test",
+            "steps": {
+                "ai_step": {
+                    "type": "ai",
+                    "input": {"prompt": "summarise this"},
+                    "depends_on": [],
+                },
+            },
+        }
+
+        result = await engine.execute_workflow(workflow, execution_id="exec-2")
+
+        assert result["status"] == "completed"
+        chunks = [m for m in messages if m["type"] == "step_output_chunk"]
+        streamed = "".join(c["data"]["ai_response_delta"] for c in chunks)
+        assert streamed == result["results"]["ai_step"]["ai_response"]
+        assert messages[-1]["type"] == "step_output_end"
+
+    @pytest.mark.asyncio
+    async def test_finished_execution_state_is_evicted(self):
+        """Test live state is dropped once a run finishes"""
+        engine = WorkflowExecutionEngine()
+
+        workflow = {
+            "id": "eviction_test",
+            "steps": {
+                "input_step": {
+                    "type": "input",
+                    "input": {"data": {"message": "hello"}},
+                    "depends_on": [],
+                },
+            },
+        }
+
+        result = await engine.execute_workflow(workflow, execution_id="run-1")
+
+        assert result["status"] == "completed"
+        assert "run-1" not in engine.completed_steps
+        assert "run-1" not in engine.step_results
+        assert engine.active_executions == {}
+
+        status = engine.get_execution_status("run-1")
+        assert status["status"] == "completed"
+        assert status["completed_steps"] == ["input_step"]
+
+    @pytest.mark.asyncio
+    async def test_cached_step_is_served_from_step_cache(self):
+        """Test opted-in steps run once per input and tenant namespace"""
+        engine = WorkflowExecutionEngine(
+            step_cache=StepResultCache(), performance_monitor=PerformanceMonitor()
+        )
+        calls = []
+
+        async def mock_execute(input_data, context):
+            calls.append(context["step_id"])
+            return Mock(success=True, data={"result": "done"})
+
+        workflow = {
+            "id": "cache_test",
+            "steps": {
+                "cached": {
+                    "type": "process",
+                    "input": {"data": {"value": 1}},
+                    "cache": {"ttl": 60},
+                    "depends_on": [],
+                },
+                "uncached": {
+                    "type": "process",
+                    "input": {"data": {"value": 1}},
+                    "depends_on": [],
+                },
+            },
+        }
+
+        with patch(
+            "app.services.step_executors.factory.StepExecutorFactory.create_executor"
+        ) as mock_factory:
+            mock_executor = Mock()
+            mock_executor.execute = mock_execute
+            mock_factory.return_value = mock_executor
+
+            first = await engine.execute_workflow(workflow, cache_namespace="t1")
+            second = await engine.execute_workflow(workflow, cache_namespace="t1")
+            await engine.execute_workflow(workflow, cache_namespace="t2")
+
+        assert first["status"] == second["status"] == "completed"
+        assert second["results"]["cached"] == {"result": "done"}
+        assert sorted(calls) == ["cached", "cached", "uncached"] + ["uncached"] * 2
+
+        stats = engine.performance_monitor.get_cache_stats()["process"]
+        assert stats["hits"] == 1
+        assert stats["misses"] == 2
+
+    def test_engines_share_the_default_performance_monitor(self):
+        """Test cache stats are kept per process rather than per engine"""
+        first, second = WorkflowExecutionEngine(), WorkflowExecutionEngine()
+
+        assert first.performance_monitor is step_performance_monitor
+        assert second.performance_monitor is step_performance_monitor
+
     def test_execution_status_tracking(self):
         """Test execution status tracking"""
         engine = WorkflowExecutionEngine()
@@ -0,0 +1,195 @@
+"""Tests for the DAG step scheduler"""
+
+import asyncio
+
+import pytest
+from app.core.config import settings
+from app.services.step_executors.base_executor import StreamChunk
+from app.services.workflow_plan import compile_workflow_plan
+from app.services.workflow_scheduler import DAGScheduler, get_global_step_limiter
+from app.types.workflow import SchedulerConfig
+
+
+def _plan(node_ids, *pairs):
+    return compile_workflow_plan(
+        "test",
+        {
+            "nodes": [{"id": node_id, "type": "process"} for node_id in node_ids],
+            "edges": [
+                {"id": f"{source}-{target}", "source": source, "target": target}
+                for source, target in pairs
+            ],
+        },
+    )
+
+
+class TestDAGScheduler:
+    """Test concurrent dependency-driven step execution"""
+
+    @pytest.mark.asyncio
+    async def test_independent_branches_overlap(self):
+        """Sibling steps run concurrently once their parent completes"""
+        scheduler = DAGScheduler(SchedulerConfig(max_parallel_steps=4))
+        running = 0
+        peak = 0
+
+        async def run_step(node_id, step_input):
+            nonlocal running, peak
+            running += 1
+            peak = max(peak, running)
+            await asyncio.sleep(0.01)
+            running -= 1
+            return {node_id: True}
+
+        result = await scheduler.run(
+            _plan(["A", "B", "C", "D"], ("A", "B"), ("A", "C"), ("B", "D"), ("C", "D")),
+            {"input": 1},
+            run_step,
+        )
+
+        assert peak == 2
+        assert result == {"input": 1, "A": True, "B": True, "C": True, "D": True}
+
+    @pytest.mark.asyncio
+    async def test_per_execution_limit(self):
+        """No more than max_parallel_steps run at once"""
+        scheduler = DAGScheduler(SchedulerConfig(max_parallel_steps=2))
+        running = 0
+        peak = 0
+
+        async def run_step(node_id, step_input):
+            nonlocal running, peak
+            running += 1
+            peak = max(peak, running)
+            await asyncio.sleep(0.01)
+            running -= 1
+            return {}
+
+        await scheduler.run(_plan(["A", "B", "C", "D", "E"]), {}, run_step)
+
+        assert peak == 2
+
+    @pytest.mark.asyncio
+    async def test_merge_order_is_deterministic(self):
+        """Conflicting branch outputs merge in topological order"""
+        scheduler = DAGScheduler()
+        seen = {}
+
+        async def run_step(node_id, step_input):
+            # The earlier branch finishes last but must still be overridden
+            await asyncio.sleep(0.02 if node_id == "B" else 0)
+            seen[node_id] = step_input
+            return {"value": node_id}
+
+        result = await scheduler.run(
+            _plan(["A", "B", "C", "D"], ("A", "B"), ("A", "C"), ("B", "D"), ("C", "D")),
+            {},
+            run_step,
+        )
+
+        assert seen["B"] == {"value": "A"}
+        assert seen["D"] == {"value": "C"}
+        assert result == {"value": "D"}
+
+    @pytest.mark.asyncio
+    async def test_completed_steps_are_skipped(self):
+        """Checkpointed steps are not re-run and still feed their dependents"""
+        scheduler = DAGScheduler()
+        seen = {}
+
+        async def run_step(node_id, step_input):
+            seen[node_id] = step_input
+            return {node_id: True}
+
+        result = await scheduler.run(
+            _plan(["A", "B", "C"], ("A", "B"), ("B", "C")),
+            {"input": 1},
+            run_step,
+            completed={"A": {"A": "checkpoint"}},
+        )
+
+        assert list(seen) == ["B", "C"]
+        assert seen["B"] == {"input": 1, "A": "checkpoint"}
+        assert result == {"input": 1, "A": "checkpoint", "B": True, "C": True}
+
+    @pytest.mark.asyncio
+    async def test_failure_cancels_running_steps(self):
+        """A failing step cancels its in-flight siblings and propagates"""
+        scheduler = DAGScheduler()
+        cancelled = []
+
+        async def run_step(node_id, step_input):
+            if node_id == "fail":
+                raise RuntimeError("boom")
+            try:
+                await asyncio.sleep(1)
+            except asyncio.CancelledError:
+                cancelled.append(node_id)
+                raise
+            return {}
+
+        with pytest.raises(RuntimeError, match="boom"):
+            await scheduler.run(_plan(["slow", "fail"]), {}, run_step)
+
+        assert cancelled == ["slow"]
+
+    @pytest.mark.asyncio
+    async def test_stream_consumer_starts_with_its_producer(self):
+        """A consumer reads chunks while its producer runs, without a slot"""
+        scheduler = DAGScheduler(
+            SchedulerConfig(max_parallel_steps=1, stream_buffer_size=1)
+        )
+        events = []
+        seen = {}
+
+        async def run_step(node_id, step_input, streams):
+            seen[node_id] = step_input
+            if node_id == "C":
+                events.append("C started")
+                chunks = [chunk.sequence async for chunk in streams.inbound["B"]]
+                return {"C": chunks, "C saw": streams.inbound["B"].result}
+
+            for sequence in range(3):
+                for stream in streams.outbound:
+                    await stream.send(StreamChunk(data={}, sequence=sequence))
+            events.append(f"{node_id} finished")
+            for stream in streams.outbound:
+                await stream.close(result={node_id: True})
+            return {node_id: True}
+
+        result = await asyncio.wait_for(
+            scheduler.run(
+                _plan(["A", "B", "C"], ("A", "B"), ("B", "C")),
+                {"input": 1},
+                run_step,
+                can_stream=lambda producer, consumer: producer == "B",
+            ),
+            timeout=1,
+        )
+
+        assert events == ["A finished", "C started", "B finished"]
+        assert seen["C"] == {"input": 1, "A": True}
+        assert result["C"] == [0, 1, 2]
+        assert result["C saw"] == {"B": True}
+
+    @pytest.mark.asyncio
+    async def test_global_limiter_is_shared_on_a_loop(self, monkeypatch):
+        """Executions on one loop share a limiter sized from settings"""
+        monkeypatch.setattr(settings, "WORKFLOW_DISTRIBUTED_EXECUTION", False)
+        monkeypatch.setattr(settings, "WORKFLOW_GLOBAL_MAX_PARALLEL_STEPS", 3)
+
+        limiter = get_global_step_limiter()
+
+        assert get_global_step_limiter() is limiter
+        assert limiter._value == 3
+
+    def test_each_loop_gets_its_own_global_limiter(self):
+        """A limiter is never reused on a loop it was not created on"""
+
+        async def limiter():
+            return get_global_step_limiter()
+
+        first = asyncio.run(limiter())
+        second = asyncio.run(limiter())
+
+        assert first is not second
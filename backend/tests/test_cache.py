@@ -0,0 +1,76 @@
+"""Tests for response cache stampede protection."""
+
+import asyncio
+import time
+
+import pytest
+
+from app.core.cache import AgentCacheManager
+
+
+@pytest.fixture
+def manager():
+    cache = AgentCacheManager()
+    cache.redis_client = None
+    return cache
+
+
+async def test_concurrent_misses_compute_once(manager):
+    calls = 0
+
+    async def compute():
+        nonlocal calls
+        calls += 1
+        await asyncio.sleep(0.05)
+        return {"calls": calls}
+
+    results = await asyncio.gather(
+        *[manager.get_or_compute("key", compute, 60, beta=0) for _ in range(10)]
+    )
+
+    assert calls == 1
+    assert all(result == {"calls": 1} for result in results)
+
+
+async def test_stale_value_served_while_refreshing(manager):
+    calls = 0
+
+    async def compute():
+        nonlocal calls
+        calls += 1
+        return calls
+
+    await manager.get_or_compute("key", compute, 60, stale_ttl=30, beta=0)
+    manager.memory_cache["key"]["expires_at"] = time.time() - 1
+
+    assert await manager.get_or_compute("key", compute, 60, stale_ttl=30) == 1
+
+    await asyncio.sleep(0.01)
+    assert await manager.get_or_compute("key", compute, 60, stale_ttl=30) == 2
+
+
+async def test_failed_refresh_keeps_stale_value(manager):
+    async def compute():
+        return "cached"
+
+    async def failing():
+        raise RuntimeError("database unavailable")
+
+    await manager.get_or_compute("key", compute, 60, stale_ttl=30, beta=0)
+    manager.memory_cache["key"]["expires_at"] = time.time() - 1
+
+    assert await manager.get_or_compute("key", failing, 60, stale_ttl=30) == "cached"
+
+    with pytest.raises(RuntimeError):
+        await manager.get_or_compute("other", failing, 60)
+
+
+def test_early_refresh_more_likely_near_expiry():
+    entry = {"value": 1, "expires_at": 100.0, "delta": 1.0}
+
+    should_refresh = AgentCacheManager._should_refresh_early
+    far = sum(should_refresh(entry, 90, 1.0) for _ in range(200))
+    near = sum(should_refresh(entry, 99.5, 1.0) for _ in range(200))
+
+    assert far == 0
+    assert near > 0
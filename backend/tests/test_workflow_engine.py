@@ -4,20 +4,31 @@ from datetime import datetime
 from uuid import uuid4
 
 import pytest
-from app.models.execution import ExecutionStatus, WorkflowExecution
+from app.exceptions import WorkflowExecutionConflictError
+from app.models.execution import ExecutionCheckpoint, ExecutionStatus, WorkflowExecution
 from app.models.user import User
 from app.models.workflow import Workflow
+from app.services import workflow_engine as workflow_engine_module
+from app.services.execution_checkpoint_store import ExecutionCheckpointStore
+from app.services.execution_log_writer import ExecutionLogWriter
 from app.services.workflow_engine import (
     ExecutionResult,
     WorkflowEngine,
     WorkflowExecutionError,
 )
+from sqlalchemy import update
 
 
 @pytest.fixture
-def workflow_engine():
-    """Create a WorkflowEngine instance for testing."""
-    return WorkflowEngine()
+def workflow_engine(monkeypatch, async_db_session, db_session_factory):
+    """Create a WorkflowEngine whose sessions all use the test database."""
+    monkeypatch.setattr(
+        workflow_engine_module, "get_async_db_session", async_db_session
+    )
+    return WorkflowEngine(
+        log_writer=ExecutionLogWriter(session_factory=db_session_factory),
+        checkpoint_store=ExecutionCheckpointStore(session_factory=async_db_session),
+    )
 
 
 @pytest.fixture
@@ -126,6 +137,20 @@ class TestWorkflowEngine:
         assert result.output_data is not None
         assert result.error_message is None
 
+    @pytest.mark.asyncio
+    async def test_execute_workflow_records_outcome(
+        self, workflow_engine, db_session, sample_workflow
+    ):
+        """Execution records written through async sessions are committed."""
+        result = await workflow_engine.execute_workflow(
+            sample_workflow.id, {"message": "hello"}
+        )
+
+        execution = db_session.get(WorkflowExecution, result.execution_id)
+        assert execution.status == ExecutionStatus.COMPLETED
+        assert execution.output_data == result.output_data
+        assert execution.completed_at is not None
+
     @pytest.mark.asyncio
     async def test_execute_workflow_nonexistent(self, workflow_engine):
         """Test execution of non-existent workflow."""
@@ -138,7 +163,7 @@ class TestWorkflowEngine:
 
     @pytest.mark.asyncio
     async def test_execute_workflow_with_ai_step(
-        self, workflow_engine, sample_ai_workflow
+        self, workflow_engine, sample_ai_workflow, streaming_ai_service
     ):
         """Test workflow execution with AI step."""
         input_data = {"message": "analyze this text"}
@@ -150,6 +175,34 @@ class TestWorkflowEngine:
         assert result.status == ExecutionStatus.COMPLETED
         assert "ai_response" in result.output_data
 
+    @pytest.mark.asyncio
+    async def test_ai_output_is_delivered_while_streaming(
+        self, workflow_engine, sample_ai_workflow, streaming_ai_service
+    ):
+        """Test the output step delivers AI chunks before the AI step ends."""
+        messages = []
+
+        async def record(execution_id, message):
+            messages.append(message)
+
+        workflow_engine.stream_sink = record
+
+        result = await workflow_engine.execute_workflow(
+            sample_ai_workflow.id, {"message": "hello"}
+        )
+
+        assert result.status == ExecutionStatus.COMPLETED
+        chunks = [m for m in messages if m["type"] == "output_chunk"]
+        assert [m["sequence"] for m in chunks] == list(range(len(chunks)))
+        assert {(m["step_id"], m["source_step_id"]) for m in chunks} == {
+            ("output-1", "ai-1")
+        }
+        streamed = "".join(m["data"]["ai_response_delta"] for m in chunks)
+        assert streamed == "Answer to: Analyze this text"
+        assert result.output_data["ai_response"] == streamed
+        # The consuming output step delivers the chunks; nothing is sent twice
+        assert not [m for m in messages if m["type"] == "step_output_chunk"]
+
     @pytest.mark.asyncio
     async def test_execute_workflow_empty_nodes(
         self, workflow_engine, db_session, sample_user
@@ -224,6 +277,133 @@ class TestWorkflowEngine:
         assert execution.error_message == "Execution cancelled by user"
         assert execution.completed_at is not None
 
+    @pytest.mark.asyncio
+    async def test_resume_execution_claims_a_new_attempt(
+        self, workflow_engine, db_session, sample_workflow
+    ):
+        """Test resuming a failed execution claims it and runs it again."""
+        execution = WorkflowExecution(
+            workflow_id=sample_workflow.id,
+            status=ExecutionStatus.FAILED,
+            input_data={"user_input": "hello"},
+            error_message="Step failed",
+        )
+        db_session.add(execution)
+        db_session.commit()
+        db_session.refresh(execution)
+
+        result = await workflow_engine.resume_execution(execution.id)
+
+        assert result.status == ExecutionStatus.COMPLETED
+        db_session.refresh(execution)
+        assert execution.attempt == 1
+        assert execution.error_message is None
+
+    @pytest.mark.asyncio
+    async def test_resume_execution_loses_a_concurrent_claim(
+        self, workflow_engine, db_session, sample_workflow, monkeypatch
+    ):
+        """Test a resume backs off when another resume claimed the run first."""
+        execution = WorkflowExecution(
+            workflow_id=sample_workflow.id,
+            status=ExecutionStatus.RUNNING,
+            input_data={"user_input": "hello"},
+        )
+        db_session.add(execution)
+        db_session.commit()
+        db_session.refresh(execution)
+
+        get_active_workflow = workflow_engine._get_active_workflow
+
+        async def claim_first(db, workflow_id):
+            # Another resume claims the run between our read and our claim
+            await db.execute(
+                update(WorkflowExecution)
+                .where(WorkflowExecution.id == execution.id)
+                .values(attempt=WorkflowExecution.attempt + 1)
+                .execution_options(synchronize_session=False)
+            )
+            await db.commit()
+            return await get_active_workflow(db, workflow_id)
+
+        monkeypatch.setattr(workflow_engine, "_get_active_workflow", claim_first)
+
+        with pytest.raises(WorkflowExecutionConflictError):
+            await workflow_engine.resume_execution(execution.id)
+
+        # The winning resume's run is left alone
+        db_session.refresh(execution)
+        assert execution.status == ExecutionStatus.RUNNING
+        assert execution.attempt == 1
+
+    @pytest.mark.asyncio
+    async def test_resume_execution_leaves_cancelled_runs_alone(
+        self, workflow_engine, db_session, sample_workflow
+    ):
+        """Test a cancelled execution is neither resumed nor marked failed."""
+        execution = WorkflowExecution(
+            workflow_id=sample_workflow.id,
+            status=ExecutionStatus.CANCELLED,
+            input_data={"user_input": "hello"},
+            error_message="Execution cancelled by user",
+        )
+        db_session.add(execution)
+        db_session.commit()
+        db_session.refresh(execution)
+
+        with pytest.raises(WorkflowExecutionConflictError):
+            await workflow_engine.resume_execution(execution.id)
+
+        db_session.refresh(execution)
+        assert execution.status == ExecutionStatus.CANCELLED
+        assert execution.error_message == "Execution cancelled by user"
+
+    @pytest.mark.asyncio
+    async def test_checkpoints_of_a_superseded_attempt_are_rejected(
+        self, workflow_engine, db_session, sample_workflow
+    ):
+        """Test only the attempt owning a running execution checkpoints it."""
+        execution = WorkflowExecution(
+            workflow_id=sample_workflow.id,
+            status=ExecutionStatus.RUNNING,
+            input_data={},
+            attempt=1,
+        )
+        db_session.add(execution)
+        db_session.commit()
+        db_session.refresh(execution)
+        store = workflow_engine.checkpoint_store
+
+        with pytest.raises(WorkflowExecutionConflictError):
+            await store.save(execution.id, "input-1", "hash", {"stale": True}, 0)
+        await store.save(execution.id, "input-1", "hash", {"current": True}, 1)
+
+        assert await store.load(execution.id, "hash") == {
+            "input-1": {"current": True}
+        }
+
+    @pytest.mark.asyncio
+    async def test_cancelled_run_stops_writing(
+        self, workflow_engine, db_session, sample_workflow, monkeypatch
+    ):
+        """Test a run cancelled mid-way neither checkpoints nor completes."""
+        execute_step = workflow_engine._execute_step
+
+        async def cancel_first(execution_id, node, input_data, *args):
+            await workflow_engine.cancel_execution(execution_id)
+            return await execute_step(execution_id, node, input_data, *args)
+
+        monkeypatch.setattr(workflow_engine, "_execute_step", cancel_first)
+
+        with pytest.raises(WorkflowExecutionConflictError):
+            await workflow_engine.execute_workflow(
+                sample_workflow.id, {"user_input": "hello"}
+            )
+
+        execution = db_session.query(WorkflowExecution).one()
+        assert execution.status == ExecutionStatus.CANCELLED
+        assert db_session.query(ExecutionCheckpoint).count() == 0
+
     @pytest.mark.asyncio
     async def test_cancel_execution_nonexistent(self, workflow_engine):
         """Test cancelling non-existent execution."""
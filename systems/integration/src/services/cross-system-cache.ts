@@ -18,6 +18,21 @@ export interface CacheOptions {
   system?: string;
 }
 
+// Published on the invalidation channel whenever keys change on a node
+interface InvalidationMessage {
+  origin: string;
+  keys?: string[];
+  clear?: boolean;
+}
+
+// Keys examined per SCAN round trip and removed per UNLINK
+const SCAN_BATCH_SIZE = 500;
+
+interface LocalEntry {
+  entry: CacheEntry;
+  expiresAt?: number;
+}
+
 export interface CacheStats {
   hits: number;
   misses: number;
@@ -29,8 +44,19 @@ export interface CacheStats {
 
 export class CrossSystemCache extends EventEmitter {
   private client?: RedisClientType;
+  private subscriber?: RedisClientType;
   private isConnected = false;
-  private localCache = new Map<string, CacheEntry>();
+  private invalidationsActive = false;
+  private readonly nodeId = uuidv4();
+  private localCache = new Map<string, LocalEntry>();
+  // Invalidation sequence, per key while reads are in flight, so a Redis
+  // reply that raced an invalidation is not cached locally
+  private invalidationSeq = 0;
+  private clearedAtSeq = 0;
+  private keyInvalidatedAtSeq = new Map<string, number>();
+  private readsInFlight = 0;
+  private readonly onInvalidation = (message: string) =>
+    this.handleInvalidation(message);
   private stats = {
     hits: 0,
     misses: 0,
@@ -42,6 +68,7 @@ export class CrossSystemCache extends EventEmitter {
     private url: string = process.env.REDIS_URL || "redis://localhost:6379",
     private localCacheSize: number = 1000,
     private enableLocalCache: boolean = true,
+    private invalidationChannel: string = "cross-system-cache:invalidations",
   ) {
     super();
   }
@@ -69,6 +96,11 @@ export class CrossSystemCache extends EventEmitter {
       });
 
       await this.client.connect();
+
+      if (this.enableLocalCache) {
+        await this.subscribeToInvalidations();
+      }
+
       console.log("Cross-system cache initialized successfully");
     } catch (error) {
       console.error("Failed to initialize cross-system cache:", error);
@@ -79,9 +111,13 @@ export class CrossSystemCache extends EventEmitter {
 
   async disconnect(): Promise<void> {
     try {
+      if (this.subscriber) {
+        await this.subscriber.disconnect();
+      }
       if (this.client) {
         await this.client.disconnect();
       }
+      this.invalidationsActive = false;
       this.isConnected = false;
       console.log("Cross-system cache disconnected");
     } catch (error) {
@@ -121,50 +157,40 @@ export class CrossSystemCache extends EventEmitter {
           }
         }
 
+        // Other nodes may hold the previous value locally
+        await this.publishInvalidation({ keys: [key] });
+
         this.emit("cache-set", { key, entry });
       }
 
-      // Store in local cache
-      if (this.enableLocalCache) {
-        this.ensureLocalCacheSize();
-        this.localCache.set(key, entry);
-      }
+      // Store in local cache, superseding any read still in flight
+      this.markInvalidated([key]);
+      this.setLocal(entry);
 
       this.stats.sets++;
       this.emit("entry-set", entry);
     } catch (error) {
       console.error("Error setting cache entry:", error);
       // Fallback to local cache
-      if (this.enableLocalCache) {
-        this.localCache.set(key, entry);
-      }
+      this.setLocal(entry);
     }
   }
 
   async get(key: string): Promise<any | null> {
     try {
       // Try local cache first
-      if (this.enableLocalCache) {
-        const localEntry = this.localCache.get(key);
-        if (localEntry) {
-          this.stats.hits++;
-          this.emit("cache-hit", { key, source: "local" });
-          return localEntry.value;
-        }
+      const localEntry = this.getLocal(key);
+      if (localEntry) {
+        this.stats.hits++;
+        this.emit("cache-hit", { key, source: "local" });
+        return localEntry.value;
       }
 
       // Try Redis cache
       if (this.isConnected && this.client) {
-        const serializedEntry = await this.client.get(key);
-        if (serializedEntry) {
-          const entry: CacheEntry = JSON.parse(serializedEntry);
+        const entry = await this.readRemote(key);
+        if (entry) {
           this.stats.hits++;
-
-          // Update local cache
-          if (this.enableLocalCache) {
-            this.localCache.set(key, entry);
-          }
-
           this.emit("cache-hit", { key, source: "redis" });
           return entry.value;
         }
@@ -198,10 +224,13 @@ export class CrossSystemCache extends EventEmitter {
             }
           }
         }
+
+        await this.publishInvalidation({ keys: [key] });
       }
 
       // Delete from local cache
       if (this.enableLocalCache) {
+        this.markInvalidated([key]);
         deleted = deleted || this.localCache.delete(key);
       }
 
@@ -226,11 +255,12 @@ export class CrossSystemCache extends EventEmitter {
       // Clear Redis
       if (this.isConnected && this.client) {
         await this.client.flushAll();
+        await this.publishInvalidation({ clear: true });
       }
 
       // Clear local cache
       if (this.enableLocalCache) {
-        this.localCache.clear();
+        this.clearLocal();
       }
 
       this.emit("cache-cleared");
@@ -249,19 +279,15 @@ export class CrossSystemCache extends EventEmitter {
         const keys = await this.client.sMembers(`tag:${tag}`);
 
         if (keys.length > 0) {
-          // Delete all tagged keys
-          const result = await this.client.del(keys);
-          invalidated = result;
+          // Delete all tagged keys, here and in every node's local cache
+          for (let i = 0; i < keys.length; i += SCAN_BATCH_SIZE) {
+            invalidated += await this.unlinkKeys(
+              keys.slice(i, i + SCAN_BATCH_SIZE),
+            );
+          }
 
           // Remove the tag set
-          await this.client.del(`tag:${tag}`);
-        }
-
-        // Remove from local cache
-        if (this.enableLocalCache) {
-          for (const key of keys) {
-            this.localCache.delete(key);
-          }
+          await this.client.unlink(`tag:${tag}`);
         }
 
         this.emit("tag-invalidated", { tag, keys: keys.length });
@@ -280,22 +306,10 @@ export class CrossSystemCache extends EventEmitter {
       let invalidated = 0;
 
       if (this.isConnected && this.client) {
-        // Get all keys for this system
-        const keys = await this.client.keys(`${system}:*`);
-
-        if (keys.length > 0) {
-          const result = await this.client.del(keys);
-          invalidated = result;
-        }
-
-        // Remove from local cache
-        if (this.enableLocalCache) {
-          for (const key of keys) {
-            this.localCache.delete(key);
-          }
-        }
+        // Delete all keys for this system
+        invalidated = await this.unlinkMatching(`${system}:*`);
 
-        this.emit("system-invalidated", { system, keys: keys.length });
+        this.emit("system-invalidated", { system, keys: invalidated });
       }
 
       console.log(`Invalidated ${invalidated} entries for system: ${system}`);
@@ -309,7 +323,7 @@ export class CrossSystemCache extends EventEmitter {
   async exists(key: string): Promise<boolean> {
     try {
       // Check local cache first
-      if (this.enableLocalCache && this.localCache.has(key)) {
+      if (this.getLocal(key)) {
         return true;
       }
 
@@ -329,11 +343,9 @@ export class CrossSystemCache extends EventEmitter {
   async getEntry(key: string): Promise<CacheEntry | null> {
     try {
       // Try local cache first
-      if (this.enableLocalCache) {
-        const entry = this.localCache.get(key);
-        if (entry) {
-          return entry;
-        }
+      const localEntry = this.getLocal(key);
+      if (localEntry) {
+        return localEntry;
       }
 
       // Try Redis
@@ -378,7 +390,7 @@ export class CrossSystemCache extends EventEmitter {
       const entries: CacheEntry[] = [];
 
       if (this.isConnected && this.client) {
-        const keys = await this.client.keys(`${system}:*`);
+        const keys = await this.scanKeys(`${system}:*`);
 
         for (const key of keys) {
           const entry = await this.getEntry(key);
@@ -480,7 +492,233 @@ export class CrossSystemCache extends EventEmitter {
     }
   }
 
+  // Pattern operations use cursor SCAN rather than KEYS, which blocks Redis
+  // for every client sharing the instance
+  private async scanKeys(pattern: string): Promise<string[]> {
+    const keys: string[] = [];
+    for await (const key of this.client!.scanIterator({
+      MATCH: pattern,
+      COUNT: SCAN_BATCH_SIZE,
+    })) {
+      keys.push(key);
+    }
+    return keys;
+  }
+
+  private async unlinkMatching(pattern: string): Promise<number> {
+    let removed = 0;
+    let batch: string[] = [];
+
+    for await (const key of this.client!.scanIterator({
+      MATCH: pattern,
+      COUNT: SCAN_BATCH_SIZE,
+    })) {
+      batch.push(key);
+      if (batch.length >= SCAN_BATCH_SIZE) {
+        removed += await this.unlinkKeys(batch);
+        batch = [];
+      }
+    }
+
+    if (batch.length > 0) {
+      removed += await this.unlinkKeys(batch);
+    }
+
+    return removed;
+  }
+
+  // UNLINK reclaims memory off the main thread; local copies go everywhere
+  private async unlinkKeys(keys: string[]): Promise<number> {
+    const removed = await this.client!.unlink(keys);
+    this.deleteLocal(keys);
+    await this.publishInvalidation({ keys });
+    return removed;
+  }
+
   // Local cache management
+  private getLocal(key: string): CacheEntry | undefined {
+    // Without invalidations from other nodes the local copy may be stale;
+    // it is only trusted alone when Redis itself is unavailable
+    if (
+      !this.enableLocalCache ||
+      (this.isConnected && !this.invalidationsActive)
+    ) {
+      return undefined;
+    }
+
+    const local = this.localCache.get(key);
+    if (!local) {
+      return undefined;
+    }
+
+    if (local.expiresAt !== undefined && local.expiresAt <= Date.now()) {
+      this.localCache.delete(key);
+      return undefined;
+    }
+
+    return local.entry;
+  }
+
+  private setLocal(entry: CacheEntry): void {
+    if (!this.enableLocalCache) {
+      return;
+    }
+
+    // Expire together with the Redis copy, which was written at createdAt
+    const expiresAt = entry.ttl
+      ? Date.parse(entry.createdAt) + entry.ttl * 1000
+      : undefined;
+
+    this.localCache.delete(entry.key);
+    this.ensureLocalCacheSize();
+    this.localCache.set(entry.key, { entry, expiresAt });
+  }
+
+  private deleteLocal(keys: string[]): void {
+    this.markInvalidated(keys);
+    for (const key of keys) {
+      this.localCache.delete(key);
+    }
+  }
+
+  private clearLocal(): void {
+    this.clearedAtSeq = ++this.invalidationSeq;
+    this.keyInvalidatedAtSeq.clear();
+    this.localCache.clear();
+  }
+
+  private markInvalidated(keys: string[]): void {
+    const seq = ++this.invalidationSeq;
+    // Only reads already in flight compare against per-key sequences
+    if (this.readsInFlight === 0) {
+      return;
+    }
+    for (const key of keys) {
+      this.keyInvalidatedAtSeq.set(key, seq);
+    }
+  }
+
+  // Caches the Redis copy locally unless the key changed while reading
+  private async readRemote(key: string): Promise<CacheEntry | null> {
+    const seq = this.invalidationSeq;
+    this.readsInFlight++;
+
+    try {
+      const serializedEntry = await this.client!.get(key);
+      if (!serializedEntry) {
+        return null;
+      }
+
+      const entry: CacheEntry = JSON.parse(serializedEntry);
+      if (
+        this.clearedAtSeq <= seq &&
+        (this.keyInvalidatedAtSeq.get(key) ?? 0) <= seq
+      ) {
+        this.setLocal(entry);
+      }
+      return entry;
+    } finally {
+      this.readsInFlight--;
+      if (this.readsInFlight === 0) {
+        this.keyInvalidatedAtSeq.clear();
+      }
+    }
+  }
+
+  private async subscribeToInvalidations(): Promise<void> {
+    try {
+      this.subscriber = this.client!.duplicate();
+
+      this.subscriber.on("error", (error) => {
+        console.error("Cache invalidation subscriber error:", error);
+        this.invalidationsActive = false;
+      });
+
+      this.subscriber.on("reconnecting", () => {
+        this.invalidationsActive = false;
+      });
+
+      this.subscriber.on("end", () => {
+        this.invalidationsActive = false;
+      });
+
+      await this.subscriber.connect();
+      await this.subscriber.subscribe(
+        this.invalidationChannel,
+        this.onInvalidation,
+      );
+      this.invalidationsActive = true;
+
+      // Registered after the first connection, so it only sees reconnects
+      this.subscriber.on("ready", () => {
+        void this.resubscribe();
+      });
+    } catch (error) {
+      console.error("Failed to subscribe to cache invalidations:", error);
+      this.invalidationsActive = false;
+    }
+  }
+
+  // Invalidations sent while disconnected are lost, so local copies are only
+  // trusted again once the channel is confirmed and the local cache is empty
+  private async resubscribe(): Promise<void> {
+    this.invalidationsActive = false;
+    this.clearLocal();
+
+    try {
+      await this.subscriber!.subscribe(
+        this.invalidationChannel,
+        this.onInvalidation,
+      );
+      this.clearLocal();
+      this.invalidationsActive = true;
+    } catch (error) {
+      console.error("Failed to resubscribe to cache invalidations:", error);
+    }
+  }
+
+  private async publishInvalidation(
+    invalidation: Omit<InvalidationMessage, "origin">,
+  ): Promise<void> {
+    if (!this.enableLocalCache || !this.isConnected || !this.client) {
+      return;
+    }
+    if (invalidation.keys && invalidation.keys.length === 0) {
+      return;
+    }
+
+    const message: InvalidationMessage = {
+      origin: this.nodeId,
+      ...invalidation,
+    };
+    await this.client.publish(
+      this.invalidationChannel,
+      JSON.stringify(message),
+    );
+  }
+
+  private handleInvalidation(raw: string): void {
+    try {
+      const message: InvalidationMessage = JSON.parse(raw);
+      if (message.origin === this.nodeId) {
+        return;
+      }
+
+      if (message.clear) {
+        this.clearLocal();
+      } else if (message.keys) {
+        this.deleteLocal(message.keys);
+      }
+
+      this.emit("remote-invalidation", {
+        origin: message.origin,
+        keys: message.clear ? "all" : message.keys?.length || 0,
+      });
+    } catch (error) {
+      console.error("Invalid cache invalidation message:", error);
+    }
+  }
+
   private ensureLocalCacheSize(): void {
     if (this.localCache.size >= this.localCacheSize) {
       // Remove oldest entries (simple LRU-like behavior)
@@ -543,7 +781,7 @@ export class CrossSystemCache extends EventEmitter {
     }
 
     try {
-      return await this.client.keys(pattern);
+      return await this.scanKeys(pattern);
     } catch (error) {
       console.error("Error getting keys by pattern:", error);
       return [];
@@ -556,13 +794,9 @@ export class CrossSystemCache extends EventEmitter {
     }
 
     try {
-      const keys = await this.client.keys(pattern);
-      if (keys.length > 0) {
-        const result = await this.client.del(keys);
-        this.stats.deletes += result;
-        return result;
-      }
-      return 0;
+      const result = await this.unlinkMatching(pattern);
+      this.stats.deletes += result;
+      return result;
     } catch (error) {
       console.error("Error deleting keys by pattern:", error);
       return 0;
@@ -0,0 +1,147 @@
+/**
+ * Cross-System Cache Tests
+ * Tests for keeping each instance's local tier consistent with Redis
+ */
+
+import { CrossSystemCache } from "../services/cross-system-cache";
+
+// One in-memory Redis shared by every client, with synchronous pub/sub
+jest.mock("redis", () => {
+  const { EventEmitter } = require("events");
+  const store = new Map<string, string>();
+  const channels = new Map<string, Set<(message: string) => void>>();
+
+  class MockRedisClient extends EventEmitter {
+    private subscriptions: Array<[string, (message: string) => void]> = [];
+
+    async connect() {
+      this.emit("connect");
+    }
+
+    async disconnect() {
+      for (const [channel, listener] of this.subscriptions) {
+        channels.get(channel)?.delete(listener);
+      }
+      this.subscriptions = [];
+    }
+
+    duplicate() {
+      return new MockRedisClient();
+    }
+
+    async get(key: string) {
+      return store.get(key) ?? null;
+    }
+
+    async set(key: string, value: string) {
+      store.set(key, value);
+      return "OK";
+    }
+
+    async del(key: string) {
+      return store.delete(key) ? 1 : 0;
+    }
+
+    async publish(channel: string, message: string) {
+      const listeners = Array.from(channels.get(channel) ?? []);
+      listeners.forEach((listener) => listener(message));
+      return listeners.length;
+    }
+
+    async subscribe(channel: string, listener: (message: string) => void) {
+      if (!channels.has(channel)) {
+        channels.set(channel, new Set());
+      }
+      channels.get(channel)!.add(listener);
+      this.subscriptions.push([channel, listener]);
+    }
+  }
+
+  return { createClient: () => new MockRedisClient(), mockStore: store };
+});
+
+describe("CrossSystemCache", () => {
+  let caches: CrossSystemCache[];
+
+  const connect = async (enableLocalCache = true) => {
+    const cache = new CrossSystemCache(undefined, 1000, enableLocalCache);
+    await cache.initialize();
+    caches.push(cache);
+    return cache;
+  };
+
+  beforeEach(() => {
+    caches = [];
+    require("redis").mockStore.clear();
+    jest.spyOn(console, "log").mockImplementation(() => undefined);
+  });
+
+  afterEach(async () => {
+    await Promise.all(caches.map((cache) => cache.disconnect()));
+    jest.restoreAllMocks();
+  });
+
+  test("should evict another instance's local copy on change", async () => {
+    const writer = await connect();
+    const reader = await connect();
+
+    await writer.set("workflow:1", "v1");
+    expect(await reader.get("workflow:1")).toBe("v1");
+    expect(reader.getStats().size).toBe(1);
+
+    await writer.set("workflow:1", "v2");
+    expect(reader.getStats().size).toBe(0);
+    expect(await reader.get("workflow:1")).toBe("v2");
+
+    await writer.delete("workflow:1");
+    expect(reader.getStats().size).toBe(0);
+    expect(await reader.get("workflow:1")).toBeNull();
+  });
+
+  test("should not cache a read that raced an invalidation", async () => {
+    const writer = await connect();
+    const reader = await connect();
+    await writer.set("workflow:1", "v1");
+
+    // Hold the reader's Redis reply until the writer has changed the key
+    let release!: () => void;
+    const gate = new Promise<void>((resolve) => (release = resolve));
+    const client = (reader as any).client;
+    const redisGet = client.get.bind(client);
+    jest.spyOn(client, "get").mockImplementationOnce(async (key: any) => {
+      const reply = await redisGet(key);
+      await gate;
+      return reply;
+    });
+
+    const read = reader.get("workflow:1");
+    await writer.set("workflow:1", "v2");
+    release();
+
+    expect(await read).toBe("v1");
+    expect(reader.getStats().size).toBe(0);
+    expect(await reader.get("workflow:1")).toBe("v2");
+  });
+
+  test("should not trust local copies while unsubscribed", async () => {
+    // Without a local tier the writer publishes no invalidations, like a
+    // message lost while the reader's subscriber was down
+    const writer = await connect(false);
+    const reader = await connect();
+    await writer.set("workflow:1", "v1");
+    expect(await reader.get("workflow:1")).toBe("v1");
+
+    const subscriber = (reader as any).subscriber;
+    subscriber.emit("reconnecting");
+    await writer.set("workflow:1", "v2");
+    expect(await reader.get("workflow:1")).toBe("v2");
+
+    // Resubscribing drops everything cached before the channel came back
+    await writer.set("workflow:1", "v3");
+    subscriber.emit("ready");
+    await new Promise((resolve) => setImmediate(resolve));
+    expect(reader.getStats().size).toBe(0);
+    expect(await reader.get("workflow:1")).toBe("v3");
+    expect(reader.getStats().size).toBe(1);
+  });
+});
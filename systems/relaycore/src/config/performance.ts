@@ -85,6 +85,7 @@ export const developmentConfig: RelayCorePerfConfig = {
     maxCacheSize: 100,
     ttlSeconds: 1800, // 30 minutes
     embeddingProvider: "openai",
+    evictionPolicy: "cost",
   },
   requestQueue: {
     maxSize: 1000,
@@ -168,6 +169,7 @@ export const productionConfig: RelayCorePerfConfig = {
     maxCacheSize: 10000,
     ttlSeconds: 3600, // 1 hour
     embeddingProvider: "openai",
+    evictionPolicy: "cost",
   },
   requestQueue: {
     maxSize: 50000,
@@ -251,6 +253,7 @@ export const enterpriseConfig: RelayCorePerfConfig = {
     maxCacheSize: 100000,
     ttlSeconds: 7200, // 2 hours
     embeddingProvider: "openai",
+    evictionPolicy: "cost",
   },
   requestQueue: {
     maxSize: 500000,
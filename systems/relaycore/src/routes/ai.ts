@@ -8,7 +8,12 @@ import { ProviderManager } from "../services/provider-manager";
 import { SteeringRulesEngine } from "../services/steering-rules";
 import { CostOptimizer } from "../services/cost-optimizer";
 import { MetricsCollector } from "../services/metrics-collector";
+import {
+  BatchExecutor,
+  defaultBatchExecutorConfig,
+} from "../services/batch-executor";
 import { logger } from "../utils/logger";
+import { openEventStream, writeEvent } from "../utils/sse";
 import { AIRequest, AIResponse, RoutingDecision } from "../models/request";
 
 const router = Router();
@@ -19,7 +24,9 @@ const metricsCollector = new MetricsCollector();
 
 /**
  * POST /api/v1/ai/chat
- * Route AI chat requests through optimal provider
+ * Route AI chat requests through optimal provider. With `stream: true` the
+ * response is sent as Server-Sent Events: `token` events as the provider
+ * produces them, then a `done` event carrying the full response.
  */
 router.post("/chat", async (req: Request, res: Response) => {
   const startTime = Date.now();
@@ -52,11 +59,32 @@ router.post("/chat", async (req: Request, res: Response) => {
       aiRequest.cost_constraints,
     );
 
+    // Stop if the client disconnects. Streams cancel their upstream call;
+    // a coalesced call keeps running for any other request sharing it.
+    const abortController = new AbortController();
+    res.on("close", () => {
+      if (!res.writableEnded) {
+        abortController.abort();
+      }
+    });
+
     // Route request to selected provider
-    const aiResponse: AIResponse = await providerManager.routeRequest(
-      aiRequest,
-      optimizedDecision,
-    );
+    let aiResponse: AIResponse;
+    if (req.body.stream === true) {
+      openEventStream(res);
+      aiResponse = await providerManager.streamRequest(
+        aiRequest,
+        optimizedDecision,
+        (token) => writeEvent(res, "token", { content: token }),
+        { signal: abortController.signal },
+      );
+    } else {
+      aiResponse = await providerManager.routeRequest(
+        aiRequest,
+        optimizedDecision,
+        { signal: abortController.signal },
+      );
+    }
 
     // Calculate metrics
     const latency = Date.now() - startTime;
@@ -73,7 +101,7 @@ router.post("/chat", async (req: Request, res: Response) => {
       `AI request ${requestId} completed in ${latency}ms using ${aiResponse.model_used}`,
     );
 
-    res.json({
+    const body = {
       success: true,
       data: aiResponse,
       routing_info: {
@@ -82,7 +110,17 @@ router.post("/chat", async (req: Request, res: Response) => {
         cost_estimate: optimizedDecision.estimated_cost,
         reasoning: optimizedDecision.reasoning,
       },
-    });
+    };
+
+    // writeEvent drops events once the client has gone
+    if (res.headersSent) {
+      writeEvent(res, "done", body);
+      if (!res.writableEnded) {
+        res.end();
+      }
+    } else {
+      res.json(body);
+    }
   } catch (error) {
     const latency = Date.now() - startTime;
     logger.error(`AI request ${requestId} failed after ${latency}ms:`, error);
@@ -92,6 +130,18 @@ router.post("/chat", async (req: Request, res: Response) => {
       await metricsCollector.recordError(requestId, error as Error, latency);
     }
 
+    // Streams have already sent a 200, so report the failure in-band
+    if (res.headersSent) {
+      writeEvent(res, "error", {
+        message: "AI request processing failed",
+        request_id: requestId,
+      });
+      if (!res.writableEnded) {
+        res.end();
+      }
+      return;
+    }
+
     res.status(500).json({
       success: false,
       error: {
@@ -108,58 +158,118 @@ router.post("/chat", async (req: Request, res: Response) => {
 
 /**
  * POST /api/v1/ai/batch
- * Process multiple AI requests in batch
+ * Process multiple AI requests in batch. Requests run in per-provider
+ * sliding windows; with `stream: true` (or an `Accept: application/x-ndjson`
+ * header) each result is written as an NDJSON line as soon as it completes,
+ * followed by a summary line.
  */
 router.post("/batch", async (req: Request, res: Response) => {
   try {
     const requests: AIRequest[] = req.body.requests || [];
-    const results: (AIResponse | { error: string })[] = [];
+    const streaming =
+      req.body.stream === true ||
+      (req.get("accept") || "").includes("application/x-ndjson");
+
+    if (requests.length > defaultBatchExecutorConfig.maxBatchSize) {
+      res.status(400).json({
+        success: false,
+        error: {
+          message: `Batch exceeds the limit of ${defaultBatchExecutorConfig.maxBatchSize} requests`,
+        },
+      });
+      return;
+    }
 
     logger.info(`Processing batch of ${requests.length} AI requests`);
 
-    // Process requests concurrently with limit
-    const batchSize = 5;
-    for (let i = 0; i < requests.length; i += batchSize) {
-      const batch = requests.slice(i, i + batchSize);
-      const batchPromises = batch.map(async (request) => {
-        try {
-          const routingDecision =
-            await steeringEngine.determineRouting(request);
-          const optimizedDecision = await costOptimizer.optimizeRouting(
-            routingDecision,
+    // Per-provider windows may be narrowed, never widened, by the caller
+    const concurrency = { ...defaultBatchExecutorConfig.concurrency };
+    for (const [provider, limit] of Object.entries(
+      req.body.concurrency || {},
+    )) {
+      const ceiling =
+        concurrency[provider] || defaultBatchExecutorConfig.defaultConcurrency;
+      concurrency[provider] = Math.max(
+        1,
+        Math.min(Number(limit) || 1, ceiling),
+      );
+    }
+
+    const executor = new BatchExecutor(
+      {
+        routingKey: async (request) =>
+          JSON.stringify([
+            await steeringEngine.getRoutingFeatures(request),
             request.cost_constraints,
-          );
+          ]),
+        route: async (request) =>
+          costOptimizer.optimizeRouting(
+            await steeringEngine.determineRouting(request),
+            request.cost_constraints,
+          ),
+        execute: async (request, decision) => {
           const response = await providerManager.routeRequest(
             request,
-            optimizedDecision,
-          );
-          await metricsCollector.recordRequest(
-            request,
-            response,
-            optimizedDecision,
+            decision,
           );
+          await metricsCollector.recordRequest(request, response, decision);
           return response;
-        } catch (error) {
-          logger.error(`Batch request ${request.id} failed:`, error);
-          return { error: (error as Error).message };
+        },
+      },
+      { ...defaultBatchExecutorConfig, concurrency },
+    );
+
+    if (streaming) {
+      const abortController = new AbortController();
+      res.on("close", () => {
+        if (!res.writableEnded) {
+          abortController.abort();
         }
       });
 
-      const batchResults = await Promise.all(batchPromises);
-      results.push(...batchResults);
+      res.status(200).set({
+        "Content-Type": "application/x-ndjson",
+        "Cache-Control": "no-cache, no-transform",
+        "X-Accel-Buffering": "no",
+      });
+      res.flushHeaders();
+
+      const summary = await executor.run(
+        requests,
+        (result) => {
+          if (!res.writableEnded) {
+            res.write(`${JSON.stringify(result)}\n`);
+          }
+        },
+        abortController.signal,
+      );
+      res.end(`${JSON.stringify({ summary })}\n`);
+      return;
     }
 
+    const results: (AIResponse | { error: string })[] = new Array(
+      requests.length,
+    );
+    const summary = await executor.run(requests, (result) => {
+      results[result.index] =
+        result.error !== undefined ? { error: result.error } : result.data!;
+    });
+
     res.json({
       success: true,
       data: {
         results,
-        total_processed: requests.length,
-        successful: results.filter((r) => !("error" in r)).length,
-        failed: results.filter((r) => "error" in r).length,
+        ...summary,
       },
     });
   } catch (error) {
     logger.error("Batch processing failed:", error);
+
+    if (res.headersSent) {
+      res.end(`${JSON.stringify({ error: "Batch processing failed" })}\n`);
+      return;
+    }
+
     res.status(500).json({
       success: false,
       error: {
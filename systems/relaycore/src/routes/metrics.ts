@@ -5,6 +5,7 @@
 
 import { Router, Request, Response } from "express";
 import { MetricsCollector } from "../services/metrics-collector";
+import { providerAdmissionController } from "../services/provider-admission";
 import { logger } from "../utils/logger";
 
 const router = Router();
@@ -104,6 +105,25 @@ router.get("/costs", async (req: Request, res: Response) => {
   }
 });
 
+/**
+ * GET /api/v1/metrics/admission
+ * Get rate-limit buckets and adaptive concurrency per provider and model
+ */
+router.get("/admission", (req: Request, res: Response) => {
+  try {
+    res.json({
+      success: true,
+      data: providerAdmissionController.getMetrics(),
+    });
+  } catch (error) {
+    logger.error("Failed to get admission metrics:", error);
+    res.status(500).json({
+      success: false,
+      error: { message: "Failed to retrieve admission metrics" },
+    });
+  }
+});
+
 /**
  * GET /api/v1/metrics/usage (legacy endpoint)
  * Get usage metrics - redirects to system metrics
@@ -0,0 +1,209 @@
+/**
+ * Batch Executor
+ * Runs batches of AI requests through per-provider sliding windows, sharing
+ * routing decisions between requests with identical routing features
+ */
+
+import { logger } from "../utils/logger";
+import { AIRequest, AIResponse, RoutingDecision } from "../models/request";
+
+export interface BatchExecutorConfig {
+  concurrency: Record<string, number>; // Requests in flight per provider
+  defaultConcurrency: number;
+  routingConcurrency: number; // Requests being routed at once
+  maxBatchSize: number;
+}
+
+export interface BatchHandlers {
+  routingKey: (request: AIRequest) => Promise<string>;
+  route: (request: AIRequest) => Promise<RoutingDecision>;
+  execute: (
+    request: AIRequest,
+    decision: RoutingDecision,
+  ) => Promise<AIResponse>;
+}
+
+export interface BatchItemResult {
+  index: number;
+  id: string;
+  data?: AIResponse;
+  error?: string;
+}
+
+export interface BatchSummary {
+  total_processed: number;
+  successful: number;
+  failed: number;
+  shared_routing_decisions: number;
+}
+
+interface PendingItem {
+  index: number;
+  request: AIRequest;
+  decision: RoutingDecision;
+}
+
+interface ProviderWindow {
+  size: number;
+  pending: PendingItem[];
+  next: number;
+  active: number; // Workers draining the window
+}
+
+export class BatchExecutor {
+  private config: BatchExecutorConfig;
+  private handlers: BatchHandlers;
+
+  constructor(handlers: BatchHandlers, config: BatchExecutorConfig) {
+    this.handlers = handlers;
+    this.config = config;
+  }
+
+  /**
+   * Run a batch, reporting each result as soon as it completes. Requests
+   * are routed a few at a time in submission order and join their
+   * provider's window as soon as they are routed. Each provider keeps its
+   * window full: a finished request immediately makes room for the next
+   * one, so one slow request never holds up the rest.
+   */
+  async run(
+    requests: AIRequest[],
+    onResult: (result: BatchItemResult) => void,
+    signal?: AbortSignal,
+  ): Promise<BatchSummary> {
+    if (requests.length > this.config.maxBatchSize) {
+      throw new Error(
+        `Batch of ${requests.length} exceeds the limit of ${this.config.maxBatchSize} requests`,
+      );
+    }
+
+    const summary: BatchSummary = {
+      total_processed: requests.length,
+      successful: 0,
+      failed: 0,
+      shared_routing_decisions: 0,
+    };
+    const report = (result: BatchItemResult) => {
+      if (result.error !== undefined) {
+        summary.failed++;
+      } else {
+        summary.successful++;
+      }
+      onResult(result);
+    };
+
+    // Routing decisions live for one batch only, since budgets move on
+    const decisions: Map<string, Promise<RoutingDecision>> = new Map();
+    const windows: Map<string, ProviderWindow> = new Map();
+    const draining: Promise<void>[] = [];
+
+    const enqueue = (item: PendingItem) => {
+      const provider = item.decision.provider;
+      let window = windows.get(provider);
+      if (!window) {
+        window = {
+          size: this.windowSize(provider),
+          pending: [],
+          next: 0,
+          active: 0,
+        };
+        windows.set(provider, window);
+      }
+
+      window.pending.push(item);
+      if (window.active < window.size) {
+        window.active++;
+        draining.push(this.drainWindow(window, report, signal));
+      }
+    };
+
+    let nextToRoute = 0;
+    const router = async () => {
+      while (nextToRoute < requests.length) {
+        const index = nextToRoute++;
+        const request = requests[index];
+
+        try {
+          const key = await this.handlers.routingKey(request);
+          let decision = decisions.get(key);
+          if (decision) {
+            summary.shared_routing_decisions++;
+          } else {
+            decision = this.handlers.route(request);
+            decisions.set(key, decision);
+          }
+
+          enqueue({ index, request, decision: await decision });
+        } catch (error) {
+          report({ index, id: request.id, error: (error as Error).message });
+        }
+      }
+    };
+
+    const routers = Math.max(1, this.config.routingConcurrency);
+    await Promise.all(
+      Array.from({ length: Math.min(routers, requests.length) }, router),
+    );
+    // Every item is queued now, so no further workers can start
+    await Promise.all(draining);
+
+    logger.info(
+      `Batch of ${requests.length} finished: ${summary.successful} succeeded, ${summary.failed} failed, ${summary.shared_routing_decisions} shared routing decisions`,
+    );
+
+    return summary;
+  }
+
+  private windowSize(provider: string): number {
+    return Math.max(
+      1,
+      this.config.concurrency[provider] || this.config.defaultConcurrency,
+    );
+  }
+
+  /**
+   * One worker of a provider window; it exits once the window runs dry and
+   * a later routed request starts a new one
+   */
+  private async drainWindow(
+    window: ProviderWindow,
+    report: (result: BatchItemResult) => void,
+    signal?: AbortSignal,
+  ): Promise<void> {
+    try {
+      while (window.next < window.pending.length) {
+        const { index, request, decision } = window.pending[window.next++];
+
+        if (signal?.aborted) {
+          report({ index, id: request.id, error: "Batch aborted" });
+          continue;
+        }
+
+        try {
+          const response = await this.handlers.execute(request, decision);
+          report({ index, id: request.id, data: response });
+        } catch (error) {
+          logger.error(`Batch request ${request.id} failed:`, error);
+          report({ index, id: request.id, error: (error as Error).message });
+        }
+      }
+    } finally {
+      window.active--;
+    }
+  }
+}
+
+/**
+ * Default batch configuration; windows match the request queue's
+ * per-provider concurrency so batches never flood the queue
+ */
+export const defaultBatchExecutorConfig: BatchExecutorConfig = {
+  concurrency: {
+    openai: 10,
+    anthropic: 5,
+    neuroweaver: 3,
+  },
+  defaultConcurrency: 5,
+  routingConcurrency: 20,
+  maxBatchSize: 10000,
+};
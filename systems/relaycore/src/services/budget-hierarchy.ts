@@ -0,0 +1,295 @@
+/**
+ * Budget Hierarchy Cache
+ * Materialises each user's budget hierarchy (user, teams, organization) and
+ * keeps remaining-budget snapshots in memory for pre-request checks
+ */
+
+import { logger } from "../utils/logger";
+import { SingleFlight } from "../utils/single-flight";
+import { DatabaseConnection } from "./database";
+import {
+  BudgetChangeEvent,
+  BudgetRegistry,
+  budgetEvents,
+} from "./budget-registry";
+import { BudgetTracker, evaluateBudgetConstraints } from "./budget-tracker";
+import {
+  BudgetConstraintCheck,
+  BudgetDefinition,
+  BudgetStatusInfo,
+  ScopeType,
+} from "../types/budget";
+
+export interface BudgetHierarchyConfig {
+  hierarchyTtlMs: number; // Team and organization membership
+  scopeTtlMs: number; // Budget definitions per scope; changes also evict
+  snapshotTtlMs: number; // Picks up usage recorded by other instances
+  maxUsers: number;
+  maxBudgets: number; // Per map: scope budget lists, definitions, snapshots
+}
+
+export interface BudgetScope {
+  scopeType: ScopeType;
+  scopeId: string;
+}
+
+export interface UserBudgetHierarchy {
+  userId: string;
+  scopes: BudgetScope[]; // Most specific first: user, teams, organization
+}
+
+interface CachedEntry<T> {
+  value: T;
+  loadedAt: number;
+}
+
+export class BudgetHierarchyCache {
+  private config: BudgetHierarchyConfig;
+  private budgetRegistry: BudgetRegistry;
+  private budgetTracker: BudgetTracker;
+  private hierarchies: Map<string, CachedEntry<UserBudgetHierarchy>> =
+    new Map();
+  private scopeBudgets: Map<string, CachedEntry<BudgetDefinition[]>> =
+    new Map();
+  private budgets: Map<string, CachedEntry<BudgetDefinition | null>> =
+    new Map();
+  private snapshots: Map<string, CachedEntry<BudgetStatusInfo | null>> =
+    new Map();
+  private loads = new SingleFlight<any>();
+
+  private onBudgetChanged = (event: BudgetChangeEvent) =>
+    this.invalidateBudget(event);
+  private onUsageRecorded = (usage: { budgetId: string; amount: number }) =>
+    this.applyUsage(usage.budgetId, usage.amount);
+
+  constructor(
+    config: BudgetHierarchyConfig = defaultBudgetHierarchyConfig,
+    budgetRegistry: BudgetRegistry = new BudgetRegistry(),
+    budgetTracker: BudgetTracker = new BudgetTracker(),
+  ) {
+    this.config = config;
+    this.budgetRegistry = budgetRegistry;
+    this.budgetTracker = budgetTracker;
+
+    budgetEvents.on("budget-changed", this.onBudgetChanged);
+    budgetEvents.on("usage-recorded", this.onUsageRecorded);
+  }
+
+  /**
+   * Scopes whose budgets apply to a user, most specific first
+   */
+  async getUserHierarchy(userId: string): Promise<UserBudgetHierarchy> {
+    const cached = this.hierarchies.get(userId);
+    if (cached && this.isFresh(cached, this.config.hierarchyTtlMs)) {
+      return cached.value;
+    }
+
+    const { value } = await this.loads.run(`user:${userId}`, async () => {
+      const [teams, organizationId] = await Promise.all([
+        this.getUserTeams(userId),
+        this.getUserOrganization(userId),
+      ]);
+
+      const scopes: BudgetScope[] = [{ scopeType: "user", scopeId: userId }];
+      for (const teamId of teams) {
+        scopes.push({ scopeType: "team", scopeId: teamId });
+      }
+      if (organizationId) {
+        scopes.push({ scopeType: "organization", scopeId: organizationId });
+      }
+
+      const hierarchy: UserBudgetHierarchy = { userId, scopes };
+      this.setCapped(this.hierarchies, userId, hierarchy, this.config.maxUsers);
+      return hierarchy;
+    });
+
+    return value;
+  }
+
+  /**
+   * Active budgets for a scope, in the registry's order
+   */
+  async getScopeBudgets(
+    scopeType: ScopeType,
+    scopeId: string,
+  ): Promise<BudgetDefinition[]> {
+    const key = this.scopeKey(scopeType, scopeId);
+    const cached = this.scopeBudgets.get(key);
+    if (cached && this.isFresh(cached, this.config.scopeTtlMs)) {
+      return cached.value;
+    }
+
+    const { value } = await this.loads.run(`scope:${key}`, async () => {
+      const budgets = await this.budgetRegistry.listBudgets({
+        scopeType,
+        scopeId,
+      });
+      const { maxBudgets } = this.config;
+      this.setCapped(this.scopeBudgets, key, budgets, maxBudgets);
+      for (const budget of budgets) {
+        this.setCapped(this.budgets, budget.id, budget, maxBudgets);
+      }
+      return budgets;
+    });
+
+    return value;
+  }
+
+  /**
+   * Budget definition by id; null when missing or inactive
+   */
+  async getBudget(budgetId: string): Promise<BudgetDefinition | null> {
+    const cached = this.budgets.get(budgetId);
+    if (cached && this.isFresh(cached, this.config.scopeTtlMs)) {
+      return cached.value;
+    }
+
+    const { value } = await this.loads.run(`budget:${budgetId}`, async () => {
+      const budget = await this.budgetRegistry.getBudget(budgetId);
+      this.setCapped(this.budgets, budgetId, budget, this.config.maxBudgets);
+      return budget;
+    });
+
+    return value;
+  }
+
+  /**
+   * Remaining-budget snapshot; null when the budget no longer exists
+   */
+  async getStatus(budgetId: string): Promise<BudgetStatusInfo | null> {
+    const cached = this.snapshots.get(budgetId);
+    if (cached && this.isFresh(cached, this.config.snapshotTtlMs)) {
+      return cached.value;
+    }
+
+    const { value } = await this.loads.run(`status:${budgetId}`, async () => {
+      const status = await this.budgetTracker.getBudgetStatus(budgetId);
+      this.setCapped(this.snapshots, budgetId, status, this.config.maxBudgets);
+      return status;
+    });
+
+    return value;
+  }
+
+  /**
+   * Check an estimated cost against a budget using the in-memory snapshot
+   */
+  async checkConstraints(
+    budget: BudgetDefinition,
+    estimatedCost: number,
+  ): Promise<BudgetConstraintCheck> {
+    const status = await this.getStatus(budget.id);
+
+    if (!status) {
+      return {
+        budgetId: budget.id,
+        estimatedCost,
+        currency: budget.currency,
+        canProceed: false,
+        reason: "Budget not found",
+      };
+    }
+
+    return evaluateBudgetConstraints(
+      budget.id,
+      estimatedCost,
+      status,
+      budget.alerts,
+    );
+  }
+
+  /**
+   * Fold recorded usage into the snapshot so checks see it immediately
+   */
+  applyUsage(budgetId: string, amount: number): void {
+    const status = this.snapshots.get(budgetId)?.value;
+    if (!status) {
+      return;
+    }
+
+    status.currentAmount += amount;
+    status.remaining = Math.max(0, status.limit - status.currentAmount);
+    status.percentUsed = (status.currentAmount / status.limit) * 100;
+  }
+
+  /**
+   * Drop everything derived from a changed budget
+   */
+  invalidateBudget(event: BudgetChangeEvent): void {
+    this.scopeBudgets.delete(this.scopeKey(event.scopeType, event.scopeId));
+    this.budgets.delete(event.budgetId);
+    this.snapshots.delete(event.budgetId);
+    logger.debug(
+      `Budget ${event.change}: ${event.budgetId} evicted from cache`,
+    );
+  }
+
+  /**
+   * Forget a user's memberships, e.g. after they change team
+   */
+  invalidateUser(userId: string): void {
+    this.hierarchies.delete(userId);
+  }
+
+  close(): void {
+    budgetEvents.off("budget-changed", this.onBudgetChanged);
+    budgetEvents.off("usage-recorded", this.onUsageRecorded);
+  }
+
+  private setCapped<T>(
+    entries: Map<string, CachedEntry<T>>,
+    key: string,
+    value: T,
+    maxEntries: number,
+  ): void {
+    // Re-insert so the map stays in load order and the oldest goes first
+    entries.delete(key);
+    entries.set(key, { value, loadedAt: Date.now() });
+
+    if (entries.size > maxEntries) {
+      const oldest = entries.keys().next().value;
+      if (oldest !== undefined) {
+        entries.delete(oldest);
+      }
+    }
+  }
+
+  private isFresh(entry: CachedEntry<unknown>, ttlMs: number): boolean {
+    return Date.now() - entry.loadedAt < ttlMs;
+  }
+
+  private scopeKey(scopeType: ScopeType, scopeId: string): string {
+    return `${scopeType}:${scopeId}`;
+  }
+
+  // Lookup errors propagate so a failed load is never cached as "no teams"
+  private async getUserTeams(userId: string): Promise<string[]> {
+    const result = await DatabaseConnection.query(
+      "SELECT team_id FROM user_teams WHERE user_id = $1",
+      [userId],
+    );
+    return result.rows.map((row: any) => row.team_id);
+  }
+
+  private async getUserOrganization(userId: string): Promise<string | null> {
+    const result = await DatabaseConnection.query(
+      "SELECT organization_id FROM users WHERE id = $1",
+      [userId],
+    );
+    return result.rows.length > 0 ? result.rows[0].organization_id : null;
+  }
+}
+
+/**
+ * Default cache lifetimes; budget edits evict immediately through registry
+ * events, so the TTLs only bound membership changes and other instances' usage
+ */
+export const defaultBudgetHierarchyConfig: BudgetHierarchyConfig = {
+  hierarchyTtlMs: 5 * 60 * 1000,
+  scopeTtlMs: 5 * 60 * 1000,
+  snapshotTtlMs: 30 * 1000,
+  maxUsers: 10000,
+  maxBudgets: 50000,
+};
+
+export const budgetHierarchyCache = new BudgetHierarchyCache();
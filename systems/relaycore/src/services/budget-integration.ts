@@ -6,15 +6,18 @@
 import { logger } from "../utils/logger";
 import { BudgetTracker } from "./budget-tracker";
 import { BudgetRegistry } from "./budget-registry";
+import { BudgetHierarchyCache, budgetHierarchyCache } from "./budget-hierarchy";
 import { BudgetConstraintCheck, ScopeType } from "../types/budget";
 
 export class BudgetIntegration {
   private budgetTracker: BudgetTracker;
   private budgetRegistry: BudgetRegistry;
+  private hierarchyCache: BudgetHierarchyCache;
 
-  constructor() {
+  constructor(hierarchyCache: BudgetHierarchyCache = budgetHierarchyCache) {
     this.budgetTracker = new BudgetTracker();
     this.budgetRegistry = new BudgetRegistry();
+    this.hierarchyCache = hierarchyCache;
   }
 
   /**
@@ -35,58 +38,27 @@ export class BudgetIntegration {
       let canProceed = true;
       let blockingReason: string | undefined;
 
-      // Check user budget
-      const userBudgets = await this.budgetRegistry.listBudgets({
-        scopeType: "user",
-        scopeId: userId,
-      });
-
-      for (const budget of userBudgets) {
-        const check = await this.budgetTracker.checkBudgetConstraints(
-          budget.id,
-          estimatedCost,
-        );
-        budgetChecks.push(check);
-
-        if (!check.canProceed) {
-          canProceed = false;
-          blockingReason = check.reason;
-          break;
-        }
-      }
-
-      // Check team budget if provided and user budget allows
-      if (canProceed && teamId) {
-        const teamBudgets = await this.budgetRegistry.listBudgets({
-          scopeType: "team",
-          scopeId: teamId,
-        });
-
-        for (const budget of teamBudgets) {
-          const check = await this.budgetTracker.checkBudgetConstraints(
-            budget.id,
-            estimatedCost,
-          );
-          budgetChecks.push(check);
-
-          if (!check.canProceed) {
-            canProceed = false;
-            blockingReason = check.reason;
-            break;
-          }
+      // Check user, then team, then project budgets; this runs before every
+      // routed request, so budgets and remaining amounts come from memory
+      const scopes: Array<[ScopeType, string | undefined]> = [
+        ["user", userId],
+        ["team", teamId],
+        ["project", projectId],
+      ];
+
+      for (const [scopeType, scopeId] of scopes) {
+        if (!canProceed || !scopeId) {
+          continue;
         }
-      }
 
-      // Check project budget if provided and previous budgets allow
-      if (canProceed && projectId) {
-        const projectBudgets = await this.budgetRegistry.listBudgets({
-          scopeType: "project",
-          scopeId: projectId,
-        });
+        const budgets = await this.hierarchyCache.getScopeBudgets(
+          scopeType,
+          scopeId,
+        );
 
-        for (const budget of projectBudgets) {
-          const check = await this.budgetTracker.checkBudgetConstraints(
-            budget.id,
+        for (const budget of budgets) {
+          const check = await this.hierarchyCache.checkConstraints(
+            budget,
             estimatedCost,
           );
           budgetChecks.push(check);
@@ -151,10 +123,10 @@ export class BudgetIntegration {
       };
 
       // Record usage against user budgets
-      const userBudgets = await this.budgetRegistry.listBudgets({
-        scopeType: "user",
-        scopeId: userId,
-      });
+      const userBudgets = await this.hierarchyCache.getScopeBudgets(
+        "user",
+        userId,
+      );
 
       for (const budget of userBudgets) {
         try {
@@ -170,10 +142,10 @@ export class BudgetIntegration {
 
       // Record usage against team budgets
       if (teamId) {
-        const teamBudgets = await this.budgetRegistry.listBudgets({
-          scopeType: "team",
-          scopeId: teamId,
-        });
+        const teamBudgets = await this.hierarchyCache.getScopeBudgets(
+          "team",
+          teamId,
+        );
 
         for (const budget of teamBudgets) {
           try {
@@ -190,10 +162,10 @@ export class BudgetIntegration {
 
       // Record usage against project budgets
       if (projectId) {
-        const projectBudgets = await this.budgetRegistry.listBudgets({
-          scopeType: "project",
-          scopeId: projectId,
-        });
+        const projectBudgets = await this.hierarchyCache.getScopeBudgets(
+          "project",
+          projectId,
+        );
 
         for (const budget of projectBudgets) {
           try {
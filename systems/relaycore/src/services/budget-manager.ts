@@ -7,7 +7,8 @@ import { Pool } from "pg";
 import { v4 as uuidv4 } from "uuid";
 import { logger } from "../utils/logger";
 import { DatabaseConnection } from "./database";
-import { BudgetRegistry } from "./budget-registry";
+import { budgetEvents } from "./budget-registry";
+import { BudgetHierarchyCache, budgetHierarchyCache } from "./budget-hierarchy";
 import {
   BudgetStatusInfo,
   BudgetConstraintCheck,
@@ -48,71 +49,41 @@ export interface TimeRange {
 
 export class BudgetManager {
   private db: Pool;
-  private budgetRegistry: BudgetRegistry;
   private costPredictor: CostPredictor;
-  private readonly CACHE_TTL = 60 * 5; // 5 minutes cache TTL
-  private budgetStatusCache: Map<
-    string,
-    { status: BudgetStatusInfo; timestamp: number }
-  > = new Map();
+  private hierarchyCache: BudgetHierarchyCache;
 
-  constructor() {
+  constructor(hierarchyCache: BudgetHierarchyCache = budgetHierarchyCache) {
     this.db = DatabaseConnection.getPool();
-    this.budgetRegistry = new BudgetRegistry();
     this.costPredictor = new CostPredictor();
+    this.hierarchyCache = hierarchyCache;
   }
 
   /**
    * Check if a user has sufficient budget for an estimated cost
-   * Optimized with caching for high-performance budget checks
+   * Served from the in-memory budget hierarchy and status snapshots
    */
   async checkBudget(
     userId: string,
     estimatedCost: number,
   ): Promise<BudgetStatusInfo> {
     try {
-      // First check user-level budget
-      const userBudgets = await this.budgetRegistry.listBudgets({
-        scopeType: "user",
-        scopeId: userId,
-      });
-
-      if (userBudgets.length === 0) {
-        // If no user budget, check team budgets
-        const userTeams = await this.getUserTeams(userId);
-
-        for (const teamId of userTeams) {
-          const teamBudgets = await this.budgetRegistry.listBudgets({
-            scopeType: "team",
-            scopeId: teamId,
-          });
-
-          if (teamBudgets.length > 0) {
-            // Use the first active team budget
-            return this.getBudgetStatus(teamBudgets[0].id);
-          }
-        }
+      // Walk user, team then organization budgets using the cached hierarchy
+      const hierarchy = await this.hierarchyCache.getUserHierarchy(userId);
 
-        // If no team budget, check organization budget
-        const orgId = await this.getUserOrganization(userId);
-        if (orgId) {
-          const orgBudgets = await this.budgetRegistry.listBudgets({
-            scopeType: "organization",
-            scopeId: orgId,
-          });
-
-          if (orgBudgets.length > 0) {
-            // Use the first active organization budget
-            return this.getBudgetStatus(orgBudgets[0].id);
-          }
-        }
+      for (const scope of hierarchy.scopes) {
+        const budgets = await this.hierarchyCache.getScopeBudgets(
+          scope.scopeType,
+          scope.scopeId,
+        );
 
-        // No budget found at any level
-        throw new Error("No budget found for user");
+        if (budgets.length > 0) {
+          // Use the first active budget at the most specific level
+          return this.getBudgetStatus(budgets[0].id);
+        }
       }
 
-      // Use the first active user budget
-      return this.getBudgetStatus(userBudgets[0].id);
+      // No budget found at any level
+      throw new Error("No budget found for user");
     } catch (error) {
       logger.error("Error checking budget:", error);
       throw error;
@@ -394,70 +365,17 @@ export class BudgetManager {
   }
 
   /**
-   * Get budget status with caching for performance
-   * Uses in-memory cache with TTL to reduce database load
+   * Get budget status from the in-memory snapshot
+   * Snapshots refresh periodically and absorb locally recorded usage
    */
   async getBudgetStatus(budgetId: string): Promise<BudgetStatusInfo> {
     try {
-      // Check cache first
-      const now = Date.now();
-      const cachedStatus = this.budgetStatusCache.get(budgetId);
+      const status = await this.hierarchyCache.getStatus(budgetId);
 
-      if (
-        cachedStatus &&
-        now - cachedStatus.timestamp < this.CACHE_TTL * 1000
-      ) {
-        return cachedStatus.status;
+      if (!status) {
+        throw new Error(`Budget status not found for budget: ${budgetId}`);
       }
 
-      // Cache miss or expired, fetch from database
-      const query = `
-        SELECT
-          budget_id, current_amount, bd.amount as limit, bd.currency,
-          percent_used, remaining, days_remaining, burn_rate,
-          projected_total, status, last_updated
-        FROM
-          budget_status_cache bsc
-        JOIN
-          budget_definitions bd ON bsc.budget_id = bd.id
-        WHERE
-          budget_id = $1
-      `;
-
-      const result = await this.db.query(query, [budgetId]);
-
-      if (result.rows.length === 0) {
-        // If no cached status exists, refresh it
-        await this.db.query("SELECT refresh_budget_status_cache($1)", [
-          budgetId,
-        ]);
-
-        // Try again
-        const retryResult = await this.db.query(query, [budgetId]);
-
-        if (retryResult.rows.length === 0) {
-          throw new Error(`Budget status not found for budget: ${budgetId}`);
-        }
-
-        const status = this.mapRowToBudgetStatus(retryResult.rows[0]);
-
-        // Cache the result
-        this.budgetStatusCache.set(budgetId, {
-          status,
-          timestamp: now,
-        });
-
-        return status;
-      }
-
-      const status = this.mapRowToBudgetStatus(result.rows[0]);
-
-      // Cache the result
-      this.budgetStatusCache.set(budgetId, {
-        status,
-        timestamp: now,
-      });
-
       return status;
     } catch (error) {
       logger.error("Error getting budget status:", error);
@@ -506,8 +424,8 @@ export class BudgetManager {
 
       await client.query("COMMIT");
 
-      // Invalidate the cache for this budget
-      this.budgetStatusCache.delete(budgetId);
+      // Keep in-memory snapshots in step with the new usage
+      budgetEvents.emit("usage-recorded", { budgetId, amount: request.amount });
 
       const usageRecord: UsageRecord = {
         id: result.rows[0].id,
@@ -545,7 +463,7 @@ export class BudgetManager {
       const canProceed = status.remaining >= estimatedCost;
 
       // Get budget definition to check alerts
-      const budget = await this.budgetRegistry.getBudget(budgetId);
+      const budget = await this.hierarchyCache.getBudget(budgetId);
 
       if (!budget) {
         throw new Error(`Budget not found: ${budgetId}`);
@@ -608,66 +526,4 @@ export class BudgetManager {
       throw error;
     }
   }
-
-  /**
-   * Helper method to get a user's teams
-   */
-  private async getUserTeams(userId: string): Promise<string[]> {
-    try {
-      // This would typically query your user/team relationship table
-      // For now, we'll use a placeholder implementation
-      const query = `
-        SELECT team_id
-        FROM user_teams
-        WHERE user_id = $1
-      `;
-
-      const result = await this.db.query(query, [userId]);
-      return result.rows.map((row) => row.team_id);
-    } catch (error) {
-      logger.error("Error getting user teams:", error);
-      return [];
-    }
-  }
-
-  /**
-   * Helper method to get a user's organization
-   */
-  private async getUserOrganization(userId: string): Promise<string | null> {
-    try {
-      // This would typically query your user/organization relationship table
-      // For now, we'll use a placeholder implementation
-      const query = `
-        SELECT organization_id
-        FROM users
-        WHERE id = $1
-      `;
-
-      const result = await this.db.query(query, [userId]);
-      return result.rows.length > 0 ? result.rows[0].organization_id : null;
-    } catch (error) {
-      logger.error("Error getting user organization:", error);
-      return null;
-    }
-  }
-
-  /**
-   * Map database row to BudgetStatusInfo object
-   */
-  private mapRowToBudgetStatus(row: any): BudgetStatusInfo {
-    return {
-      budgetId: row.budget_id,
-      currentAmount: parseFloat(row.current_amount),
-      limit: parseFloat(row.limit),
-      currency: row.currency,
-      percentUsed: parseFloat(row.percent_used),
-      remaining: parseFloat(row.remaining),
-      daysRemaining: row.days_remaining || 0,
-      burnRate: parseFloat(row.burn_rate || 0),
-      projectedTotal: parseFloat(row.projected_total || 0),
-      status: row.status,
-      activeAlerts: [], // Would need to fetch from alert history table
-      lastUpdated: row.last_updated,
-    };
-  }
 }
@@ -3,6 +3,7 @@
  * Manages the lifecycle of budget definitions including creation, retrieval, updating, and deletion
  */
 
+import { EventEmitter } from "events";
 import { v4 as uuidv4 } from "uuid";
 import { logger } from "../utils/logger";
 import { DatabaseConnection } from "./database";
@@ -14,6 +15,20 @@ import {
   ScopeType,
 } from "../types/budget";
 
+export interface BudgetChangeEvent {
+  budgetId: string;
+  scopeType: ScopeType;
+  scopeId: string;
+  change: "created" | "updated" | "deleted";
+}
+
+/**
+ * Budget lifecycle events shared by every registry instance. Emits
+ * "budget-changed" (BudgetChangeEvent) after a change commits and
+ * "usage-recorded" ({ budgetId, amount }) when the tracker records usage.
+ */
+export const budgetEvents = new EventEmitter();
+
 export class BudgetRegistry {
   constructor() {
     // No need to store db connection, use static methods
@@ -104,6 +119,8 @@ export class BudgetRegistry {
         `Budget created: ${budgetId} for ${request.scopeType}:${request.scopeId}`,
       );
 
+      this.emitChange(budget.id, budget.scopeType, budget.scopeId, "created");
+
       return budget;
     } catch (error) {
       await client.query("ROLLBACK");
@@ -243,6 +260,8 @@ export class BudgetRegistry {
 
       logger.info(`Budget updated: ${budgetId}`);
 
+      this.emitChange(budgetId, budget.scopeType, budget.scopeId, "updated");
+
       return budget;
     } catch (error) {
       await client.query("ROLLBACK");
@@ -274,7 +293,7 @@ export class BudgetRegistry {
 
       // Soft delete the budget
       const result = await client.query(
-        "UPDATE budget_definitions SET active = false, updated_at = CURRENT_TIMESTAMP WHERE id = $1 AND active = true",
+        "UPDATE budget_definitions SET active = false, updated_at = CURRENT_TIMESTAMP WHERE id = $1 AND active = true RETURNING scope_type, scope_id",
         [budgetId],
       );
 
@@ -293,6 +312,13 @@ export class BudgetRegistry {
 
       logger.info(`Budget deleted: ${budgetId}`);
 
+      this.emitChange(
+        budgetId,
+        result.rows[0].scope_type,
+        result.rows[0].scope_id,
+        "deleted",
+      );
+
       return true;
     } catch (error) {
       await client.query("ROLLBACK");
@@ -419,6 +445,23 @@ export class BudgetRegistry {
     return end.toISOString();
   }
 
+  /**
+   * Notify caches that a budget changed; listeners must not break the write
+   */
+  private emitChange(
+    budgetId: string,
+    scopeType: ScopeType,
+    scopeId: string,
+    change: BudgetChangeEvent["change"],
+  ): void {
+    try {
+      const event: BudgetChangeEvent = { budgetId, scopeType, scopeId, change };
+      budgetEvents.emit("budget-changed", event);
+    } catch (error) {
+      logger.error("Error notifying budget change:", error);
+    }
+  }
+
   /**
    * Map database row to BudgetDefinition object
    */
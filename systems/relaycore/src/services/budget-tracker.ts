@@ -4,9 +4,12 @@
  */
 
 import { v4 as uuidv4 } from "uuid";
+import Redis from "ioredis";
 import { logger } from "../utils/logger";
 import { DatabaseConnection } from "./database";
+import { budgetEvents } from "./budget-registry";
 import {
+  BudgetAlert,
   BudgetStatusInfo,
   UsageRecord,
   RecordUsageRequest,
@@ -14,9 +17,129 @@ import {
   BudgetAction,
 } from "../types/budget";
 
+/**
+ * exact: one transactional insert per usage record (status cache is
+ * updated immediately). approximate: records are summed in memory, limits
+ * are tracked with a shared Redis counter and aggregated rows are written
+ * in batches; usage past the limit is flagged on its record and announced
+ * with a `budget-exceeded` event. Set per budget with the `usage_accounting`
+ * tag.
+ */
+export type UsageAccountingMode = "exact" | "approximate";
+
+export interface UsageAccumulatorConfig {
+  defaultMode: UsageAccountingMode;
+  flushIntervalMs: number;
+  maxPendingRecords: number; // Flush early once this many records are held
+  budgetCacheTtlMs: number; // How long budget settings are reused
+  counterTtlSeconds: number; // Counters are re-seeded from the DB after this
+  pendingTtlSeconds: number; // Unflushed totals of crashed instances expire
+}
+
+export const defaultUsageAccumulatorConfig: UsageAccumulatorConfig = {
+  defaultMode: "exact",
+  flushIntervalMs: 5000,
+  maxPendingRecords: 1000,
+  budgetCacheTtlMs: 60000,
+  counterTtlSeconds: 300,
+  pendingTtlSeconds: 3600,
+};
+
+interface BudgetMeta {
+  id: string;
+  currency: string;
+  limit: number;
+  mode: UsageAccountingMode;
+  loadedAt: number;
+  runningTotal?: number; // Last counter value, projected locally without Redis
+}
+
+interface PendingUsage {
+  budgetId: string;
+  source: RecordUsageRequest["source"];
+  currency: string;
+  amount: number;
+  recordCount: number;
+  modelIds: Set<string>;
+  lastTimestamp: string;
+}
+
+// KEYS: running total, usage not yet flushed by any instance. Seeds a
+// missing total with the database amount ARGV[2] plus the unflushed usage,
+// then adds ARGV[1], also to the unflushed usage when ARGV[5] is '1'.
+// Returns nil when a seed is needed but was not supplied.
+const INCREMENT_COUNTER_SCRIPT = `
+if redis.call('EXISTS', KEYS[1]) == 0 then
+  if ARGV[2] == '' then return nil end
+  local pending = tonumber(redis.call('GET', KEYS[2]) or '0')
+  redis.call('SET', KEYS[1], tonumber(ARGV[2]) + pending, 'EX', ARGV[3])
+end
+if ARGV[5] == '1' then
+  redis.call('INCRBYFLOAT', KEYS[2], ARGV[1])
+  redis.call('EXPIRE', KEYS[2], ARGV[4])
+end
+return redis.call('INCRBYFLOAT', KEYS[1], ARGV[1])
+`;
+
+/**
+ * Check an estimated cost against a budget's alert thresholds; shared by
+ * the tracker and the in-memory budget hierarchy cache
+ */
+export function evaluateBudgetConstraints(
+  budgetId: string,
+  estimatedCost: number,
+  status: Pick<BudgetStatusInfo, "currentAmount" | "limit" | "currency">,
+  alerts: BudgetAlert[],
+): BudgetConstraintCheck {
+  const projectedAmount = status.currentAmount + estimatedCost;
+  const projectedPercent = (projectedAmount / status.limit) * 100;
+
+  let suggestedActions: BudgetAction[] = [];
+  let canProceed = true;
+  let reason = "";
+
+  // Find the highest threshold that would be exceeded
+  const byThreshold = [...alerts].sort((a, b) => b.threshold - a.threshold);
+  for (const alert of byThreshold) {
+    if (projectedPercent >= alert.threshold) {
+      suggestedActions = alert.actions;
+
+      // Check if any blocking actions are present
+      if (alert.actions.includes("block-all")) {
+        canProceed = false;
+        reason = `Would exceed ${alert.threshold}% budget threshold (${projectedPercent.toFixed(1)}%)`;
+      } else if (alert.actions.includes("require-approval")) {
+        canProceed = false;
+        reason = `Requires approval - would exceed ${alert.threshold}% budget threshold`;
+      }
+
+      break;
+    }
+  }
+
+  return {
+    budgetId,
+    estimatedCost,
+    currency: status.currency,
+    canProceed,
+    reason: reason || undefined,
+    suggestedActions:
+      suggestedActions.length > 0 ? suggestedActions : undefined,
+  };
+}
+
 export class BudgetTracker {
-  constructor() {
+  private config: UsageAccumulatorConfig;
+  private budgetMeta: Map<string, BudgetMeta> = new Map();
+  private pending: Map<string, PendingUsage> = new Map();
+  private pendingRecords = 0;
+  private flushing: Promise<void> | null = null;
+  private flushTimer?: NodeJS.Timeout;
+  private redis?: Redis;
+
+  constructor(config: Partial<UsageAccumulatorConfig> = {}) {
     // No need to store db connection, use static methods
+    this.config = { ...defaultUsageAccumulatorConfig, ...config };
   }
 
   /**
@@ -25,6 +148,62 @@ export class BudgetTracker {
   async recordUsage(
     budgetId: string,
     request: RecordUsageRequest,
+  ): Promise<UsageRecord> {
+    const meta = this.budgetMeta.get(budgetId);
+    const usageRecord =
+      meta &&
+      meta.mode === "approximate" &&
+      Date.now() - meta.loadedAt < this.config.budgetCacheTtlMs
+        ? await this.recordUsageApproximate(meta, request)
+        : await this.recordUsageExact(budgetId, request);
+
+    budgetEvents.emit("usage-recorded", { budgetId, amount: request.amount });
+
+    return usageRecord;
+  }
+
+  /**
+   * Write pending aggregated usage to the database
+   */
+  async flush(): Promise<void> {
+    // One write at a time; callers arriving mid-write wait for it, then
+    // write what was recorded meanwhile until nothing is left pending
+    while (this.flushing || this.pending.size > 0) {
+      if (this.flushing) {
+        await this.flushing;
+        continue;
+      }
+
+      const batch = Array.from(this.pending.values());
+      this.pending.clear();
+      this.pendingRecords = 0;
+
+      this.flushing = this.writeAggregatedUsage(batch);
+      try {
+        await this.flushing;
+      } finally {
+        this.flushing = null;
+      }
+    }
+  }
+
+  /**
+   * Flush pending usage and release timers and connections
+   */
+  async close(): Promise<void> {
+    clearInterval(this.flushTimer);
+    this.flushTimer = undefined;
+    try {
+      await this.flush();
+    } finally {
+      this.redis?.disconnect();
+      this.redis = undefined;
+    }
+  }
+
+  private async recordUsageExact(
+    budgetId: string,
+    request: RecordUsageRequest,
   ): Promise<UsageRecord> {
     const client = await DatabaseConnection.getClient();
 
@@ -33,7 +212,7 @@ export class BudgetTracker {
 
       // Verify budget exists and is active
       const budgetCheck = await client.query(
-        "SELECT id, currency FROM budget_definitions WHERE id = $1 AND active = true",
+        "SELECT id, currency, amount, tags FROM budget_definitions WHERE id = $1 AND active = true",
         [budgetId],
       );
 
@@ -41,6 +220,9 @@ export class BudgetTracker {
         throw new Error("Budget not found or inactive");
       }
 
+      // Remember settings so approximate budgets skip this path next time
+      const meta = this.rememberBudget(budgetCheck.rows[0]);
+
       const budgetCurrency = budgetCheck.rows[0].currency;
 
       // Convert currency if needed (for now, we'll require matching currencies)
@@ -81,6 +263,16 @@ export class BudgetTracker {
 
       const usageRecord = this.mapRowToUsageRecord(result.rows[0]);
 
+      // Keep the running total of an approximate budget current; a missing
+      // counter is seeded from the database, which now has this record
+      if (meta.mode === "approximate") {
+        const total = await this.incrementCounter(meta.id, request.amount, {
+          seed: false,
+          pending: false,
+        });
+        this.checkLimit(meta, usageRecord, total);
+      }
+
       logger.info(
         `Usage recorded: ${request.amount} ${request.currency} for budget ${budgetId}`,
       );
@@ -95,6 +287,298 @@ export class BudgetTracker {
     }
   }
 
+  /**
+   * Accumulate usage in memory and track it against the budget's shared
+   * Redis counter; the aggregated rows reach the database on the next flush
+   */
+  private async recordUsageApproximate(
+    meta: BudgetMeta,
+    request: RecordUsageRequest,
+  ): Promise<UsageRecord> {
+    if (request.currency !== meta.currency) {
+      logger.warn(
+        `Currency mismatch: budget uses ${meta.currency}, usage recorded in ${request.currency}`,
+      );
+    }
+
+    const usageRecord: UsageRecord = {
+      id: uuidv4(),
+      budgetId: meta.id,
+      amount: request.amount,
+      currency: request.currency,
+      timestamp: request.timestamp || new Date().toISOString(),
+      source: request.source,
+      description: request.description,
+      metadata: request.metadata,
+    };
+
+    const key = `${meta.id}|${request.source}|${request.currency}`;
+    let pending = this.pending.get(key);
+    if (!pending) {
+      pending = {
+        budgetId: meta.id,
+        source: request.source,
+        currency: request.currency,
+        amount: 0,
+        recordCount: 0,
+        modelIds: new Set(),
+        lastTimestamp: usageRecord.timestamp,
+      };
+      this.pending.set(key, pending);
+    }
+    pending.amount += request.amount;
+    pending.recordCount++;
+    if (request.metadata.modelId) {
+      pending.modelIds.add(request.metadata.modelId);
+    }
+    if (usageRecord.timestamp > pending.lastTimestamp) {
+      pending.lastTimestamp = usageRecord.timestamp;
+    }
+
+    this.pendingRecords++;
+    this.scheduleFlush();
+
+    const total = await this.incrementCounter(meta.id, request.amount, {
+      seed: true,
+      pending: true,
+    });
+    this.checkLimit(meta, usageRecord, total);
+
+    logger.debug(
+      `Usage accumulated: ${request.amount} ${request.currency} for budget ${meta.id}`,
+    );
+
+    return usageRecord;
+  }
+
+  /**
+   * Flag usage that takes a budget past its limit. Without a shared total
+   * the last known one plus this instance's usage since is used instead.
+   */
+  private checkLimit(
+    meta: BudgetMeta,
+    usageRecord: UsageRecord,
+    total: number | null,
+  ): void {
+    const projected =
+      total !== null ? total : (meta.runningTotal ?? 0) + usageRecord.amount;
+    meta.runningTotal = projected;
+
+    if (projected <= meta.limit) {
+      return;
+    }
+
+    usageRecord.limitExceeded = true;
+    logger.warn(
+      `Budget ${meta.id} exceeded: ${projected.toFixed(2)} of ${meta.limit} ${meta.currency}`,
+    );
+    budgetEvents.emit("budget-exceeded", {
+      budgetId: meta.id,
+      currentAmount: projected,
+      limit: meta.limit,
+    });
+  }
+
+  private scheduleFlush(): void {
+    if (this.pendingRecords >= this.config.maxPendingRecords) {
+      this.flush().catch(() => undefined);
+    }
+
+    if (!this.flushTimer) {
+      this.flushTimer = setInterval(
+        () => this.flush().catch(() => undefined),
+        this.config.flushIntervalMs,
+      );
+      this.flushTimer.unref();
+    }
+  }
+
+  /**
+   * Insert one row per budget, source and currency in a single statement.
+   * Rows that fail to insert are returned to the accumulator for the next
+   * flush.
+   */
+  private async writeAggregatedUsage(batch: PendingUsage[]): Promise<void> {
+    const values: any[] = [];
+    const placeholders = batch.map((usage, i) => {
+      values.push(
+        uuidv4(),
+        usage.budgetId,
+        usage.amount,
+        usage.currency,
+        usage.lastTimestamp,
+        usage.source,
+        `${usage.recordCount} aggregated usage records`,
+        JSON.stringify({
+          aggregated: true,
+          recordCount: usage.recordCount,
+          modelIds: Array.from(usage.modelIds),
+        }),
+      );
+      const base = i * 8;
+      return `($${base + 1}, $${base + 2}, $${base + 3}, $${base + 4}, $${base + 5}, $${base + 6}, $${base + 7}, $${base + 8})`;
+    });
+
+    try {
+      await DatabaseConnection.query(
+        `
+        INSERT INTO budget_usage_records (
+          id, budget_id, amount, currency, timestamp, source, description, metadata
+        ) VALUES ${placeholders.join(", ")}
+      `,
+        values,
+      );
+      logger.debug(`Flushed ${batch.length} aggregated usage rows`);
+    } catch (error) {
+      logger.error("Error flushing aggregated usage:", error);
+
+      for (const usage of batch) {
+        const key = `${usage.budgetId}|${usage.source}|${usage.currency}`;
+        const current = this.pending.get(key);
+        if (current) {
+          current.amount += usage.amount;
+          current.recordCount += usage.recordCount;
+          usage.modelIds.forEach((id) => current.modelIds.add(id));
+        } else {
+          this.pending.set(key, usage);
+        }
+        this.pendingRecords += usage.recordCount;
+      }
+      throw error;
+    }
+
+    await this.releasePending(batch);
+  }
+
+  /**
+   * Remove flushed usage from the shared unflushed totals, now that the
+   * database amount that seeds running totals includes it
+   */
+  private async releasePending(batch: PendingUsage[]): Promise<void> {
+    const flushed = new Map<string, number>();
+    for (const usage of batch) {
+      flushed.set(
+        usage.budgetId,
+        (flushed.get(usage.budgetId) || 0) + usage.amount,
+      );
+    }
+
+    try {
+      const redis = this.getRedis();
+      await Promise.all(
+        Array.from(flushed, ([budgetId, amount]) =>
+          redis.incrbyfloat(this.pendingKey(budgetId), -amount),
+        ),
+      );
+    } catch (error) {
+      logger.warn("Unflushed budget usage could not be released:", error);
+    }
+  }
+
+  /**
+   * Add to the budget's running total shared by all instances. A missing
+   * total starts from the status cache plus the usage every instance still
+   * holds unflushed, so expiring it loses nothing. With `seed` false, a
+   * missing total is left to the next seeding; with `pending`, the amount
+   * is also held as unflushed until the next flush releases it.
+   */
+  private async incrementCounter(
+    budgetId: string,
+    amount: number,
+    options: { seed: boolean; pending: boolean },
+  ): Promise<number | null> {
+    const keys = [this.counterKey(budgetId), this.pendingKey(budgetId)];
+
+    try {
+      const redis = this.getRedis();
+      const args = [
+        amount,
+        "",
+        this.config.counterTtlSeconds,
+        this.config.pendingTtlSeconds,
+        options.pending ? "1" : "0",
+      ];
+      let total = await redis.eval(
+        INCREMENT_COUNTER_SCRIPT,
+        2,
+        ...keys,
+        ...args,
+      );
+
+      if (total === null && options.seed) {
+        const status = await DatabaseConnection.query(
+          "SELECT current_amount FROM budget_status_cache WHERE budget_id = $1",
+          [budgetId],
+        );
+        args[1] = String(parseFloat(status.rows[0]?.current_amount || "0"));
+        total = await redis.eval(
+          INCREMENT_COUNTER_SCRIPT,
+          2,
+          ...keys,
+          ...args,
+        );
+      }
+
+      return total === null ? null : parseFloat(total as string);
+    } catch (error) {
+      logger.warn(`Budget counter unavailable for ${budgetId}:`, error);
+      return null;
+    }
+  }
+
+  private async getRunningTotal(budgetId: string): Promise<number | null> {
+    try {
+      const value = await this.getRedis().get(this.counterKey(budgetId));
+      return value === null ? null : parseFloat(value);
+    } catch (error) {
+      logger.warn(`Budget counter unavailable for ${budgetId}:`, error);
+      return null;
+    }
+  }
+
+  // Both keys of a budget share a hash tag so the script runs on a cluster
+  private counterKey(budgetId: string): string {
+    return `budget:usage:{${budgetId}}`;
+  }
+
+  private pendingKey(budgetId: string): string {
+    return `budget:pending:{${budgetId}}`;
+  }
+
+  private getRedis(): Redis {
+    if (!this.redis) {
+      this.redis = new Redis(
+        process.env.REDIS_URL || "redis://localhost:6379",
+        { maxRetriesPerRequest: 1 },
+      );
+      this.redis.on("error", (err) => {
+        logger.error("Budget counter Redis error:", err);
+      });
+    }
+    return this.redis;
+  }
+
+  private rememberBudget(row: any): BudgetMeta {
+    const tags =
+      typeof row.tags === "string" ? JSON.parse(row.tags) : row.tags || {};
+    const mode: UsageAccountingMode =
+      tags.usage_accounting === "approximate" ||
+      tags.usage_accounting === "exact"
+        ? tags.usage_accounting
+        : this.config.defaultMode;
+
+    const meta: BudgetMeta = {
+      id: row.id,
+      currency: row.currency,
+      limit: parseFloat(row.amount),
+      mode,
+      loadedAt: Date.now(),
+      runningTotal: this.budgetMeta.get(row.id)?.runningTotal,
+    };
+    this.budgetMeta.set(meta.id, meta);
+    return meta;
+  }
+
   /**
    * Get current budget status
    */
@@ -140,6 +624,20 @@ export class BudgetTracker {
 
       const status = statusResult.rows[0];
 
+      // Approximate budgets may have usage the status cache has not seen yet
+      let currentAmount = parseFloat(status.current_amount);
+      let percentUsed = parseFloat(status.percent_used);
+      let remaining = parseFloat(status.remaining);
+      if (this.rememberBudget(budget).mode === "approximate") {
+        const runningTotal = await this.getRunningTotal(budgetId);
+        if (runningTotal !== null && runningTotal > currentAmount) {
+          const limit = parseFloat(budget.amount);
+          currentAmount = runningTotal;
+          percentUsed = (runningTotal / limit) * 100;
+          remaining = Math.max(0, limit - runningTotal);
+        }
+      }
+
       // Get active alerts
       const alertsResult = await DatabaseConnection.query(
         `
@@ -161,11 +659,11 @@ export class BudgetTracker {
 
       return {
         budgetId: budgetId,
-        currentAmount: parseFloat(status.current_amount),
+        currentAmount,
         limit: parseFloat(budget.amount),
         currency: budget.currency,
-        percentUsed: parseFloat(status.percent_used),
-        remaining: parseFloat(status.remaining),
+        percentUsed,
+        remaining,
         daysRemaining: status.days_remaining,
         burnRate: parseFloat(status.burn_rate),
         projectedTotal: parseFloat(status.projected_total),
@@ -230,9 +728,6 @@ export class BudgetTracker {
         };
       }
 
-      const projectedAmount = status.currentAmount + estimatedCost;
-      const projectedPercent = (projectedAmount / status.limit) * 100;
-
       // Check against budget alerts to determine actions
       const budget = await DatabaseConnection.query(
         "SELECT alerts FROM budget_definitions WHERE id = $1",
@@ -250,39 +745,8 @@ export class BudgetTracker {
       }
 
       const alerts = JSON.parse(budget.rows[0].alerts || "[]");
-      let suggestedActions: BudgetAction[] = [];
-      let canProceed = true;
-      let reason = "";
-
-      // Find the highest threshold that would be exceeded
-      for (const alert of alerts.sort(
-        (a: any, b: any) => b.threshold - a.threshold,
-      )) {
-        if (projectedPercent >= alert.threshold) {
-          suggestedActions = alert.actions;
-
-          // Check if any blocking actions are present
-          if (alert.actions.includes("block-all")) {
-            canProceed = false;
-            reason = `Would exceed ${alert.threshold}% budget threshold (${projectedPercent.toFixed(1)}%)`;
-          } else if (alert.actions.includes("require-approval")) {
-            canProceed = false;
-            reason = `Requires approval - would exceed ${alert.threshold}% budget threshold`;
-          }
-
-          break;
-        }
-      }
 
-      return {
-        budgetId,
-        estimatedCost,
-        currency: status.currency,
-        canProceed,
-        reason: reason || undefined,
-        suggestedActions:
-          suggestedActions.length > 0 ? suggestedActions : undefined,
-      };
+      return evaluateBudgetConstraints(budgetId, estimatedCost, status, alerts);
     } catch (error) {
       logger.error("Error checking budget constraints:", error);
       throw error;
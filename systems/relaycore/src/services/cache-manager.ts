@@ -5,6 +5,7 @@
 
 import Redis from "ioredis";
 import { logger } from "../utils/logger";
+import { unlinkMatching } from "../utils/redis-scan";
 
 export interface CacheStats {
   hits: number;
@@ -113,25 +114,93 @@ export class CacheManager {
   }
 
   /**
-   * Invalidate cache entries matching a pattern
-   * Supports wildcard invalidation for related keys
+   * Get a value from Redis, bypassing the local cache
+   * For values other instances write, where a local copy would go stale
    */
-  async invalidate(pattern: string): Promise<void> {
+  async getShared<T>(key: string): Promise<T | null> {
     try {
-      // Find all keys matching the pattern in Redis
-      const keys = await this.redis.keys(pattern);
+      const value = await this.redis.get(key);
+      if (value === null) {
+        this.stats.misses++;
+        return null;
+      }
 
-      if (keys.length > 0) {
-        // Delete from Redis
-        await this.redis.del(...keys);
+      const parsed = JSON.parse(value) as T;
+      const ttl = await this.redis.ttl(key);
+      if (ttl > 0) {
+        this.setInLocalCache(key, parsed, ttl);
+      }
 
-        // Also remove from local cache
-        for (const key of keys) {
-          this.localCache.delete(key);
-        }
+      this.stats.hits++;
+      return parsed;
+    } catch (error) {
+      logger.error("Error getting shared value from cache:", error);
+      return this.getFromLocalCache<T>(key);
+    }
+  }
 
+  /**
+   * Update fields of a Redis hash in one round trip
+   * Increments are atomic, so instances can share counters without locking
+   */
+  async updateHash(
+    key: string,
+    update: {
+      increment?: Record<string, number>;
+      set?: Record<string, string | number>;
+      remove?: string[];
+    },
+    ttl: number,
+  ): Promise<void> {
+    try {
+      const pipeline = this.redis.pipeline();
+      for (const [field, amount] of Object.entries(update.increment || {})) {
+        pipeline.hincrby(key, field, amount);
+      }
+      if (update.set && Object.keys(update.set).length > 0) {
+        pipeline.hset(key, update.set);
+      }
+      if (update.remove && update.remove.length > 0) {
+        pipeline.hdel(key, ...update.remove);
+      }
+      pipeline.expire(key, ttl);
+      await pipeline.exec();
+    } catch (error) {
+      logger.error("Error updating cache hash:", error);
+    }
+  }
+
+  /**
+   * Get all fields of a Redis hash
+   */
+  async getHash(key: string): Promise<Record<string, string>> {
+    try {
+      return await this.redis.hgetall(key);
+    } catch (error) {
+      logger.error("Error getting cache hash:", error);
+      return {};
+    }
+  }
+
+  /**
+   * Invalidate cache entries matching a pattern
+   * Supports wildcard invalidation for related keys
+   */
+  async invalidate(pattern: string): Promise<void> {
+    try {
+      // Scan in batches rather than KEYS, which blocks Redis for every client
+      const removed = await unlinkMatching(this.redis, pattern, {
+        onBatch: (keys) => {
+          // Also remove from local cache
+          for (const key of keys) {
+            this.localCache.delete(key);
+          }
+        },
+      });
+
+      if (removed > 0) {
         logger.info(
-          `Invalidated ${keys.length} cache keys matching pattern: ${pattern}`,
+          `Invalidated ${removed} cache keys matching pattern: ${pattern}`,
         );
       }
     } catch (error) {
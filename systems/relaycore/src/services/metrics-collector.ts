@@ -59,17 +59,26 @@ export class MetricsCollector {
     decision: RoutingDecision,
   ): Promise<void> {
     try {
+      // Prefer provider-reported usage (OpenAI or Anthropic naming)
+      const usage = response.metadata?.usage || {};
+      const promptTokens =
+        usage.prompt_tokens ??
+        usage.input_tokens ??
+        this.estimateTokens(request.prompt);
+      const completionTokens =
+        usage.completion_tokens ??
+        usage.output_tokens ??
+        this.estimateTokens(response.content);
+
       const metricsData: MetricsData = {
         request_id: request.id,
         user_id: request.user_id,
         system_source: request.system_source,
         provider: response.provider,
         model: response.model_used,
-        prompt_tokens: this.estimateTokens(request.prompt),
-        completion_tokens: this.estimateTokens(response.content),
-        total_tokens:
-          this.estimateTokens(request.prompt) +
-          this.estimateTokens(response.content),
+        prompt_tokens: promptTokens,
+        completion_tokens: completionTokens,
+        total_tokens: promptTokens + completionTokens,
         cost: response.cost,
         latency_ms: response.latency,
         success: true,
@@ -0,0 +1,458 @@
+/**
+ * Provider Admission Control
+ * Per provider/model token buckets for requests and tokens per minute, kept in
+ * step with upstream rate-limit headers, plus an AIMD concurrency limit
+ */
+
+import { logger } from "../utils/logger";
+
+export interface LaneLimits {
+  requestsPerMinute: number;
+  tokensPerMinute: number;
+  initialConcurrency: number;
+  minConcurrency: number;
+  maxConcurrency: number;
+}
+
+export interface AdmissionConfig {
+  defaults: LaneLimits;
+  providers: Record<string, Partial<LaneLimits>>; // Overrides per provider
+  latencyTolerance: number; // Latency over baseline x tolerance shrinks the limit
+  backoffFactor: number; // Multiplier applied to the limit on 429s
+}
+
+export interface AdmissionOutcome {
+  latencyMs?: number;
+  outputTokens?: number; // Set when latencyMs covers the whole generation
+  status?: number; // Upstream HTTP status; 429 triggers back-off
+  headers?: Record<string, any>;
+  tokensUsed?: number; // Actual tokens, to settle the estimate
+}
+
+export interface AdmissionTicket {
+  provider: string;
+  model: string;
+  estimatedTokens: number;
+  release(outcome?: AdmissionOutcome): void;
+}
+
+export type AdmissionResult =
+  | { admitted: true; ticket: AdmissionTicket }
+  | { admitted: false; retryInMs: number }; // Infinity: wait for a release
+
+export interface LaneMetrics {
+  provider: string;
+  model: string;
+  inFlight: number;
+  concurrencyLimit: number;
+  requestsAvailable: number;
+  requestsPerMinute: number;
+  tokensAvailable: number;
+  tokensPerMinute: number;
+  blockedForMs: number;
+  latencyBaselineMs: number | null;
+  perTokenBaselineMs: number | null;
+  admitted: number;
+  deferred: number; // Requests held back at least once
+  throttled: number; // Upstream 429s
+}
+
+/**
+ * Bucket refilled continuously at its per-minute limit
+ */
+class TokenBucket {
+  capacity: number;
+  private tokens: number;
+  private lastRefill: number = Date.now();
+  private blockedUntil: number = 0;
+
+  constructor(perMinute: number) {
+    this.capacity = perMinute;
+    this.tokens = perMinute;
+  }
+
+  available(): number {
+    this.refill();
+    return Math.floor(this.tokens);
+  }
+
+  /**
+   * Milliseconds until `amount` can be taken; 0 when it can be taken now
+   */
+  waitTime(amount: number): number {
+    this.refill();
+    const now = Date.now();
+    if (this.blockedUntil > now) {
+      return this.blockedUntil - now;
+    }
+
+    // Requests larger than the whole bucket wait for a full bucket
+    const needed = Math.min(amount, this.capacity);
+    if (this.tokens >= needed) {
+      return 0;
+    }
+    return Math.ceil(((needed - this.tokens) * 60000) / this.capacity);
+  }
+
+  take(amount: number): void {
+    this.refill();
+    this.tokens -= amount;
+  }
+
+  /**
+   * Return unused tokens, or charge extra when the estimate was too low
+   */
+  adjust(amount: number): void {
+    this.refill();
+    this.tokens = Math.min(this.capacity, this.tokens + amount);
+  }
+
+  /**
+   * Align the bucket with what the provider reports. Only ever lowers the
+   * local view, since other clients may share the same upstream quota.
+   */
+  sync(limit?: number, remaining?: number, resetMs?: number): void {
+    this.refill();
+
+    if (limit !== undefined && limit > 0) {
+      this.capacity = limit;
+    }
+    if (remaining !== undefined) {
+      this.tokens = Math.min(this.tokens, remaining);
+      if (remaining <= 0 && resetMs !== undefined) {
+        this.blockFor(resetMs);
+      }
+    }
+    this.tokens = Math.min(this.tokens, this.capacity);
+  }
+
+  blockFor(ms: number): void {
+    this.blockedUntil = Math.max(this.blockedUntil, Date.now() + ms);
+  }
+
+  blockedFor(): number {
+    return Math.max(0, this.blockedUntil - Date.now());
+  }
+
+  private refill(): void {
+    const now = Date.now();
+    const elapsed = now - this.lastRefill;
+    if (elapsed > 0) {
+      this.tokens = Math.min(
+        this.capacity,
+        this.tokens + (elapsed * this.capacity) / 60000,
+      );
+      this.lastRefill = now;
+    }
+  }
+}
+
+interface Lane {
+  provider: string;
+  model: string;
+  requests: TokenBucket;
+  tokens: TokenBucket;
+  limits: LaneLimits;
+  concurrencyLimit: number;
+  inFlight: number;
+  latencyBaselineMs: number | null;
+  perTokenBaselineMs: number | null;
+  admitted: number;
+  deferred: number;
+  throttled: number;
+}
+
+export class ProviderAdmissionController {
+  private config: AdmissionConfig;
+  private lanes: Map<string, Lane> = new Map();
+
+  constructor(config: AdmissionConfig) {
+    this.config = config;
+  }
+
+  /**
+   * Reserve a request slot and estimated tokens, or report how long to wait.
+   * Callers retrying a request that was already deferred pass `retry` so it
+   * is counted once.
+   */
+  tryAcquire(
+    provider: string,
+    model: string,
+    estimatedTokens: number,
+    retry = false,
+  ): AdmissionResult {
+    const lane = this.getLane(provider, model);
+
+    if (lane.inFlight >= Math.floor(lane.concurrencyLimit)) {
+      lane.deferred += retry ? 0 : 1;
+      return { admitted: false, retryInMs: Infinity };
+    }
+
+    const retryInMs = Math.max(
+      lane.requests.waitTime(1),
+      lane.tokens.waitTime(estimatedTokens),
+    );
+    if (retryInMs > 0) {
+      lane.deferred += retry ? 0 : 1;
+      return { admitted: false, retryInMs };
+    }
+
+    lane.requests.take(1);
+    lane.tokens.take(estimatedTokens);
+    lane.inFlight++;
+    lane.admitted++;
+
+    let released = false;
+    const ticket: AdmissionTicket = {
+      provider,
+      model,
+      estimatedTokens,
+      release: (outcome?: AdmissionOutcome) => {
+        if (released) {
+          return;
+        }
+        released = true;
+        lane.inFlight--;
+        this.settle(lane, estimatedTokens, outcome);
+      },
+    };
+
+    return { admitted: true, ticket };
+  }
+
+  /**
+   * Apply rate-limit headers from any upstream response
+   */
+  updateFromHeaders(
+    provider: string,
+    model: string,
+    headers: Record<string, any>,
+  ): void {
+    const lane = this.getLane(provider, model);
+    const header = (name: string): string | undefined => {
+      const value = headers[name];
+      return value === undefined || value === null ? undefined : String(value);
+    };
+    const number = (name: string): number | undefined => {
+      const value = header(name);
+      const parsed = value === undefined ? NaN : Number(value);
+      return Number.isFinite(parsed) ? parsed : undefined;
+    };
+
+    // OpenAI: x-ratelimit-*-requests / -tokens
+    // Anthropic: anthropic-ratelimit-requests-* / -tokens-*
+    lane.requests.sync(
+      number("x-ratelimit-limit-requests") ??
+        number("anthropic-ratelimit-requests-limit"),
+      number("x-ratelimit-remaining-requests") ??
+        number("anthropic-ratelimit-requests-remaining"),
+      parseResetMs(
+        header("x-ratelimit-reset-requests") ??
+          header("anthropic-ratelimit-requests-reset"),
+      ),
+    );
+    lane.tokens.sync(
+      number("x-ratelimit-limit-tokens") ??
+        number("anthropic-ratelimit-tokens-limit"),
+      number("x-ratelimit-remaining-tokens") ??
+        number("anthropic-ratelimit-tokens-remaining"),
+      parseResetMs(
+        header("x-ratelimit-reset-tokens") ??
+          header("anthropic-ratelimit-tokens-reset"),
+      ),
+    );
+
+    const retryAfterMs = parseResetMs(header("retry-after"));
+    if (retryAfterMs !== undefined) {
+      lane.requests.blockFor(retryAfterMs);
+    }
+  }
+
+  getMetrics(): LaneMetrics[] {
+    return Array.from(this.lanes.values()).map((lane) => ({
+      provider: lane.provider,
+      model: lane.model,
+      inFlight: lane.inFlight,
+      concurrencyLimit: Math.floor(lane.concurrencyLimit),
+      requestsAvailable: lane.requests.available(),
+      requestsPerMinute: lane.requests.capacity,
+      tokensAvailable: lane.tokens.available(),
+      tokensPerMinute: lane.tokens.capacity,
+      blockedForMs: Math.max(
+        lane.requests.blockedFor(),
+        lane.tokens.blockedFor(),
+      ),
+      latencyBaselineMs: lane.latencyBaselineMs,
+      perTokenBaselineMs: lane.perTokenBaselineMs,
+      admitted: lane.admitted,
+      deferred: lane.deferred,
+      throttled: lane.throttled,
+    }));
+  }
+
+  /**
+   * Settle token estimates and adapt the concurrency limit (AIMD): grow by
+   * one slot per limit's worth of healthy responses, shrink multiplicatively
+   * on 429s and gently when latency climbs well above its baseline
+   */
+  private settle(
+    lane: Lane,
+    estimatedTokens: number,
+    outcome?: AdmissionOutcome,
+  ): void {
+    if (!outcome) {
+      return;
+    }
+
+    if (outcome.tokensUsed !== undefined) {
+      lane.tokens.adjust(estimatedTokens - outcome.tokensUsed);
+    }
+    if (outcome.headers) {
+      this.updateFromHeaders(lane.provider, lane.model, outcome.headers);
+    }
+
+    const { minConcurrency, maxConcurrency } = lane.limits;
+
+    if (outcome.status === 429) {
+      lane.throttled++;
+      lane.concurrencyLimit = Math.max(
+        minConcurrency,
+        lane.concurrencyLimit * this.config.backoffFactor,
+      );
+      logger.warn(
+        `Provider ${lane.provider}/${lane.model} throttled; concurrency limit ${lane.concurrencyLimit.toFixed(1)}`,
+      );
+      return;
+    }
+
+    if (outcome.latencyMs === undefined || (outcome.status ?? 200) >= 400) {
+      return;
+    }
+
+    // Whole-response latency grows with output length, so it is compared
+    // per output token, against its own baseline
+    const perToken = (outcome.outputTokens ?? 0) > 0;
+    const latency = perToken
+      ? outcome.latencyMs / outcome.outputTokens!
+      : outcome.latencyMs;
+    const baseline = perToken
+      ? lane.perTokenBaselineMs
+      : lane.latencyBaselineMs;
+
+    // Follow improvements quickly and degradations slowly
+    const updated =
+      baseline === null
+        ? latency
+        : baseline + (latency - baseline) * (latency < baseline ? 0.5 : 0.05);
+    if (perToken) {
+      lane.perTokenBaselineMs = updated;
+    } else {
+      lane.latencyBaselineMs = updated;
+    }
+
+    if (
+      baseline !== null &&
+      latency > baseline * this.config.latencyTolerance
+    ) {
+      lane.concurrencyLimit = Math.max(
+        minConcurrency,
+        lane.concurrencyLimit * 0.9,
+      );
+    } else {
+      lane.concurrencyLimit = Math.min(
+        maxConcurrency,
+        lane.concurrencyLimit + 1 / lane.concurrencyLimit,
+      );
+    }
+  }
+
+  private getLane(provider: string, model: string): Lane {
+    const key = `${provider}:${model}`;
+    let lane = this.lanes.get(key);
+
+    if (!lane) {
+      const limits = {
+        ...this.config.defaults,
+        ...this.config.providers[provider],
+      };
+      lane = {
+        provider,
+        model,
+        requests: new TokenBucket(limits.requestsPerMinute),
+        tokens: new TokenBucket(limits.tokensPerMinute),
+        limits,
+        concurrencyLimit: limits.initialConcurrency,
+        inFlight: 0,
+        latencyBaselineMs: null,
+        perTokenBaselineMs: null,
+        admitted: 0,
+        deferred: 0,
+        throttled: 0,
+      };
+      this.lanes.set(key, lane);
+    }
+
+    return lane;
+  }
+}
+
+/**
+ * Parse a rate-limit reset or retry-after value into milliseconds.
+ * Accepts seconds ("20"), Go-style durations ("6m0s", "250ms") and
+ * timestamps ("2024-01-01T00:00:30Z").
+ */
+export function parseResetMs(value?: string): number | undefined {
+  if (value === undefined || value === "") {
+    return undefined;
+  }
+
+  if (/^\d+(\.\d+)?$/.test(value)) {
+    return Number(value) * 1000;
+  }
+
+  const duration = value.match(/(\d+(?:\.\d+)?)(ms|h|m|s)/g);
+  if (duration && duration.join("") === value) {
+    const unitMs: Record<string, number> = {
+      ms: 1,
+      s: 1000,
+      m: 60000,
+      h: 3600000,
+    };
+    return duration.reduce((total, part) => {
+      const [, amount, unit] = part.match(/(\d+(?:\.\d+)?)(ms|h|m|s)/)!;
+      return total + Number(amount) * unitMs[unit];
+    }, 0);
+  }
+
+  const timestamp = Date.parse(value);
+  if (!Number.isNaN(timestamp)) {
+    return Math.max(0, timestamp - Date.now());
+  }
+
+  return undefined;
+}
+
+/**
+ * Default admission configuration; upstream headers replace the per-minute
+ * limits as soon as the first response arrives
+ */
+export const defaultAdmissionConfig: AdmissionConfig = {
+  defaults: {
+    requestsPerMinute: 500,
+    tokensPerMinute: 200000,
+    initialConcurrency: 4,
+    minConcurrency: 1,
+    maxConcurrency: 64,
+  },
+  providers: {
+    openai: { requestsPerMinute: 500, tokensPerMinute: 300000 },
+    anthropic: { requestsPerMinute: 300, tokensPerMinute: 200000 },
+    neuroweaver: { requestsPerMinute: 200, initialConcurrency: 2 },
+  },
+  latencyTolerance: 2,
+  backoffFactor: 0.5,
+};
+
+export const providerAdmissionController = new ProviderAdmissionController(
+  defaultAdmissionConfig,
+);
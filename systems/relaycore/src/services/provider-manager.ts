@@ -4,7 +4,10 @@
  */
 
 import axios, { AxiosInstance } from "axios";
+import crypto from "crypto";
 import { logger } from "../utils/logger";
+import { SingleFlight } from "../utils/single-flight";
+import { parseEventStream } from "../utils/sse";
 import { AIRequest, AIResponse, RoutingDecision } from "../models/request";
 import {
   SemanticCache,
@@ -17,6 +20,10 @@ import {
   defaultQueueConfig,
 } from "./request-queue";
 import { CacheManager } from "./cache-manager";
+import {
+  AdmissionTicket,
+  providerAdmissionController,
+} from "./provider-admission";
 
 export interface ProviderConfig {
   name: string;
@@ -28,11 +35,19 @@ export interface ProviderConfig {
   available: boolean;
 }
 
+export interface RouteOptions {
+  signal?: AbortSignal; // Aborted when the caller no longer needs the result
+  timeoutMs?: number;
+}
+
+export type TokenHandler = (token: string) => void;
+
 export class ProviderManager {
   private providers: Map<string, ProviderConfig> = new Map();
   private httpClients: Map<string, AxiosInstance> = new Map();
   private semanticCache: SemanticCache;
   private requestQueue: PriorityRequestQueue;
+  private inFlight: SingleFlight<AIResponse> = new SingleFlight();
 
   constructor() {
     const cacheManager = new CacheManager();
@@ -44,12 +59,27 @@ export class ProviderManager {
     // Create queue config with execution handler
     const queueConfig = {
       ...defaultQueueConfig,
+      admissionController: providerAdmissionController,
+      // Prompt tokens at ~4 characters each plus the max_tokens we request
+      estimateTokens: (payload: any) =>
+        Math.ceil((payload.request?.prompt?.length || 0) / 4) + 1000,
       executionHandler: this.executeProviderRequestFromQueue.bind(this),
     };
 
     this.requestQueue = new PriorityRequestQueue(queueConfig, cacheManager);
 
     this.initializeProviders();
+
+    // Rebuild similarity indexes from Redis before traffic arrives
+    const partitions: Array<{ provider: string; model: string }> = [];
+    for (const [provider, config] of this.providers.entries()) {
+      for (const model of config.models) {
+        partitions.push({ provider, model });
+      }
+    }
+    this.semanticCache
+      .warmUp(partitions)
+      .catch((error) => logger.warn("Semantic cache warm-up failed:", error));
   }
 
   private initializeProviders(): void {
@@ -142,6 +172,7 @@ export class ProviderManager {
   async routeRequest(
     request: AIRequest,
     decision: RoutingDecision,
+    options: RouteOptions = {},
   ): Promise<AIResponse> {
     const provider = this.providers.get(decision.provider);
     if (!provider) {
@@ -156,51 +187,176 @@ export class ProviderManager {
       parameters: request.routing_preferences,
     };
 
-    const cachedResponse = await this.semanticCache.checkCache(cacheRequest);
+    const cachedResponse = await this.checkSemanticCache(
+      request,
+      decision,
+      cacheRequest,
+    );
     if (cachedResponse) {
-      logger.info(`Semantic cache hit for request ${request.id}`);
-      return {
-        id: request.id,
-        content: cachedResponse.response.content,
-        model_used: decision.model,
-        provider: decision.provider,
-        cost: 0, // Cached responses are free
-        latency: 0,
-        confidence: cachedResponse.response.confidence || 0.95,
-        metadata: {
-          ...cachedResponse.response.metadata,
-          fromCache: true,
-          cacheId: cachedResponse.id,
-        },
-      };
+      return cachedResponse;
     }
 
     // Determine priority based on request characteristics
     const priority = this.determinePriority(request);
 
-    // Queue the request for processing
+    // Identical requests already in flight share one upstream call, since
+    // none of them can hit the semantic cache until the first one completes
     try {
-      const result = await this.requestQueue.enqueue(
-        decision.provider,
-        { request, decision },
-        priority,
-        {
-          userId: request.user_id,
-          timeoutMs: 30000,
-          maxRetries: 3,
+      const { value, shared } = await this.inFlight.run(
+        this.getFlightKey(request, decision),
+        async () => {
+          const result = await this.requestQueue.enqueue(
+            decision.provider,
+            { request, decision },
+            priority,
+            {
+              userId: request.user_id,
+              model: decision.model,
+              timeoutMs: 30000,
+              maxRetries: 3,
+            },
+          );
+
+          // Store successful response in semantic cache
+          await this.semanticCache.storeResponse(cacheRequest, result);
+
+          return result;
         },
+        { signal: options.signal, timeoutMs: options.timeoutMs },
       );
 
-      // Store successful response in semantic cache
-      await this.semanticCache.storeResponse(cacheRequest, result);
+      if (!shared) {
+        return value;
+      }
 
-      return result;
+      logger.info(`Request ${request.id} coalesced with ${value.id}`);
+      return {
+        ...value,
+        id: request.id,
+        cost: 0, // Paid for by the request that made the upstream call
+        metadata: {
+          ...value.metadata,
+          coalesced: true,
+          coalescedWith: value.id,
+        },
+      };
     } catch (error) {
       logger.error(`Request routing failed: ${error}`);
       throw error;
     }
   }
 
+  /**
+   * Route a request, passing response tokens to `onToken` as the provider
+   * streams them. Streams are not coalesced or retried, since tokens reach
+   * the client as soon as they arrive.
+   */
+  async streamRequest(
+    request: AIRequest,
+    decision: RoutingDecision,
+    onToken: TokenHandler,
+    options: RouteOptions = {},
+  ): Promise<AIResponse> {
+    const provider = this.providers.get(decision.provider);
+    if (!provider) {
+      throw new Error(`Provider ${decision.provider} not found`);
+    }
+
+    const cacheRequest: SemanticSearchRequest = {
+      prompt: request.prompt,
+      provider: decision.provider,
+      model: decision.model,
+      parameters: request.routing_preferences,
+    };
+
+    const cachedResponse = await this.checkSemanticCache(
+      request,
+      decision,
+      cacheRequest,
+    );
+    if (cachedResponse) {
+      onToken(cachedResponse.content);
+      return cachedResponse;
+    }
+
+    const result = await this.requestQueue.enqueue(
+      decision.provider,
+      { request, decision, onToken, signal: options.signal },
+      this.determinePriority(request),
+      {
+        userId: request.user_id,
+        model: decision.model,
+        timeoutMs: options.timeoutMs || 120000,
+        maxRetries: 0,
+      },
+    );
+
+    await this.semanticCache.storeResponse(cacheRequest, result);
+    return result;
+  }
+
+  private async checkSemanticCache(
+    request: AIRequest,
+    decision: RoutingDecision,
+    cacheRequest: SemanticSearchRequest,
+  ): Promise<AIResponse | null> {
+    const cachedResponse = await this.semanticCache.checkCache(cacheRequest);
+    if (!cachedResponse) {
+      return null;
+    }
+
+    logger.info(`Semantic cache hit for request ${request.id}`);
+    return {
+      id: request.id,
+      content: cachedResponse.response.content,
+      model_used: decision.model,
+      provider: decision.provider,
+      cost: 0, // Cached responses are free
+      latency: 0,
+      confidence: cachedResponse.response.confidence || 0.95,
+      metadata: {
+        ...cachedResponse.response.metadata,
+        fromCache: true,
+        cacheId: cachedResponse.id,
+      },
+    };
+  }
+
+  /**
+   * Canonical hash of everything that shapes the upstream call
+   */
+  private getFlightKey(request: AIRequest, decision: RoutingDecision): string {
+    const canonical = (value: any): any => {
+      if (Array.isArray(value)) {
+        return value.map(canonical);
+      }
+      if (value && typeof value === "object" && !(value instanceof Date)) {
+        return Object.keys(value)
+          .sort()
+          .reduce((sorted: Record<string, any>, key) => {
+            sorted[key] = canonical(value[key]);
+            return sorted;
+          }, {});
+      }
+      return value;
+    };
+
+    return crypto
+      .createHash("sha256")
+      .update(
+        JSON.stringify(
+          canonical({
+            provider: decision.provider,
+            model: decision.model,
+            prompt: request.prompt,
+            context: request.context,
+            parameters: request.routing_preferences,
+          }),
+        ),
+      )
+      .digest("hex");
+  }
+
   /**
    * Determine request priority based on context and constraints
    */
@@ -238,9 +394,45 @@ export class ProviderManager {
   private async executeProviderRequestFromQueue(
     provider: string,
     payload: any,
+    ticket?: AdmissionTicket,
+    timeoutSignal?: AbortSignal,
   ): Promise<AIResponse> {
-    const { request, decision } = payload;
-    return await this.executeProviderRequest(request, decision);
+    const { request, decision, onToken } = payload;
+
+    // Stop the upstream call when the caller leaves or the queue gives up
+    const controller = new AbortController();
+    const abort = () => controller.abort();
+    const signals = [payload.signal, timeoutSignal].filter(
+      (signal): signal is AbortSignal => signal !== undefined,
+    );
+    for (const signal of signals) {
+      if (signal.aborted) {
+        abort();
+      }
+      signal.addEventListener("abort", abort);
+    }
+
+    try {
+      if (onToken) {
+        return await this.executeStreamingRequest(
+          request,
+          decision,
+          onToken,
+          controller.signal,
+          ticket,
+        );
+      }
+      return await this.executeProviderRequest(
+        request,
+        decision,
+        ticket,
+        controller.signal,
+      );
+    } finally {
+      for (const signal of signals) {
+        signal.removeEventListener("abort", abort);
+      }
+    }
   }
 
   /**
@@ -249,6 +441,8 @@ export class ProviderManager {
   async executeProviderRequest(
     request: AIRequest,
     decision: RoutingDecision,
+    ticket?: AdmissionTicket,
+    signal?: AbortSignal,
   ): Promise<AIResponse> {
     const client = this.httpClients.get(decision.provider);
     if (!client) {
@@ -262,23 +456,43 @@ export class ProviderManager {
 
       switch (decision.provider) {
         case "openai":
-          response = await this.callOpenAI(client, request, decision.model);
+          response = await this.callOpenAI(
+            client,
+            request,
+            decision.model,
+            signal,
+          );
           break;
         case "anthropic":
-          response = await this.callAnthropic(client, request, decision.model);
+          response = await this.callAnthropic(
+            client,
+            request,
+            decision.model,
+            signal,
+          );
           break;
         case "neuroweaver":
           response = await this.callNeuroWeaver(
             client,
             request,
             decision.model,
+            signal,
           );
           break;
         default:
           throw new Error(`Unsupported provider: ${decision.provider}`);
       }
 
+      // The whole response has been generated, so the admission controller
+      // compares latency per output token
       const latency = Date.now() - startTime;
+      ticket?.release({
+        latencyMs: latency,
+        outputTokens: response.outputTokens,
+        status: 200,
+        headers: response.headers,
+        tokensUsed: response.tokensUsed,
+      });
 
       return {
         id: request.id,
@@ -293,8 +507,16 @@ export class ProviderManager {
     } catch (error) {
       logger.error(`Provider ${decision.provider} request failed:`, error);
 
-      // Attempt fallback if configured
-      if (decision.fallback_provider) {
+      // Rate-limit headers on a 429 matter most, so feed errors back too
+      const upstream = (error as any)?.response;
+      ticket?.release({
+        latencyMs: Date.now() - startTime,
+        status: upstream?.status,
+        headers: upstream?.headers,
+      });
+
+      // Attempt fallback if configured and the result is still wanted
+      if (decision.fallback_provider && !signal?.aborted) {
         logger.info(`Attempting fallback to ${decision.fallback_provider}`);
         const fallbackDecision = {
           ...decision,
@@ -307,20 +529,252 @@ export class ProviderManager {
     }
   }
 
+  /**
+   * Execute a provider request in streaming mode. Token usage is counted
+   * per streamed delta and replaced by the provider's own count when the
+   * stream reports one.
+   */
+  async executeStreamingRequest(
+    request: AIRequest,
+    decision: RoutingDecision,
+    onToken: TokenHandler,
+    signal?: AbortSignal,
+    ticket?: AdmissionTicket,
+  ): Promise<AIResponse> {
+    const client = this.httpClients.get(decision.provider);
+    if (!client) {
+      throw new Error(`HTTP client for ${decision.provider} not initialized`);
+    }
+
+    const startTime = Date.now();
+    let firstTokenAt: number | undefined;
+    let content = "";
+    let deltas = 0;
+
+    const emit: TokenHandler = (token) => {
+      if (!token) {
+        return;
+      }
+      firstTokenAt = firstTokenAt ?? Date.now();
+      content += token;
+      deltas++;
+      onToken(token);
+    };
+
+    try {
+      let response;
+
+      switch (decision.provider) {
+        case "openai":
+          response = await this.streamOpenAI(
+            client,
+            request,
+            decision.model,
+            emit,
+            signal,
+          );
+          break;
+        case "anthropic":
+          response = await this.streamAnthropic(
+            client,
+            request,
+            decision.model,
+            emit,
+            signal,
+          );
+          break;
+        case "neuroweaver":
+          // NeuroWeaver has no streaming endpoint; send the whole response
+          response = await this.callNeuroWeaver(
+            client,
+            request,
+            decision.model,
+            signal,
+          );
+          emit(response.content);
+          break;
+        default:
+          throw new Error(`Unsupported provider: ${decision.provider}`);
+      }
+
+      const latency = Date.now() - startTime;
+      const usage = {
+        prompt_tokens:
+          response.usage?.prompt_tokens ?? Math.ceil(request.prompt.length / 4),
+        completion_tokens: response.usage?.completion_tokens ?? deltas,
+      };
+
+      // Time to first token reflects provider load; total time mostly
+      // reflects response length
+      ticket?.release({
+        latencyMs: (firstTokenAt ?? Date.now()) - startTime,
+        status: 200,
+        headers: response.headers,
+        tokensUsed: usage.prompt_tokens + usage.completion_tokens,
+      });
+
+      return {
+        id: request.id,
+        content,
+        model_used: decision.model,
+        provider: decision.provider,
+        cost: decision.estimated_cost,
+        latency,
+        confidence: response.confidence || 0.95,
+        metadata: {
+          ...response.metadata,
+          usage: {
+            ...usage,
+            total_tokens: usage.prompt_tokens + usage.completion_tokens,
+          },
+          streamed: true,
+          time_to_first_token_ms:
+            firstTokenAt !== undefined ? firstTokenAt - startTime : null,
+        },
+      };
+    } catch (error) {
+      logger.error(
+        `Provider ${decision.provider} streaming request failed:`,
+        error,
+      );
+
+      const upstream = (error as any)?.response;
+      ticket?.release({
+        latencyMs: Date.now() - startTime,
+        status: upstream?.status,
+        headers: upstream?.headers,
+      });
+
+      // A fallback is only invisible to the client before any token is sent
+      if (decision.fallback_provider && deltas === 0 && !signal?.aborted) {
+        logger.info(`Attempting fallback to ${decision.fallback_provider}`);
+        return this.streamRequest(
+          request,
+          { ...decision, provider: decision.fallback_provider },
+          onToken,
+          { signal },
+        );
+      }
+
+      throw error;
+    }
+  }
+
+  private async streamOpenAI(
+    client: AxiosInstance,
+    request: AIRequest,
+    model: string,
+    emit: TokenHandler,
+    signal?: AbortSignal,
+  ): Promise<any> {
+    const response = await client.post(
+      "/chat/completions",
+      {
+        model,
+        messages: [{ role: "user", content: request.prompt }],
+        max_tokens: 1000,
+        temperature: 0.7,
+        stream: true,
+        stream_options: { include_usage: true },
+      },
+      { responseType: "stream", signal },
+    );
+
+    let finishReason: string | undefined;
+    let usage: any;
+
+    for await (const event of parseEventStream(response.data)) {
+      if (event.data === "[DONE]") {
+        break;
+      }
+
+      const chunk = JSON.parse(event.data);
+      const choice = chunk.choices?.[0];
+      emit(choice?.delta?.content);
+      finishReason = choice?.finish_reason || finishReason;
+      usage = chunk.usage || usage;
+    }
+
+    return {
+      headers: response.headers,
+      usage,
+      metadata: { finish_reason: finishReason },
+    };
+  }
+
+  private async streamAnthropic(
+    client: AxiosInstance,
+    request: AIRequest,
+    model: string,
+    emit: TokenHandler,
+    signal?: AbortSignal,
+  ): Promise<any> {
+    const response = await client.post(
+      "/messages",
+      {
+        model,
+        max_tokens: 1000,
+        messages: [{ role: "user", content: request.prompt }],
+        stream: true,
+      },
+      { responseType: "stream", signal },
+    );
+
+    let stopReason: string | undefined;
+    let inputTokens: number | undefined;
+    let outputTokens: number | undefined;
+
+    for await (const event of parseEventStream(response.data)) {
+      const data = JSON.parse(event.data);
+
+      switch (data.type) {
+        case "message_start":
+          inputTokens = data.message?.usage?.input_tokens;
+          break;
+        case "content_block_delta":
+          emit(data.delta?.text);
+          break;
+        case "message_delta":
+          stopReason = data.delta?.stop_reason || stopReason;
+          outputTokens = data.usage?.output_tokens ?? outputTokens;
+          break;
+        case "error":
+          throw new Error(data.error?.message || "Anthropic stream error");
+      }
+    }
+
+    return {
+      headers: response.headers,
+      usage:
+        inputTokens !== undefined && outputTokens !== undefined
+          ? { prompt_tokens: inputTokens, completion_tokens: outputTokens }
+          : undefined,
+      metadata: { stop_reason: stopReason },
+    };
+  }
+
   private async callOpenAI(
     client: AxiosInstance,
     request: AIRequest,
     model: string,
+    signal?: AbortSignal,
   ): Promise<any> {
-    const response = await client.post("/chat/completions", {
-      model,
-      messages: [{ role: "user", content: request.prompt }],
-      max_tokens: 1000,
-      temperature: 0.7,
-    });
+    const response = await client.post(
+      "/chat/completions",
+      {
+        model,
+        messages: [{ role: "user", content: request.prompt }],
+        max_tokens: 1000,
+        temperature: 0.7,
+      },
+      { signal },
+    );
 
     return {
       content: response.data.choices[0].message.content,
+      headers: response.headers,
+      tokensUsed: response.data.usage?.total_tokens,
+      outputTokens: response.data.usage?.completion_tokens,
       metadata: {
         usage: response.data.usage,
         finish_reason: response.data.choices[0].finish_reason,
@@ -332,15 +786,25 @@ export class ProviderManager {
     client: AxiosInstance,
     request: AIRequest,
     model: string,
+    signal?: AbortSignal,
   ): Promise<any> {
-    const response = await client.post("/messages", {
-      model,
-      max_tokens: 1000,
-      messages: [{ role: "user", content: request.prompt }],
-    });
+    const response = await client.post(
+      "/messages",
+      {
+        model,
+        max_tokens: 1000,
+        messages: [{ role: "user", content: request.prompt }],
+      },
+      { signal },
+    );
+
+    const usage = response.data.usage;
 
     return {
       content: response.data.content[0].text,
+      headers: response.headers,
+      tokensUsed: usage ? usage.input_tokens + usage.output_tokens : undefined,
+      outputTokens: usage?.output_tokens,
       metadata: {
         usage: response.data.usage,
         stop_reason: response.data.stop_reason,
@@ -352,17 +816,23 @@ export class ProviderManager {
     client: AxiosInstance,
     request: AIRequest,
     model: string,
+    signal?: AbortSignal,
   ): Promise<any> {
-    const response = await client.post("/api/v1/inference", {
-      model,
-      prompt: request.prompt,
-      context: request.context,
-      max_tokens: 1000,
-    });
+    const response = await client.post(
+      "/api/v1/inference",
+      {
+        model,
+        prompt: request.prompt,
+        context: request.context,
+        max_tokens: 1000,
+      },
+      { signal },
+    );
 
     return {
       content: response.data.response,
       confidence: response.data.confidence,
+      headers: response.headers,
       metadata: {
         model_version: response.data.model_version,
         specialization: response.data.specialization,
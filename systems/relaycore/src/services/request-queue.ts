@@ -5,7 +5,12 @@
 
 import { EventEmitter } from "events";
 import { logger } from "../utils/logger";
+import { BinaryHeap } from "../utils/binary-heap";
 import { CacheManager } from "./cache-manager";
+import {
+  AdmissionTicket,
+  ProviderAdmissionController,
+} from "./provider-admission";
 
 export enum Priority {
   CRITICAL = 1,
@@ -19,6 +24,7 @@ export interface QueuedRequest {
   id: string;
   priority: Priority;
   provider: string;
+  model?: string; // Requests with a model queue in their own provider/model lane
   payload: any;
   callback: (error: Error | null, result?: any) => void;
   metadata: {
@@ -28,16 +34,30 @@ export interface QueuedRequest {
     retryCount: number;
     maxRetries: number;
   };
+  rank?: number; // Scheduling key assigned when the request is queued
+  deferred?: boolean; // Refused admission since it was last queued
 }
 
 export interface QueueConfig {
   maxSize: number;
   concurrency: Record<string, number>; // Per-provider concurrency limits
+  // Order in which lanes are offered each free slot; requests within a
+  // lane always leave by priority with aging
   processingStrategy: "priority" | "round-robin" | "least-loaded" | "adaptive";
+  agingIntervalMs?: number; // Wait that lifts a request one priority level
   timeoutMs: number;
   retryDelayMs: number;
   enableMetrics: boolean;
-  executionHandler?: (provider: string, payload: any) => Promise<any>;
+  // Rate-limit and adaptive concurrency gate consulted after the static limit
+  admissionController?: ProviderAdmissionController;
+  estimateTokens?: (payload: any) => number;
+  // The signal aborts when the attempt times out, so the upstream call stops
+  executionHandler?: (
+    provider: string,
+    payload: any,
+    ticket?: AdmissionTicket,
+    signal?: AbortSignal,
+  ) => Promise<any>;
 }
 
 export interface QueueMetrics {
@@ -50,12 +70,16 @@ export interface QueueMetrics {
 }
 
 export class PriorityRequestQueue extends EventEmitter {
-  private queue: QueuedRequest[] = [];
+  private queues: Map<string, BinaryHeap<QueuedRequest>> = new Map(); // lane -> pending requests
   private activeRequests: Map<string, Set<string>> = new Map(); // provider -> set of request IDs
   private config: QueueConfig;
   private cacheManager: CacheManager;
   private metrics: QueueMetrics;
-  private processingInterval: NodeJS.Timeout | null = null;
+  private queuedCount = 0;
+  private paused = false;
+  private nextProviderIndex = 0;
+  private wakeTimer?: NodeJS.Timeout;
+  private wakeAt = Infinity;
 
   constructor(config: QueueConfig, cacheManager: CacheManager) {
     super();
@@ -68,7 +92,6 @@ export class PriorityRequestQueue extends EventEmitter {
       this.activeRequests.set(provider, new Set());
     });
 
-    this.startProcessing();
     logger.info(
       `Priority request queue initialized with max size: ${this.config.maxSize}`,
     );
@@ -83,11 +106,12 @@ export class PriorityRequestQueue extends EventEmitter {
     priority: Priority = Priority.NORMAL,
     options: {
       userId?: string;
+      model?: string;
       timeoutMs?: number;
       maxRetries?: number;
     } = {},
   ): Promise<any> {
-    if (this.queue.length >= this.config.maxSize) {
+    if (this.queuedCount >= this.config.maxSize) {
       throw new Error("Queue is full, request rejected");
     }
 
@@ -96,6 +120,7 @@ export class PriorityRequestQueue extends EventEmitter {
         id: this.generateRequestId(),
         priority,
         provider,
+        model: options.model,
         payload,
         callback: (error, result) => {
           if (error) reject(error);
@@ -106,7 +131,7 @@ export class PriorityRequestQueue extends EventEmitter {
           timestamp: Date.now(),
           timeoutMs: options.timeoutMs || this.config.timeoutMs,
           retryCount: 0,
-          maxRetries: options.maxRetries || 3,
+          maxRetries: options.maxRetries ?? 3,
         },
       };
 
@@ -116,215 +141,216 @@ export class PriorityRequestQueue extends EventEmitter {
       logger.debug(
         `Request ${request.id} queued for ${provider} with priority ${priority}`,
       );
+
+      this.dispatch();
     });
   }
 
   /**
-   * Add request to queue with proper priority ordering
+   * Add request to its lane's heap.
+   *
+   * A request ranks as if it were a CRITICAL request queued one aging
+   * interval later per priority level below CRITICAL. The rank never
+   * changes while the request waits, so the heap stays valid, yet a long
+   * enough wait lets any request overtake newer higher-priority ones.
    */
   private addToQueue(request: QueuedRequest): void {
-    // Insert request based on priority (lower number = higher priority)
-    let insertIndex = 0;
-    for (let i = 0; i < this.queue.length; i++) {
-      if (this.queue[i].priority > request.priority) {
-        insertIndex = i;
-        break;
-      }
-      insertIndex = i + 1;
+    const agingIntervalMs = this.config.agingIntervalMs ?? 5000;
+    request.rank =
+      request.metadata.timestamp +
+      (request.priority - Priority.CRITICAL) * agingIntervalMs;
+
+    const lane = this.getLane(request);
+    let queue = this.queues.get(lane);
+    if (!queue) {
+      queue = new BinaryHeap<QueuedRequest>((a, b) => a.rank! - b.rank!);
+      this.queues.set(lane, queue);
     }
 
-    this.queue.splice(insertIndex, 0, request);
-    this.updateMetrics();
+    queue.push(request);
+    this.queuedCount++;
+    this.metrics.queueSizeByPriority[request.priority]++;
   }
 
-  /**
-   * Process queued requests
-   */
-  private startProcessing(): void {
-    this.processingInterval = setInterval(() => {
-      this.processQueue();
-    }, 100); // Check every 100ms
+  private takeFromQueue(lane: string): QueuedRequest | undefined {
+    const request = this.queues.get(lane)?.pop();
+    if (request) {
+      this.queuedCount--;
+      this.metrics.queueSizeByPriority[request.priority]--;
+    }
+    return request;
   }
 
   /**
-   * Main queue processing logic
+   * Requests for the same provider and model share a lane, so a throttled
+   * model never holds up the provider's other models
    */
-  private async processQueue(): Promise<void> {
-    if (this.queue.length === 0) {
-      return;
-    }
-
-    // Get next request based on processing strategy
-    const request = this.getNextRequest();
-    if (!request) {
-      return;
-    }
-
-    // Check if provider has available capacity
-    const activeCount = this.activeRequests.get(request.provider)?.size || 0;
-    const maxConcurrency = this.config.concurrency[request.provider] || 1;
-
-    if (activeCount >= maxConcurrency) {
-      return; // Provider at capacity, try again later
-    }
-
-    // Remove from queue and start processing
-    const queueIndex = this.queue.findIndex((r) => r.id === request.id);
-    if (queueIndex !== -1) {
-      this.queue.splice(queueIndex, 1);
-      this.processRequest(request);
-    }
+  private getLane(request: QueuedRequest): string {
+    return request.model
+      ? `${request.provider}:${request.model}`
+      : request.provider;
   }
 
   /**
-   * Get next request based on processing strategy
+   * Start queued requests while any provider has a free slot. Each slot goes
+   * to the best lane head across all lanes, so one lane never drains ahead
+   * of more urgent requests in another. Runs whenever a request arrives or a
+   * slot is released; lanes held back by rate limits are woken by a single
+   * timer at the earliest time one can proceed.
    */
-  private getNextRequest(): QueuedRequest | null {
-    if (this.queue.length === 0) {
-      return null;
+  private dispatch(): void {
+    if (this.paused || this.queuedCount === 0) {
+      return;
     }
 
-    switch (this.config.processingStrategy) {
-      case "priority":
-        return this.getHighestPriorityRequest();
-
-      case "round-robin":
-        return this.getRoundRobinRequest();
+    let retryInMs = Infinity;
+    const held = new Set<string>(); // Lanes refused admission on this pass
 
-      case "least-loaded":
-        return this.getLeastLoadedRequest();
+    for (;;) {
+      const lane = this.getDispatchOrder().find(
+        (candidate) =>
+          !held.has(candidate) &&
+          this.hasCapacity(this.queues.get(candidate)!.peek()!.provider),
+      );
+      if (!lane) {
+        break;
+      }
 
-      case "adaptive":
-        return this.getAdaptiveRequest();
+      const next = this.queues.get(lane)!.peek()!;
+      let ticket: AdmissionTicket | undefined;
+
+      if (this.config.admissionController) {
+        const admission = this.config.admissionController.tryAcquire(
+          next.provider,
+          next.model || "default",
+          this.config.estimateTokens?.(next.payload) ?? 0,
+          next.deferred,
+        );
+        if (!admission.admitted) {
+          retryInMs = Math.min(retryInMs, admission.retryInMs);
+          next.deferred = true;
+          held.add(lane);
+          continue;
+        }
+        next.deferred = false;
+        ticket = admission.ticket;
+      }
 
-      default:
-        return this.queue[0];
+      this.processRequest(this.takeFromQueue(lane)!, ticket);
     }
-  }
-
-  /**
-   * Get highest priority request that can be processed
-   */
-  private getHighestPriorityRequest(): QueuedRequest | null {
-    for (const request of this.queue) {
-      const activeCount = this.activeRequests.get(request.provider)?.size || 0;
-      const maxConcurrency = this.config.concurrency[request.provider] || 1;
 
-      if (activeCount < maxConcurrency) {
-        return request;
-      }
+    if (retryInMs !== Infinity) {
+      this.scheduleWake(retryInMs);
     }
-    return null;
   }
 
-  /**
-   * Get next request using round-robin strategy
-   */
-  private getRoundRobinRequest(): QueuedRequest | null {
-    // Simple round-robin: find provider with least recent processing
-    const providerLastUsed = new Map<string, number>();
-
-    // Track when each provider was last used
-    this.activeRequests.forEach((activeSet, provider) => {
-      providerLastUsed.set(provider, activeSet.size > 0 ? Date.now() : 0);
-    });
-
-    let selectedRequest: QueuedRequest | null = null;
-    let oldestProviderTime = Date.now();
-
-    for (const request of this.queue) {
-      const activeCount = this.activeRequests.get(request.provider)?.size || 0;
-      const maxConcurrency = this.config.concurrency[request.provider] || 1;
-      const lastUsed = providerLastUsed.get(request.provider) || 0;
-
-      if (activeCount < maxConcurrency && lastUsed < oldestProviderTime) {
-        selectedRequest = request;
-        oldestProviderTime = lastUsed;
-      }
+  private scheduleWake(delayMs: number): void {
+    const wakeAt = Date.now() + delayMs;
+    if (this.wakeTimer && this.wakeAt <= wakeAt) {
+      return;
     }
 
-    return selectedRequest;
+    clearTimeout(this.wakeTimer);
+    this.wakeAt = wakeAt;
+    this.wakeTimer = setTimeout(() => {
+      this.wakeTimer = undefined;
+      this.wakeAt = Infinity;
+      this.dispatch();
+    }, delayMs);
   }
 
   /**
-   * Get request for least loaded provider
+   * Whether a provider can start another request now
    */
-  private getLeastLoadedRequest(): QueuedRequest | null {
-    let selectedRequest: QueuedRequest | null = null;
-    let lowestLoad = Number.MAX_SAFE_INTEGER;
-
-    for (const request of this.queue) {
-      const activeCount = this.activeRequests.get(request.provider)?.size || 0;
-      const maxConcurrency = this.config.concurrency[request.provider] || 1;
-
-      if (activeCount < maxConcurrency && activeCount < lowestLoad) {
-        selectedRequest = request;
-        lowestLoad = activeCount;
-      }
-    }
-
-    return selectedRequest;
+  private hasCapacity(provider: string): boolean {
+    const activeCount = this.activeRequests.get(provider)?.size || 0;
+    const maxConcurrency = this.config.concurrency[provider] || 1;
+    return activeCount < maxConcurrency;
   }
 
   /**
-   * Get request using adaptive strategy (combines priority and load balancing)
+   * Lanes with pending requests, in the order the strategy fills them
    */
-  private getAdaptiveRequest(): QueuedRequest | null {
-    let bestRequest: QueuedRequest | null = null;
-    let bestScore = -1;
-
-    for (const request of this.queue) {
-      const activeCount = this.activeRequests.get(request.provider)?.size || 0;
-      const maxConcurrency = this.config.concurrency[request.provider] || 1;
+  private getDispatchOrder(): string[] {
+    const lanes = Array.from(this.queues.entries())
+      .filter(([, queue]) => queue.size > 0)
+      .map(([lane]) => lane);
+    const activeCount = (lane: string): number =>
+      this.activeRequests.get(this.queues.get(lane)!.peek()!.provider)?.size ||
+      0;
 
-      if (activeCount >= maxConcurrency) {
-        continue; // Provider at capacity
+    switch (this.config.processingStrategy) {
+      case "round-robin": {
+        const offset = this.nextProviderIndex++ % Math.max(lanes.length, 1);
+        return lanes.slice(offset).concat(lanes.slice(0, offset));
       }
 
-      // Calculate composite score
-      const priorityScore = (6 - request.priority) / 5; // Higher priority = higher score
-      const loadScore = 1 - activeCount / maxConcurrency; // Lower load = higher score
-      const waitScore = Math.min(
-        (Date.now() - request.metadata.timestamp) / 10000,
-        1,
-      ); // Longer wait = higher score
-
-      const compositeScore =
-        priorityScore * 0.5 + loadScore * 0.3 + waitScore * 0.2;
+      case "least-loaded":
+        return lanes.sort((a, b) => activeCount(a) - activeCount(b));
 
-      if (compositeScore > bestScore) {
-        bestScore = compositeScore;
-        bestRequest = request;
-      }
+      case "priority":
+      case "adaptive":
+      default:
+        // Lane whose most urgent request has waited longest goes first
+        return lanes.sort(
+          (a, b) =>
+            this.queues.get(a)!.peek()!.rank! -
+            this.queues.get(b)!.peek()!.rank!,
+        );
     }
-
-    return bestRequest;
   }
 
   /**
    * Process individual request
    */
-  private async processRequest(request: QueuedRequest): Promise<void> {
+  private async processRequest(
+    request: QueuedRequest,
+    ticket?: AdmissionTicket,
+  ): Promise<void> {
     const startTime = Date.now();
 
     // Track active request
     if (!this.activeRequests.has(request.provider)) {
       this.activeRequests.set(request.provider, new Set());
     }
-    this.activeRequests.get(request.provider)!.add(request.id);
+    const active = this.activeRequests.get(request.provider)!;
+    active.add(request.id);
+
+    // The slot is released exactly once, by completion or by timeout
+    const attempt = new AbortController();
+    let released = false;
+    const release = (): boolean => {
+      if (released) {
+        return false;
+      }
+      released = true;
+      clearTimeout(timeoutHandle);
+      active.delete(request.id);
+      return true;
+    };
 
     // Set timeout
     const timeoutHandle = setTimeout(() => {
-      this.handleRequestTimeout(request);
+      if (release()) {
+        attempt.abort();
+        this.handleRequestTimeout(request);
+        this.dispatch();
+      }
     }, request.metadata.timeoutMs);
 
     try {
       this.emit("request-processing", request);
 
       // Process the actual request (this would integrate with your AI providers)
-      const result = await this.executeRequest(request);
+      const result = await this.executeRequest(
+        request,
+        ticket,
+        attempt.signal,
+      );
 
-      clearTimeout(timeoutHandle);
+      if (!release()) {
+        return; // Timed out; the late result is dropped
+      }
 
       // Calculate wait time
       const waitTime = startTime - request.metadata.timestamp;
@@ -338,23 +364,31 @@ export class PriorityRequestQueue extends EventEmitter {
         `Request ${request.id} completed in ${Date.now() - startTime}ms`,
       );
     } catch (error) {
-      clearTimeout(timeoutHandle);
-      await this.handleRequestError(request, error as Error);
+      if (release()) {
+        await this.handleRequestError(request, error as Error);
+      }
     } finally {
-      // Remove from active tracking
-      this.activeRequests.get(request.provider)?.delete(request.id);
-      this.updateMetrics();
+      // Handlers release tickets with the upstream outcome; this only frees
+      // the admission slot when a handler did not
+      ticket?.release();
+      this.dispatch();
     }
   }
 
   /**
    * Execute the actual request (placeholder for integration with AI providers)
    */
-  private async executeRequest(request: QueuedRequest): Promise<any> {
+  private async executeRequest(
+    request: QueuedRequest,
+    ticket?: AdmissionTicket,
+    signal?: AbortSignal,
+  ): Promise<any> {
     if (this.config.executionHandler) {
       return await this.config.executionHandler(
         request.provider,
         request.payload,
+        ticket,
+        signal,
       );
     }
 
@@ -385,16 +419,12 @@ export class PriorityRequestQueue extends EventEmitter {
       `Request ${request.id} timed out after ${request.metadata.timeoutMs}ms`,
     );
 
-    this.activeRequests.get(request.provider)?.delete(request.id);
-
     if (request.metadata.retryCount < request.metadata.maxRetries) {
       this.retryRequest(request);
     } else {
       request.callback(new Error("Request timeout"));
       this.metrics.totalFailed++;
     }
-
-    this.updateMetrics();
   }
 
   /**
@@ -406,16 +436,12 @@ export class PriorityRequestQueue extends EventEmitter {
   ): Promise<void> {
     logger.error(`Request ${request.id} failed:`, error.message);
 
-    this.activeRequests.get(request.provider)?.delete(request.id);
-
     if (request.metadata.retryCount < request.metadata.maxRetries) {
       this.retryRequest(request);
     } else {
       request.callback(error);
       this.metrics.totalFailed++;
     }
-
-    this.updateMetrics();
   }
 
   /**
@@ -430,6 +456,7 @@ export class PriorityRequestQueue extends EventEmitter {
       () => {
         this.addToQueue(request);
         this.emit("request-retried", request);
+        this.dispatch();
       },
       this.config.retryDelayMs * Math.pow(2, request.metadata.retryCount - 1),
     );
@@ -470,19 +497,8 @@ export class PriorityRequestQueue extends EventEmitter {
    * Update queue metrics
    */
   private updateMetrics(): void {
-    this.metrics.totalQueued = this.queue.length;
-
-    // Reset priority counts
-    Object.values(Priority).forEach((priority) => {
-      if (typeof priority === "number") {
-        this.metrics.queueSizeByPriority[priority] = 0;
-      }
-    });
-
-    // Count by priority
-    this.queue.forEach((request) => {
-      this.metrics.queueSizeByPriority[request.priority]++;
-    });
+    // Per-priority sizes are maintained as requests enter and leave the heaps
+    this.metrics.totalQueued = this.queuedCount;
 
     // Count active by provider
     this.activeRequests.forEach((activeSet, provider) => {
@@ -528,7 +544,7 @@ export class PriorityRequestQueue extends EventEmitter {
     });
 
     return {
-      queueSize: this.queue.length,
+      queueSize: this.queuedCount,
       activeRequests,
       availableCapacity,
     };
@@ -538,9 +554,8 @@ export class PriorityRequestQueue extends EventEmitter {
    * Pause queue processing
    */
   pause(): void {
-    if (this.processingInterval) {
-      clearInterval(this.processingInterval);
-      this.processingInterval = null;
+    if (!this.paused) {
+      this.paused = true;
       logger.info("Queue processing paused");
     }
   }
@@ -549,9 +564,10 @@ export class PriorityRequestQueue extends EventEmitter {
    * Resume queue processing
    */
   resume(): void {
-    if (!this.processingInterval) {
-      this.startProcessing();
+    if (this.paused) {
+      this.paused = false;
       logger.info("Queue processing resumed");
+      this.dispatch();
     }
   }
 
@@ -559,11 +575,14 @@ export class PriorityRequestQueue extends EventEmitter {
    * Clear all queued requests
    */
   clear(): void {
-    const clearedCount = this.queue.length;
-    this.queue.forEach((request) => {
-      request.callback(new Error("Queue cleared"));
-    });
-    this.queue = [];
+    const clearedCount = this.queuedCount;
+    for (const lane of this.queues.keys()) {
+      let request = this.takeFromQueue(lane);
+      while (request) {
+        request.callback(new Error("Queue cleared"));
+        request = this.takeFromQueue(lane);
+      }
+    }
     this.updateMetrics();
     logger.info(`Cleared ${clearedCount} queued requests`);
   }
@@ -573,6 +592,8 @@ export class PriorityRequestQueue extends EventEmitter {
    */
   shutdown(): void {
     this.pause();
+    clearTimeout(this.wakeTimer);
+    this.wakeTimer = undefined;
     this.clear();
     logger.info("Priority request queue shutdown");
   }
@@ -589,6 +610,7 @@ export const defaultQueueConfig: QueueConfig = {
     neuroweaver: 3,
   },
   processingStrategy: "priority",
+  agingIntervalMs: 5000, // Each 5s of waiting counts as one priority level
   timeoutMs: 30000, // 30 seconds
   retryDelayMs: 1000, // 1 second
   enableMetrics: true,
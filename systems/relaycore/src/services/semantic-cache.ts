@@ -5,15 +5,34 @@
 
 import crypto from "crypto";
 import { CacheManager } from "./cache-manager";
+import {
+  HnswIndex,
+  VectorIndexOptions,
+  toUnitVector,
+} from "./vector-index";
 import { logger } from "../utils/logger";
 
+/**
+ * Which entries a full partition gives up first:
+ * - lru: least recently accessed
+ * - lfu: fewest hits, then least recently accessed
+ * - cost: lowest provider cost saved per byte of cache memory
+ */
+export type SemanticCacheEvictionPolicy = "lru" | "lfu" | "cost";
+
+const DEFAULT_EVICTION_POLICY: SemanticCacheEvictionPolicy = "cost";
+
 export interface SemanticCacheConfig {
   enabled: boolean;
   similarityThreshold: number; // 0.0 - 1.0, higher means more strict matching
-  maxCacheSize: number;
-  ttlSeconds: number;
+  maxCacheSize: number; // Entries per provider/model partition
+  ttlSeconds: number; // Lifetime of each entry from when it was stored
   embeddingProvider: "openai" | "local";
   localModelPath?: string;
+  indexRefreshSeconds?: number; // Interval for re-reading partitions from Redis
+  indexOptions?: Partial<VectorIndexOptions>;
+  evictionPolicy?: SemanticCacheEvictionPolicy; // Defaults to "cost"
+  embeddingCacheSize?: number; // Prompt embeddings kept in memory
 }
 
 export interface CachedResponse {
@@ -26,6 +45,8 @@ export interface CachedResponse {
     timestamp: number;
     hitCount: number;
     lastAccessed: number;
+    cost?: number; // Provider cost of the original response
+    sizeBytes?: number; // Serialised size of the entry
   };
 }
 
@@ -36,10 +57,28 @@ export interface SemanticSearchRequest {
   parameters?: Record<string, any>;
 }
 
+/**
+ * Cached responses of one provider/model, indexed for similarity search
+ */
+interface IndexedPartition {
+  index: HnswIndex | null; // Created with the dimension of the first embedding
+  entries: Map<string, CachedResponse>;
+  loadedAt: number;
+}
+
 export class SemanticCache {
   private config: SemanticCacheConfig;
   private cacheManager: CacheManager;
   private embeddingCache: Map<string, number[]> = new Map();
+  private partitions: Map<string, IndexedPartition> = new Map();
+  private partitionLoads: Map<string, Promise<IndexedPartition>> = new Map();
+  private stats = {
+    hits: 0,
+    misses: 0,
+    similaritySum: 0,
+    capacityEvictions: 0,
+    expiredEvictions: 0,
+  };
 
   constructor(config: SemanticCacheConfig, cacheManager: CacheManager) {
     this.config = config;
@@ -69,33 +108,39 @@ export class SemanticCache {
       const queryEmbedding = await this.getEmbedding(request.prompt);
       const cacheKey = this.generateCacheKey(request.provider, request.model);
 
-      // Get all cached responses for this provider/model
-      const cachedResponses = await this.getCachedResponses(cacheKey);
-
-      // Find the most similar cached response
+      // Find the most similar live response for this provider/model.
+      // Expired entries are dropped as they are met, so a runner-up above
+      // the threshold still counts as a match.
+      const partition = await this.getPartition(cacheKey);
+      const query = toUnitVector(queryEmbedding);
+      const now = Date.now();
       let bestMatch: CachedResponse | null = null;
       let highestSimilarity = 0;
 
-      for (const cached of cachedResponses) {
-        const similarity = this.calculateCosineSimilarity(
-          queryEmbedding,
-          cached.embedding,
-        );
+      while (partition.index && bestMatch === null) {
+        const [nearest] = partition.index.search(query, 1);
+        if (!nearest || nearest.similarity <= this.config.similarityThreshold) {
+          break;
+        }
 
-        if (
-          similarity > this.config.similarityThreshold &&
-          similarity > highestSimilarity
-        ) {
-          highestSimilarity = similarity;
-          bestMatch = cached;
+        const entry = partition.entries.get(nearest.id);
+        if (entry && !this.isExpired(entry, now)) {
+          bestMatch = entry;
+          highestSimilarity = nearest.similarity;
+        } else {
+          this.removeFromPartition(partition, nearest.id);
+          this.stats.expiredEvictions += entry ? 1 : 0;
         }
       }
 
       if (bestMatch) {
-        // Update access statistics
+        this.stats.hits++;
+        this.stats.similaritySum += highestSimilarity;
+
+        // Update access statistics without waiting on Redis
         bestMatch.metadata.hitCount++;
         bestMatch.metadata.lastAccessed = Date.now();
-        await this.updateCachedResponse(cacheKey, bestMatch);
+        void this.recordHit(cacheKey, bestMatch);
 
         logger.info(
           `Semantic cache hit with similarity: ${highestSimilarity.toFixed(3)}`,
@@ -103,6 +148,7 @@ export class SemanticCache {
         return bestMatch;
       }
 
+      this.stats.misses++;
       logger.debug("No semantic cache match found");
       return null;
     } catch (error) {
@@ -136,8 +182,12 @@ export class SemanticCache {
           timestamp: Date.now(),
           hitCount: 0,
           lastAccessed: Date.now(),
+          cost: typeof response?.cost === "number" ? response.cost : 0,
         },
       };
+      cachedResponse.metadata.sizeBytes = Buffer.byteLength(
+        JSON.stringify(cachedResponse),
+      );
 
       await this.addCachedResponse(cacheKey, cachedResponse);
       logger.debug(`Stored response in semantic cache: ${cachedResponse.id}`);
@@ -146,14 +196,182 @@ export class SemanticCache {
     }
   }
 
+  /**
+   * Load the similarity indexes of the given provider/model pairs from Redis
+   * so the first requests after start do not pay for the rebuild
+   */
+  async warmUp(
+    partitions: Array<{ provider: string; model: string }>,
+  ): Promise<void> {
+    if (!this.config.enabled) {
+      return;
+    }
+
+    await Promise.all(
+      partitions.map(({ provider, model }) =>
+        this.getPartition(this.generateCacheKey(provider, model)),
+      ),
+    );
+
+    logger.info(`Semantic cache index warmed for ${partitions.length} models`);
+  }
+
+  /**
+   * Get the indexed partition for a cache key, re-reading it from Redis when
+   * it is missing or older than the refresh interval, so entries stored by
+   * other instances become searchable
+   */
+  private async getPartition(cacheKey: string): Promise<IndexedPartition> {
+    const partition = this.partitions.get(cacheKey);
+    const refreshMs = (this.config.indexRefreshSeconds ?? 30) * 1000;
+
+    if (partition && Date.now() - partition.loadedAt < refreshMs) {
+      return partition;
+    }
+
+    // Concurrent lookups share one Redis read per partition
+    const pending = this.partitionLoads.get(cacheKey);
+    if (pending) {
+      return pending;
+    }
+
+    const load = this.loadPartition(cacheKey, partition);
+    this.partitionLoads.set(cacheKey, load);
+    try {
+      return await load;
+    } finally {
+      this.partitionLoads.delete(cacheKey);
+    }
+  }
+
+  private async loadPartition(
+    cacheKey: string,
+    existing?: IndexedPartition,
+  ): Promise<IndexedPartition> {
+    const partition: IndexedPartition = existing || {
+      index: null,
+      entries: new Map(),
+      loadedAt: 0,
+    };
+
+    this.syncPartition(partition, await this.getCachedResponses(cacheKey));
+    partition.loadedAt = Date.now();
+    this.partitions.set(cacheKey, partition);
+
+    return partition;
+  }
+
+  /**
+   * Make a partition's index match the stored responses, only touching
+   * entries that were added or removed
+   */
+  private syncPartition(
+    partition: IndexedPartition,
+    responses: CachedResponse[],
+  ): void {
+    const now = Date.now();
+    const live = responses.filter((response) => !this.isExpired(response, now));
+    const stored = new Set(live.map((response) => response.id));
+
+    for (const id of Array.from(partition.entries.keys())) {
+      if (!stored.has(id)) {
+        this.removeFromPartition(partition, id);
+      }
+    }
+
+    for (const response of live) {
+      if (partition.entries.has(response.id)) {
+        partition.entries.set(response.id, response);
+        continue;
+      }
+
+      if (!partition.index) {
+        partition.index = new HnswIndex(
+          response.embedding.length,
+          this.config.indexOptions,
+        );
+      }
+
+      // Embeddings of another model cannot be compared with this index
+      if (response.embedding.length !== partition.index.dimension) {
+        continue;
+      }
+
+      partition.index.add(response.id, toUnitVector(response.embedding));
+      partition.entries.set(response.id, response);
+    }
+  }
+
+  private removeFromPartition(partition: IndexedPartition, id: string): void {
+    partition.entries.delete(id);
+    partition.index?.remove(id);
+  }
+
+  private isExpired(entry: CachedResponse, now: number): boolean {
+    return now - entry.metadata.timestamp > this.config.ttlSeconds * 1000;
+  }
+
+  /**
+   * Drop expired entries, then evict by policy until the partition fits
+   */
+  private applyEviction(responses: CachedResponse[]): CachedResponse[] {
+    const now = Date.now();
+    const live = responses.filter((response) => !this.isExpired(response, now));
+    this.stats.expiredEvictions += responses.length - live.length;
+
+    const overflow = live.length - this.config.maxCacheSize;
+    if (overflow <= 0) {
+      return live;
+    }
+
+    const policy = this.config.evictionPolicy || DEFAULT_EVICTION_POLICY;
+    const savedCost = new Map<string, number>();
+    if (policy === "cost") {
+      for (const entry of live) {
+        savedCost.set(entry.id, this.savedCostPerByte(entry));
+      }
+    }
+
+    // Entries worth keeping first; recency breaks ties for every policy
+    live.sort((a, b) => {
+      if (policy === "lfu" && a.metadata.hitCount !== b.metadata.hitCount) {
+        return b.metadata.hitCount - a.metadata.hitCount;
+      }
+      if (policy === "cost") {
+        const diff = savedCost.get(b.id)! - savedCost.get(a.id)!;
+        if (diff !== 0) {
+          return diff;
+        }
+      }
+      return b.metadata.lastAccessed - a.metadata.lastAccessed;
+    });
+
+    this.stats.capacityEvictions += overflow;
+    return live.slice(0, this.config.maxCacheSize);
+  }
+
+  /**
+   * Provider cost an entry is expected to save per byte it occupies, with
+   * its hits so far as the estimate of future hits
+   */
+  private savedCostPerByte(entry: CachedResponse): number {
+    const { cost = 0, hitCount, sizeBytes } = entry.metadata;
+    // Entries stored before sizes were recorded are dominated by the embedding
+    const size = sizeBytes || entry.embedding.length * 20;
+    return (cost * (hitCount + 1)) / Math.max(size, 1);
+  }
+
   /**
    * Generate vector embedding for text
    */
   private async getEmbedding(text: string): Promise<number[]> {
-    // Check embedding cache first
+    // Check embedding cache first, refreshing the entry's recency
     const textHash = crypto.createHash("sha256").update(text).digest("hex");
-    if (this.embeddingCache.has(textHash)) {
-      return this.embeddingCache.get(textHash)!;
+    const cached = this.embeddingCache.get(textHash);
+    if (cached) {
+      this.embeddingCache.delete(textHash);
+      this.embeddingCache.set(textHash, cached);
+      return cached;
     }
 
     let embedding: number[];
@@ -167,8 +385,8 @@ export class SemanticCache {
     // Cache the embedding
     this.embeddingCache.set(textHash, embedding);
 
-    // Limit embedding cache size
-    if (this.embeddingCache.size > 1000) {
+    // Evict the least recently used embedding
+    if (this.embeddingCache.size > (this.config.embeddingCacheSize ?? 1000)) {
       const firstKey = this.embeddingCache.keys().next().value;
       if (firstKey) {
         this.embeddingCache.delete(firstKey);
@@ -241,43 +459,63 @@ export class SemanticCache {
   }
 
   /**
-   * Calculate cosine similarity between two vectors
+   * Generate cache key for provider/model combination
    */
-  private calculateCosineSimilarity(a: number[], b: number[]): number {
-    if (a.length !== b.length) {
-      throw new Error("Vector dimensions must match");
-    }
-
-    let dotProduct = 0;
-    let normA = 0;
-    let normB = 0;
-
-    for (let i = 0; i < a.length; i++) {
-      dotProduct += a[i] * b[i];
-      normA += a[i] * a[i];
-      normB += b[i] * b[i];
-    }
+  private generateCacheKey(provider: string, model: string): string {
+    return `semantic_cache:${provider}:${model}`;
+  }
 
-    const magnitude = Math.sqrt(normA) * Math.sqrt(normB);
-    return magnitude === 0 ? 0 : dotProduct / magnitude;
+  /**
+   * Key of the hash holding hit counts and access times of a partition,
+   * kept apart so a hit never rewrites the partition's responses
+   */
+  private generateStatsKey(cacheKey: string): string {
+    return `${cacheKey}:stats`;
   }
 
   /**
-   * Generate cache key for provider/model combination
+   * Count a hit in the partition's shared access statistics
    */
-  private generateCacheKey(provider: string, model: string): string {
-    return `semantic_cache:${provider}:${model}`;
+  private async recordHit(
+    cacheKey: string,
+    entry: CachedResponse,
+  ): Promise<void> {
+    await this.cacheManager.updateHash(
+      this.generateStatsKey(cacheKey),
+      {
+        increment: { [`${entry.id}:hits`]: 1 },
+        set: { [`${entry.id}:accessed`]: entry.metadata.lastAccessed },
+      },
+      this.config.ttlSeconds,
+    );
   }
 
   /**
-   * Get all cached responses for a cache key
+   * Get all cached responses for a cache key from Redis, with the access
+   * statistics every instance recorded for them
    */
   private async getCachedResponses(
     cacheKey: string,
   ): Promise<CachedResponse[]> {
     try {
-      const data = await this.cacheManager.get(cacheKey);
-      return data && typeof data === "string" ? JSON.parse(data) : [];
+      const [data, stats] = await Promise.all([
+        this.cacheManager.getShared(cacheKey),
+        this.cacheManager.getHash(this.generateStatsKey(cacheKey)),
+      ]);
+      const responses: CachedResponse[] =
+        data && typeof data === "string" ? JSON.parse(data) : [];
+
+      for (const response of responses) {
+        const hits = Number(stats[`${response.id}:hits`] || 0);
+        const accessed = Number(stats[`${response.id}:accessed`] || 0);
+        response.metadata.hitCount = Math.max(response.metadata.hitCount, hits);
+        response.metadata.lastAccessed = Math.max(
+          response.metadata.lastAccessed,
+          accessed,
+        );
+      }
+
+      return responses;
     } catch (error) {
       logger.error("Error getting cached responses:", error);
       return [];
@@ -292,48 +530,35 @@ export class SemanticCache {
     response: CachedResponse,
   ): Promise<void> {
     try {
-      const responses = await this.getCachedResponses(cacheKey);
-      responses.push(response);
-
-      // Limit cache size and remove old entries
-      if (responses.length > this.config.maxCacheSize) {
-        responses.sort(
-          (a, b) => b.metadata.lastAccessed - a.metadata.lastAccessed,
-        );
-        responses.splice(this.config.maxCacheSize);
-      }
+      const stored = await this.getCachedResponses(cacheKey);
+      stored.push(response);
+      const responses = this.applyEviction(stored);
 
       await this.cacheManager.set(
         cacheKey,
         JSON.stringify(responses),
         this.config.ttlSeconds,
       );
-    } catch (error) {
-      logger.error("Error adding cached response:", error);
-    }
-  }
 
-  /**
-   * Update an existing cached response
-   */
-  private async updateCachedResponse(
-    cacheKey: string,
-    updatedResponse: CachedResponse,
-  ): Promise<void> {
-    try {
-      const responses = await this.getCachedResponses(cacheKey);
-      const index = responses.findIndex((r) => r.id === updatedResponse.id);
-
-      if (index !== -1) {
-        responses[index] = updatedResponse;
-        await this.cacheManager.set(
-          cacheKey,
-          JSON.stringify(responses),
+      // Drop the access statistics of entries that were evicted
+      const kept = new Set(responses.map((entry) => entry.id));
+      const removed = stored
+        .filter((entry) => !kept.has(entry.id))
+        .flatMap((entry) => [`${entry.id}:hits`, `${entry.id}:accessed`]);
+      if (removed.length > 0) {
+        await this.cacheManager.updateHash(
+          this.generateStatsKey(cacheKey),
+          { remove: removed },
           this.config.ttlSeconds,
         );
       }
+
+      const partition = this.partitions.get(cacheKey);
+      if (partition) {
+        this.syncPartition(partition, responses);
+      }
     } catch (error) {
-      logger.error("Error updating cached response:", error);
+      logger.error("Error adding cached response:", error);
     }
   }
 
@@ -342,8 +567,9 @@ export class SemanticCache {
    */
   async clearCache(): Promise<void> {
     try {
-      // Clear embedding cache
+      // Clear embedding cache and similarity indexes
       this.embeddingCache.clear();
+      this.partitions.clear();
 
       // Clear stored responses (would need to iterate through all keys in production)
       logger.info("Semantic cache cleared");
@@ -360,13 +586,45 @@ export class SemanticCache {
     totalHits: number;
     averageSimilarity: number;
     cacheSize: number;
+    partitions: number;
+    approximateBytes: number;
+    hits: number;
+    misses: number;
+    hitRate: number;
+    evictions: { capacity: number; expired: number };
+    evictionPolicy: SemanticCacheEvictionPolicy;
   }> {
-    // This would be implemented to scan all cache keys and aggregate stats
+    // Aggregated over the partitions indexed by this process
+    let totalResponses = 0;
+    let totalHits = 0;
+    let approximateBytes = 0;
+    for (const partition of this.partitions.values()) {
+      totalResponses += partition.entries.size;
+      for (const entry of partition.entries.values()) {
+        totalHits += entry.metadata.hitCount;
+        approximateBytes +=
+          entry.metadata.sizeBytes || entry.embedding.length * 20;
+      }
+    }
+
+    const lookups = this.stats.hits + this.stats.misses;
+
     return {
-      totalResponses: 0,
-      totalHits: 0,
-      averageSimilarity: 0,
+      totalResponses,
+      totalHits,
+      averageSimilarity:
+        this.stats.hits > 0 ? this.stats.similaritySum / this.stats.hits : 0,
       cacheSize: this.embeddingCache.size,
+      partitions: this.partitions.size,
+      approximateBytes,
+      hits: this.stats.hits,
+      misses: this.stats.misses,
+      hitRate: lookups > 0 ? this.stats.hits / lookups : 0,
+      evictions: {
+        capacity: this.stats.capacityEvictions,
+        expired: this.stats.expiredEvictions,
+      },
+      evictionPolicy: this.config.evictionPolicy || DEFAULT_EVICTION_POLICY,
     };
   }
 }
@@ -380,4 +638,6 @@ export const defaultSemanticCacheConfig: SemanticCacheConfig = {
   maxCacheSize: 1000,
   ttlSeconds: 3600, // 1 hour
   embeddingProvider: "openai",
+  evictionPolicy: DEFAULT_EVICTION_POLICY,
+  embeddingCacheSize: 1000,
 };
@@ -1,10 +1,12 @@
 /**
  * Steering Rules Engine
- * Handles AI request routing decisions based on YAML rules
+ * Handles AI request routing decisions based on YAML rules, compiled into
+ * indexed predicates and reloaded when the rules file changes
  */
 
 import * as yaml from "js-yaml";
 import * as fs from "fs/promises";
+import { watch, FSWatcher } from "fs";
 import * as path from "path";
 import { AIRequest, RoutingDecision } from "../models/request";
 import { logger } from "../utils/logger";
@@ -49,27 +51,94 @@ interface SteeringConfig {
   };
 }
 
+type RequestPredicate = (request: AIRequest, profileId: string) => boolean;
+
+interface CompiledRule {
+  rule: RoutingRule;
+  order: number; // Position in priority order
+  matches: RequestPredicate;
+  confidence: number; // Model-dependent part of the confidence score
+}
+
+interface CompiledRules {
+  config: SteeringConfig;
+  // field -> value -> rules whose conditions require field === value
+  indexes: Map<string, Map<any, CompiledRule[]>>;
+  unindexed: CompiledRule[]; // Rules that must be checked for every request
+  defaultRule?: CompiledRule;
+}
+
+export interface SteeringRulesOptions {
+  configPath: string;
+  hotReload: boolean;
+  // Equality fields preferred as index keys, most selective first
+  indexedFields: string[];
+}
+
+export const defaultSteeringRulesOptions: SteeringRulesOptions = {
+  configPath: path.join(__dirname, "../config/steering-rules.yaml"),
+  hotReload: true,
+  indexedFields: ["system_source", "context.task_type"],
+};
+
+const COST_PER_TOKEN: Record<string, number> = {
+  "gpt-4": 0.03,
+  "gpt-3.5-turbo": 0.0015,
+  "claude-3-opus": 0.015,
+  "automotive-specialist-v1": 0.001,
+};
+
+// Profile-specific cost rules
+const PROFILE_COST_RULES: Record<string, { daily_budget: number }> = {
+  automotive: { daily_budget: 500 },
+  healthcare: { daily_budget: 300 },
+  finance: { daily_budget: 400 },
+  retail: { daily_budget: 250 },
+  general: { daily_budget: 200 },
+};
+
 export class SteeringRulesEngine {
   private config: SteeringConfig | null = null;
+  private compiled: CompiledRules | null = null;
+  private loading: Promise<void> | null = null;
+  private watcher: FSWatcher | null = null;
+  private reloadTimer?: NodeJS.Timeout;
+  private options: SteeringRulesOptions;
   private dailySpend = 0;
   private requestCount = 0;
 
+  constructor(options: Partial<SteeringRulesOptions> = {}) {
+    this.options = { ...defaultSteeringRulesOptions, ...options };
+  }
+
   async loadSteeringRules(): Promise<void> {
     try {
-      const configPath = path.join(__dirname, "../config/steering-rules.yaml");
-      const yamlContent = await fs.readFile(configPath, "utf8");
-      this.config = yaml.load(yamlContent) as SteeringConfig;
+      const yamlContent = await fs.readFile(this.options.configPath, "utf8");
+      const config = yaml.load(yamlContent) as SteeringConfig;
+
+      // An invalid file must not replace the rules currently in use
+      this.checkConfig(config);
 
       // Sort rules by priority (highest first)
-      this.config.routing_rules.sort((a, b) => b.priority - a.priority);
+      config.routing_rules.sort((a, b) => b.priority - a.priority);
+
+      // Swap in config and compiled rules together so requests never see
+      // a half-applied reload
+      this.compiled = this.compileRules(config);
+      this.config = config;
 
       logger.info("Steering rules loaded successfully", {
-        rulesCount: this.config.routing_rules.length,
+        rulesCount: config.routing_rules.length,
+        indexedFields: Array.from(this.compiled.indexes.keys()),
       });
     } catch (error) {
       logger.error("Failed to load steering rules:", error);
       throw new Error("Failed to load steering rules configuration");
     }
+
+    if (this.options.hotReload) {
+      this.watchRules();
+    }
   }
 
   async validateRules(): Promise<boolean> {
@@ -79,30 +148,7 @@ export class SteeringRulesEngine {
     }
 
     try {
-      // Validate required fields
-      if (
-        !this.config.routing_rules ||
-        !Array.isArray(this.config.routing_rules)
-      ) {
-        throw new Error("routing_rules must be an array");
-      }
-
-      // Validate each rule
-      for (const rule of this.config.routing_rules) {
-        if (!rule.name || !rule.action) {
-          throw new Error(`Invalid rule: ${JSON.stringify(rule)}`);
-        }
-
-        if (!rule.action.provider || !rule.action.model) {
-          throw new Error(`Invalid action in rule ${rule.name}`);
-        }
-      }
-
-      // Validate cost constraints
-      if (!this.config.cost_constraints) {
-        throw new Error("cost_constraints section is required");
-      }
-
+      this.checkConfig(this.config);
       logger.info("Steering rules validation passed");
       return true;
     } catch (error) {
@@ -115,20 +161,18 @@ export class SteeringRulesEngine {
     request: AIRequest,
     profileId: string,
   ): Promise<RoutingDecision> {
-    if (!this.config) {
-      await this.loadSteeringRules();
-    }
+    const compiled = await this.getCompiledRules();
 
     try {
       // Check cost constraints first
-      if (this.dailySpend >= this.config!.cost_constraints.daily_budget) {
+      if (this.dailySpend >= compiled.config.cost_constraints.daily_budget) {
         return this.createFallbackDecision("Daily budget exceeded", [
           "budget_constraint",
         ]);
       }
 
       // Add profile-specific cost constraints
-      const profileCostRules = await this.getProfileCostRules(profileId);
+      const profileCostRules = this.getProfileCostRules(profileId);
       if (
         profileCostRules &&
         this.dailySpend >= profileCostRules.daily_budget
@@ -139,12 +183,10 @@ export class SteeringRulesEngine {
       }
 
       // Find matching rule with profile awareness
-      for (const rule of this.config!.routing_rules) {
-        if (
-          this.evaluateProfileConditions(rule.conditions, request, profileId)
-        ) {
-          const decision = await this.createRoutingDecision(
-            rule,
+      for (const candidate of this.getCandidates(compiled, request)) {
+        if (candidate.matches(request, profileId)) {
+          const decision = this.createRoutingDecision(
+            candidate,
             request,
             profileId,
           );
@@ -152,10 +194,10 @@ export class SteeringRulesEngine {
           // Check if decision exceeds per-request budget
           if (
             decision.estimated_cost >
-            this.config!.cost_constraints.per_request_max
+            compiled.config.cost_constraints.per_request_max
           ) {
             logger.warn(
-              `Request cost ${sanitizeForLog(decision.estimated_cost)} exceeds max ${sanitizeForLog(this.config!.cost_constraints.per_request_max)}`,
+              `Request cost ${sanitizeForLog(decision.estimated_cost)} exceeds max ${sanitizeForLog(compiled.config.cost_constraints.per_request_max)}`,
             );
             continue; // Try next rule
           }
@@ -165,11 +207,12 @@ export class SteeringRulesEngine {
       }
 
       // No rules matched, use default
-      const defaultRule = this.config!.routing_rules.find(
-        (r) => r.name === "default",
-      );
-      if (defaultRule) {
-        return this.createRoutingDecision(defaultRule, request, profileId);
+      if (compiled.defaultRule) {
+        return this.createRoutingDecision(
+          compiled.defaultRule,
+          request,
+          profileId,
+        );
       }
 
       return this.createFallbackDecision("No matching rules found", [
@@ -183,48 +226,258 @@ export class SteeringRulesEngine {
     }
   }
 
-  private evaluateProfileConditions(
-    conditions: RuleCondition[],
+  /**
+   * Key covering everything determineRouting reads from a request: which
+   * rules match, the profile and the prompt length. Requests with equal
+   * keys get equal decisions, so callers may share one.
+   */
+  async getRoutingFeatures(
     request: AIRequest,
-    profileId: string,
-  ): boolean {
-    if (conditions.length === 0) return true; // Default rule
+    profileId?: string,
+  ): Promise<string> {
+    const compiled = await this.getCompiledRules();
+
+    const matches = compiled.config.routing_rules.map(() => "0");
+    for (const candidate of this.getCandidates(compiled, request)) {
+      if (candidate.matches(request, profileId!)) {
+        matches[candidate.order] = "1";
+      }
+    }
+
+    return `${profileId}:${matches.join("")}:${request.prompt.length}`;
+  }
+
+  /**
+   * Stop watching the rules file
+   */
+  close(): void {
+    clearTimeout(this.reloadTimer);
+    this.watcher?.close();
+    this.watcher = null;
+  }
+
+  /**
+   * Throw if a parsed rules file is missing required sections or fields
+   */
+  private checkConfig(config: SteeringConfig): void {
+    if (!config || typeof config !== "object") {
+      throw new Error("Steering rules file must contain a mapping");
+    }
+
+    // Validate required fields
+    if (!config.routing_rules || !Array.isArray(config.routing_rules)) {
+      throw new Error("routing_rules must be an array");
+    }
 
-    return conditions.every((condition) => {
-      const fieldValue = this.getFieldValue(condition.field, request);
+    // Validate each rule
+    for (const rule of config.routing_rules) {
+      if (!rule.name || !rule.action) {
+        throw new Error(`Invalid rule: ${JSON.stringify(rule)}`);
+      }
 
-      // Check for profile-specific conditions
-      if (condition.field === "profile") {
-        return profileId === condition.value;
+      if (!rule.action.provider || !rule.action.model) {
+        throw new Error(`Invalid action in rule ${rule.name}`);
       }
+    }
 
-      switch (condition.operator) {
-        case "equals":
-          return fieldValue === condition.value;
-        case "exists":
-          return fieldValue !== undefined && fieldValue !== null;
-        case "length_less_than":
-          return (
-            typeof fieldValue === "string" &&
-            fieldValue.length < condition.value
-          );
-        case "length_greater_than":
-          return (
-            typeof fieldValue === "string" &&
-            fieldValue.length > condition.value
-          );
-        case "contains":
-          return (
-            typeof fieldValue === "string" &&
-            fieldValue.includes(condition.value)
-          );
-        default:
-          logger.warn(
-            `Unknown operator: ${sanitizeForLog(condition.operator)}`,
-          );
-          return false;
+    // Validate cost constraints
+    if (!config.cost_constraints) {
+      throw new Error("cost_constraints section is required");
+    }
+  }
+
+  private async getCompiledRules(): Promise<CompiledRules> {
+    if (!this.compiled) {
+      // Concurrent first requests share one load
+      this.loading = this.loading || this.loadSteeringRules();
+      try {
+        await this.loading;
+      } finally {
+        this.loading = null;
       }
+    }
+    return this.compiled!;
+  }
+
+  /**
+   * Rules that can match a request, in priority order. Indexed rules are
+   * only considered when the request has the value their index requires.
+   */
+  private getCandidates(
+    compiled: CompiledRules,
+    request: AIRequest,
+  ): CompiledRule[] {
+    if (compiled.indexes.size === 0) {
+      return compiled.unindexed;
+    }
+
+    const candidates = compiled.unindexed.slice();
+    for (const [field, byValue] of compiled.indexes) {
+      const rules = byValue.get(this.getFieldValue(field, request));
+      if (rules) {
+        candidates.push(...rules);
+      }
+    }
+
+    return candidates.length === compiled.unindexed.length
+      ? compiled.unindexed
+      : candidates.sort((a, b) => a.order - b.order);
+  }
+
+  /**
+   * Turn rules into predicate closures and index each rule under one of
+   * its equality conditions, preferring the configured indexed fields
+   */
+  private compileRules(config: SteeringConfig): CompiledRules {
+    const compiled: CompiledRules = {
+      config,
+      indexes: new Map(),
+      unindexed: [],
+    };
+
+    config.routing_rules.forEach((rule, order) => {
+      const conditions = rule.conditions || [];
+      const predicates = conditions.map((condition) =>
+        this.compileCondition(condition),
+      );
+      const model = rule.action?.model || "";
+
+      const compiledRule: CompiledRule = {
+        rule,
+        order,
+        matches:
+          predicates.length === 1
+            ? predicates[0]
+            : (request, profileId) =>
+                predicates.every((predicate) => predicate(request, profileId)),
+        confidence:
+          0.8 + // Base confidence
+          (model.includes("gpt-4") ? 0.1 : 0) +
+          (model.includes("specialist") ? 0.05 : 0),
+      };
+
+      if (rule.name === "default") {
+        compiled.defaultRule = compiledRule;
+      }
+
+      const indexCondition = this.selectIndexCondition(conditions);
+      if (!indexCondition) {
+        compiled.unindexed.push(compiledRule);
+        return;
+      }
+
+      let byValue = compiled.indexes.get(indexCondition.field);
+      if (!byValue) {
+        byValue = new Map();
+        compiled.indexes.set(indexCondition.field, byValue);
+      }
+      const rules = byValue.get(indexCondition.value) || [];
+      rules.push(compiledRule);
+      byValue.set(indexCondition.value, rules);
     });
+
+    return compiled;
+  }
+
+  private selectIndexCondition(
+    conditions: RuleCondition[],
+  ): RuleCondition | undefined {
+    const equalities = conditions.filter(
+      (condition) =>
+        condition.operator === "equals" && condition.field !== "profile",
+    );
+
+    for (const field of this.options.indexedFields) {
+      const condition = equalities.find((c) => c.field === field);
+      if (condition) {
+        return condition;
+      }
+    }
+
+    return equalities[0];
+  }
+
+  private compileCondition(condition: RuleCondition): RequestPredicate {
+    // Check for profile-specific conditions
+    if (condition.field === "profile") {
+      return (_, profileId) => profileId === condition.value;
+    }
+
+    const parts = condition.field.split(".");
+    const read = (request: AIRequest): any => {
+      let value: any = request;
+      for (const part of parts) {
+        if (value && typeof value === "object") {
+          value = value[part];
+        } else {
+          return undefined;
+        }
+      }
+      return value;
+    };
+    const expected = condition.value;
+
+    switch (condition.operator) {
+      case "equals":
+        return (request) => read(request) === expected;
+      case "exists":
+        return (request) => {
+          const value = read(request);
+          return value !== undefined && value !== null;
+        };
+      case "length_less_than":
+        return (request) => {
+          const value = read(request);
+          return typeof value === "string" && value.length < expected;
+        };
+      case "length_greater_than":
+        return (request) => {
+          const value = read(request);
+          return typeof value === "string" && value.length > expected;
+        };
+      case "contains":
+        return (request) => {
+          const value = read(request);
+          return typeof value === "string" && value.includes(expected);
+        };
+      default:
+        logger.warn(`Unknown operator: ${sanitizeForLog(condition.operator)}`);
+        return () => false;
+    }
+  }
+
+  /**
+   * Recompile the rules shortly after the file changes. A rules file that
+   * fails to load or validate leaves the previous rules in place. The
+   * directory is watched, since editors that save by renaming a new file
+   * over the old one end a watch on the file itself.
+   */
+  private watchRules(): void {
+    if (this.watcher) {
+      return;
+    }
+
+    const directory = path.dirname(this.options.configPath);
+    const fileName = path.basename(this.options.configPath);
+
+    try {
+      this.watcher = watch(directory, (_event, changed) => {
+        if (changed && changed.toString() !== fileName) {
+          return;
+        }
+
+        clearTimeout(this.reloadTimer);
+        this.reloadTimer = setTimeout(() => {
+          this.loadSteeringRules().catch(() =>
+            logger.warn("Keeping previous steering rules"),
+          );
+        }, 100);
+        this.reloadTimer.unref();
+      });
+      this.watcher.unref();
+    } catch (error) {
+      logger.warn("Steering rules hot reload unavailable:", error);
+    }
   }
 
   private getFieldValue(field: string, request: AIRequest): any {
@@ -242,11 +495,12 @@ export class SteeringRulesEngine {
     return value;
   }
 
-  private async createRoutingDecision(
-    rule: any,
+  private createRoutingDecision(
+    compiledRule: CompiledRule,
     request: AIRequest,
     profileId: string,
-  ): Promise<RoutingDecision> {
+  ): RoutingDecision {
+    const { rule } = compiledRule;
     const baseCost = this.calculateBaseCost(
       rule.action.model,
       request.prompt.length,
@@ -259,7 +513,11 @@ export class SteeringRulesEngine {
       model: rule.action.model,
       estimated_cost: estimatedCost,
       expected_latency: rule.action.max_latency || 2000,
-      confidence_score: this.calculateConfidenceScore(rule, request, profileId),
+      confidence_score: this.calculateConfidenceScore(
+        compiledRule,
+        request,
+        profileId,
+      ),
       reasoning: `Matched rule: ${sanitizeForLog(rule.name || "unknown")}`,
       routing_rules_applied: [rule.name || "unknown"],
     };
@@ -285,31 +543,22 @@ export class SteeringRulesEngine {
     promptLength: number,
     profileId: string,
   ): number {
-    const costPerToken: Record<string, number> = {
-      "gpt-4": 0.03,
-      "gpt-3.5-turbo": 0.0015,
-      "claude-3-opus": 0.015,
-      "automotive-specialist-v1": 0.001,
-    };
+    const baseCost = ((COST_PER_TOKEN[model] || 0.002) * promptLength) / 1000;
 
     // Apply profile-specific cost adjustments
     if (profileId === "automotive") {
-      return (((costPerToken[model] || 0.002) * promptLength) / 1000) * 0.9; // 10% discount
+      return baseCost * 0.9; // 10% discount
     }
 
-    return ((costPerToken[model] || 0.002) * promptLength) / 1000;
+    return baseCost;
   }
 
   private calculateConfidenceScore(
-    rule: any,
+    compiledRule: CompiledRule,
     request: AIRequest,
     profileId: string,
   ): number {
-    let score = 0.8; // Base confidence
-
-    // Adjust based on model capability
-    if (rule.model.includes("gpt-4")) score += 0.1;
-    if (rule.model.includes("specialist")) score += 0.05;
+    let score = compiledRule.confidence;
 
     // Adjust based on profile-specific confidence
     if (profileId === "healthcare") {
@@ -337,18 +586,9 @@ export class SteeringRulesEngine {
     this.requestCount = 0;
   }
 
-  private async getProfileCostRules(
+  private getProfileCostRules(
     profileId: string,
-  ): Promise<{ daily_budget: number } | null> {
-    // Implementation to fetch profile-specific cost rules
-    const profileCosts: Record<string, { daily_budget: number }> = {
-      automotive: { daily_budget: 500 },
-      healthcare: { daily_budget: 300 },
-      finance: { daily_budget: 400 },
-      retail: { daily_budget: 250 },
-      general: { daily_budget: 200 },
-    };
-
-    return profileCosts[profileId] || null;
+  ): { daily_budget: number } | null {
+    return PROFILE_COST_RULES[profileId] || null;
   }
 }
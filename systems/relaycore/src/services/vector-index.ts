@@ -0,0 +1,323 @@
+/**
+ * Vector Index
+ * In-process HNSW (hierarchical navigable small world) graph for approximate
+ * nearest-neighbour search over embeddings by cosine similarity
+ */
+
+import { BinaryHeap } from "../utils/binary-heap";
+
+export interface VectorIndexOptions {
+  m: number; // Links per node on upper layers; layer 0 keeps 2 * m
+  efConstruction: number; // Candidate list size while inserting
+  efSearch: number; // Candidate list size while searching
+}
+
+export interface VectorSearchResult {
+  id: string;
+  similarity: number;
+}
+
+interface Candidate {
+  node: number;
+  distance: number;
+}
+
+/**
+ * Default index options; exact-match recall stays near 1.0 for partitions
+ * of several thousand embeddings
+ */
+export const defaultVectorIndexOptions: VectorIndexOptions = {
+  m: 16,
+  efConstruction: 100,
+  efSearch: 32,
+};
+
+/**
+ * Normalise an embedding so cosine similarity reduces to a dot product
+ */
+export function toUnitVector(values: ArrayLike<number>): Float32Array {
+  const vector = Float32Array.from(values);
+
+  let norm = 0;
+  for (let i = 0; i < vector.length; i++) {
+    norm += vector[i] * vector[i];
+  }
+
+  norm = Math.sqrt(norm);
+  if (norm > 0) {
+    for (let i = 0; i < vector.length; i++) {
+      vector[i] /= norm;
+    }
+  }
+
+  return vector;
+}
+
+export class HnswIndex {
+  readonly dimension: number;
+  private options: VectorIndexOptions;
+  private levelMultiplier: number;
+  private vectors: Float32Array[] = [];
+  private ids: string[] = [];
+  private links: number[][][] = []; // node -> layer -> neighbour nodes
+  private removed: Set<number> = new Set();
+  private nodesById: Map<string, number> = new Map();
+  private entryPoint = -1;
+  private maxLevel = -1;
+
+  constructor(dimension: number, options: Partial<VectorIndexOptions> = {}) {
+    this.dimension = dimension;
+    this.options = { ...defaultVectorIndexOptions, ...options };
+    this.levelMultiplier = 1 / Math.log(Math.max(this.options.m, 2));
+  }
+
+  get size(): number {
+    return this.nodesById.size;
+  }
+
+  has(id: string): boolean {
+    return this.nodesById.has(id);
+  }
+
+  /**
+   * Insert a unit vector, replacing any vector stored under the same id
+   */
+  add(id: string, vector: Float32Array): void {
+    if (vector.length !== this.dimension) {
+      throw new Error(
+        `Vector dimension ${vector.length} does not match index dimension ${this.dimension}`,
+      );
+    }
+
+    this.remove(id);
+
+    const node = this.vectors.length;
+    // 1 - random() lies in (0, 1], so the logarithm is always finite
+    const level = Math.floor(
+      -Math.log(1 - Math.random()) * this.levelMultiplier,
+    );
+
+    this.vectors.push(vector);
+    this.ids.push(id);
+    this.links.push(Array.from({ length: level + 1 }, () => []));
+    this.nodesById.set(id, node);
+
+    if (this.entryPoint === -1) {
+      this.entryPoint = node;
+      this.maxLevel = level;
+      return;
+    }
+
+    let entry = this.entryPoint;
+    for (let layer = this.maxLevel; layer > level; layer--) {
+      entry = this.greedyClosest(vector, entry, layer);
+    }
+
+    for (let layer = Math.min(level, this.maxLevel); layer >= 0; layer--) {
+      const candidates = this.searchLayer(
+        vector,
+        entry,
+        this.options.efConstruction,
+        layer,
+      );
+      const neighbours = candidates.slice(0, this.options.m);
+
+      this.links[node][layer] = neighbours.map((candidate) => candidate.node);
+      for (const neighbour of neighbours) {
+        this.connect(neighbour.node, node, layer);
+      }
+
+      entry = candidates[0].node;
+    }
+
+    if (level > this.maxLevel) {
+      this.entryPoint = node;
+      this.maxLevel = level;
+    }
+  }
+
+  /**
+   * Remove a vector. Removed nodes stay in the graph for navigation until
+   * they outnumber live ones, at which point the graph is rebuilt.
+   */
+  remove(id: string): boolean {
+    const node = this.nodesById.get(id);
+    if (node === undefined) {
+      return false;
+    }
+
+    this.nodesById.delete(id);
+    this.removed.add(node);
+
+    if (this.nodesById.size === 0) {
+      this.clear();
+    } else if (this.removed.size > Math.max(this.nodesById.size, 64)) {
+      this.rebuild();
+    }
+
+    return true;
+  }
+
+  /**
+   * Find the k live vectors most similar to a unit query vector
+   */
+  search(query: Float32Array, k: number = 1): VectorSearchResult[] {
+    if (this.nodesById.size === 0 || query.length !== this.dimension) {
+      return [];
+    }
+
+    let entry = this.entryPoint;
+    for (let layer = this.maxLevel; layer > 0; layer--) {
+      entry = this.greedyClosest(query, entry, layer);
+    }
+
+    const results: VectorSearchResult[] = [];
+    const candidates = this.searchLayer(
+      query,
+      entry,
+      Math.max(this.options.efSearch, k),
+      0,
+    );
+
+    for (const candidate of candidates) {
+      if (this.removed.has(candidate.node)) {
+        continue;
+      }
+
+      results.push({
+        id: this.ids[candidate.node],
+        similarity: 1 - candidate.distance,
+      });
+      if (results.length === k) {
+        break;
+      }
+    }
+
+    return results;
+  }
+
+  clear(): void {
+    this.vectors = [];
+    this.ids = [];
+    this.links = [];
+    this.removed.clear();
+    this.nodesById.clear();
+    this.entryPoint = -1;
+    this.maxLevel = -1;
+  }
+
+  private rebuild(): void {
+    const live = Array.from(this.nodesById.entries()).map(
+      ([id, node]) => [id, this.vectors[node]] as const,
+    );
+
+    this.clear();
+    for (const [id, vector] of live) {
+      this.add(id, vector);
+    }
+  }
+
+  /**
+   * Beam search of one layer, returning up to ef nodes nearest first
+   */
+  private searchLayer(
+    query: Float32Array,
+    entry: number,
+    ef: number,
+    layer: number,
+  ): Candidate[] {
+    const start = { node: entry, distance: this.distance(query, entry) };
+    const visited = new Set<number>([entry]);
+    const candidates = new BinaryHeap<Candidate>(
+      (a, b) => a.distance - b.distance,
+    );
+    const nearest = new BinaryHeap<Candidate>(
+      (a, b) => b.distance - a.distance,
+    );
+
+    candidates.push(start);
+    nearest.push(start);
+
+    while (candidates.size > 0) {
+      const current = candidates.pop()!;
+      if (current.distance > nearest.peek()!.distance) {
+        break;
+      }
+
+      for (const neighbour of this.links[current.node][layer] || []) {
+        if (visited.has(neighbour)) {
+          continue;
+        }
+        visited.add(neighbour);
+
+        const distance = this.distance(query, neighbour);
+        if (nearest.size < ef || distance < nearest.peek()!.distance) {
+          const candidate = { node: neighbour, distance };
+          candidates.push(candidate);
+          nearest.push(candidate);
+
+          if (nearest.size > ef) {
+            nearest.pop();
+          }
+        }
+      }
+    }
+
+    return nearest.toArray().sort((a, b) => a.distance - b.distance);
+  }
+
+  private greedyClosest(
+    query: Float32Array,
+    entry: number,
+    layer: number,
+  ): number {
+    let current = entry;
+    let currentDistance = this.distance(query, entry);
+    let improved = true;
+
+    while (improved) {
+      improved = false;
+      for (const neighbour of this.links[current][layer] || []) {
+        const distance = this.distance(query, neighbour);
+        if (distance < currentDistance) {
+          current = neighbour;
+          currentDistance = distance;
+          improved = true;
+        }
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Link a node to a new neighbour, keeping only its closest links
+   */
+  private connect(node: number, neighbour: number, layer: number): void {
+    const links = this.links[node][layer];
+    links.push(neighbour);
+
+    const limit = layer === 0 ? 2 * this.options.m : this.options.m;
+    if (links.length <= limit) {
+      return;
+    }
+
+    const base = this.vectors[node];
+    this.links[node][layer] = links
+      .map((other) => ({ node: other, distance: this.distance(base, other) }))
+      .sort((a, b) => a.distance - b.distance)
+      .slice(0, limit)
+      .map((candidate) => candidate.node);
+  }
+
+  private distance(query: Float32Array, node: number): number {
+    const vector = this.vectors[node];
+
+    let dot = 0;
+    for (let i = 0; i < query.length; i++) {
+      dot += query[i] * vector[i];
+    }
+
+    return 1 - dot;
+  }
+}
@@ -0,0 +1,108 @@
+import express from "express";
+import request from "supertest";
+
+const mockRouteRequest = jest.fn();
+
+jest.mock("../services/provider-manager", () => ({
+  ProviderManager: jest.fn().mockImplementation(() => ({
+    routeRequest: (...args: any[]) => mockRouteRequest(...args),
+  })),
+}));
+
+jest.mock("../services/steering-rules", () => ({
+  SteeringRulesEngine: jest.fn().mockImplementation(() => ({
+    getRoutingFeatures: async () => ["default"],
+    determineRouting: async () => ({
+      provider: "openai",
+      model: "gpt-3.5-turbo",
+      estimated_cost: 0.01,
+      reasoning: "test",
+    }),
+  })),
+}));
+
+jest.mock("../services/cost-optimizer", () => ({
+  CostOptimizer: jest.fn().mockImplementation(() => ({
+    optimizeRouting: async (decision: any) => decision,
+  })),
+}));
+
+jest.mock("../services/metrics-collector", () => ({
+  MetricsCollector: jest.fn().mockImplementation(() => ({
+    recordRequest: async () => undefined,
+    recordError: async () => undefined,
+  })),
+}));
+
+import { aiRoutes } from "../routes/ai";
+
+const app = express();
+app.use(express.json({ limit: "10mb" }));
+app.use("/api/v1/ai", aiRoutes);
+
+const batch = (prompts: string[]) => ({
+  requests: prompts.map((prompt, index) => ({
+    id: `req_${index}`,
+    prompt,
+    context: {},
+    cost_constraints: { max_cost: 1 },
+    system_source: "test",
+  })),
+});
+
+describe("POST /api/v1/ai/batch", () => {
+  beforeEach(() => {
+    mockRouteRequest.mockReset();
+    mockRouteRequest.mockImplementation(async (aiRequest: any) => {
+      if (aiRequest.prompt === "fail") {
+        throw new Error("provider unavailable");
+      }
+      return { id: aiRequest.id, content: aiRequest.prompt.toUpperCase() };
+    });
+  });
+
+  it("should return results in request order with a summary", async () => {
+    const response = await request(app)
+      .post("/api/v1/ai/batch")
+      .send(batch(["one", "fail", "three"]))
+      .expect(200);
+
+    expect(response.body.success).toBe(true);
+    expect(response.body.data.results).toEqual([
+      { id: "req_0", content: "ONE" },
+      { error: "provider unavailable" },
+      { id: "req_2", content: "THREE" },
+    ]);
+    expect(response.body.data.successful).toBe(2);
+    expect(response.body.data.failed).toBe(1);
+  });
+
+  it("should stream NDJSON results followed by a summary line", async () => {
+    const response = await request(app)
+      .post("/api/v1/ai/batch")
+      .send({ ...batch(["one", "two"]), stream: true })
+      .expect(200)
+      .expect("Content-Type", /application\/x-ndjson/);
+
+    const lines = response.text
+      .trim()
+      .split("\n")
+      .map((line) => JSON.parse(line));
+
+    expect(lines).toHaveLength(3);
+    expect(lines.slice(0, 2).map((line) => line.index)).toEqual(
+      expect.arrayContaining([0, 1]),
+    );
+    expect(lines[2].summary.successful).toBe(2);
+  });
+
+  it("should reject batches over the size limit", async () => {
+    const response = await request(app)
+      .post("/api/v1/ai/batch")
+      .send(batch(new Array(10001).fill("x")))
+      .expect(400);
+
+    expect(response.body.success).toBe(false);
+    expect(mockRouteRequest).not.toHaveBeenCalled();
+  });
+});
@@ -0,0 +1,136 @@
+import {
+  BatchExecutor,
+  BatchItemResult,
+  defaultBatchExecutorConfig,
+} from "../services/batch-executor";
+import { AIRequest, RoutingDecision } from "../models/request";
+
+const createRequest = (index: number, prompt: string): AIRequest => ({
+  id: `req_${index}`,
+  prompt,
+  context: {},
+  routing_preferences: {},
+  cost_constraints: { max_cost: 1 },
+  system_source: "test",
+});
+
+const decisionFor = (provider: string): RoutingDecision =>
+  ({ provider, model: "test-model", estimated_cost: 0 }) as RoutingDecision;
+
+const sleep = (ms: number) => new Promise((resolve) => setTimeout(resolve, ms));
+
+describe("BatchExecutor", () => {
+  it("should keep provider windows full instead of waiting on slow requests", async () => {
+    let inFlight = 0;
+    let peak = 0;
+
+    const executor = new BatchExecutor(
+      {
+        routingKey: async (request) => request.prompt,
+        route: async () => decisionFor("openai"),
+        execute: async (request) => {
+          peak = Math.max(peak, ++inFlight);
+          await sleep(request.prompt === "slow" ? 100 : 5);
+          inFlight--;
+          return { id: request.id } as any;
+        },
+      },
+      { ...defaultBatchExecutorConfig, concurrency: { openai: 3 } },
+    );
+
+    const requests = [createRequest(0, "slow")].concat(
+      Array.from({ length: 20 }, (_, i) => createRequest(i + 1, "fast")),
+    );
+    const completed: BatchItemResult[] = [];
+    const summary = await executor.run(requests, (result) =>
+      completed.push(result),
+    );
+
+    expect(summary.successful).toBe(21);
+    expect(peak).toBe(3);
+    // The slow request finishes last rather than stalling its neighbours
+    expect(completed[completed.length - 1].index).toBe(0);
+  });
+
+  it("should route identical routing features once", async () => {
+    const route = jest.fn(async () => decisionFor("anthropic"));
+    const executor = new BatchExecutor(
+      {
+        routingKey: async (request) => String(request.prompt.length),
+        route,
+        execute: async (request) => ({ id: request.id }) as any,
+      },
+      defaultBatchExecutorConfig,
+    );
+
+    const summary = await executor.run(
+      Array.from({ length: 10 }, (_, i) => createRequest(i, "same length")),
+      () => undefined,
+    );
+
+    expect(route).toHaveBeenCalledTimes(1);
+    expect(summary.shared_routing_decisions).toBe(9);
+  });
+
+  it("should bound routing and execute requests as soon as they are routed", async () => {
+    let routing = 0;
+    let routingPeak = 0;
+    let routed = 0;
+    const routedBeforeExecute: number[] = [];
+
+    const executor = new BatchExecutor(
+      {
+        routingKey: async (request) => request.id,
+        route: async () => {
+          routingPeak = Math.max(routingPeak, ++routing);
+          await sleep(5);
+          routing--;
+          routed++;
+          return decisionFor("openai");
+        },
+        execute: async (request) => {
+          routedBeforeExecute.push(routed);
+          return { id: request.id } as any;
+        },
+      },
+      { ...defaultBatchExecutorConfig, routingConcurrency: 2 },
+    );
+
+    const summary = await executor.run(
+      Array.from({ length: 10 }, (_, i) => createRequest(i, "prompt")),
+      () => undefined,
+    );
+
+    expect(summary.successful).toBe(10);
+    expect(routingPeak).toBe(2);
+    // The first request ran long before the last one was routed
+    expect(routedBeforeExecute[0]).toBeLessThan(10);
+  });
+
+  it("should report failures without stopping the batch", async () => {
+    const executor = new BatchExecutor(
+      {
+        routingKey: async (request) => request.id,
+        route: async () => decisionFor("openai"),
+        execute: async (request) => {
+          if (request.id === "req_1") {
+            throw new Error("provider unavailable");
+          }
+          return { id: request.id } as any;
+        },
+      },
+      defaultBatchExecutorConfig,
+    );
+
+    const results: BatchItemResult[] = [];
+    const summary = await executor.run(
+      [0, 1, 2].map((i) => createRequest(i, "prompt")),
+      (result) => results.push(result),
+    );
+
+    expect(summary).toMatchObject({ successful: 2, failed: 1 });
+    expect(results.find((result) => result.index === 1)?.error).toBe(
+      "provider unavailable",
+    );
+  });
+});
@@ -3,9 +3,10 @@
  * Tests for core budget functionality
  */
 
-import { BudgetRegistry } from "../services/budget-registry";
+import { BudgetRegistry, budgetEvents } from "../services/budget-registry";
 import { BudgetTracker } from "../services/budget-tracker";
 import { BudgetIntegration } from "../services/budget-integration";
+import { BudgetHierarchyCache } from "../services/budget-hierarchy";
 import { CreateBudgetRequest, RecordUsageRequest } from "../types/budget";
 
 // Mock the database connection
@@ -19,15 +20,36 @@ jest.mock("../services/database", () => ({
   },
 }));
 
+// Mock the shared usage counters
+jest.mock("ioredis", () =>
+  jest.fn().mockImplementation(() => ({
+    eval: jest.fn().mockResolvedValue("12.5"),
+    get: jest.fn().mockResolvedValue(null),
+    incrbyfloat: jest.fn().mockResolvedValue("0"),
+    on: jest.fn(),
+    disconnect: jest.fn(),
+  })),
+);
+
 describe("Budget Management System", () => {
   let budgetRegistry: BudgetRegistry;
   let budgetTracker: BudgetTracker;
   let budgetIntegration: BudgetIntegration;
+  let hierarchyCache: BudgetHierarchyCache;
 
   beforeEach(() => {
     budgetRegistry = new BudgetRegistry();
     budgetTracker = new BudgetTracker();
-    budgetIntegration = new BudgetIntegration();
+    hierarchyCache = new BudgetHierarchyCache(
+      undefined,
+      budgetRegistry,
+      budgetTracker,
+    );
+    budgetIntegration = new BudgetIntegration(hierarchyCache);
+  });
+
+  afterEach(() => {
+    hierarchyCache.close();
   });
 
   describe("BudgetRegistry", () => {
@@ -176,6 +198,197 @@ describe("Budget Management System", () => {
       expect(mockClient.query).toHaveBeenCalledWith("COMMIT");
     });
 
+    test("should aggregate usage for approximate budgets", async () => {
+      const budgetId = "budget-123";
+      const usageRequest: RecordUsageRequest = {
+        amount: 2.5,
+        currency: "USD",
+        source: "relaycore",
+        metadata: { modelId: "gpt-4" },
+      };
+
+      const mockClient = {
+        query: jest
+          .fn()
+          .mockResolvedValueOnce(undefined) // BEGIN
+          .mockResolvedValueOnce({
+            rows: [
+              {
+                id: budgetId,
+                currency: "USD",
+                amount: "1000",
+                tags: { usage_accounting: "approximate" },
+              },
+            ],
+          }) // budget check
+          .mockResolvedValueOnce({ rows: [{ id: "usage-1", amount: "2.5" }] }) // insert usage
+          .mockResolvedValueOnce(undefined), // COMMIT
+        release: jest.fn(),
+      };
+
+      const { DatabaseConnection } = require("../services/database");
+      DatabaseConnection.getClient.mockClear();
+      DatabaseConnection.getClient.mockResolvedValue(mockClient);
+      DatabaseConnection.query.mockClear();
+      DatabaseConnection.query.mockResolvedValueOnce({ rows: [] }); // flush
+
+      // First record loads the budget settings through the exact path
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      expect(DatabaseConnection.getClient).toHaveBeenCalledTimes(1);
+
+      await budgetTracker.close();
+
+      const [sql, values] = DatabaseConnection.query.mock.calls[0];
+      expect(sql).toContain("INSERT INTO budget_usage_records");
+      expect(values[2]).toBe(5);
+      expect(JSON.parse(values[7])).toMatchObject({
+        aggregated: true,
+        recordCount: 2,
+        modelIds: ["gpt-4"],
+      });
+    });
+
+    test("should flag usage past the limit of an approximate budget", async () => {
+      const budgetId = "budget-small";
+      const usageRequest: RecordUsageRequest = {
+        amount: 2.5,
+        currency: "USD",
+        source: "relaycore",
+        metadata: {},
+      };
+
+      const mockClient = {
+        query: jest
+          .fn()
+          .mockResolvedValueOnce(undefined) // BEGIN
+          .mockResolvedValueOnce({
+            rows: [
+              {
+                id: budgetId,
+                currency: "USD",
+                amount: "10",
+                tags: { usage_accounting: "approximate" },
+              },
+            ],
+          }) // budget check
+          .mockResolvedValueOnce({ rows: [{ id: "usage-1", amount: "2.5" }] }) // insert usage
+          .mockResolvedValueOnce(undefined), // COMMIT
+        release: jest.fn(),
+      };
+
+      const { DatabaseConnection } = require("../services/database");
+      DatabaseConnection.getClient.mockResolvedValue(mockClient);
+      DatabaseConnection.query.mockResolvedValue({ rows: [] });
+
+      const exceeded = jest.fn();
+      budgetEvents.on("budget-exceeded", exceeded);
+
+      // The shared counter reports 12.5 against a limit of 10
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      const result = await budgetTracker.recordUsage(budgetId, usageRequest);
+      await budgetTracker.close();
+      budgetEvents.off("budget-exceeded", exceeded);
+
+      expect(result.limitExceeded).toBe(true);
+      expect(exceeded).toHaveBeenCalledWith({
+        budgetId,
+        currentAmount: 12.5,
+        limit: 10,
+      });
+    });
+
+    test("should flush usage recorded while a flush is running", async () => {
+      const budgetId = "budget-busy";
+      const usageRequest: RecordUsageRequest = {
+        amount: 2,
+        currency: "USD",
+        source: "relaycore",
+        metadata: {},
+      };
+
+      const { DatabaseConnection } = require("../services/database");
+      DatabaseConnection.getClient.mockResolvedValue({
+        query: jest
+          .fn()
+          .mockResolvedValueOnce(undefined) // BEGIN
+          .mockResolvedValueOnce({
+            rows: [
+              {
+                id: budgetId,
+                currency: "USD",
+                amount: "1000",
+                tags: { usage_accounting: "approximate" },
+              },
+            ],
+          }) // budget check
+          .mockResolvedValueOnce({ rows: [{ id: "usage-1", amount: "2" }] }) // insert usage
+          .mockResolvedValueOnce(undefined), // COMMIT
+        release: jest.fn(),
+      });
+
+      let finishFirstWrite: (value: unknown) => void = () => undefined;
+      DatabaseConnection.query.mockClear();
+      DatabaseConnection.query
+        .mockImplementationOnce(
+          () => new Promise((resolve) => (finishFirstWrite = resolve)),
+        )
+        .mockResolvedValue({ rows: [] });
+
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+
+      const flushed = budgetTracker.flush();
+      await budgetTracker.recordUsage(budgetId, { ...usageRequest, amount: 3 });
+      finishFirstWrite({ rows: [] });
+      await flushed;
+      await budgetTracker.close();
+
+      const amounts = DatabaseConnection.query.mock.calls.map(
+        (call: any[]) => call[1][2],
+      );
+      expect(amounts).toEqual([2, 3]);
+    });
+
+    test("should disconnect Redis even when the last flush fails", async () => {
+      const budgetId = "budget-down";
+      const usageRequest: RecordUsageRequest = {
+        amount: 2,
+        currency: "USD",
+        source: "relaycore",
+        metadata: {},
+      };
+
+      const { DatabaseConnection } = require("../services/database");
+      DatabaseConnection.getClient.mockResolvedValue({
+        query: jest
+          .fn()
+          .mockResolvedValueOnce(undefined) // BEGIN
+          .mockResolvedValueOnce({
+            rows: [
+              {
+                id: budgetId,
+                currency: "USD",
+                amount: "1000",
+                tags: { usage_accounting: "approximate" },
+              },
+            ],
+          }) // budget check
+          .mockResolvedValueOnce({ rows: [{ id: "usage-1", amount: "2" }] }) // insert usage
+          .mockResolvedValueOnce(undefined), // COMMIT
+        release: jest.fn(),
+      });
+      DatabaseConnection.query.mockRejectedValueOnce(new Error("db down"));
+
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      await budgetTracker.recordUsage(budgetId, usageRequest);
+      const redis = (budgetTracker as any).redis;
+
+      await expect(budgetTracker.close()).rejects.toThrow("db down");
+      expect(redis.disconnect).toHaveBeenCalled();
+    });
+
     test("should check budget constraints correctly", async () => {
       const budgetId = "budget-123";
       const estimatedCost = 100;
@@ -235,13 +448,13 @@ describe("Budget Management System", () => {
 
       // Mock budget registry responses
       jest
-        .spyOn(budgetRegistry, "listBudgets")
+        .spyOn(hierarchyCache, "getScopeBudgets")
         .mockResolvedValueOnce([{ id: "user-budget-1" } as any]) // user budgets
         .mockResolvedValueOnce([{ id: "team-budget-1" } as any]); // team budgets
 
       // Mock budget tracker responses
       jest
-        .spyOn(budgetTracker, "checkBudgetConstraints")
+        .spyOn(hierarchyCache, "checkConstraints")
         .mockResolvedValueOnce({
           budgetId: "user-budget-1",
           estimatedCost,
@@ -273,11 +486,11 @@ describe("Budget Management System", () => {
       const estimatedCost = 200;
 
       jest
-        .spyOn(budgetRegistry, "listBudgets")
+        .spyOn(hierarchyCache, "getScopeBudgets")
         .mockResolvedValueOnce([{ id: "user-budget-1" } as any]);
 
       jest
-        .spyOn(budgetTracker, "checkBudgetConstraints")
+        .spyOn(hierarchyCache, "checkConstraints")
         .mockResolvedValueOnce({
           budgetId: "user-budget-1",
           estimatedCost,
@@ -298,6 +511,125 @@ describe("Budget Management System", () => {
     });
   });
 
+  describe("BudgetHierarchyCache", () => {
+    const budget = { id: "budget-1", currency: "USD", alerts: [] } as any;
+    const status = {
+      budgetId: "budget-1",
+      currentAmount: 90,
+      limit: 100,
+      currency: "USD",
+      percentUsed: 90,
+      remaining: 10,
+    } as any;
+
+    test("should serve repeated checks from memory", async () => {
+      const listBudgets = jest
+        .spyOn(budgetRegistry, "listBudgets")
+        .mockResolvedValue([budget]);
+      const getBudgetStatus = jest
+        .spyOn(budgetTracker, "getBudgetStatus")
+        .mockResolvedValue({ ...status });
+
+      for (let i = 0; i < 3; i++) {
+        await budgetIntegration.checkRequestConstraints("user-123");
+      }
+
+      expect(listBudgets).toHaveBeenCalledTimes(1);
+      expect(getBudgetStatus).toHaveBeenCalledTimes(1);
+    });
+
+    test("should apply recorded usage and evict on budget changes", async () => {
+      const listBudgets = jest
+        .spyOn(budgetRegistry, "listBudgets")
+        .mockResolvedValue([
+          { ...budget, alerts: [{ threshold: 100, actions: ["block-all"] }] },
+        ]);
+      jest
+        .spyOn(budgetTracker, "getBudgetStatus")
+        .mockResolvedValue({ ...status });
+
+      let result = await budgetIntegration.checkRequestConstraints(
+        "user-123",
+        undefined,
+        undefined,
+        5,
+      );
+      expect(result.canProceed).toBe(true);
+
+      budgetEvents.emit("usage-recorded", { budgetId: "budget-1", amount: 6 });
+
+      result = await budgetIntegration.checkRequestConstraints(
+        "user-123",
+        undefined,
+        undefined,
+        5,
+      );
+      expect(result.canProceed).toBe(false);
+
+      budgetEvents.emit("budget-changed", {
+        budgetId: "budget-1",
+        scopeType: "user",
+        scopeId: "user-123",
+        change: "updated",
+      });
+      await budgetIntegration.checkRequestConstraints("user-123");
+
+      expect(listBudgets).toHaveBeenCalledTimes(2);
+    });
+
+    test("should not cache a hierarchy whose lookup failed", async () => {
+      const { DatabaseConnection } = require("../services/database");
+      DatabaseConnection.query.mockReset();
+      DatabaseConnection.query
+        .mockRejectedValueOnce(new Error("db down"))
+        .mockResolvedValueOnce({ rows: [] })
+        .mockResolvedValueOnce({ rows: [{ team_id: "team-1" }] })
+        .mockResolvedValueOnce({ rows: [{ organization_id: "org-1" }] });
+
+      await expect(
+        hierarchyCache.getUserHierarchy("user-123"),
+      ).rejects.toThrow("db down");
+
+      const hierarchy = await hierarchyCache.getUserHierarchy("user-123");
+      expect(hierarchy.scopes).toEqual([
+        { scopeType: "user", scopeId: "user-123" },
+        { scopeType: "team", scopeId: "team-1" },
+        { scopeType: "organization", scopeId: "org-1" },
+      ]);
+    });
+
+    test("should cap cached budgets and snapshots", async () => {
+      const capped = new BudgetHierarchyCache(
+        {
+          hierarchyTtlMs: 60000,
+          scopeTtlMs: 60000,
+          snapshotTtlMs: 60000,
+          maxUsers: 10,
+          maxBudgets: 2,
+        },
+        budgetRegistry,
+        budgetTracker,
+      );
+      const getBudgetStatus = jest
+        .spyOn(budgetTracker, "getBudgetStatus")
+        .mockImplementation(async (budgetId) => ({ ...status, budgetId }));
+
+      try {
+        for (const budgetId of ["budget-1", "budget-2", "budget-3"]) {
+          await capped.getStatus(budgetId);
+        }
+        await capped.getStatus("budget-3");
+        await capped.getStatus("budget-1");
+      } finally {
+        capped.close();
+      }
+
+      // budget-1 was the oldest snapshot, so the third load evicted it
+      expect(getBudgetStatus).toHaveBeenCalledTimes(4);
+      expect(getBudgetStatus).toHaveBeenLastCalledWith("budget-1");
+    });
+  });
+
   describe("Error Handling", () => {
     test("should handle database connection errors gracefully", async () => {
       // Mock the DatabaseConnection to throw an error
@@ -0,0 +1,112 @@
+import {
+  AdmissionConfig,
+  ProviderAdmissionController,
+  defaultAdmissionConfig,
+  parseResetMs,
+} from "../services/provider-admission";
+
+const createController = (
+  overrides: Partial<AdmissionConfig["defaults"]>,
+): ProviderAdmissionController =>
+  new ProviderAdmissionController({
+    ...defaultAdmissionConfig,
+    defaults: { ...defaultAdmissionConfig.defaults, ...overrides },
+    providers: {},
+  });
+
+describe("ProviderAdmissionController", () => {
+  it("should parse provider reset formats", () => {
+    expect(parseResetMs("6m0s")).toBe(360000);
+    expect(parseResetMs("250ms")).toBe(250);
+    expect(parseResetMs("2")).toBe(2000);
+    expect(parseResetMs("soon")).toBeUndefined();
+
+    const reset = new Date(Date.now() + 5000).toISOString();
+    expect(parseResetMs(reset)).toBeGreaterThan(4000);
+  });
+
+  it("should defer requests once the request bucket is empty", () => {
+    const controller = createController({ requestsPerMinute: 2 });
+
+    expect(controller.tryAcquire("openai", "gpt-4", 10).admitted).toBe(true);
+    expect(controller.tryAcquire("openai", "gpt-4", 10).admitted).toBe(true);
+
+    const denied = controller.tryAcquire("openai", "gpt-4", 10);
+    expect(denied.admitted).toBe(false);
+    if (!denied.admitted) {
+      expect(denied.retryInMs).toBeGreaterThan(0);
+      expect(denied.retryInMs).toBeLessThanOrEqual(30000);
+    }
+
+    // Other models keep their own budget
+    expect(controller.tryAcquire("openai", "gpt-3.5", 10).admitted).toBe(true);
+  });
+
+  it("should follow upstream rate-limit headers", () => {
+    const controller = createController({});
+
+    controller.updateFromHeaders("anthropic", "claude", {
+      "anthropic-ratelimit-requests-limit": "50",
+      "anthropic-ratelimit-requests-remaining": "0",
+      "anthropic-ratelimit-requests-reset": new Date(
+        Date.now() + 3000,
+      ).toISOString(),
+    });
+
+    const [lane] = controller.getMetrics();
+    expect(lane.requestsPerMinute).toBe(50);
+    expect(lane.blockedForMs).toBeGreaterThan(2000);
+    expect(controller.tryAcquire("anthropic", "claude", 10).admitted).toBe(
+      false,
+    );
+  });
+
+  it("should halve the concurrency limit on 429 responses", () => {
+    const controller = createController({ initialConcurrency: 8 });
+
+    const result = controller.tryAcquire("openai", "gpt-4", 10);
+    expect(result.admitted).toBe(true);
+    if (result.admitted) {
+      result.ticket.release({ status: 429, latencyMs: 50 });
+      result.ticket.release({ status: 429, latencyMs: 50 }); // No-op
+    }
+
+    const [lane] = controller.getMetrics();
+    expect(lane.concurrencyLimit).toBe(4);
+    expect(lane.inFlight).toBe(0);
+    expect(lane.throttled).toBe(1);
+  });
+
+  it("should count each deferred request once", () => {
+    const controller = createController({ requestsPerMinute: 1 });
+
+    expect(controller.tryAcquire("openai", "gpt-4", 10).admitted).toBe(true);
+    expect(controller.tryAcquire("openai", "gpt-4", 10).admitted).toBe(false);
+    expect(controller.tryAcquire("openai", "gpt-4", 10, true).admitted).toBe(
+      false,
+    );
+
+    const [lane] = controller.getMetrics();
+    expect(lane.deferred).toBe(1);
+  });
+
+  it("should compare whole-response latency per output token", () => {
+    const controller = createController({ initialConcurrency: 4 });
+    const complete = (latencyMs: number, outputTokens: number) => {
+      const result = controller.tryAcquire("openai", "gpt-4", 10);
+      if (result.admitted) {
+        result.ticket.release({ status: 200, latencyMs, outputTokens });
+      }
+    };
+
+    complete(100, 10);
+    complete(2000, 200); // Long answer at the same speed
+    expect(controller.getMetrics()[0].concurrencyLimit).toBe(4);
+
+    complete(5000, 100); // Slower per token
+    complete(5000, 100);
+    const [lane] = controller.getMetrics();
+    expect(lane.concurrencyLimit).toBe(3);
+    expect(lane.latencyBaselineMs).toBeNull();
+  });
+});
@@ -0,0 +1,45 @@
+import { unlinkMatching } from "../utils/redis-scan";
+
+const createRedis = (keys: string[], pageSize: number) => {
+  const store = new Set(keys);
+  return {
+    store,
+    scan: jest.fn(async (cursor: string, _m: string, pattern: string) => {
+      // Pages over the initial keyspace, as SCAN does while keys are removed
+      const prefix = pattern.replace("*", "");
+      const end = parseInt(cursor, 10) + pageSize;
+      const page = keys.slice(end - pageSize, end);
+      const next = end >= keys.length ? "0" : String(end);
+      return [next, page.filter((key) => key.startsWith(prefix))];
+    }),
+    unlink: jest.fn(async (...batch: string[]) => {
+      batch.forEach((key) => store.delete(key));
+      return batch.length;
+    }),
+  };
+};
+
+describe("unlinkMatching", () => {
+  it("should unlink matching keys batch by batch", async () => {
+    const redis = createRedis(
+      ["a:1", "a:2", "a:3", "b:1", "b:2", "a:4", "a:5"],
+      3,
+    );
+    const batches: string[][] = [];
+
+    const removed = await unlinkMatching(redis as any, "a:*", {
+      onBatch: (keys) => batches.push(keys),
+    });
+
+    expect(removed).toBe(5);
+    expect(Array.from(redis.store)).toEqual(["b:1", "b:2"]);
+    expect(batches.length).toBeGreaterThan(1);
+  });
+
+  it("should not call UNLINK when nothing matches", async () => {
+    const redis = createRedis(["b:1"], 10);
+
+    expect(await unlinkMatching(redis as any, "a:*")).toBe(0);
+    expect(redis.unlink).not.toHaveBeenCalled();
+  });
+});
@@ -0,0 +1,119 @@
+import {
+  Priority,
+  PriorityRequestQueue,
+  QueueConfig,
+} from "../services/request-queue";
+import { CacheManager } from "../services/cache-manager";
+
+const createQueue = (
+  overrides: Partial<QueueConfig>,
+  handler: QueueConfig["executionHandler"],
+): PriorityRequestQueue =>
+  new PriorityRequestQueue(
+    {
+      maxSize: 10000,
+      concurrency: { openai: 1 },
+      processingStrategy: "priority",
+      timeoutMs: 1000,
+      retryDelayMs: 10,
+      enableMetrics: true,
+      executionHandler: handler,
+      ...overrides,
+    },
+    {} as CacheManager,
+  );
+
+describe("PriorityRequestQueue", () => {
+  it("should dispatch by priority within a provider", async () => {
+    const order: string[] = [];
+    const queue = createQueue({ agingIntervalMs: 60000 }, async (_, payload) =>
+      order.push(payload),
+    );
+
+    queue.pause();
+    const requests = [
+      queue.enqueue("openai", "low", Priority.LOW),
+      queue.enqueue("openai", "critical", Priority.CRITICAL),
+      queue.enqueue("openai", "normal", Priority.NORMAL),
+    ];
+    queue.resume();
+    await Promise.all(requests);
+
+    expect(order).toEqual(["critical", "normal", "low"]);
+  });
+
+  it("should let long-waiting requests overtake newer urgent ones", async () => {
+    const order: string[] = [];
+    const queue = createQueue({ agingIntervalMs: 10 }, async (_, payload) =>
+      order.push(payload),
+    );
+
+    queue.pause();
+    const waiting = queue.enqueue("openai", "old-low", Priority.LOW);
+    await new Promise((resolve) => setTimeout(resolve, 60));
+    const urgent = queue.enqueue("openai", "new-critical", Priority.CRITICAL);
+    queue.resume();
+    await Promise.all([waiting, urgent]);
+
+    expect(order).toEqual(["old-low", "new-critical"]);
+  });
+
+  it("should give each free slot to the most urgent lane head", async () => {
+    const started: string[] = [];
+    const queue = createQueue(
+      { concurrency: { openai: 2 }, agingIntervalMs: 60000 },
+      async (_, payload) => {
+        started.push(payload);
+        await new Promise((resolve) => setTimeout(resolve, 5));
+      },
+    );
+
+    queue.pause();
+    const requests = [
+      queue.enqueue("openai", "a-critical", Priority.CRITICAL, { model: "a" }),
+      queue.enqueue("openai", "a-low-1", Priority.LOW, { model: "a" }),
+      queue.enqueue("openai", "a-low-2", Priority.LOW, { model: "a" }),
+      queue.enqueue("openai", "b-critical", Priority.CRITICAL, { model: "b" }),
+    ];
+    queue.resume();
+    await Promise.all(requests);
+
+    expect(started.slice(0, 2)).toEqual(["a-critical", "b-critical"]);
+  });
+
+  it("should start queued requests as soon as slots free up", async () => {
+    const queue = createQueue(
+      { concurrency: { openai: 20 } },
+      async (_, payload) => {
+        await new Promise((resolve) => setTimeout(resolve, 5));
+        return payload;
+      },
+    );
+
+    const startedAt = Date.now();
+    const results = await Promise.all(
+      Array.from({ length: 400 }, (_, i) => queue.enqueue("openai", i)),
+    );
+
+    expect(results).toHaveLength(400);
+    // A fixed dispatch tick would need seconds for this many requests
+    expect(Date.now() - startedAt).toBeLessThan(2000);
+    expect(queue.getStatus().queueSize).toBe(0);
+  });
+
+  it("should abort the handler when a request times out", async () => {
+    let signal: AbortSignal | undefined;
+    const queue = createQueue(
+      { timeoutMs: 20 },
+      (_provider, _payload, _ticket, attemptSignal) => {
+        signal = attemptSignal;
+        return new Promise(() => undefined);
+      },
+    );
+
+    await expect(
+      queue.enqueue("openai", "slow", Priority.NORMAL, { maxRetries: 0 }),
+    ).rejects.toThrow("Request timeout");
+    expect(signal?.aborted).toBe(true);
+  });
+});
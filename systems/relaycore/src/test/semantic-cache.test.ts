@@ -0,0 +1,182 @@
+import {
+  SemanticCache,
+  SemanticCacheConfig,
+  SemanticSearchRequest,
+} from "../services/semantic-cache";
+import { CacheManager } from "../services/cache-manager";
+
+// Prompts map to fixed embeddings so similarity is controlled by the test
+const EMBEDDINGS: Record<string, number[]> = {
+  a: [1, 0, 0, 0],
+  "a-close": [0.95, 0.31, 0, 0],
+  b: [0, 1, 0, 0],
+  c: [0, 0, 1, 0],
+};
+
+// In-memory stand-in for the Redis calls the semantic cache makes
+const createCacheManager = (): CacheManager => {
+  const values = new Map<string, any>();
+  const hashes = new Map<string, Record<string, string>>();
+
+  return {
+    getShared: async (key: string) => values.get(key) ?? null,
+    set: async (key: string, value: any) => {
+      values.set(key, value);
+    },
+    getHash: async (key: string) => ({ ...(hashes.get(key) || {}) }),
+    updateHash: async (
+      key: string,
+      update: {
+        increment?: Record<string, number>;
+        set?: Record<string, string | number>;
+        remove?: string[];
+      },
+    ) => {
+      const hash = hashes.get(key) || {};
+      for (const [field, amount] of Object.entries(update.increment || {})) {
+        hash[field] = String(Number(hash[field] || 0) + amount);
+      }
+      for (const [field, value] of Object.entries(update.set || {})) {
+        hash[field] = String(value);
+      }
+      for (const field of update.remove || []) {
+        delete hash[field];
+      }
+      hashes.set(key, hash);
+    },
+  } as unknown as CacheManager;
+};
+
+describe("SemanticCache", () => {
+  let now: number;
+
+  const createCache = (
+    overrides: Partial<SemanticCacheConfig> = {},
+  ): SemanticCache => {
+    const cache = new SemanticCache(
+      {
+        enabled: true,
+        similarityThreshold: 0.9,
+        maxCacheSize: 10,
+        ttlSeconds: 5,
+        embeddingProvider: "local",
+        indexRefreshSeconds: 60,
+        evictionPolicy: "lru",
+        ...overrides,
+      },
+      createCacheManager(),
+    );
+    jest
+      .spyOn(cache as any, "getEmbedding")
+      .mockImplementation(async (prompt: any) => EMBEDDINGS[prompt]);
+    return cache;
+  };
+
+  const request = (prompt: string): SemanticSearchRequest => ({
+    prompt,
+    provider: "openai",
+    model: "gpt-4",
+  });
+
+  const store = async (
+    cache: SemanticCache,
+    prompt: string,
+    cost = 0.01,
+  ): Promise<void> => {
+    now += 1;
+    await cache.storeResponse(request(prompt), { content: prompt, cost });
+  };
+
+  const lookup = async (
+    cache: SemanticCache,
+    prompt: string,
+  ): Promise<string | null> => {
+    now += 1;
+    const match = await cache.checkCache(request(prompt));
+    return match ? match.response.content : null;
+  };
+
+  beforeEach(() => {
+    now = 1_000_000;
+    jest.spyOn(Date, "now").mockImplementation(() => now);
+  });
+
+  afterEach(() => {
+    jest.restoreAllMocks();
+  });
+
+  it("should stop matching entries once their TTL has passed", async () => {
+    const cache = createCache();
+    await store(cache, "a");
+
+    expect(await lookup(cache, "a")).toBe("a");
+
+    now += 6000;
+    expect(await lookup(cache, "a")).toBeNull();
+    expect((await cache.getCacheStats()).evictions.expired).toBe(1);
+  });
+
+  it("should fall back to a live runner-up when the best match expired", async () => {
+    const cache = createCache();
+    await store(cache, "a");
+    now += 3000;
+    await store(cache, "a-close");
+
+    // Index both entries while they are live
+    expect(await lookup(cache, "a")).toBe("a");
+
+    now += 3000;
+    expect(await lookup(cache, "a")).toBe("a-close");
+  });
+
+  it("should evict the least recently used entry under lru", async () => {
+    const cache = createCache({ maxCacheSize: 2, evictionPolicy: "lru" });
+    await store(cache, "a");
+    await store(cache, "b");
+    expect(await lookup(cache, "a")).toBe("a");
+
+    await store(cache, "c");
+
+    expect(await lookup(cache, "a")).toBe("a");
+    expect(await lookup(cache, "b")).toBeNull();
+    expect(await lookup(cache, "c")).toBe("c");
+  });
+
+  it("should evict the least frequently used entry under lfu", async () => {
+    const cache = createCache({ maxCacheSize: 2, evictionPolicy: "lfu" });
+    await store(cache, "a");
+    await store(cache, "b");
+    await lookup(cache, "b");
+    await lookup(cache, "b");
+    await lookup(cache, "a");
+
+    // Recency alone would evict b, which has more hits than a
+    await store(cache, "c");
+
+    expect(await lookup(cache, "b")).toBe("b");
+    expect(await lookup(cache, "a")).toBe("a");
+    expect(await lookup(cache, "c")).toBeNull();
+  });
+
+  it("should evict the entry saving the least cost under cost", async () => {
+    const cache = createCache({ maxCacheSize: 2, evictionPolicy: "cost" });
+    await store(cache, "a", 0.001);
+    await store(cache, "b", 0.1);
+    await store(cache, "c", 0.05);
+
+    expect(await lookup(cache, "a")).toBeNull();
+    expect(await lookup(cache, "b")).toBe("b");
+    expect(await lookup(cache, "c")).toBe("c");
+  });
+
+  it("should evict by cost when no policy is configured", async () => {
+    const cache = createCache({ maxCacheSize: 2, evictionPolicy: undefined });
+    await store(cache, "a", 0.001);
+    await store(cache, "b", 0.1);
+    await store(cache, "c", 0.05);
+
+    expect((await cache.getCacheStats()).evictionPolicy).toBe("cost");
+    expect(await lookup(cache, "a")).toBeNull();
+    expect(await lookup(cache, "b")).toBe("b");
+  });
+});
@@ -0,0 +1,69 @@
+import { SingleFlight } from "../utils/single-flight";
+
+const delayed = <T>(value: T, ms: number): Promise<T> =>
+  new Promise((resolve) => setTimeout(() => resolve(value), ms));
+
+describe("SingleFlight", () => {
+  it("should share one execution between concurrent callers", async () => {
+    const flight = new SingleFlight<string>();
+    let calls = 0;
+    const fn = () => {
+      calls++;
+      return delayed("response", 20);
+    };
+
+    const results = await Promise.all([
+      flight.run("prompt", fn),
+      flight.run("prompt", fn),
+      flight.run("prompt", fn),
+    ]);
+
+    expect(calls).toBe(1);
+    expect(results.map((result) => result.value)).toEqual([
+      "response",
+      "response",
+      "response",
+    ]);
+    expect(results.map((result) => result.shared)).toEqual([
+      false,
+      true,
+      true,
+    ]);
+    expect(flight.size).toBe(0);
+  });
+
+  it("should let a caller stop waiting without cancelling the others", async () => {
+    const flight = new SingleFlight<string>();
+    const controller = new AbortController();
+    const fn = () => delayed("response", 30);
+
+    const leader = flight.run("prompt", fn);
+    const aborted = flight.run("prompt", fn, { signal: controller.signal });
+    const timedOut = flight.run("prompt", fn, { timeoutMs: 5 });
+    controller.abort();
+
+    await expect(aborted).rejects.toThrow("Request aborted");
+    await expect(timedOut).rejects.toThrow("Request timeout");
+    await expect(leader).resolves.toEqual({
+      value: "response",
+      shared: false,
+    });
+  });
+
+  it("should pass failures to every caller and then start afresh", async () => {
+    const flight = new SingleFlight<string>();
+    const failing = async () => {
+      await delayed(null, 5);
+      throw new Error("provider unavailable");
+    };
+
+    const results = await Promise.allSettled([
+      flight.run("prompt", failing),
+      flight.run("prompt", failing),
+    ]);
+    expect(results.every((result) => result.status === "rejected")).toBe(true);
+
+    const retry = await flight.run("prompt", () => delayed("response", 1));
+    expect(retry.shared).toBe(false);
+  });
+});
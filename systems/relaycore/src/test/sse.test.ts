@@ -0,0 +1,54 @@
+import { ServerSentEvent, parseEventStream } from "../utils/sse";
+
+async function* chunked(text: string, size: number): AsyncGenerator<Buffer> {
+  for (let i = 0; i < text.length; i += size) {
+    yield Buffer.from(text.slice(i, i + size));
+  }
+}
+
+const collect = async (
+  stream: AsyncIterable<Buffer>,
+): Promise<ServerSentEvent[]> => {
+  const events: ServerSentEvent[] = [];
+  for await (const event of parseEventStream(stream)) {
+    events.push(event);
+  }
+  return events;
+};
+
+describe("parseEventStream", () => {
+  it("should reassemble events split across chunks", async () => {
+    const body =
+      'event: message_start\ndata: {"type":"message_start"}\n\n' +
+      'event: content_block_delta\r\ndata: {"text":"Hi"}\r\n\r\n' +
+      "data: [DONE]\n\n";
+
+    expect(await collect(chunked(body, 3))).toEqual([
+      { event: "message_start", data: '{"type":"message_start"}' },
+      { event: "content_block_delta", data: '{"text":"Hi"}' },
+      { event: undefined, data: "[DONE]" },
+    ]);
+  });
+
+  it("should skip comments and join multi-line data", async () => {
+    const body = ": keep-alive\n\ndata: first\ndata: second";
+
+    expect(await collect(chunked(body, 5))).toEqual([
+      { event: undefined, data: "first\nsecond" },
+    ]);
+  });
+
+  it("should decode characters split across chunk boundaries", async () => {
+    const bytes = Buffer.from('data: {"text":"héllo 👋"}\n\n');
+
+    async function* byteChunks(): AsyncGenerator<Buffer> {
+      for (let i = 0; i < bytes.length; i++) {
+        yield bytes.subarray(i, i + 1);
+      }
+    }
+
+    expect(await collect(byteChunks())).toEqual([
+      { event: undefined, data: '{"text":"héllo 👋"}' },
+    ]);
+  });
+});
@@ -1,4 +1,10 @@
-import { SteeringRulesEngine } from "../services/steering-rules";
+import * as fs from "fs";
+import * as os from "os";
+import * as path from "path";
+import {
+  SteeringRulesEngine,
+  defaultSteeringRulesOptions,
+} from "../services/steering-rules";
 import { AIRequest } from "../models/request";
 
 describe("SteeringRulesEngine", () => {
@@ -9,6 +15,10 @@ describe("SteeringRulesEngine", () => {
     await engine.loadSteeringRules();
   });
 
+  afterEach(() => {
+    engine.close();
+  });
+
   describe("Rule Validation", () => {
     it("should validate rules successfully", async () => {
       const isValid = await engine.validateRules();
@@ -97,6 +107,32 @@ describe("SteeringRulesEngine", () => {
     });
   });
 
+  describe("Compiled Rules", () => {
+    it("should check indexed rules only when their key matches", async () => {
+      const request: AIRequest = {
+        prompt: "A".repeat(600),
+        context: { task_type: "summary", user_id: "test-user" },
+      };
+
+      const decision = await engine.determineRouting(request);
+
+      expect(decision.routing_rules_applied).toContain("default");
+    });
+
+    it("should share routing features between equivalent requests", async () => {
+      const first = await engine.getRoutingFeatures({
+        prompt: "Hello",
+        context: { budget_constraint: "low", user_id: "a" },
+      } as AIRequest);
+      const second = await engine.getRoutingFeatures({
+        prompt: "Howdy",
+        context: { budget_constraint: "low", user_id: "b" },
+      } as AIRequest);
+
+      expect(first).toBe(second);
+    });
+  });
+
   describe("Cost Constraints", () => {
     it("should respect daily budget limits", async () => {
       // Simulate high daily spend
@@ -133,7 +169,12 @@ describe("SteeringRulesEngine", () => {
   describe("Error Handling", () => {
     it("should provide fallback routing on errors", async () => {
       // Create engine without loading rules
-      const errorEngine = new SteeringRulesEngine();
+      const errorEngine = new SteeringRulesEngine({ hotReload: false });
+      jest
+        .spyOn(errorEngine as any, "createRoutingDecision")
+        .mockImplementation(() => {
+          throw new Error("Rule evaluation failed");
+        });
 
       const request: AIRequest = {
         prompt: "Test request",
@@ -147,4 +188,65 @@ describe("SteeringRulesEngine", () => {
       expect(decision.confidence_score).toBeLessThan(0.8);
     });
   });
+
+  describe("Hot Reload", () => {
+    const automotiveRequest: AIRequest = {
+      prompt: "Analyze vehicle diagnostics data",
+      context: { automotive_context: true, user_id: "test-user" },
+    };
+    let dir: string;
+    let configPath: string;
+    let watched: SteeringRulesEngine;
+
+    // Save the way editors do: write a new file and rename it into place
+    const saveRules = (content: string): void => {
+      fs.writeFileSync(`${configPath}.tmp`, content);
+      fs.renameSync(`${configPath}.tmp`, configPath);
+    };
+
+    const routedModel = async (): Promise<string> =>
+      (await watched.determineRouting(automotiveRequest)).model;
+
+    const waitForModel = async (model: string): Promise<void> => {
+      const deadline = Date.now() + 5000;
+      while ((await routedModel()) !== model && Date.now() < deadline) {
+        await new Promise((resolve) => setTimeout(resolve, 50));
+      }
+    };
+
+    beforeEach(async () => {
+      dir = fs.mkdtempSync(path.join(os.tmpdir(), "steering-rules-"));
+      configPath = path.join(dir, "steering-rules.yaml");
+      fs.copyFileSync(defaultSteeringRulesOptions.configPath, configPath);
+      watched = new SteeringRulesEngine({ configPath, hotReload: true });
+      await watched.loadSteeringRules();
+    });
+
+    afterEach(() => {
+      watched.close();
+      fs.rmSync(dir, { recursive: true, force: true });
+    });
+
+    it("should reload rules saved by renaming over the file", async () => {
+      const original = fs.readFileSync(configPath, "utf8");
+      expect(await routedModel()).toBe("automotive-specialist-v1");
+
+      saveRules(original.replace("automotive-specialist-v1", "auto-v2"));
+      await waitForModel("auto-v2");
+      expect(await routedModel()).toBe("auto-v2");
+
+      // A second rename-save is still seen
+      saveRules(original.replace("automotive-specialist-v1", "auto-v3"));
+      await waitForModel("auto-v3");
+      expect(await routedModel()).toBe("auto-v3");
+    });
+
+    it("should keep the previous rules when a reload is invalid", async () => {
+      saveRules("routing_rules:\n  - name: broken\n");
+      await new Promise((resolve) => setTimeout(resolve, 500));
+
+      expect(await routedModel()).toBe("automotive-specialist-v1");
+      expect(await watched.validateRules()).toBe(true);
+    });
+  });
 });
@@ -0,0 +1,86 @@
+import { HnswIndex, toUnitVector } from "../services/vector-index";
+
+const randomVector = (dimension: number): Float32Array =>
+  toUnitVector(Array.from({ length: dimension }, () => Math.random() * 2 - 1));
+
+const bruteForceNearest = (
+  vectors: Map<string, Float32Array>,
+  query: Float32Array,
+): string => {
+  let bestId = "";
+  let bestScore = -Infinity;
+
+  for (const [id, vector] of vectors.entries()) {
+    let score = 0;
+    for (let i = 0; i < query.length; i++) {
+      score += query[i] * vector[i];
+    }
+    if (score > bestScore) {
+      bestScore = score;
+      bestId = id;
+    }
+  }
+
+  return bestId;
+};
+
+describe("HnswIndex", () => {
+  const dimension = 64;
+  let index: HnswIndex;
+  let vectors: Map<string, Float32Array>;
+
+  beforeEach(() => {
+    index = new HnswIndex(dimension);
+    vectors = new Map();
+
+    for (let i = 0; i < 1000; i++) {
+      const vector = randomVector(dimension);
+      vectors.set(`entry-${i}`, vector);
+      index.add(`entry-${i}`, vector);
+    }
+  });
+
+  it("should find stored vectors with near-perfect similarity", () => {
+    const [match] = index.search(vectors.get("entry-42")!, 1);
+
+    expect(match.id).toBe("entry-42");
+    expect(match.similarity).toBeCloseTo(1, 5);
+  });
+
+  it("should agree with a linear scan for nearby queries", () => {
+    let agreed = 0;
+
+    for (let i = 0; i < 50; i++) {
+      const base = vectors.get(`entry-${i * 13}`)!;
+      const query = toUnitVector(
+        Array.from(base, (value) => value + (Math.random() - 0.5) * 0.05),
+      );
+
+      const [match] = index.search(query, 1);
+      if (match.id === bruteForceNearest(vectors, query)) {
+        agreed++;
+      }
+    }
+
+    expect(agreed / 50).toBeGreaterThanOrEqual(0.95);
+  });
+
+  it("should never return removed vectors", () => {
+    for (let i = 0; i < 900; i++) {
+      index.remove(`entry-${i}`);
+      vectors.delete(`entry-${i}`);
+    }
+
+    expect(index.size).toBe(100);
+
+    const results = index.search(vectors.get("entry-950")!, 10);
+    expect(results[0].id).toBe("entry-950");
+    for (const result of results) {
+      expect(vectors.has(result.id)).toBe(true);
+    }
+  });
+
+  it("should ignore queries of another dimension", () => {
+    expect(index.search(randomVector(dimension * 2), 1)).toEqual([]);
+  });
+});
@@ -80,6 +80,7 @@ export interface UsageRecord {
   timestamp: string; // When the usage occurred
   source: UsageSource; // Source of the usage
   description?: string; // Optional description
+  limitExceeded?: boolean; // Set when this usage took the budget past its limit
   metadata: {
     requestId?: string; // Associated request ID
     modelId?: string; // AI model used
@@ -0,0 +1,95 @@
+/**
+ * Binary Heap
+ * Array-backed priority queue with O(log n) push and pop
+ */
+
+/**
+ * Returns a negative number when `a` must leave the heap before `b`
+ */
+export type HeapComparator<T> = (a: T, b: T) => number;
+
+export class BinaryHeap<T> {
+  private items: T[] = [];
+  private compare: HeapComparator<T>;
+
+  constructor(compare: HeapComparator<T>) {
+    this.compare = compare;
+  }
+
+  get size(): number {
+    return this.items.length;
+  }
+
+  peek(): T | undefined {
+    return this.items[0];
+  }
+
+  push(item: T): void {
+    this.items.push(item);
+    this.siftUp(this.items.length - 1);
+  }
+
+  pop(): T | undefined {
+    const top = this.items[0];
+    const last = this.items.pop();
+
+    if (this.items.length > 0 && last !== undefined) {
+      this.items[0] = last;
+      this.siftDown(0);
+    }
+
+    return top;
+  }
+
+  /**
+   * Unordered snapshot of the heap contents
+   */
+  toArray(): T[] {
+    return this.items.slice();
+  }
+
+  clear(): void {
+    this.items = [];
+  }
+
+  private siftUp(index: number): void {
+    const item = this.items[index];
+
+    while (index > 0) {
+      const parent = (index - 1) >> 1;
+      if (this.compare(item, this.items[parent]) >= 0) {
+        break;
+      }
+      this.items[index] = this.items[parent];
+      index = parent;
+    }
+
+    this.items[index] = item;
+  }
+
+  private siftDown(index: number): void {
+    const length = this.items.length;
+    const item = this.items[index];
+
+    while (true) {
+      const left = 2 * index + 1;
+      if (left >= length) {
+        break;
+      }
+
+      const right = left + 1;
+      const child =
+        right < length && this.compare(this.items[right], this.items[left]) < 0
+          ? right
+          : left;
+
+      if (this.compare(this.items[child], item) >= 0) {
+        break;
+      }
+      this.items[index] = this.items[child];
+      index = child;
+    }
+
+    this.items[index] = item;
+  }
+}
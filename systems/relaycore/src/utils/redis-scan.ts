@@ -0,0 +1,45 @@
+/**
+ * Redis Scan
+ * Pattern deletion with cursor SCAN and batched UNLINK, so invalidations
+ * never block Redis the way KEYS does
+ */
+
+import Redis from "ioredis";
+
+export interface UnlinkMatchingOptions {
+  count?: number; // SCAN hint: keys examined per round trip
+  onBatch?: (keys: string[]) => void; // Called after each batch is unlinked
+}
+
+/**
+ * Delete every key matching `pattern` and return how many were removed.
+ * Redis serves other clients between batches; UNLINK frees memory in the
+ * background. Keys written while the scan runs may be missed.
+ */
+export async function unlinkMatching(
+  redis: Redis,
+  pattern: string,
+  options: UnlinkMatchingOptions = {},
+): Promise<number> {
+  const count = options.count || 500;
+  let cursor = "0";
+  let removed = 0;
+
+  do {
+    const [next, keys] = await redis.scan(
+      cursor,
+      "MATCH",
+      pattern,
+      "COUNT",
+      count,
+    );
+    cursor = next;
+
+    if (keys.length > 0) {
+      removed += await redis.unlink(...keys);
+      options.onBatch?.(keys);
+    }
+  } while (cursor !== "0");
+
+  return removed;
+}
@@ -0,0 +1,103 @@
+/**
+ * Single Flight
+ * Collapses concurrent calls for the same key into one execution whose
+ * result every caller shares
+ */
+
+export interface SingleFlightOptions {
+  signal?: AbortSignal; // Stops this caller waiting; the shared call continues
+  timeoutMs?: number; // Longest this caller waits for the shared call
+}
+
+export interface SingleFlightResult<T> {
+  value: T;
+  shared: boolean; // True when another caller started the execution
+}
+
+export class SingleFlight<T> {
+  private inFlight: Map<string, Promise<T>> = new Map();
+
+  get size(): number {
+    return this.inFlight.size;
+  }
+
+  /**
+   * Run `fn` unless a call for `key` is already in flight, in which case wait
+   * for that call instead. Errors of the shared call reach every caller.
+   */
+  async run(
+    key: string,
+    fn: () => Promise<T>,
+    options: SingleFlightOptions = {},
+  ): Promise<SingleFlightResult<T>> {
+    if (options.signal?.aborted) {
+      throw new Error("Request aborted");
+    }
+
+    let flight = this.inFlight.get(key);
+    const shared = flight !== undefined;
+
+    if (!flight) {
+      flight = this.start(key, fn);
+    }
+
+    const value = await this.wait(flight, options);
+    return { value, shared };
+  }
+
+  private start(key: string, fn: () => Promise<T>): Promise<T> {
+    const flight = (async () => {
+      try {
+        return await fn();
+      } finally {
+        this.inFlight.delete(key);
+      }
+    })();
+
+    this.inFlight.set(key, flight);
+    return flight;
+  }
+
+  /**
+   * Wait for a flight on behalf of one caller, honouring that caller's own
+   * abort signal and timeout
+   */
+  private wait(flight: Promise<T>, options: SingleFlightOptions): Promise<T> {
+    const { signal, timeoutMs } = options;
+    if (!signal && !timeoutMs) {
+      return flight;
+    }
+
+    return new Promise<T>((resolve, reject) => {
+      let timeoutHandle: NodeJS.Timeout | undefined;
+
+      const onAbort = () => {
+        cleanup();
+        reject(new Error("Request aborted"));
+      };
+      const cleanup = () => {
+        clearTimeout(timeoutHandle);
+        signal?.removeEventListener("abort", onAbort);
+      };
+
+      signal?.addEventListener("abort", onAbort);
+      if (timeoutMs) {
+        timeoutHandle = setTimeout(() => {
+          cleanup();
+          reject(new Error("Request timeout"));
+        }, timeoutMs);
+      }
+
+      flight.then(
+        (value) => {
+          cleanup();
+          resolve(value);
+        },
+        (error) => {
+          cleanup();
+          reject(error);
+        },
+      );
+    });
+  }
+}
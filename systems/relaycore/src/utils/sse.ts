@@ -0,0 +1,85 @@
+/**
+ * Server-Sent Events
+ * Parses upstream event streams and writes events to clients
+ */
+
+import { Response } from "express";
+
+export interface ServerSentEvent {
+  event?: string;
+  data: string;
+}
+
+/**
+ * Yield events from a text/event-stream body as they arrive
+ */
+export async function* parseEventStream(
+  stream: AsyncIterable<Buffer | string>,
+): AsyncGenerator<ServerSentEvent> {
+  // Streaming decode keeps multi-byte characters split across chunks intact
+  const decoder = new TextDecoder();
+  let buffer = "";
+
+  for await (const chunk of stream) {
+    buffer +=
+      typeof chunk === "string"
+        ? chunk
+        : decoder.decode(chunk, { stream: true });
+
+    let boundary = buffer.search(/\r?\n\r?\n/);
+    while (boundary !== -1) {
+      const block = buffer.slice(0, boundary);
+      buffer = buffer.slice(boundary).replace(/^\r?\n\r?\n/, "");
+
+      const event = parseBlock(block);
+      if (event) {
+        yield event;
+      }
+      boundary = buffer.search(/\r?\n\r?\n/);
+    }
+  }
+
+  buffer += decoder.decode();
+  const event = parseBlock(buffer);
+  if (event) {
+    yield event;
+  }
+}
+
+function parseBlock(block: string): ServerSentEvent | null {
+  let event: string | undefined;
+  const data: string[] = [];
+
+  for (const line of block.split(/\r?\n/)) {
+    if (line.startsWith("event:")) {
+      event = line.slice(6).trim();
+    } else if (line.startsWith("data:")) {
+      data.push(line.slice(5).replace(/^ /, ""));
+    }
+  }
+
+  return data.length > 0 ? { event, data: data.join("\n") } : null;
+}
+
+/**
+ * Send SSE headers; no-transform keeps compression from buffering events
+ */
+export function openEventStream(res: Response): void {
+  res.status(200).set({
+    "Content-Type": "text/event-stream",
+    "Cache-Control": "no-cache, no-transform",
+    Connection: "keep-alive",
+    "X-Accel-Buffering": "no",
+  });
+  res.flushHeaders();
+}
+
+/**
+ * Write one event; events after the response ended are dropped
+ */
+export function writeEvent(res: Response, event: string, data: any): void {
+  if (res.writableEnded || res.destroyed) {
+    return;
+  }
+  res.write(`event: ${event}\ndata: ${JSON.stringify(data)}\n\n`);
+}